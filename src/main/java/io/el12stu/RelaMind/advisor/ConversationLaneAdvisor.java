@@ -0,0 +1,60 @@
+package io.el12stu.RelaMind.advisor;
+
+import io.el12stu.RelaMind.chatmemory.ConversationLanes;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.lang.NonNull;
+import reactor.core.publisher.Flux;
+
+/**
+ * 会话串行化 Advisor
+ * 同一会话的对话轮次通过 {@link ConversationLanes} 逐个执行，包住记忆 Advisor：
+ * 上一轮的回复写入记忆之后，下一轮才读取历史，重复发送或多标签页并发时历史不会交错。
+ * 没有会话ID的请求不受影响。
+ */
+public class ConversationLaneAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final ConversationLanes conversationLanes;
+
+    public ConversationLaneAdvisor(ConversationLanes conversationLanes) {
+        this.conversationLanes = conversationLanes;
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        // 必须在记忆 Advisor 之前执行，才能覆盖「读取历史 → 调用模型 → 写入回复」整个过程
+        return Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER - 1;
+    }
+
+    @Override
+    @NonNull
+    public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest, @NonNull CallAdvisorChain chain) {
+        return conversationLanes.call(getConversationId(chatClientRequest),
+                () -> chain.nextCall(chatClientRequest));
+    }
+
+    @Override
+    @NonNull
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+                                                 @NonNull StreamAdvisorChain chain) {
+        return conversationLanes.stream(getConversationId(chatClientRequest),
+                () -> chain.nextStream(chatClientRequest));
+    }
+
+    private static String getConversationId(ChatClientRequest request) {
+        Object conversationId = request.context().get(ChatMemory.CONVERSATION_ID);
+        return conversationId != null ? conversationId.toString() : null;
+    }
+}
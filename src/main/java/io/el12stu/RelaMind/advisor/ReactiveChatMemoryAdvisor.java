@@ -0,0 +1,114 @@
+package io.el12stu.RelaMind.advisor;
+
+import io.el12stu.RelaMind.chatmemory.ReactiveChatMemory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClientMessageAggregator;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.lang.NonNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 响应式对话记忆 Advisor
+ * 行为与 MessageChatMemoryAdvisor 相同：请求前把历史消息放在本轮消息之前并保存用户消息，响应后保存助手消息。
+ * 区别在于流式链路上读写记忆都通过 {@link ReactiveChatMemory} 组合进 Flux，
+ * 不会在 Reactor 线程或模型响应的回调线程上等待 Cassandra；同步调用链路仍然阻塞等待，与原实现一致。
+ * 与原实现一样，流在回复写入记忆之后才结束。
+ */
+@Slf4j
+public class ReactiveChatMemoryAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final ReactiveChatMemory chatMemory;
+
+    public ReactiveChatMemoryAdvisor(ReactiveChatMemory chatMemory) {
+        this.chatMemory = chatMemory;
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        // 与 MessageChatMemoryAdvisor 相同的顺序，替换时不影响其他 Advisor 的相对位置
+        return Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER;
+    }
+
+    @Override
+    @NonNull
+    public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest, @NonNull CallAdvisorChain chain) {
+        String conversationId = getConversationId(chatClientRequest);
+        ChatClientRequest processedRequest = before(chatClientRequest, conversationId).block();
+        ChatClientResponse response = chain.nextCall(processedRequest);
+        chatMemory.add(conversationId, assistantMessages(response)).block();
+        return response;
+    }
+
+    @Override
+    @NonNull
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+                                                 @NonNull StreamAdvisorChain chain) {
+        String conversationId = getConversationId(chatClientRequest);
+        Flux<ChatClientResponse> responseFlux = before(chatClientRequest, conversationId)
+                .flatMapMany(chain::nextStream);
+
+        // 流结束后保存聚合后的助手消息：保存以非阻塞方式串在完成信号之前，
+        // 下游（包括会话串行化）看到流结束时，本轮回复已经写入记忆
+        AtomicReference<ChatClientResponse> aggregated = new AtomicReference<>();
+        return new ChatClientMessageAggregator()
+                .aggregateChatClientResponse(responseFlux, aggregated::set)
+                .concatWith(Mono.defer(() -> chatMemory.add(conversationId, assistantMessages(aggregated.get())))
+                        .onErrorResume(error -> {
+                            log.error("Failed to save assistant messages for conversation: {}",
+                                    conversationId, error);
+                            return Mono.empty();
+                        })
+                        .then(Mono.empty()));
+    }
+
+    /**
+     * 读取历史并放在本轮消息之前，随后保存本轮的用户消息
+     */
+    private Mono<ChatClientRequest> before(ChatClientRequest request, String conversationId) {
+        return chatMemory.get(conversationId)
+                .flatMap(history -> {
+                    List<Message> messages = new ArrayList<>(history);
+                    messages.addAll(request.prompt().getInstructions());
+                    ChatClientRequest processedRequest = request.mutate()
+                            .prompt(request.prompt().mutate().messages(messages).build())
+                            .build();
+                    Message userMessage = processedRequest.prompt().getUserMessage();
+                    return chatMemory.add(conversationId, List.of(userMessage)).thenReturn(processedRequest);
+                });
+    }
+
+    private static List<Message> assistantMessages(ChatClientResponse response) {
+        if (response == null || response.chatResponse() == null) {
+            return List.of();
+        }
+        return response.chatResponse().getResults().stream()
+                .map(Generation::getOutput)
+                .map(Message.class::cast)
+                .toList();
+    }
+
+    private static String getConversationId(ChatClientRequest request) {
+        Object conversationId = request.context().get(ChatMemory.CONVERSATION_ID);
+        return conversationId != null ? conversationId.toString() : ChatMemory.DEFAULT_CONVERSATION_ID;
+    }
+}
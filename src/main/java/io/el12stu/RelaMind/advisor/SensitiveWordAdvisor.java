@@ -1,6 +1,7 @@
 package io.el12stu.RelaMind.advisor;
 
 import io.el12stu.RelaMind.service.SensitiveWordService;
+import io.el12stu.RelaMind.service.SensitiveWordStreamScanner;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClientRequest;
 import org.springframework.ai.chat.client.ChatClientResponse;
@@ -9,29 +10,60 @@ import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
 import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
 import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
 import org.springframework.ai.chat.messages.AssistantMessage;
-import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
-import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.lang.NonNull;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
- * 敏感词拦截 Advisor
- * 如果用户输入包含敏感词，将直接返回错误响应，跳过大模型 API 调用
+ * 模型输出敏感词 Advisor
+ * 模型输出经过检测（{@link OutputMode}）：流式响应逐个分段增量扫描，自动机状态跨分段保留，
+ * 只暂存可能构成敏感词前缀的几个字符，不缓冲整段回答。
+ * <p>
+ * 排在记忆 Advisor 之后执行，记忆保存的是检测后的回答；用户输入的检测在 {@link SensitiveWordInputAdvisor} 中，
+ * 它必须排在记忆之前。
  */
 @Slf4j
 public class SensitiveWordAdvisor implements CallAdvisor, StreamAdvisor {
 
 	private final SensitiveWordService sensitiveWordService;
 
-	private static final String ERROR_MESSAGE = "[系统安全提示]：您的输入包含敏感内容，请求已被拦截。";
+	private final OutputMode outputMode;
+
+	private static final String CUT_MESSAGE = "\n[系统安全提示]：回答包含敏感内容，已停止输出。";
+
+	/**
+	 * 模型输出的处理方式
+	 */
+	public enum OutputMode {
+		/**
+		 * 不检测模型输出
+		 */
+		OFF,
+		/**
+		 * 命中的敏感词替换为 *，其余内容照常输出
+		 */
+		MASK,
+		/**
+		 * 在命中处截断输出并追加提示
+		 */
+		CUT
+	}
 
 	public SensitiveWordAdvisor(SensitiveWordService sensitiveWordService, @SuppressWarnings("unused") org.springframework.ai.chat.model.ChatModel dashscopeChatModel) {
+		this(sensitiveWordService, dashscopeChatModel, OutputMode.MASK);
+	}
+
+	public SensitiveWordAdvisor(SensitiveWordService sensitiveWordService, @SuppressWarnings("unused") org.springframework.ai.chat.model.ChatModel dashscopeChatModel,
+			OutputMode outputMode) {
 		this.sensitiveWordService = sensitiveWordService;
+		this.outputMode = outputMode;
 	}
 
 	@Override
@@ -43,98 +75,150 @@ public class SensitiveWordAdvisor implements CallAdvisor, StreamAdvisor {
 
 	@Override
 	public int getOrder() {
-		// 设置较高的优先级，确保在其他 Advisor 之前执行
+		// 在记忆 Advisor 之后（更靠近模型），记忆保存检测后的回答
 		return -100;
 	}
 
-	/**
-	 * 从 ChatClientRequest 中提取用户输入文本
-	 * 获取最后一条 UserMessage 的内容作为检测目标
-	 */
-	private String extractUserInput(ChatClientRequest request) {
-		try {
-			Prompt prompt = request.prompt();
-			List<org.springframework.ai.chat.messages.Message> messages = prompt.getInstructions();
-
-			// 从后往前查找最后一条 UserMessage
-			for (int i = messages.size() - 1; i >= 0; i--) {
-				org.springframework.ai.chat.messages.Message message = messages.get(i);
-				if (message instanceof UserMessage) {
-					return ((UserMessage) message).getText();
-				}
-			}
+	@Override
+	@NonNull
+	public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest, @NonNull CallAdvisorChain chain) {
+		ChatClientResponse response = chain.nextCall(chatClientRequest);
+		if (outputMode == OutputMode.OFF) {
+			return response;
+		}
+		// 非流式响应只有一个分段
+		OutputModeration moderation = new OutputModeration();
+		ChatClientResponse moderated = moderation.moderate(response);
+		ChatClientResponse tail = moderation.tail();
+		return tail == null ? moderated : moderation.append(moderated, tail);
+	}
 
-			// 如果没有找到 UserMessage，尝试使用 prompt 的便捷方法
-			try {
-				return prompt.getUserMessage().getText();
-			} catch (Exception e) {
-				log.warn("无法提取用户输入文本", e);
-				return "";
-			}
-		} catch (Exception e) {
-			log.error("提取用户输入时发生错误", e);
-			return "";
+	@Override
+	@NonNull
+	public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest, @NonNull StreamAdvisorChain chain) {
+		Flux<ChatClientResponse> responses = chain.nextStream(chatClientRequest);
+		if (outputMode == OutputMode.OFF) {
+			return responses;
 		}
+		// 每次订阅一个扫描器：逐段扫描，截断后停止上游；流结束时补发暂存的尾部
+		return Flux.defer(() -> {
+			OutputModeration moderation = new OutputModeration();
+			return responses.map(moderation::moderate)
+					.takeUntil(response -> moderation.isCut())
+					.concatWith(Mono.fromSupplier(moderation::tail));
+		});
 	}
 
 	/**
-	 * 创建包含错误信息的 ChatClientResponse
-	 * 采用直接构造方法，实现零 API 调用拦截。
-	 * 依赖 Spring AI 库中 ChatClientResponse 的 Record 公共构造函数签名:
-	 * public ChatClientResponse(@Nullable ChatResponse chatResponse, Map<String, Object> context)
+	 * 一次响应（流）的输出检测状态，每个 Generation 下标各自一个扫描器
 	 */
-	@NonNull
-	private ChatClientResponse createErrorClientResponse(@NonNull ChatClientRequest request) {
-		try {
-			// 1. 构造包含错误消息的 ChatResponse 对象
-			AssistantMessage errorMessage = new AssistantMessage(ERROR_MESSAGE);
-			Generation generation = new Generation(errorMessage);
-			ChatResponse chatResponse = new ChatResponse(List.of(generation));
-			
-			// 2. 使用当前 Spring AI 版本最稳定的公共构造函数直接实例化，
-			//    实现对大模型的零 API 调用。
-			//    我们提供 chatResponse 和一个空的 context Map。
-			return new ChatClientResponse(chatResponse, Collections.emptyMap());
-			
-		} catch (Exception e) {
-			// 如果这里仍然失败，说明 ChatClientResponse 的公共构造函数签名仍然不同。
-			log.error("无法通过公共构造函数创建 ChatClientResponse，请检查 Spring AI 依赖版本。", e);
-			throw new RuntimeException("无法创建 ChatClientResponse，请检查 Spring AI 版本和 API", e);
+	private final class OutputModeration {
+
+		private final List<SensitiveWordStreamScanner> scanners = new ArrayList<>(1);
+
+		private Map<String, Object> lastContext = Collections.emptyMap();
+
+		private boolean reported;
+
+		private SensitiveWordStreamScanner scanner(int index) {
+			while (scanners.size() <= index) {
+				scanners.add(sensitiveWordService.newStreamScanner(outputMode == OutputMode.CUT));
+			}
+			return scanners.get(index);
 		}
-	}
 
-	@Override
-	@NonNull
-	public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest, @NonNull CallAdvisorChain chain) {
-		// 提取用户输入文本
-		String userInput = extractUserInput(chatClientRequest);
-
-		// 检查是否包含敏感词
-		if (sensitiveWordService.containsSensitiveWords(userInput)) {
-			log.warn("检测到敏感词，已拦截请求。用户输入: {}", userInput);
-			// 直接返回错误响应，实现零 API 调用拦截
-			return createErrorClientResponse(chatClientRequest);
+		boolean isCut() {
+			for (SensitiveWordStreamScanner scanner : scanners) {
+				if (scanner.isCut()) {
+					return true;
+				}
+			}
+			return false;
 		}
 
-		// 如果没有敏感词，继续执行后续调用链
-		return chain.nextCall(chatClientRequest);
-	}
+		/**
+		 * 扫描一个分段；没有暂存也没有命中时原样返回，不创建新对象
+		 */
+		ChatClientResponse moderate(ChatClientResponse response) {
+			lastContext = response.context();
+			ChatResponse chatResponse = response.chatResponse();
+			if (chatResponse == null || chatResponse.getResults().isEmpty()) {
+				return response;
+			}
+			List<Generation> results = chatResponse.getResults();
+			List<Generation> moderated = null;
+			for (int i = 0; i < results.size(); i++) {
+				Generation generation = results.get(i);
+				AssistantMessage output = generation.getOutput();
+				String text = output != null ? output.getText() : null;
+				if (text == null) {
+					continue;
+				}
+				SensitiveWordStreamScanner scanner = scanner(i);
+				String safe = scanner.feed(text);
+				if (scanner.isCut()) {
+					safe = safe + CUT_MESSAGE;
+				}
+				if (safe == text) {
+					continue;
+				}
+				if (moderated == null) {
+					moderated = new ArrayList<>(results);
+				}
+				moderated.set(i, new Generation(new AssistantMessage(safe, output.getMetadata(), output.getToolCalls(),
+						output.getMedia()), generation.getMetadata()));
+			}
+			if (moderated == null) {
+				return response;
+			}
+			report();
+			return new ChatClientResponse(new ChatResponse(moderated, chatResponse.getMetadata()), response.context());
+		}
 
-	@Override
-	@NonNull
-	public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest, @NonNull StreamAdvisorChain chain) {
-		// 提取用户输入文本
-		String userInput = extractUserInput(chatClientRequest);
-
-		// 检查是否包含敏感词
-		if (sensitiveWordService.containsSensitiveWords(userInput)) {
-			log.warn("检测到敏感词，已拦截流式请求。用户输入: {}", userInput);
-			// 直接返回错误响应，实现零 API 调用拦截
-			ChatClientResponse errorResponse = createErrorClientResponse(chatClientRequest);
-			return Flux.just(errorResponse);
+		/**
+		 * 输出结束时暂存的尾部，没有时返回 null
+		 */
+		ChatClientResponse tail() {
+			List<Generation> generations = new ArrayList<>(scanners.size());
+			boolean any = false;
+			for (SensitiveWordStreamScanner scanner : scanners) {
+				String tail = scanner.flush();
+				any |= !tail.isEmpty();
+				generations.add(new Generation(new AssistantMessage(tail)));
+			}
+			if (!any) {
+				return null;
+			}
+			return new ChatClientResponse(new ChatResponse(generations), lastContext);
 		}
 
-		// 如果没有敏感词，继续执行后续调用链
-		return chain.nextStream(chatClientRequest);
+		/**
+		 * 非流式响应：把尾部接回对应的 Generation
+		 */
+		ChatClientResponse append(ChatClientResponse response, ChatClientResponse tail) {
+			ChatResponse chatResponse = response.chatResponse();
+			List<Generation> results = new ArrayList<>(chatResponse.getResults());
+			List<Generation> tails = tail.chatResponse().getResults();
+			for (int i = 0; i < tails.size() && i < results.size(); i++) {
+				Generation generation = results.get(i);
+				AssistantMessage output = generation.getOutput();
+				results.set(i, new Generation(new AssistantMessage(output.getText() + tails.get(i).getOutput().getText(),
+						output.getMetadata(), output.getToolCalls(), output.getMedia()), generation.getMetadata()));
+			}
+			return new ChatClientResponse(new ChatResponse(results, chatResponse.getMetadata()), response.context());
+		}
+
+		private void report() {
+			if (reported) {
+				return;
+			}
+			for (SensitiveWordStreamScanner scanner : scanners) {
+				if (scanner.matchCount() > 0) {
+					reported = true;
+					log.warn("检测到模型输出包含敏感词，处理方式: {}", outputMode);
+					return;
+				}
+			}
+		}
 	}
 }
@@ -0,0 +1,135 @@
+package io.el12stu.RelaMind.advisor;
+
+import io.el12stu.RelaMind.service.SensitiveWordService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.lang.NonNull;
+import reactor.core.publisher.Flux;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 用户输入敏感词 Advisor
+ * 排在记忆 Advisor（以及会话通道）之前执行：记忆在请求阶段就保存用户消息，
+ * 只有先完成检测，被拦截的输入才不会写入记忆，遮盖模式下写入记忆、回显到历史、下一轮带给模型的也都是遮盖后的文本。
+ * <ul>
+ *     <li>{@link InputMode#REJECT}：返回拦截提示，不调用大模型，也不写入记忆</li>
+ *     <li>{@link InputMode#MASK}：命中的词替换为 * 后继续对话，检测与遮盖在同一次扫描中完成</li>
+ * </ul>
+ * 模型输出的检测在 {@link SensitiveWordAdvisor} 中，它排在记忆之后，记忆保存的是检测后的回答。
+ */
+@Slf4j
+public class SensitiveWordInputAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private static final String ERROR_MESSAGE = "[系统安全提示]：您的输入包含敏感内容，请求已被拦截。";
+
+    /**
+     * 用户输入的处理方式
+     */
+    public enum InputMode {
+        /**
+         * 返回拦截提示，不调用大模型
+         */
+        REJECT,
+        /**
+         * 命中的敏感词替换为 * 后继续调用
+         */
+        MASK
+    }
+
+    private final SensitiveWordService sensitiveWordService;
+
+    private final InputMode inputMode;
+
+    public SensitiveWordInputAdvisor(SensitiveWordService sensitiveWordService, InputMode inputMode) {
+        this.sensitiveWordService = sensitiveWordService;
+        this.inputMode = inputMode;
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        // 必须在记忆 Advisor 保存用户消息之前执行，也排在会话通道之前，被拦截的请求不必排队
+        return Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER - 10;
+    }
+
+    @Override
+    @NonNull
+    public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest, @NonNull CallAdvisorChain chain) {
+        String userInput = extractUserInput(chatClientRequest);
+        if (inputMode == InputMode.MASK) {
+            return chain.nextCall(maskUserInput(chatClientRequest, userInput));
+        }
+        if (sensitiveWordService.containsSensitiveWords(userInput)) {
+            log.warn("检测到敏感词，已拦截请求");
+            // 直接返回错误响应，实现零 API 调用拦截
+            return createErrorClientResponse();
+        }
+        return chain.nextCall(chatClientRequest);
+    }
+
+    @Override
+    @NonNull
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+                                                 @NonNull StreamAdvisorChain chain) {
+        String userInput = extractUserInput(chatClientRequest);
+        if (inputMode == InputMode.MASK) {
+            return chain.nextStream(maskUserInput(chatClientRequest, userInput));
+        }
+        if (sensitiveWordService.containsSensitiveWords(userInput)) {
+            log.warn("检测到敏感词，已拦截流式请求");
+            return Flux.just(createErrorClientResponse());
+        }
+        return chain.nextStream(chatClientRequest);
+    }
+
+    /**
+     * 最后一条 UserMessage 的文本，没有时返回空字符串
+     */
+    private static String extractUserInput(ChatClientRequest request) {
+        List<Message> messages = request.prompt().getInstructions();
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage userMessage) {
+                String text = userMessage.getText();
+                return text != null ? text : "";
+            }
+        }
+        return "";
+    }
+
+    /**
+     * 遮盖最后一条 UserMessage 中的敏感词，没有命中时返回原请求
+     */
+    private ChatClientRequest maskUserInput(ChatClientRequest request, String userInput) {
+        String masked = sensitiveWordService.mask(userInput);
+        if (masked == userInput) {
+            return request;
+        }
+        log.warn("检测到敏感词，已遮盖用户输入");
+        Prompt prompt = request.prompt().augmentUserMessage(message -> message.mutate().text(masked).build());
+        return request.mutate().prompt(prompt).build();
+    }
+
+    private static ChatClientResponse createErrorClientResponse() {
+        ChatResponse chatResponse = new ChatResponse(List.of(new Generation(new AssistantMessage(ERROR_MESSAGE))));
+        return new ChatClientResponse(chatResponse, Collections.emptyMap());
+    }
+}
@@ -1,10 +1,14 @@
 package io.el12stu.RelaMind.app;
 
+import io.el12stu.RelaMind.advisor.ConversationLaneAdvisor;
 import io.el12stu.RelaMind.advisor.MyLoggerAdvisor;
+import io.el12stu.RelaMind.advisor.ReactiveChatMemoryAdvisor;
 import io.el12stu.RelaMind.advisor.ReReadingAdvisor;
 import io.el12stu.RelaMind.advisor.SensitiveWordAdvisor;
+import io.el12stu.RelaMind.advisor.SensitiveWordInputAdvisor;
 import io.el12stu.RelaMind.advisor.ToolCallLimitAdvisor;
-import io.el12stu.RelaMind.chatmemory.CassandraBasedChatMemory;
+import io.el12stu.RelaMind.chatmemory.ConversationLanes;
+import io.el12stu.RelaMind.chatmemory.ReactiveChatMemory;
 import io.el12stu.RelaMind.rag.QueryRewriter;
 import io.el12stu.RelaMind.service.IntentDetectionService;
 import io.el12stu.RelaMind.service.IntentDetectionResult;
@@ -23,9 +27,11 @@ import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -74,23 +80,40 @@ public class RelaMindApp {
      * 初始化 ChatClient
      *
      * @param dashscopeChatModel
+     * @param chatMemory 由 relamind.chat.memory.backend 选择的记忆后端（默认 Cassandra）
+     * @param memoryMode 记忆访问模式：BLOCKING 或 REACTIVE（流式对话不阻塞线程等待 Cassandra）
+     * @param sensitiveInputMode 用户输入的敏感词处理方式：REJECT / MASK
+     * @param sensitiveOutputMode 模型输出的敏感词处理方式：OFF / MASK / CUT
      */
-    public RelaMindApp(ChatModel dashscopeChatModel,CassandraBasedChatMemory cassandraBasedChatMemory,SensitiveWordService sensitiveWordService) {
-        // 使用基于 Cassandra 的对话记忆（替代文件存储）
-        ChatMemory chatMemory = cassandraBasedChatMemory;
+    public RelaMindApp(ChatModel dashscopeChatModel,ChatMemory chatMemory,
+                       ReactiveChatMemory reactiveChatMemory,SensitiveWordService sensitiveWordService,
+                       ConversationLanes conversationLanes,
+                       @Value("${relamind.chat.memory.mode:BLOCKING}") String memoryMode,
+                       @Value("${relamind.sensitive.input-mode:REJECT}") SensitiveWordInputAdvisor.InputMode sensitiveInputMode,
+                       @Value("${relamind.sensitive.output-mode:MASK}") SensitiveWordAdvisor.OutputMode sensitiveOutputMode) {
+        Advisor memoryAdvisor = "REACTIVE".equalsIgnoreCase(memoryMode)
+                ? new ReactiveChatMemoryAdvisor(reactiveChatMemory)
+                : MessageChatMemoryAdvisor.builder(chatMemory).build();
+        log.info("Chat memory mode: {}", memoryAdvisor.getName());
+        List<Advisor> advisors = new ArrayList<>(List.of(
+                memoryAdvisor,
+                //敏感词 Advisor，可按需开启：输入检测排在记忆之前，输出检测排在记忆之后
+                new SensitiveWordInputAdvisor(sensitiveWordService,sensitiveInputMode),
+                new SensitiveWordAdvisor(sensitiveWordService,dashscopeChatModel,sensitiveOutputMode)
+                //工具调用上限工具，可按需开启，否则可能会无限调用工具
+                ,new ToolCallLimitAdvisor()
+                // 自定义日志 Advisor，可按需开启
+                ,new MyLoggerAdvisor()
+//             // 自定义推理增强 Advisor，可按需开启
+               //,new ReReadingAdvisor()
+        ));
+        if (conversationLanes.isEnabled()) {
+            // 同一会话的对话轮次串行执行，避免并发请求交错读写记忆
+            advisors.add(new ConversationLaneAdvisor(conversationLanes));
+        }
         chatClient = ChatClient.builder(dashscopeChatModel)
                 .defaultSystem(SYSTEM_PROMPT)
-                .defaultAdvisors(
-                        MessageChatMemoryAdvisor.builder(chatMemory).build(),
-                        //敏感词拦截 Advisor，可按需开启
-                        new SensitiveWordAdvisor(sensitiveWordService,dashscopeChatModel)
-                        //工具调用上限工具，可按需开启，否则可能会无限调用工具
-                        ,new ToolCallLimitAdvisor()
-                        // 自定义日志 Advisor，可按需开启
-                        ,new MyLoggerAdvisor()
-//                     // 自定义推理增强 Advisor，可按需开启
-                       //,new ReReadingAdvisor()
-                )
+                .defaultAdvisors(advisors)
                 .build();
     }
 
@@ -1,27 +1,85 @@
 package io.el12stu.RelaMind.chatmemory;
 
 import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
-import io.el12stu.RelaMind.chatmemory.repository.ChatMessageRepository;
+import io.el12stu.RelaMind.chatmemory.entity.ConversationStateEntity;
+import io.el12stu.RelaMind.chatmemory.repository.ConversationStateRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.*;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 基于 Cassandra 的聊天记忆存储实现
  * 优化：采用 Append-Only 模式，避免全量重写
+ * 开启滚动摘要压缩后，get 返回「更早历史的摘要 + 摘要之后的原文」
  */
 @Component
+@ConditionalOnCassandraChatMemory
 @Slf4j
 public class CassandraBasedChatMemory implements ChatMemory {
 
-    private final ChatMessageRepository chatMessageRepository;
+    private static final String SUMMARY_PREFIX = "以下是更早对话的摘要：\n";
+
+    /**
+     * 合并并发加载的标识：同一会话、同一窗口配置
+     */
+    private record WindowKey(String conversationId, int maxMessages, int maxTokens) {
+    }
+
+    private final ChatMessageStore chatMessageStore;
+
+    private final ChatMemoryWriteBehind writeBehind;
+
+    private final ConversationHotCache hotCache;
+
+    private final ChatHistoryCompactor compactor;
+
+    private final ChatMessageCodec codec;
+
+    private final ConversationStateRepository conversationStateRepository;
+
+    private final UserConversationIndex userConversationIndex;
+
+    private final ChatMessageIdGenerator idGenerator;
+
+    /**
+     * 冷会话的并发 get（如刷新页面的同时发送第一条消息）共享同一次 Cassandra 查询
+     */
+    private final SingleFlight<WindowKey, List<Message>> windowLoads;
+
+    /**
+     * 是否以二进制编码完整保存消息（工具调用、工具返回、元数据）。
+     * 无论是否开启都写入纯文本 context：只认识 context 的读取方（回滚后的旧版本、CQL 查询、分析任务）不丢失正文，
+     * 关闭编码后已写入的数据照常读取；两种数据可以混合读取。
+     */
+    @Value("${relamind.chat.memory.codec.enabled:true}")
+    private boolean codecEnabled;
+
+    /**
+     * clear 时只标记清空时间而不删除数据，旧消息由保留策略的 TTL 过期
+     */
+    @Value("${relamind.chat.memory.retention.soft-clear:true}")
+    private boolean softClear;
 
     /**
      * 最大消息数量限制。
@@ -31,47 +89,369 @@ public class CassandraBasedChatMemory implements ChatMemory {
     @Value("${relamind.chat.memory.max-messages:0}")
     private int maxMessages;
 
-    public CassandraBasedChatMemory(ChatMessageRepository chatMessageRepository) {
-        this.chatMessageRepository = chatMessageRepository;
+    /**
+     * token 预算。
+     * 如果设置为大于 0 的值，get 方法从最新消息往前累加写入时记录的 token 数，直到再加一条就会超出预算。
+     * 与 max-messages 同时配置时，先按条数取窗口，再在窗口内按 token 截取；
+     * 只配置 max-tokens 时，按页倒序读取直到预算填满。
+     */
+    @Value("${relamind.chat.memory.max-tokens:0}")
+    private int maxTokens;
+
+    /**
+     * 会话分叉：读取时按会话状态中记录的谱系拼接父会话分叉点之前的消息
+     * 关闭后读取不再依赖谱系（未开启摘要和软清空时可省去一次状态读取），已有的分叉会话只返回自己的消息
+     */
+    @Value("${relamind.chat.memory.fork.enabled:true}")
+    private boolean forkEnabled;
+
+    /**
+     * 按 token 预算倒序分页读取时的每页条数
+     */
+    @Value("${relamind.chat.memory.token-window.page-size:32}")
+    private int tokenWindowPageSize;
+
+    /**
+     * 写入时计算 token 数（cl100k 编码，与模型实际分词略有差异，仅用于预算估算）
+     */
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+    public CassandraBasedChatMemory(ChatMessageStore chatMessageStore,
+                                    ChatMemoryWriteBehind writeBehind,
+                                    ConversationHotCache hotCache,
+                                    ChatHistoryCompactor compactor,
+                                    ChatMessageCodec codec,
+                                    ConversationStateRepository conversationStateRepository,
+                                    UserConversationIndex userConversationIndex,
+                                    ChatMessageIdGenerator idGenerator,
+                                    MeterRegistry meterRegistry) {
+        this.chatMessageStore = chatMessageStore;
+        this.writeBehind = writeBehind;
+        this.hotCache = hotCache;
+        this.compactor = compactor;
+        this.codec = codec;
+        this.conversationStateRepository = conversationStateRepository;
+        this.userConversationIndex = userConversationIndex;
+        this.idGenerator = idGenerator;
+        this.windowLoads = new SingleFlight<>(Counter.builder("relamind.chat.memory.reads.coalesced")
+                .description("Chat memory loads that joined an in-flight query for the same conversation")
+                .register(meterRegistry));
     }
 
     @Override
     public void add(String conversationId, List<Message> messages) {
         // 关键修改：直接保存新消息，不需要读取旧消息，也不要删除旧消息
         // Cassandra 擅长写入，这里利用其高吞吐特性
-        saveNewMessages(conversationId, messages);
+        List<ChatMessageEntity> saved = saveNewMessages(conversationId, messages);
+        onSaved(conversationId, messages, saved);
+    }
+
+    /**
+     * 消息落库（或进入写后队列）之后的内存与派生数据维护，均不阻塞调用线程
+     * 响应式实现 {@link CassandraReactiveChatMemory} 写入完成后也通过这里维护，两条路径行为一致
+     */
+    void onSaved(String conversationId, List<Message> messages, List<ChatMessageEntity> saved) {
+        // 写入之后发起的 get 不能再加入写入之前开始的加载，保证读到自己的写入
+        windowLoads.forget(windowKey(conversationId));
+        if (!saved.isEmpty()) {
+            // 用户会话列表随写入增量 upsert（不读旧值），列表查询只需读取用户分区
+            long latestTimestamp = saved.get(saved.size() - 1).getTimestamp();
+            userConversationIndex.recordAsync(conversationId, messages, ChatMessageIdGenerator.millisOf(latestTimestamp));
+        }
+        // 写穿：已缓存的会话直接在窗口尾部追加，下一轮 get 无需回源
+        if (isHotCacheActive() && !saved.isEmpty()) {
+            hotCache.append(conversationId, messages, tokenCounts(saved), maxMessages);
+        }
+        // 累计到阈值时在后台折叠旧消息，不阻塞当前请求
+        compactor.onMessagesAdded(conversationId, saved.size());
     }
 
     @Override
     public List<Message> get(String conversationId) {
+        // 优先命中热窗口缓存（仅按条数限制窗口时开启）
+        List<Message> cached = cachedWindow(conversationId);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            List<Message> loaded = loadCoalesced(conversationId,
+                    () -> CompletableFuture.completedFuture(loadFromDatabase(conversationId))).join();
+            // 加载结果由并发调用共享，每个调用方拿到各自的副本
+            return new ArrayList<>(loaded);
+        } catch (Exception e) {
+            log.error("Failed to retrieve messages for conversation: {}", conversationId, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 合并同一会话、同一窗口的并发加载：已有加载在进行时直接共享其结果
+     * 响应式实现传入异步加载，与阻塞路径共享同一组进行中的加载
+     */
+    CompletableFuture<List<Message>> loadCoalesced(String conversationId,
+                                                   Supplier<CompletableFuture<List<Message>>> loader) {
+        return windowLoads.execute(windowKey(conversationId), loader);
+    }
+
+    private WindowKey windowKey(String conversationId) {
+        return new WindowKey(conversationId, maxMessages, maxTokens);
+    }
+
+    private List<Message> loadFromDatabase(String conversationId) {
         // Eviction 策略：根据配置的 maxMessages 决定是否限制消息数量
         if (maxMessages > 0) {
             // 如果配置了最大消息数限制，只获取最新的 N 条消息
-            return getLatestFromDatabase(conversationId, maxMessages);
+            return getLatestWindow(conversationId);
+        } else if (maxTokens > 0) {
+            // 只按 token 预算限制：倒序分页读取，直到预算填满
+            return getTokenBudgetFromDatabase(conversationId);
         } else {
             // 如果没有限制（maxMessages <= 0），返回所有消息
             return getFromDatabase(conversationId);
         }
     }
 
+    /**
+     * 清空会话
+     * 软清空（默认）只在 conversation_state 中记录清空时间，之前的消息不再返回，由 TTL 自然过期；
+     * 硬清空执行分区删除，会产生墓碑，频繁清空的热点会话读取延迟会随之上升。
+     */
     @Override
     public void clear(String conversationId) {
         try {
-            // 注意：在 Cassandra 中频繁硬删除大量数据可能产生 Tombstones
-            // 建议配合 TTL (Time To Live) 策略自动过期，而不是手动频繁 clear
-            chatMessageRepository.deleteByKey(conversationId);
+            if (softClear) {
+                // 记录消息ID分界线而不是墙钟时间，与消息的聚类键直接比较
+                conversationStateRepository.markCleared(conversationId, idGenerator.fence(), System.currentTimeMillis());
+            } else {
+                chatMessageStore.deleteConversation(conversationId);
+                conversationStateRepository.deleteById(conversationId);
+            }
+            compactor.forget(conversationId);
+            userConversationIndex.remove(conversationId);
         } catch (Exception e) {
             log.error("Failed to clear conversation: {}", conversationId, e);
+        } finally {
+            hotCache.invalidate(conversationId);
+            windowLoads.forget(windowKey(conversationId));
+        }
+    }
+
+    /**
+     * 从父会话的分叉点处分叉出新会话
+     * 只写入新会话的一行状态（谱系、可复用的摘要和软清空分界），不复制任何消息，代价与历史长度无关；
+     * 之后读取新会话时，父会话分叉点之前的消息与新会话自己的消息按顺序拼接。
+     * 父会话之后的写入和软清空不影响已分叉的会话；硬清空（soft-clear=false）会删除被引用的消息，分叉会话随之失去这部分历史。
+     *
+     * @param parentId       父会话ID
+     * @param conversationId 新会话ID，必须尚未使用
+     * @param forkPoint      分叉点：父会话中的消息ID（{@link ChatHistoryItem#id()}），该消息保留在新会话中；
+     *                       为 null 时在父会话当前的最新消息处分叉
+     * @throws IllegalArgumentException 父会话不存在
+     * @throws IllegalStateException    未开启分叉，或新会话ID已被使用
+     */
+    public ConversationFork fork(String parentId, String conversationId, Long forkPoint) {
+        if (!forkEnabled) {
+            throw new IllegalStateException("Conversation forking is disabled");
+        }
+        if (parentId.equals(conversationId)
+                || conversationStateRepository.existsById(conversationId)
+                || !chatMessageStore.findLatest(conversationId, 1).isEmpty()) {
+            throw new IllegalStateException("Conversation already exists: " + conversationId);
+        }
+        ConversationStateEntity parentState = conversationStateRepository.findById(parentId).orElse(null);
+        if (parentState == null && chatMessageStore.findLatest(parentId, 1).isEmpty()) {
+            throw new IllegalArgumentException("Conversation not found: " + parentId);
+        }
+        long point = forkPoint != null ? forkPoint : idGenerator.fence();
+        ConversationLineage lineage = ConversationLineage.of(parentId, parentState).fork(conversationId, point);
+
+        ConversationStateEntity state = new ConversationStateEntity();
+        state.setKey(conversationId);
+        state.setForkParents(lineage.parentKeys());
+        state.setForkPoints(lineage.forkPoints());
+        if (parentState != null) {
+            // 摘要只覆盖分叉点之前的消息时直接复用；覆盖到分叉点之后时不复用，分叉点之前的原文仍可从父会话读取
+            if (parentState.getSummary() != null && parentState.getSummarizedUntil() != null
+                    && parentState.getSummarizedUntil() <= point) {
+                state.setSummary(parentState.getSummary());
+                state.setSummarizedUntil(parentState.getSummarizedUntil());
+                state.setSummaryTokenCount(parentState.getSummaryTokenCount());
+            }
+            // 父会话在分叉点之前被软清空过的消息，在新会话中同样不可见
+            if (parentState.getClearedAt() != null) {
+                state.setClearedAt(Math.min(parentState.getClearedAt(), point));
+            }
+        }
+        state.setUpdatedAt(System.currentTimeMillis());
+        conversationStateRepository.save(state);
+        hotCache.invalidate(conversationId);
+        windowLoads.forget(windowKey(conversationId));
+        log.info("Forked conversation {} from {} at {}", conversationId, parentId, point);
+        return new ConversationFork(conversationId, parentId, point);
+    }
+
+    /**
+     * 分页读取会话历史（时间升序），通过 Cassandra paging state 续读
+     *
+     * @param pageSize    每页条数
+     * @param pagingState 上一页返回的 nextPagingState，首页传 null
+     * @return 当前页及下一页的 paging state
+     * @throws InvalidPagingStateException pagingState 无效
+     */
+    public ChatHistoryPage readHistoryPage(String conversationId, int pageSize, String pagingState) {
+        ConversationStateEntity state = loadState(conversationId);
+        ChatMessageStore.Page page =
+                chatMessageStore.readPage(lineageOf(conversationId, state), pageSize, pagingState);
+        // 历史接口返回原文（包括已折叠进摘要的消息），只隐藏软清空之前的消息
+        long clearedAt = state != null && state.getClearedAt() != null ? state.getClearedAt() : Long.MIN_VALUE;
+        List<ChatHistoryItem> items = page.entities().stream()
+                .filter(entity -> entity.getTimestamp() > clearedAt)
+                .map(this::toHistoryItem)
+                .toList();
+        return new ChatHistoryPage(items, page.nextToken());
+    }
+
+    /**
+     * 以惰性流的方式逐页读取整个会话历史（时间升序）。
+     * 只有消费到下一页时才发起查询，任意时刻内存中只保留一页数据，适合导出超长会话。
+     */
+    public Stream<List<ChatHistoryItem>> streamHistoryPages(String conversationId, int pageSize) {
+        Iterator<List<ChatHistoryItem>> pages = new Iterator<>() {
+            private boolean hasNext = true;
+            private String token;
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            @Override
+            public List<ChatHistoryItem> next() {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                ChatHistoryPage page = readHistoryPage(conversationId, pageSize, token);
+                token = page.nextPagingState();
+                hasNext = token != null;
+                return page.items();
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private ChatHistoryItem toHistoryItem(ChatMessageEntity entity) {
+        Message message = createMessageFromEntity(entity);
+        return new ChatHistoryItem(entity.getType(), message.getText(),
+                ChatMessageIdGenerator.millisOf(entity.getTimestamp()), entity.getTimestamp());
+    }
+
+    /**
+     * 热窗口缓存只在按条数限制窗口时生效：无限制模式下需要返回全部历史，不适合常驻内存
+     */
+    private boolean isHotCacheActive() {
+        return hotCache.isEnabled() && maxMessages > 0;
+    }
+
+    /**
+     * 是否按条数读取最新窗口（只有这种模式的读取是单次有界查询，可以走异步路径）
+     */
+    boolean isLatestWindowMode() {
+        return maxMessages > 0;
+    }
+
+    int maxMessages() {
+        return maxMessages;
+    }
+
+    /**
+     * 是否需要读取会话状态（摘要、软清空时间）
+     */
+    boolean needsState() {
+        return compactor.isEnabled() || softClear || forkEnabled;
+    }
+
+    /**
+     * 会话的谱系，未开启分叉或未分叉时只有会话自身
+     */
+    private ConversationLineage lineageOf(String conversationId, ConversationStateEntity state) {
+        return ConversationLineage.of(conversationId, forkEnabled ? state : null);
+    }
+
+    /**
+     * 读取窗口时还需要补读的祖先段：已被软清空或折叠进摘要覆盖的祖先不再读取
+     */
+    List<ConversationLineage.Segment> ancestorsOf(String conversationId, ConversationStateEntity state) {
+        return lineageOf(conversationId, state).ancestors(hiddenUntil(state));
+    }
+
+    /**
+     * 热窗口缓存命中时返回窗口，未命中或未开启时返回 null
+     */
+    List<Message> cachedWindow(String conversationId) {
+        return isHotCacheActive() ? hotCache.get(conversationId, maxTokens) : null;
+    }
+
+    long cacheVersion(String conversationId) {
+        return hotCache.version(conversationId);
+    }
+
+    private List<Message> getLatestWindow(String conversationId) {
+        long version = cacheVersion(conversationId);
+        try {
+            ConversationStateEntity state = loadState(conversationId);
+            List<ChatMessageEntity> entities = readLatestFromDatabase(conversationId, state, maxMessages);
+            return assembleWindow(conversationId, state, entities, version);
+        } catch (Exception e) {
+            log.error("Failed to retrieve latest messages for conversation: {}", conversationId, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 由回源读取的结果组装窗口：隐藏已折叠或已软清空的消息，回填热缓存，按 token 预算截取并加上摘要
+     *
+     * @param entities 最新的 N 条消息（时间升序，可修改）
+     * @param version  回源前读取的缓存版本号，期间有写入时不回填
+     */
+    List<Message> assembleWindow(String conversationId, ConversationStateEntity state,
+                                 List<ChatMessageEntity> entities, long version) {
+        if (!entities.isEmpty()) {
+            // 其他节点写入了更新的消息时推进本地时钟，本轮回复的ID一定排在已读历史之后
+            idGenerator.observe(entities.get(entities.size() - 1).getTimestamp());
+        }
+        // 已折叠进摘要或已被软清空的消息不再以原文返回
+        long hiddenUntil = hiddenUntil(state);
+        entities.removeIf(entity -> entity.getTimestamp() <= hiddenUntil);
+        List<Message> messages = toMessages(entities);
+        int[] tokenCounts = tokenCounts(entities);
+        Message summary = summaryOf(state);
+        int summaryTokens = summary != null ? summaryTokenCountOf(state) : 0;
+        if (isHotCacheActive()) {
+            hotCache.putIfUnchanged(conversationId, summary, summaryTokens, messages, tokenCounts, version);
         }
+        List<Message> window = maxTokens > 0
+                ? fitTokenBudget(messages, tokenCounts, maxTokens - summaryTokens)
+                : messages;
+        return withSummary(summary, window);
     }
 
     private List<Message> getFromDatabase(String conversationId) {
         try {
             // 假设 Repository 按照 Cluster Key (timestamp) 升序排序
-            List<ChatMessageEntity> entities = chatMessageRepository.findByKey(conversationId);
+            ConversationStateEntity state = loadState(conversationId);
+            List<ChatMessageEntity> entities = chatMessageStore.findAll(lineageOf(conversationId, state));
             List<Message> messages = new ArrayList<>();
+            Message summary = summaryOf(state);
+            if (summary != null) {
+                messages.add(summary);
+            }
 
+            long hiddenUntil = hiddenUntil(state);
             for (ChatMessageEntity entity : entities) {
+                if (entity.getTimestamp() <= hiddenUntil) {
+                    continue;
+                }
                 Message message = createMessageFromEntity(entity);
                 if (message != null) {
                     messages.add(message);
@@ -88,69 +468,220 @@ public class CassandraBasedChatMemory implements ChatMemory {
      * 从数据库获取最新的 N 条消息。
      * 由于 CQL 查询返回的是降序排列（最新的在前），需要反转以保持时间正序。
      */
-    private List<Message> getLatestFromDatabase(String conversationId, int limit) {
+    private List<ChatMessageEntity> readLatestFromDatabase(String conversationId, ConversationStateEntity state,
+                                                           int limit) {
+        // 使用优化查询获取最新的 N 条消息（降序）
+        List<ChatMessageEntity> entities = new ArrayList<>(chatMessageStore.findLatest(conversationId, limit));
+        // 分叉会话自己的消息不够一个窗口时，从父会话的分叉点往前补齐
+        if (entities.size() < limit) {
+            List<ConversationLineage.Segment> ancestors = ancestorsOf(conversationId, state);
+            if (!ancestors.isEmpty()) {
+                entities.addAll(chatMessageStore.findLatest(ancestors, limit - entities.size()));
+            }
+        }
+
+        // 反转列表以保持时间升序（因为查询返回的是降序）
+        // 这样保证返回的消息是按时间正序排列的，与 getFromDatabase 的行为一致
+        Collections.reverse(entities);
+
+        log.debug("Retrieved latest {} messages from conversation: {}", entities.size(), conversationId);
+        return entities;
+    }
+
+    /**
+     * 按 token 预算读取：从最新消息开始倒序分页，累加写入时记录的 token 数，
+     * 再加一条就会超出预算时停止。读取过程中不做任何分词。
+     * 有摘要时先扣除摘要的 token 数，并在遇到已折叠或已软清空的消息时停止读取。
+     */
+    private List<Message> getTokenBudgetFromDatabase(String conversationId) {
         try {
-            // 使用优化查询获取最新的 N 条消息（降序）
-            List<ChatMessageEntity> entities = chatMessageRepository.findLatestByKey(conversationId, limit);
-            
-            // 反转列表以保持时间升序（因为查询返回的是降序）
-            // 这样保证返回的消息是按时间正序排列的，与 getFromDatabase 的行为一致
-            Collections.reverse(entities);
-            
-            List<Message> messages = new ArrayList<>();
-            for (ChatMessageEntity entity : entities) {
-                Message message = createMessageFromEntity(entity);
-                if (message != null) {
-                    messages.add(message);
+            ConversationStateEntity state = loadState(conversationId);
+            long hiddenUntil = hiddenUntil(state);
+            Message summary = summaryOf(state);
+            ArrayDeque<Message> window = new ArrayDeque<>();
+            long used = summary != null ? summaryTokenCountOf(state) : 0;
+            Iterator<ChatMessageEntity> newestFirst =
+                    chatMessageStore.newestFirst(lineageOf(conversationId, state), tokenWindowPageSize);
+            while (newestFirst.hasNext()) {
+                ChatMessageEntity entity = newestFirst.next();
+                if (entity.getTimestamp() <= hiddenUntil) {
+                    break;
+                }
+                int tokens = tokenCountOf(entity);
+                if (used + tokens > maxTokens) {
+                    break;
                 }
+                used += tokens;
+                window.addFirst(createMessageFromEntity(entity));
             }
-            
-            log.debug("Retrieved latest {} messages from conversation: {}", messages.size(), conversationId);
-            return messages;
+            if (summary != null) {
+                window.addFirst(summary);
+            }
+            return new ArrayList<>(window);
         } catch (Exception e) {
-            log.error("Failed to retrieve latest messages for conversation: {}", conversationId, e);
+            log.error("Failed to retrieve token window for conversation: {}", conversationId, e);
             return new ArrayList<>();
         }
     }
 
+    /**
+     * 从最新消息往前累加 token，保留预算内的尾部窗口（时间正序）
+     */
+    private static List<Message> fitTokenBudget(List<Message> messages, int[] tokenCounts, int budget) {
+        long used = 0;
+        int from = messages.size();
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (used + tokenCounts[i] > budget) {
+                break;
+            }
+            used += tokenCounts[i];
+            from = i;
+        }
+        return new ArrayList<>(messages.subList(from, messages.size()));
+    }
+
+    /**
+     * 读取会话状态（摘要、软清空时间）；两项功能都未开启时不查询
+     */
+    private ConversationStateEntity loadState(String conversationId) {
+        if (!needsState()) {
+            return null;
+        }
+        return conversationStateRepository.findById(conversationId).orElse(null);
+    }
+
+    /**
+     * 不再以原文返回的消息上界（含）：摘要覆盖到的位置和软清空时间中较晚者
+     * 只有摘要会随历史一起返回时才隐藏被摘要覆盖的原文，关闭压缩后这些消息重新以原文返回
+     */
+    private long hiddenUntil(ConversationStateEntity state) {
+        long hiddenUntil = Long.MIN_VALUE;
+        if (state == null) {
+            return hiddenUntil;
+        }
+        if (hasSummary(state)) {
+            hiddenUntil = state.getSummarizedUntil();
+        }
+        if (state.getClearedAt() != null) {
+            hiddenUntil = Math.max(hiddenUntil, state.getClearedAt());
+        }
+        return hiddenUntil;
+    }
+
+    /**
+     * 摘要以系统消息的形式放在历史最前面
+     */
+    private Message summaryOf(ConversationStateEntity state) {
+        if (!hasSummary(state)) {
+            return null;
+        }
+        return new SystemMessage(SUMMARY_PREFIX + state.getSummary());
+    }
+
+    /**
+     * 摘要是否生效：压缩关闭时已有摘要不再返回，它覆盖的原文也不再隐藏
+     */
+    private boolean hasSummary(ConversationStateEntity state) {
+        return state != null && compactor.isEnabled() && state.getSummary() != null
+                && state.getSummarizedUntil() != null;
+    }
+
+    private static int summaryTokenCountOf(ConversationStateEntity state) {
+        return state.getSummaryTokenCount() != null ? state.getSummaryTokenCount() : state.getSummary().length();
+    }
+
+    private static List<Message> withSummary(Message summary, List<Message> window) {
+        if (summary == null) {
+            return window;
+        }
+        List<Message> messages = new ArrayList<>(window.size() + 1);
+        messages.add(summary);
+        messages.addAll(window);
+        return messages;
+    }
+
+    private List<Message> toMessages(List<ChatMessageEntity> entities) {
+        List<Message> messages = new ArrayList<>(entities.size());
+        for (ChatMessageEntity entity : entities) {
+            messages.add(createMessageFromEntity(entity));
+        }
+        return messages;
+    }
+
+    private static int[] tokenCounts(List<ChatMessageEntity> entities) {
+        int[] counts = new int[entities.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = tokenCountOf(entities.get(i));
+        }
+        return counts;
+    }
+
+    /**
+     * 读取行的 token 数；旧数据没有 token_count 列时按字符数估算（中文约一字一 token），不做分词
+     */
+    private static int tokenCountOf(ChatMessageEntity entity) {
+        if (entity.getTokenCount() != null) {
+            return entity.getTokenCount();
+        }
+        String context = entity.getContext();
+        return context != null ? context.length() : 0;
+    }
+
     /**
      * 仅保存新消息
+     * 开启 write-behind 时，整批消息交给后台队列按分区批量写入；否则在请求线程内以单分区 BATCH 同步写入
      */
-    private void saveNewMessages(String conversationId, List<Message> messages) {
+    private List<ChatMessageEntity> saveNewMessages(String conversationId, List<Message> messages) {
         if (messages == null || messages.isEmpty()) {
-            return;
+            return List.of();
         }
 
         try {
-            long timestamp = System.currentTimeMillis();
-            for (Message message : messages) {
-                // 确保批量插入时时间戳不重复，保证排序
-                saveMessage(conversationId, message, timestamp++);
+            List<ChatMessageEntity> entities = toEntities(conversationId, messages);
+
+            if (writeBehind.isEnabled()) {
+                writeBehind.submit(conversationId, entities);
+                return entities;
             }
+            chatMessageStore.append(conversationId, entities);
+            return entities;
         } catch (Exception e) {
             log.error("Failed to save messages for conversation: {}", conversationId, e);
+            return List.of();
         }
     }
 
-    private void saveMessage(String conversationId, Message message, long timestamp) {
-        try {
-            String content = message.getText();
-            String messageType = getMessageType(message);
+    /**
+     * 把一批新消息转换为待写入的行（编码、计算 token 数、分配消息ID），不做 I/O
+     * 消息ID由混合逻辑时钟分配：同一批消息连续递增，并发请求和多个节点之间也不会冲突覆盖
+     */
+    List<ChatMessageEntity> toEntities(String conversationId, List<Message> messages) {
+        long first = idGenerator.next(messages.size());
+        List<ChatMessageEntity> entities = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            entities.add(toEntity(conversationId, messages.get(i), ChatMessageIdGenerator.nth(first, i)));
+        }
+        return entities;
+    }
 
-            // TODO: 如果需要支持 Function Call 或 Metadata，建议在这里将 message 序列化为 JSON 存入单独字段
-            // String metadataJson = serializeMetadata(message.getMetadata());
+    private ChatMessageEntity toEntity(String conversationId, Message message, long timestamp) {
+        String content = message.getText();
+        String messageType = getMessageType(message);
 
-            ChatMessageEntity entity = new ChatMessageEntity(
-                    conversationId,
-                    timestamp,
-                    messageType,
-                    content
-            );
+        // token 数在写入时一次性计算，读取按预算截取时直接使用
+        int tokenCount = content != null ? tokenCountEstimator.estimate(content) : 0;
 
-            chatMessageRepository.save(entity);
-        } catch (Exception e) {
-            log.error("Failed to save message: {}", message, e);
-        }
+        // 开启编码时完整消息另存 payload（超大 payload 由 ChatMessageStore 分块存放），context 始终保留正文
+        ByteBuffer payload = codecEnabled ? ByteBuffer.wrap(codec.encode(message)) : null;
+
+        return new ChatMessageEntity(
+                conversationId,
+                timestamp,
+                messageType,
+                content,
+                tokenCount,
+                payload
+        );
     }
 
     private String getMessageType(Message message) {
@@ -162,6 +693,14 @@ public class CassandraBasedChatMemory implements ChatMemory {
     }
 
     private Message createMessageFromEntity(ChatMessageEntity entity) {
+        if (entity.getPayload() != null) {
+            try {
+                return codec.decode(entity.getPayload());
+            } catch (Exception e) {
+                log.error("Failed to decode message payload, key={}, timestamp={}",
+                        entity.getKey(), entity.getTimestamp(), e);
+            }
+        }
         String type = entity.getType();
         String context = entity.getContext();
 
@@ -170,7 +709,7 @@ public class CassandraBasedChatMemory implements ChatMemory {
             case "USER" -> new UserMessage(context);
             case "SYSTEM" -> new SystemMessage(context);
             case "ASSISTANT" -> new AssistantMessage(context);
-            case "TOOL" -> new ToolResponseMessage(List.of(), Map.of()); // 仅作为示例，实际需要还原 Tool 输出
+            case "TOOL" -> new ToolResponseMessage(List.of(), Map.of()); // 旧数据没有 payload，无法还原 Tool 输出
             default -> {
                 log.warn("Unknown message type: {}, treating as USER", type);
                 yield new UserMessage(context);
@@ -0,0 +1,134 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
+import io.el12stu.RelaMind.chatmemory.entity.ConversationStateEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 基于 Cassandra 异步驱动的响应式聊天记忆
+ * <p>
+ * 与 {@link CassandraBasedChatMemory} 共用同一份数据、热窗口缓存、摘要与保留策略，区别只在 I/O：
+ * <ul>
+ *     <li>get：按条数限制窗口时，会话状态和最新 N 条消息通过预编译语句并发异步读取，热缓存命中时不产生 I/O</li>
+ *     <li>add：直接异步写入，开启写后缓冲时非阻塞入队</li>
+ * </ul>
+ * 分叉会话自己的消息不足一个窗口时，再异步读取父会话分叉点之前的消息补齐。
+ * 不限条数的读取需要遍历整段历史，以及 clear 这类不在流式链路上的操作，仍复用阻塞实现，
+ * 但固定调度到 boundedElastic，不会占用 Reactor 的事件循环线程。
+ */
+@Component
+@ConditionalOnCassandraChatMemory
+@Slf4j
+public class CassandraReactiveChatMemory implements ReactiveChatMemory {
+
+    private final CassandraBasedChatMemory chatMemory;
+
+    private final ChatMessageStore chatMessageStore;
+
+    private final ChatMemoryWriteBehind writeBehind;
+
+    private final ChatMessageAsyncReader asyncReader;
+
+    public CassandraReactiveChatMemory(CassandraBasedChatMemory chatMemory,
+                                       ChatMessageStore chatMessageStore,
+                                       ChatMemoryWriteBehind writeBehind,
+                                       ChatMessageAsyncReader asyncReader) {
+        this.chatMemory = chatMemory;
+        this.chatMessageStore = chatMessageStore;
+        this.writeBehind = writeBehind;
+        this.asyncReader = asyncReader;
+    }
+
+    @Override
+    public Mono<Void> add(String conversationId, List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+                    List<ChatMessageEntity> entities = chatMemory.toEntities(conversationId, messages);
+                    CompletableFuture<Void> write = writeBehind.isEnabled()
+                            ? writeBehind.submitAsync(conversationId, entities)
+                            : chatMessageStore.appendAsync(conversationId, entities);
+                    return Mono.fromFuture(write)
+                            .then(Mono.fromRunnable(() -> chatMemory.onSaved(conversationId, messages, entities)));
+                })
+                .onErrorResume(e -> {
+                    log.error("Failed to save messages for conversation: {}", conversationId, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    @Override
+    public Mono<List<Message>> get(String conversationId) {
+        if (!chatMemory.isLatestWindowMode()) {
+            return Mono.fromCallable(() -> chatMemory.get(conversationId))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        return Mono.defer(() -> {
+            List<Message> cached = chatMemory.cachedWindow(conversationId);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            // 与阻塞路径共享进行中的加载，结果由并发调用共享，每个调用方拿到各自的副本；
+            // 某个调用方取消时不取消共享的加载（suppressCancel）
+            return Mono.fromFuture(chatMemory.loadCoalesced(conversationId, () -> loadLatestWindow(conversationId)),
+                            true)
+                    .<List<Message>>map(ArrayList::new);
+        }).onErrorResume(e -> {
+            log.error("Failed to retrieve latest messages for conversation: {}", conversationId, e);
+            return Mono.just(new ArrayList<>());
+        });
+    }
+
+    private CompletableFuture<List<Message>> loadLatestWindow(String conversationId) {
+        long version = chatMemory.cacheVersion(conversationId);
+        CompletableFuture<ConversationStateEntity> state = chatMemory.needsState()
+                ? asyncReader.findStateAsync(conversationId)
+                : CompletableFuture.completedFuture(null);
+        int limit = chatMemory.maxMessages();
+        CompletableFuture<List<ChatMessageEntity>> latest = chatMessageStore.findLatestAsync(conversationId, limit);
+        return state.thenCombine(latest, LoadedWindow::new)
+                .thenCompose(loaded -> {
+                    // 分叉会话自己的消息不够一个窗口时，从父会话的分叉点往前异步补齐
+                    List<ConversationLineage.Segment> ancestors =
+                            chatMemory.ancestorsOf(conversationId, loaded.state());
+                    if (loaded.newestFirst().size() >= limit || ancestors.isEmpty()) {
+                        return CompletableFuture.completedFuture(loaded);
+                    }
+                    return chatMessageStore.findLatestAsync(ancestors, limit - loaded.newestFirst().size())
+                            .thenApply(inherited -> {
+                                List<ChatMessageEntity> stitched = new ArrayList<>(loaded.newestFirst());
+                                stitched.addAll(inherited);
+                                return new LoadedWindow(loaded.state(), stitched);
+                            });
+                })
+                .thenApply(loaded -> {
+                    List<ChatMessageEntity> entities = new ArrayList<>(loaded.newestFirst());
+                    Collections.reverse(entities);
+                    return chatMemory.assembleWindow(conversationId, loaded.state(), entities, version);
+                });
+    }
+
+    /**
+     * 回源读取的会话状态与最新消息（时间降序）
+     */
+    private record LoadedWindow(ConversationStateEntity state, List<ChatMessageEntity> newestFirst) {
+    }
+
+    @Override
+    public Mono<Void> clear(String conversationId) {
+        return Mono.fromRunnable(() -> chatMemory.clear(conversationId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+}
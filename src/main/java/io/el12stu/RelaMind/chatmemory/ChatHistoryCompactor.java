@@ -0,0 +1,308 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
+import io.el12stu.RelaMind.chatmemory.entity.ConversationStateEntity;
+import io.el12stu.RelaMind.chatmemory.repository.ConversationStateRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 会话历史滚动摘要压缩
+ * <p>
+ * 会话中未被摘要覆盖的消息超过 trigger-messages 条时，在后台把除最近 keep-recent 条以外的旧消息
+ * 连同已有摘要一起交给大模型折叠为新的摘要，写入 conversation_state。
+ * 读取记忆时返回「摘要 + 最近原文」，提示词长度不再随会话增长。
+ * <p>
+ * 压缩完全在请求路径之外执行，并发数和排队数都有上限，队列满时直接跳过，等下一次触发。
+ */
+@Component
+@ConditionalOnCassandraChatMemory
+@Slf4j
+public class ChatHistoryCompactor {
+
+    private static final String SUMMARY_SYSTEM_PROMPT = """
+            你是对话记忆整理助手。请把「已有摘要」和「新增对话」合并为一段新的摘要，供后续对话作为长期记忆使用。
+            要求：
+            - 保留用户的重要信息：身份、目标、困扰、重要日期、偏好，以及已经给出的关键建议
+            - 按时间顺序概括，省略寒暄和重复内容
+            - 使用第三人称描述用户，不超过 500 字
+            - 只输出摘要正文，不要输出其他说明
+            """;
+
+    /**
+     * 进程内计数最多跟踪的会话数，超出后整体清空重新累计（只会推迟压缩，不影响正确性）
+     */
+    private static final int MAX_TRACKED_CONVERSATIONS = 100_000;
+
+    /**
+     * 只写摘要相关的几列，并以读取时的 cleared_at / summarized_until 为条件（LWT）：
+     * 摘要生成期间会话被清空或已被其他节点压缩时放弃本次结果，不会覆盖清空、让被清空历史的摘要重新出现
+     */
+    private static final String UPDATE_SUMMARY_CQL =
+            "UPDATE conversation_state SET summary = ?, summarized_until = ?, summary_token_count = ?, updated_at = ? "
+                    + "WHERE key = ? IF cleared_at = ? AND summarized_until = ?";
+
+    private final ChatClient summaryClient;
+
+    private final ChatMessageStore chatMessageStore;
+
+    private final ConversationStateRepository conversationStateRepository;
+
+    private final CqlSession cqlSession;
+
+    private final ConversationHotCache hotCache;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ChatMessageCodec codec;
+
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+
+    @Value("${relamind.chat.memory.compaction.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 自上次压缩以来新增多少条消息后触发压缩
+     */
+    @Value("${relamind.chat.memory.compaction.trigger-messages:40}")
+    private int triggerMessages;
+
+    /**
+     * 压缩后保留的最近原文消息数量
+     */
+    @Value("${relamind.chat.memory.compaction.keep-recent:20}")
+    private int keepRecent;
+
+    /**
+     * 单次压缩最多折叠的消息数量，更早的积压消息直接跳过，避免首次压缩超长会话时超出模型上下文
+     */
+    @Value("${relamind.chat.memory.compaction.max-fold-messages:200}")
+    private int maxFoldMessages;
+
+    @Value("${relamind.chat.memory.compaction.max-concurrency:2}")
+    private int maxConcurrency;
+
+    @Value("${relamind.chat.memory.compaction.queue-capacity:100}")
+    private int queueCapacity;
+
+    /**
+     * 各会话自上次压缩以来新增的消息数（进程内近似计数，重启后重新累计）
+     */
+    private final Map<String, AtomicInteger> pendingCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 已排队或正在压缩的会话，避免同一会话重复提交
+     */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor executor;
+
+    private Timer compactionTimer;
+
+    private Counter skippedCounter;
+
+    public ChatHistoryCompactor(ChatModel dashscopeChatModel,
+                                ChatMessageStore chatMessageStore,
+                                ConversationStateRepository conversationStateRepository,
+                                CqlSession cqlSession,
+                                ConversationHotCache hotCache,
+                                MeterRegistry meterRegistry,
+                                ChatMessageCodec codec) {
+        this.summaryClient = ChatClient.builder(dashscopeChatModel)
+                .defaultSystem(SUMMARY_SYSTEM_PROMPT)
+                .build();
+        this.chatMessageStore = chatMessageStore;
+        this.conversationStateRepository = conversationStateRepository;
+        this.cqlSession = cqlSession;
+        this.hotCache = hotCache;
+        this.meterRegistry = meterRegistry;
+        this.codec = codec;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "chat-history-compactor-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        compactionTimer = Timer.builder("relamind.chat.memory.compaction")
+                .description("Latency of folding old chat history into the rolling summary")
+                .register(meterRegistry);
+        skippedCounter = Counter.builder("relamind.chat.memory.compaction.skipped")
+                .description("Compactions skipped because the compaction queue was full")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录新增消息，累计达到阈值时提交后台压缩（不阻塞调用方）
+     */
+    public void onMessagesAdded(String conversationId, int count) {
+        if (!enabled || count <= 0) {
+            return;
+        }
+        if (pendingCounts.size() > MAX_TRACKED_CONVERSATIONS) {
+            pendingCounts.clear();
+        }
+        int pending = pendingCounts.computeIfAbsent(conversationId, k -> new AtomicInteger()).addAndGet(count);
+        if (pending < triggerMessages || !inFlight.add(conversationId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    compact(conversationId);
+                } finally {
+                    inFlight.remove(conversationId);
+                }
+            });
+            pendingCounts.remove(conversationId);
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(conversationId);
+            skippedCounter.increment();
+            log.debug("Compaction queue full, skipping conversation: {}", conversationId);
+        }
+    }
+
+    /**
+     * 会话被清空时丢弃进程内计数
+     */
+    public void forget(String conversationId) {
+        pendingCounts.remove(conversationId);
+    }
+
+    /**
+     * 折叠一个会话的旧消息
+     */
+    void compact(String conversationId) {
+        long start = System.nanoTime();
+        try {
+            ConversationStateEntity state = conversationStateRepository.findById(conversationId)
+                    .orElseGet(() -> new ConversationStateEntity(conversationId, null, null, null, null, null, null, null));
+            // 软清空之前的消息不参与折叠
+            long summarizedUntil = Math.max(
+                    state.getSummarizedUntil() != null ? state.getSummarizedUntil() : Long.MIN_VALUE,
+                    state.getClearedAt() != null ? state.getClearedAt() : Long.MIN_VALUE);
+
+            // 从最新消息往前遍历：跳过最近 keepRecent 条，其后（更早）的未摘要消息参与折叠
+            ArrayDeque<ChatMessageEntity> toFold = new ArrayDeque<>();
+            // 分叉会话沿谱系继续读取父会话分叉点之前的消息，摘要覆盖完整的对话上下文
+            Iterator<ChatMessageEntity> newestFirst =
+                    chatMessageStore.newestFirst(ConversationLineage.of(conversationId, state), 100);
+            int seen = 0;
+            while (newestFirst.hasNext() && toFold.size() < maxFoldMessages) {
+                ChatMessageEntity entity = newestFirst.next();
+                if (entity.getTimestamp() <= summarizedUntil) {
+                    break;
+                }
+                if (seen++ < keepRecent) {
+                    continue;
+                }
+                toFold.addFirst(entity);
+            }
+            if (toFold.isEmpty()) {
+                return;
+            }
+
+            String summary = summarize(state.getSummary(), toFold);
+            if (summary == null || summary.isBlank()) {
+                log.warn("Empty summary returned, keeping previous summary for conversation: {}", conversationId);
+                return;
+            }
+
+            if (!saveSummary(state, summary, toFold.getLast().getTimestamp())) {
+                log.info("Conversation changed during compaction, discarding summary: {}", conversationId);
+                return;
+            }
+            // 缓存中的窗口仍包含已折叠的原文，失效后下一次读取会加载「摘要 + 尾部」
+            hotCache.invalidate(conversationId);
+
+            log.info("Compacted {} messages into summary for conversation: {}", toFold.size(), conversationId);
+        } catch (Exception e) {
+            log.error("Failed to compact conversation: {}", conversationId, e);
+        } finally {
+            compactionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 条件写入新摘要，读取状态之后会话被清空或摘要已被改写时返回 false
+     */
+    private boolean saveSummary(ConversationStateEntity state, String summary, long summarizedUntil) {
+        SimpleStatement update = SimpleStatement.newInstance(UPDATE_SUMMARY_CQL,
+                summary, summarizedUntil, tokenCountEstimator.estimate(summary), System.currentTimeMillis(),
+                state.getKey(), state.getClearedAt(), state.getSummarizedUntil());
+        return cqlSession.execute(update).wasApplied();
+    }
+
+    private String summarize(String previousSummary, Iterable<ChatMessageEntity> messages) {
+        StringBuilder input = new StringBuilder();
+        input.append("已有摘要：\n").append(previousSummary != null ? previousSummary : "（无）").append("\n\n");
+        input.append("新增对话：\n");
+        for (ChatMessageEntity entity : messages) {
+            String text = textOf(entity);
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            input.append(entity.getType()).append(": ").append(text).append('\n');
+        }
+        return summaryClient.prompt()
+                .user(input.toString())
+                .call()
+                .content();
+    }
+
+    private String textOf(ChatMessageEntity entity) {
+        if (entity.getPayload() == null) {
+            return entity.getContext();
+        }
+        try {
+            return codec.decode(entity.getPayload()).getText();
+        } catch (Exception e) {
+            log.warn("Failed to decode message payload, key={}, timestamp={}", entity.getKey(), entity.getTimestamp());
+            return entity.getContext();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
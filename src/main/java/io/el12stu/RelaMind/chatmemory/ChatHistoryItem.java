@@ -0,0 +1,12 @@
+package io.el12stu.RelaMind.chatmemory;
+
+/**
+ * 对外输出的单条历史消息
+ *
+ * @param type      消息类型：USER / ASSISTANT / SYSTEM / TOOL
+ * @param text      消息文本
+ * @param timestamp 消息时间（毫秒）
+ * @param id        消息ID，可作为分叉点从这条消息处分叉会话
+ */
+public record ChatHistoryItem(String type, String text, Long timestamp, Long id) {
+}
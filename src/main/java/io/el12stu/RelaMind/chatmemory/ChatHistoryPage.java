@@ -0,0 +1,12 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import java.util.List;
+
+/**
+ * 历史消息的一页
+ *
+ * @param items            当前页消息（按时间升序）
+ * @param nextPagingState  下一页的 Cassandra paging state（Base64 编码），没有下一页时为 null
+ */
+public record ChatHistoryPage(List<ChatHistoryItem> items, String nextPagingState) {
+}
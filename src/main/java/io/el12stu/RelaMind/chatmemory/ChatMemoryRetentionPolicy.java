@@ -0,0 +1,169 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import cn.hutool.core.util.StrUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天记忆保留策略
+ * <p>
+ * 消息在写入时带上 TTL，到期后由 Cassandra 在 compaction 中直接丢弃，不需要手动删除产生墓碑。
+ * TTL 的确定顺序：
+ * <ol>
+ *     <li>会话规则：会话ID匹配 conversation-ttl-days 中的前缀（最长前缀优先）</li>
+ *     <li>消息类型规则：type-ttl-days 中对应类型（USER / ASSISTANT / SYSTEM / TOOL）</li>
+ *     <li>默认 default-ttl-days</li>
+ * </ol>
+ * 会话规则与类型规则同时命中时取较短者。天数为 0 表示永久保留。
+ */
+@Component
+@Slf4j
+public class ChatMemoryRetentionPolicy {
+
+    private static final long DAY_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    /**
+     * Cassandra 允许的最大 TTL（20 年）
+     */
+    static final long MAX_TTL_SECONDS = 630_720_000L;
+
+    private record PrefixRule(String prefix, int ttlSeconds) {
+    }
+
+    @Value("${relamind.chat.memory.retention.default-ttl-days:0}")
+    private int defaultTtlDays;
+
+    /**
+     * 按消息类型的保留天数，格式：TOOL=7,SYSTEM=30
+     */
+    @Value("${relamind.chat.memory.retention.type-ttl-days:}")
+    private String typeTtlDays;
+
+    /**
+     * 按会话ID前缀的保留天数，格式：guest-=1,demo-=3
+     */
+    @Value("${relamind.chat.memory.retention.conversation-ttl-days:}")
+    private String conversationTtlDays;
+
+    private int defaultTtlSeconds;
+
+    private final Map<String, Integer> typeTtlSeconds = new HashMap<>();
+
+    private final List<PrefixRule> conversationRules = new ArrayList<>();
+
+    private int maxTtlSeconds;
+
+    @PostConstruct
+    public void init() {
+        defaultTtlSeconds = toSeconds(defaultTtlDays);
+        parse(typeTtlDays).forEach((type, days) -> typeTtlSeconds.put(type.toUpperCase(), toSeconds(days)));
+        parse(conversationTtlDays).forEach((prefix, days) -> conversationRules.add(new PrefixRule(prefix, toSeconds(days))));
+        conversationRules.sort(Comparator.comparingInt((PrefixRule rule) -> rule.prefix().length()).reversed());
+
+        // 任何一条规则为永久保留时，会话级数据（索引、状态）也需要永久保留
+        boolean anyUnlimited = defaultTtlSeconds == 0
+                || typeTtlSeconds.containsValue(0)
+                || conversationRules.stream().anyMatch(rule -> rule.ttlSeconds() == 0);
+        if (!anyUnlimited) {
+            int max = defaultTtlSeconds;
+            for (int ttl : typeTtlSeconds.values()) {
+                max = Math.max(max, ttl);
+            }
+            for (PrefixRule rule : conversationRules) {
+                max = Math.max(max, rule.ttlSeconds());
+            }
+            maxTtlSeconds = max;
+        }
+        if (isEnabled()) {
+            log.info("Chat memory retention: default={}s, types={}, conversations={}",
+                    defaultTtlSeconds, typeTtlSeconds, conversationRules);
+        }
+    }
+
+    /**
+     * 是否配置了任何保留规则
+     */
+    public boolean isEnabled() {
+        return defaultTtlSeconds > 0 || !typeTtlSeconds.isEmpty() || !conversationRules.isEmpty();
+    }
+
+    /**
+     * 计算一条消息的 TTL（秒），0 表示不过期
+     */
+    public int ttlSeconds(String conversationId, String messageType) {
+        Integer byType = messageType != null ? typeTtlSeconds.get(messageType) : null;
+        Integer byConversation = conversationTtl(conversationId);
+        if (byType != null && byConversation != null) {
+            return shorter(byType, byConversation);
+        }
+        if (byConversation != null) {
+            return byConversation;
+        }
+        return byType != null ? byType : defaultTtlSeconds;
+    }
+
+    /**
+     * 会话内任意消息可能的最长 TTL（秒），0 表示存在永久保留的消息。
+     * 用于时间桶索引等会话级数据，保证它们不会早于所引用的消息过期。
+     */
+    public int maxTtlSeconds(String conversationId) {
+        Integer byConversation = conversationTtl(conversationId);
+        if (byConversation != null && byConversation > 0) {
+            return byConversation;
+        }
+        return maxTtlSeconds;
+    }
+
+    private Integer conversationTtl(String conversationId) {
+        if (conversationId == null) {
+            return null;
+        }
+        for (PrefixRule rule : conversationRules) {
+            if (conversationId.startsWith(rule.prefix())) {
+                return rule.ttlSeconds();
+            }
+        }
+        return null;
+    }
+
+    private static int shorter(int a, int b) {
+        if (a == 0) {
+            return b;
+        }
+        if (b == 0) {
+            return a;
+        }
+        return Math.min(a, b);
+    }
+
+    private static int toSeconds(int days) {
+        if (days <= 0) {
+            return 0;
+        }
+        return (int) Math.min(MAX_TTL_SECONDS, days * DAY_SECONDS);
+    }
+
+    private static Map<String, Integer> parse(String rules) {
+        Map<String, Integer> parsed = new HashMap<>();
+        if (StrUtil.isBlank(rules)) {
+            return parsed;
+        }
+        for (String rule : rules.split(",")) {
+            int separator = rule.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid retention rule: " + rule);
+            }
+            parsed.put(rule.substring(0, separator).trim(), Integer.parseInt(rule.substring(separator + 1).trim()));
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,127 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.SessionFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 聊天记忆表结构升级
+ * <p>
+ * spring.cassandra.schema-action=CREATE_IF_NOT_EXISTS 只会创建缺失的表，不会给已有表补列。
+ * 这里在启动时（依赖 SessionFactory，保证建表已完成）检查新增列是否存在，缺失则执行 ALTER TABLE ADD。
+ * <p>
+ * 开启 TWCS 配置时，同时把消息表的 compaction 策略调整为 TimeWindowCompactionStrategy：
+ * 消息只追加并带 TTL，同一时间窗口的数据落在同一批 SSTable 中，整窗过期后直接删除文件，无需合并墓碑。
+ */
+@Component
+@ConditionalOnCassandraChatMemory
+@Slf4j
+public class ChatMemorySchemaUpgrader {
+
+    /**
+     * 需要补齐的列定义
+     */
+    private record ColumnUpgrade(String table, String column, String cqlType) {
+    }
+
+    private static final List<ColumnUpgrade> COLUMN_UPGRADES = List.of(
+            new ColumnUpgrade("chat_messages", "token_count", "int"),
+            new ColumnUpgrade("chat_messages", "payload", "blob"),
+            new ColumnUpgrade("chat_messages_by_bucket", "payload", "blob"),
+            new ColumnUpgrade("conversation_state", "cleared_at", "bigint"),
+            new ColumnUpgrade("conversation_state", "fork_parents", "list<text>"),
+            new ColumnUpgrade("conversation_state", "fork_points", "list<bigint>")
+    );
+
+    /**
+     * 使用 TWCS 的表：只追加、按时间过期的消息数据
+     */
+    private static final List<String> TIME_SERIES_TABLES =
+            List.of("chat_messages", "chat_messages_by_bucket", "chat_message_blobs");
+
+    private static final String TWCS_CLASS = "TimeWindowCompactionStrategy";
+
+    private final CqlSession cqlSession;
+
+    @Value("${relamind.chat.memory.retention.twcs.enabled:false}")
+    private boolean twcsEnabled;
+
+    /**
+     * TWCS 时间窗口大小（天），建议使窗口数量（TTL / 窗口）保持在 20~30 个左右
+     */
+    @Value("${relamind.chat.memory.retention.twcs.window-days:1}")
+    private int twcsWindowDays;
+
+    public ChatMemorySchemaUpgrader(SessionFactory sessionFactory) {
+        this.cqlSession = sessionFactory.getSession();
+    }
+
+    @PostConstruct
+    public void upgrade() {
+        Optional<CqlIdentifier> keyspace = cqlSession.getKeyspace();
+        if (keyspace.isEmpty()) {
+            log.warn("No keyspace bound to the Cassandra session, skipping chat memory schema upgrade");
+            return;
+        }
+        for (ColumnUpgrade upgrade : COLUMN_UPGRADES) {
+            try {
+                addColumnIfMissing(keyspace.get(), upgrade);
+            } catch (Exception e) {
+                log.error("Failed to add column {}.{}", upgrade.table(), upgrade.column(), e);
+            }
+        }
+        if (twcsEnabled) {
+            for (String table : TIME_SERIES_TABLES) {
+                try {
+                    applyTimeWindowCompaction(keyspace.get(), table);
+                } catch (Exception e) {
+                    log.error("Failed to apply TWCS compaction to table {}", table, e);
+                }
+            }
+        }
+    }
+
+    private void addColumnIfMissing(CqlIdentifier keyspace, ColumnUpgrade upgrade) {
+        Optional<TableMetadata> table = cqlSession.getMetadata()
+                .getKeyspace(keyspace)
+                .flatMap(ks -> ks.getTable(upgrade.table()));
+        if (table.isEmpty()) {
+            // 表不存在时由 schema-action 按实体完整创建，无需补列
+            return;
+        }
+        if (table.get().getColumn(upgrade.column()).isPresent()) {
+            return;
+        }
+        cqlSession.execute("ALTER TABLE " + upgrade.table() + " ADD " + upgrade.column() + " " + upgrade.cqlType());
+        log.info("Added column {}.{} ({})", upgrade.table(), upgrade.column(), upgrade.cqlType());
+    }
+
+    private void applyTimeWindowCompaction(CqlIdentifier keyspace, String tableName) {
+        Optional<TableMetadata> table = cqlSession.getMetadata()
+                .getKeyspace(keyspace)
+                .flatMap(ks -> ks.getTable(tableName));
+        if (table.isEmpty()) {
+            return;
+        }
+        String windowSize = String.valueOf(Math.max(1, twcsWindowDays));
+        Object current = table.get().getOptions().get(CqlIdentifier.fromInternal("compaction"));
+        if (current instanceof Map<?, ?> compaction
+                && String.valueOf(compaction.get("class")).endsWith(TWCS_CLASS)
+                && "DAYS".equals(compaction.get("compaction_window_unit"))
+                && windowSize.equals(compaction.get("compaction_window_size"))) {
+            return;
+        }
+        cqlSession.execute("ALTER TABLE " + tableName + " WITH compaction = {'class': '" + TWCS_CLASS + "', "
+                + "'compaction_window_unit': 'DAYS', 'compaction_window_size': " + windowSize + "}");
+        log.info("Applied {} ({} day windows) to table {}", TWCS_CLASS, windowSize, tableName);
+    }
+}
@@ -0,0 +1,401 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 聊天消息的异步写后（Write-Behind）缓冲
+ * <p>
+ * 请求线程只负责把消息放入有界队列，后台刷写线程批量取出后按会话分区分组，
+ * 每个分区通过 {@link ChatMessageStore} 以单分区 UNLOGGED BATCH 写入。
+ * <p>
+ * 持久性由 relamind.chat.memory.write-behind.durability 决定：
+ * <ul>
+ *     <li>ASYNC：入队即返回，刷写失败或队列满时计入丢弃计数</li>
+ *     <li>SYNC_ACK：入队后等待所在批次落库再返回（组提交，仍然享受批量合并）。
+ *     队列满、批次写入失败或等待确认超时时，在调用线程内直接写入这批消息（与未开启写后时相同），
+ *     直接写入也失败时把异常抛给调用方，不会在消息没有落库时返回成功</li>
+ * </ul>
+ * 消息ID在入队前已分配，重复写入同一批消息是幂等的覆盖，超时后直接写入不会产生重复消息。
+ * 应用关闭时会在超时时间内排空队列，关闭之后提交的写入按 reason=stopped 计入丢弃或直接写入计数。
+ */
+@Component
+@ConditionalOnCassandraChatMemory
+@Slf4j
+public class ChatMemoryWriteBehind {
+
+    /**
+     * 写入持久性级别
+     */
+    public enum WriteDurability {
+        /**
+         * 异步：入队即返回
+         */
+        ASYNC,
+        /**
+         * 同步确认：等待批次写入完成后返回
+         */
+        SYNC_ACK
+    }
+
+    /**
+     * 一次 add 调用产生的待写入消息
+     */
+    private record PendingWrite(String key, List<ChatMessageEntity> entities, CompletableFuture<Void> ack) {
+    }
+
+    private final ChatMessageStore chatMessageStore;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${relamind.chat.memory.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${relamind.chat.memory.write-behind.durability:SYNC_ACK}")
+    private WriteDurability durability;
+
+    /**
+     * 队列容量（待写入的 add 调用数）
+     */
+    @Value("${relamind.chat.memory.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /**
+     * 单次刷写最多取出的待写入项数量
+     */
+    @Value("${relamind.chat.memory.write-behind.max-drain:512}")
+    private int maxDrain;
+
+    /**
+     * 队列为空时刷写线程的最长等待时间
+     */
+    @Value("${relamind.chat.memory.write-behind.flush-interval-ms:20}")
+    private long flushIntervalMs;
+
+    /**
+     * 队列满时入队的最长等待时间，超时后丢弃
+     */
+    @Value("${relamind.chat.memory.write-behind.enqueue-timeout-ms:50}")
+    private long enqueueTimeoutMs;
+
+    /**
+     * SYNC_ACK 模式下等待写入确认的超时时间
+     */
+    @Value("${relamind.chat.memory.write-behind.ack-timeout-ms:5000}")
+    private long ackTimeoutMs;
+
+    /**
+     * 关闭时排空队列的最长时间
+     */
+    @Value("${relamind.chat.memory.write-behind.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private BlockingQueue<PendingWrite> queue;
+
+    private Thread flusher;
+
+    private volatile boolean running;
+
+    private Timer flushTimer;
+
+    private Counter droppedQueueFull;
+
+    private Counter droppedFlushFailed;
+
+    private Counter droppedShutdown;
+
+    private Counter droppedStopped;
+
+    private Counter fallbackQueueFull;
+
+    private Counter fallbackFlushFailed;
+
+    private Counter fallbackAckTimeout;
+
+    private Counter fallbackStopped;
+
+    public ChatMemoryWriteBehind(ChatMessageStore chatMessageStore, MeterRegistry meterRegistry) {
+        this.chatMessageStore = chatMessageStore;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        Gauge.builder("relamind.chat.memory.write.queue.depth", queue, BlockingQueue::size)
+                .description("Pending chat memory writes waiting to be flushed")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("relamind.chat.memory.write.flush")
+                .description("Latency of one write-behind flush cycle")
+                .register(meterRegistry);
+        droppedQueueFull = droppedCounter("queue_full");
+        droppedFlushFailed = droppedCounter("flush_failed");
+        droppedShutdown = droppedCounter("shutdown");
+        droppedStopped = droppedCounter("stopped");
+        fallbackQueueFull = fallbackCounter("queue_full");
+        fallbackFlushFailed = fallbackCounter("flush_failed");
+        fallbackAckTimeout = fallbackCounter("ack_timeout");
+        fallbackStopped = fallbackCounter("stopped");
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "chat-memory-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Chat memory write-behind started, durability={}, capacity={}", durability, queueCapacity);
+    }
+
+    private Counter droppedCounter(String reason) {
+        return Counter.builder("relamind.chat.memory.write.dropped")
+                .description("Chat messages dropped by the write-behind buffer")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private Counter fallbackCounter(String reason) {
+        return Counter.builder("relamind.chat.memory.write.fallback")
+                .description("SYNC_ACK chat messages written directly because the write-behind path did not ack")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交一个会话的新消息
+     * ASYNC 模式下立即返回；SYNC_ACK 模式下阻塞直到写入完成，写后路径未确认时直接写入
+     *
+     * @throws java.util.concurrent.CompletionException SYNC_ACK 模式下直接写入也失败
+     */
+    public void submit(String key, List<ChatMessageEntity> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return;
+        }
+        PendingWrite pending = new PendingWrite(key, entities, new CompletableFuture<>());
+
+        boolean accepted;
+        try {
+            accepted = running && queue.offer(pending, enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            if (durability == WriteDurability.SYNC_ACK) {
+                writeDirectly(pending, running ? fallbackQueueFull : fallbackStopped).join();
+            } else {
+                rejected(pending);
+            }
+            return;
+        }
+
+        if (durability == WriteDurability.SYNC_ACK) {
+            awaitAck(pending);
+        }
+    }
+
+    /**
+     * {@link #submit} 的非阻塞版本，供响应式路径使用
+     * 队列满时不等待：ASYNC 模式下丢弃，SYNC_ACK 模式下直接写入；
+     * SYNC_ACK 模式下返回的 Future 在批次落库后完成，写后路径失败或超时时改为直接写入，直接写入也失败时异常完成。
+     */
+    public CompletableFuture<Void> submitAsync(String key, List<ChatMessageEntity> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        PendingWrite pending = new PendingWrite(key, entities, new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            if (durability == WriteDurability.SYNC_ACK) {
+                return writeDirectly(pending, running ? fallbackQueueFull : fallbackStopped);
+            }
+            rejected(pending);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (durability != WriteDurability.SYNC_ACK) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return pending.ack().copy()
+                .orTimeout(ackTimeoutMs, TimeUnit.MILLISECONDS)
+                .handle((ignored, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    return writeDirectly(pending, error instanceof TimeoutException
+                            ? fallbackAckTimeout : fallbackFlushFailed);
+                })
+                .thenCompose(write -> write);
+    }
+
+    /**
+     * ASYNC 模式下未能入队：关闭之后提交的写入单独计入 stopped，不与队列满混在一起
+     */
+    private void rejected(PendingWrite pending) {
+        int count = pending.entities().size();
+        if (!running) {
+            droppedStopped.increment(count);
+            log.error("Write-behind stopped, dropped {} messages for conversation: {}", count, pending.key());
+            return;
+        }
+        droppedQueueFull.increment(count);
+        log.error("Write-behind queue full, dropped {} messages for conversation: {}", count, pending.key());
+    }
+
+    private void awaitAck(PendingWrite pending) {
+        try {
+            pending.ack().get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            writeDirectly(pending, fallbackAckTimeout).join();
+        } catch (ExecutionException e) {
+            writeDirectly(pending, fallbackFlushFailed).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for write-behind ack, conversation: "
+                    + pending.key(), e);
+        }
+    }
+
+    /**
+     * SYNC_ACK 的兜底：绕过队列直接写入这批消息
+     */
+    private CompletableFuture<Void> writeDirectly(PendingWrite pending, Counter reason) {
+        reason.increment(pending.entities().size());
+        log.warn("Write-behind did not ack {} messages, writing directly, conversation: {}, reason: {}",
+                pending.entities().size(), pending.key(), reason.getId().getTag("reason"));
+        return appendAsync(pending.key(), pending.entities());
+    }
+
+    /**
+     * 同步抛出的异常（如语句延迟准备失败）也以失败的 Future 返回，保证等待它的确认都能完成
+     */
+    private CompletableFuture<Void> appendAsync(String key, List<ChatMessageEntity> entities) {
+        try {
+            return chatMessageStore.appendAsync(key, entities);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingWrite> drained = new ArrayList<>(maxDrain);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                queue.drainTo(drained, Math.max(0, maxDrain - 1));
+                flush(drained);
+            } catch (InterruptedException e) {
+                // 刷写线程只能通过 running 标志退出，保证关闭前队列被排空
+                log.debug("Write-behind flusher interrupted, continuing until queue is drained");
+            } catch (Exception e) {
+                log.error("Unexpected error in write-behind flusher", e);
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    /**
+     * 按会话分区分组后并发写入，每个分区一个（或少量）UNLOGGED BATCH
+     */
+    private void flush(List<PendingWrite> drained) {
+        Map<String, List<PendingWrite>> byPartition = new LinkedHashMap<>();
+        for (PendingWrite pending : drained) {
+            byPartition.computeIfAbsent(pending.key(), k -> new ArrayList<>()).add(pending);
+        }
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> groupFutures = new ArrayList<>(byPartition.size());
+        for (Map.Entry<String, List<PendingWrite>> group : byPartition.entrySet()) {
+            List<PendingWrite> writes = group.getValue();
+            List<ChatMessageEntity> entities = new ArrayList<>();
+            for (PendingWrite pending : writes) {
+                entities.addAll(pending.entities());
+            }
+
+            CompletableFuture<Void> groupFuture = appendAsync(group.getKey(), entities)
+                    .whenComplete((ignored, error) -> {
+                        for (PendingWrite pending : writes) {
+                            if (error == null) {
+                                pending.ack().complete(null);
+                            } else {
+                                pending.ack().completeExceptionally(error);
+                            }
+                        }
+                        if (error != null) {
+                            // SYNC_ACK 的调用方收到失败后会直接写入，这里只统计 ASYNC 模式真正丢失的消息
+                            if (durability == WriteDurability.ASYNC) {
+                                droppedFlushFailed.increment(entities.size());
+                            }
+                            log.error("Failed to flush {} messages for conversation: {}",
+                                    entities.size(), group.getKey(), error);
+                        }
+                    });
+            groupFutures.add(groupFuture);
+        }
+
+        try {
+            CompletableFuture.allOf(groupFutures.toArray(new CompletableFuture[0])).join();
+        } catch (Exception e) {
+            // 单个分区的失败已在 whenComplete 中记录
+        }
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 关闭时保证刷写：停止接收新消息，并在超时时间内排空队列
+     */
+    @PreDestroy
+    public void stop() {
+        if (!enabled || flusher == null) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PendingWrite> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        int lost = remaining.stream().mapToInt(p -> p.entities().size()).sum();
+        if (lost > 0 && durability == WriteDurability.SYNC_ACK) {
+            // 仍在等待确认的调用方立即改为直接写入，不必等到确认超时
+            IllegalStateException stopped = new IllegalStateException("Write-behind stopped before flushing");
+            remaining.forEach(pending -> pending.ack().completeExceptionally(stopped));
+            log.warn("Write-behind shutdown timed out, {} messages handed back to their callers", lost);
+        } else if (lost > 0) {
+            droppedShutdown.increment(lost);
+            log.error("Write-behind shutdown timed out, {} messages were not flushed", lost);
+        } else {
+            log.info("Chat memory write-behind drained and stopped");
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
+import io.el12stu.RelaMind.chatmemory.entity.ConversationStateEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 聊天记忆的异步读取器
+ * 与 {@link ChatMessageBatchWriter} 对应：通过预编译语句和 executeAsync 读取，调用线程不会等待 Cassandra 返回，
+ * 结果在驱动的 I/O 线程上回调。分区布局和大对象还原由 {@link ChatMessageStore} 负责，这里只按给定分区读取原始行。
+ */
+@Component
+@ConditionalOnCassandraChatMemory
+@Slf4j
+public class ChatMessageAsyncReader {
+
+    private static final String SELECT_LATEST_LEGACY_CQL =
+            "SELECT key, timestamp, type, context, token_count, payload FROM chat_messages "
+                    + "WHERE key = ? AND timestamp <= ? ORDER BY timestamp DESC LIMIT ?";
+
+    private static final String SELECT_LATEST_BUCKETED_CQL =
+            "SELECT key, timestamp, type, context, token_count, payload FROM chat_messages_by_bucket "
+                    + "WHERE key = ? AND bucket = ? AND timestamp <= ? ORDER BY timestamp DESC LIMIT ?";
+
+    private static final String SELECT_BUCKETS_CQL =
+            "SELECT bucket FROM chat_message_buckets WHERE key = ?";
+
+    private static final String SELECT_BLOB_CHUNKS_CQL =
+            "SELECT data FROM chat_message_blobs WHERE key = ? AND message_timestamp = ?";
+
+    private static final String SELECT_STATE_CQL =
+            "SELECT key, summary, summarized_until, summary_token_count, cleared_at, updated_at, "
+                    + "fork_parents, fork_points "
+                    + "FROM conversation_state WHERE key = ?";
+
+    private final CqlSession cqlSession;
+
+    /**
+     * 延迟预编译，原因同 {@link ChatMessageBatchWriter}；这里使用 prepareAsync，首次读取也不会阻塞调用线程
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<PreparedStatement>> preparedStatements =
+            new ConcurrentHashMap<>();
+
+    public ChatMessageAsyncReader(CqlSession cqlSession) {
+        this.cqlSession = cqlSession;
+    }
+
+    /**
+     * 读取 chat_messages 中消息ID不大于 until 的最新 N 条消息（时间降序）
+     *
+     * @param until 上界（含），不限制时传 {@link ConversationLineage#UNBOUNDED}
+     */
+    public CompletableFuture<List<ChatMessageEntity>> findLatestAsync(String key, long until, int limit) {
+        return query(SELECT_LATEST_LEGACY_CQL, statement -> statement.bind(key, until, limit),
+                ChatMessageAsyncReader::toEntity);
+    }
+
+    /**
+     * 读取 chat_messages_by_bucket 中一个时间桶内消息ID不大于 until 的最新 N 条消息（时间降序）
+     */
+    public CompletableFuture<List<ChatMessageEntity>> findLatestInBucketAsync(String key, long bucket, long until,
+                                                                             int limit) {
+        return query(SELECT_LATEST_BUCKETED_CQL, statement -> statement.bind(key, bucket, until, limit),
+                ChatMessageAsyncReader::toEntity);
+    }
+
+    /**
+     * 读取会话的时间桶（从新到旧）
+     */
+    public CompletableFuture<List<Long>> findBucketsAsync(String key) {
+        return query(SELECT_BUCKETS_CQL, statement -> statement.bind(key), row -> row.getLong("bucket"));
+    }
+
+    /**
+     * 读取大对象的全部分块（按分块序号升序）
+     */
+    public CompletableFuture<List<ByteBuffer>> findBlobChunksAsync(String key, long messageTimestamp) {
+        return query(SELECT_BLOB_CHUNKS_CQL, statement -> statement.bind(key, messageTimestamp),
+                row -> row.getByteBuffer("data"));
+    }
+
+    /**
+     * 读取会话状态，不存在时结果为 null
+     */
+    public CompletableFuture<ConversationStateEntity> findStateAsync(String key) {
+        return query(SELECT_STATE_CQL, statement -> statement.bind(key), ChatMessageAsyncReader::toState)
+                .thenApply(rows -> rows.isEmpty() ? null : rows.get(0));
+    }
+
+    private <T> CompletableFuture<List<T>> query(String cql, Function<PreparedStatement, BoundStatement> binder,
+                                                 Function<Row, T> mapper) {
+        List<T> results = new ArrayList<>();
+        return prepared(cql)
+                .thenCompose(statement -> cqlSession.executeAsync(binder.apply(statement)))
+                .thenCompose(resultSet -> collect(resultSet, mapper, results));
+    }
+
+    /**
+     * 逐页收集结果：当前页读完后异步拉取下一页，不阻塞任何线程
+     */
+    private static <T> CompletionStage<List<T>> collect(AsyncResultSet resultSet, Function<Row, T> mapper,
+                                                        List<T> results) {
+        for (Row row : resultSet.currentPage()) {
+            results.add(mapper.apply(row));
+        }
+        if (!resultSet.hasMorePages()) {
+            return CompletableFuture.completedFuture(results);
+        }
+        return resultSet.fetchNextPage().thenCompose(next -> collect(next, mapper, results));
+    }
+
+    private static ChatMessageEntity toEntity(Row row) {
+        return new ChatMessageEntity(
+                row.getString("key"),
+                row.getLong("timestamp"),
+                row.getString("type"),
+                row.getString("context"),
+                row.get("token_count", Integer.class),
+                row.getByteBuffer("payload")
+        );
+    }
+
+    private static ConversationStateEntity toState(Row row) {
+        return new ConversationStateEntity(
+                row.getString("key"),
+                row.getString("summary"),
+                row.get("summarized_until", Long.class),
+                row.get("summary_token_count", Integer.class),
+                row.get("cleared_at", Long.class),
+                row.get("updated_at", Long.class),
+                row.getList("fork_parents", String.class),
+                row.getList("fork_points", Long.class)
+        );
+    }
+
+    private CompletableFuture<PreparedStatement> prepared(String cql) {
+        CompletableFuture<PreparedStatement> prepared = preparedStatements.computeIfAbsent(cql, statement -> {
+            log.debug("Preparing statement: {}", statement);
+            return cqlSession.prepareAsync(statement).toCompletableFuture();
+        });
+        if (prepared.isCompletedExceptionally()) {
+            // 预编译失败（如表尚未创建）时不缓存失败结果，下次读取重新预编译
+            preparedStatements.remove(cql, prepared);
+        }
+        return prepared;
+    }
+}
@@ -0,0 +1,172 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * 聊天消息的批量写入器
+ * 同一分区的多条消息合并为一个 UNLOGGED BATCH，通过预编译语句一次往返写入。
+ * 单分区 UNLOGGED BATCH 在 Cassandra 中等价于一次原子的分区写入，不会带来多分区 BATCH 的协调开销。
+ * <p>
+ * 分区布局（legacy / 分桶）由 {@link ChatMessageStore} 决定，这里只负责按给定分区写入。
+ * 所有写入都带 TTL（由 {@link ChatMemoryRetentionPolicy} 计算，0 表示不过期）。
+ */
+@Component
+@ConditionalOnCassandraChatMemory
+@Slf4j
+public class ChatMessageBatchWriter {
+
+    private static final String INSERT_LEGACY_CQL =
+            "INSERT INTO chat_messages (key, timestamp, type, context, token_count, payload) VALUES (?, ?, ?, ?, ?, ?) "
+                    + "USING TTL ?";
+
+    private static final String INSERT_BUCKETED_CQL =
+            "INSERT INTO chat_messages_by_bucket (key, bucket, timestamp, type, context, token_count, payload) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?) USING TTL ?";
+
+    private static final String INSERT_BUCKET_INDEX_CQL =
+            "INSERT INTO chat_message_buckets (key, bucket) VALUES (?, ?) USING TTL ?";
+
+    private static final String INSERT_BLOB_CHUNK_CQL =
+            "INSERT INTO chat_message_blobs (key, message_timestamp, chunk, data) VALUES (?, ?, ?, ?) USING TTL ?";
+
+    private final CqlSession cqlSession;
+
+    /**
+     * 延迟预编译：表由 schema-action 在启动阶段创建，首次写入时再 prepare，避免启动顺序问题。
+     * 使用 prepareAsync 并缓存其 Future，写入可能发生在 Reactor 线程上，首次写入也不阻塞调用线程
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<PreparedStatement>> preparedStatements =
+            new ConcurrentHashMap<>();
+
+    public ChatMessageBatchWriter(CqlSession cqlSession) {
+        this.cqlSession = cqlSession;
+    }
+
+    /**
+     * 异步写入 chat_messages 中同一会话分区的一组消息
+     *
+     * @param entities     同一 key 的消息，按写入顺序排列
+     * @param maxBatchSize 单个 BATCH 的最大语句数，超出部分拆分为多个 BATCH
+     * @param ttl          每条消息的 TTL（秒）
+     * @return 全部语句执行完成后结束的 Future
+     */
+    public CompletableFuture<Void> writeLegacyAsync(List<ChatMessageEntity> entities, int maxBatchSize,
+                                                    ToIntFunction<ChatMessageEntity> ttl) {
+        return executeChunked(INSERT_LEGACY_CQL, entities, maxBatchSize, (insert, entity) -> insert.bind(
+                entity.getKey(),
+                entity.getTimestamp(),
+                entity.getType(),
+                entity.getContext(),
+                entity.getTokenCount(),
+                entity.getPayload(),
+                ttl.applyAsInt(entity)
+        ));
+    }
+
+    /**
+     * 异步写入 chat_messages_by_bucket 中同一 (会话, 时间桶) 分区的一组消息
+     *
+     * @param entities 同一 key、同一时间桶的消息
+     * @param bucket   时间桶起始时间
+     */
+    public CompletableFuture<Void> writeBucketedAsync(List<ChatMessageEntity> entities, long bucket, int maxBatchSize,
+                                                      ToIntFunction<ChatMessageEntity> ttl) {
+        return executeChunked(INSERT_BUCKETED_CQL, entities, maxBatchSize, (insert, entity) -> insert.bind(
+                entity.getKey(),
+                bucket,
+                entity.getTimestamp(),
+                entity.getType(),
+                entity.getContext(),
+                entity.getTokenCount(),
+                entity.getPayload(),
+                ttl.applyAsInt(entity)
+        ));
+    }
+
+    /**
+     * 登记会话的时间桶（幂等写入）
+     */
+    public CompletableFuture<Void> writeBucketIndexAsync(String key, long bucket, int ttlSeconds) {
+        return prepared(INSERT_BUCKET_INDEX_CQL)
+                .thenCompose(insert -> cqlSession.executeAsync(insert.bind(key, bucket, ttlSeconds)))
+                .thenApply(ignored -> null);
+    }
+
+    /**
+     * 写入大对象的分块
+     * 每个分块单独写入：分块本身已接近 batch_size_fail_threshold，合并为 BATCH 反而会被拒绝
+     *
+     * @param chunks 按顺序排列的分块
+     */
+    public CompletableFuture<Void> writeBlobChunksAsync(String key, long messageTimestamp, List<ByteBuffer> chunks,
+                                                        int ttlSeconds) {
+        return prepared(INSERT_BLOB_CHUNK_CQL).thenCompose(insert -> {
+            List<CompletableFuture<?>> futures = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                futures.add(cqlSession.executeAsync(insert.bind(key, messageTimestamp, i, chunks.get(i), ttlSeconds))
+                        .toCompletableFuture());
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        });
+    }
+
+    private CompletableFuture<Void> executeChunked(String cql, List<ChatMessageEntity> entities, int maxBatchSize,
+                                                   BiFunction<PreparedStatement, ChatMessageEntity, BoundStatement> binder) {
+        if (entities == null || entities.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return prepared(cql).thenCompose(statement ->
+                executeChunked(entities, maxBatchSize, entity -> binder.apply(statement, entity)));
+    }
+
+    private CompletableFuture<Void> executeChunked(List<ChatMessageEntity> entities, int maxBatchSize,
+                                                   Function<ChatMessageEntity, BoundStatement> binder) {
+        int chunkSize = Math.max(1, maxBatchSize);
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+
+        for (int from = 0; from < entities.size(); from += chunkSize) {
+            List<ChatMessageEntity> chunk = entities.subList(from, Math.min(entities.size(), from + chunkSize));
+            if (chunk.size() == 1) {
+                // 单条消息无需 BATCH 包装
+                futures.add(cqlSession.executeAsync(binder.apply(chunk.get(0))).toCompletableFuture());
+                continue;
+            }
+            BatchStatementBuilder batch = BatchStatement.builder(DefaultBatchType.UNLOGGED);
+            for (ChatMessageEntity entity : chunk) {
+                batch.addStatement(binder.apply(entity));
+            }
+            futures.add(cqlSession.executeAsync(batch.build()).toCompletableFuture());
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    private CompletableFuture<PreparedStatement> prepared(String cql) {
+        CompletableFuture<PreparedStatement> prepared = preparedStatements.computeIfAbsent(cql, statement -> {
+            log.debug("Preparing statement: {}", statement);
+            return cqlSession.prepareAsync(statement).toCompletableFuture();
+        });
+        if (prepared.isCompletedExceptionally()) {
+            // 预编译失败（如表尚未创建）时不缓存失败结果，下次写入重新预编译
+            preparedStatements.remove(cql, prepared);
+        }
+        return prepared;
+    }
+}
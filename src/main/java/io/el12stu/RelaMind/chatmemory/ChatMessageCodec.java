@@ -0,0 +1,466 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.Pool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.content.Media;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 聊天消息的二进制编解码器（Kryo）
+ * <p>
+ * 完整保存 {@link Message} 的状态：文本、元数据、媒体、工具调用和工具返回，读取时无损还原。
+ * 编码格式：
+ * <pre>
+ * [版本 1 字节][格式 1 字节][正文]
+ *   格式 RAW     ：正文为 Kryo 序列化的消息字段
+ *   格式 DEFLATE ：正文为 [原始长度 varint][Deflate 压缩后的 RAW 正文]，超过压缩阈值时使用
+ *   格式 BLOB_REF：正文为 [完整编码长度 int][分块数 int]，完整编码存放在 chat_message_blobs 中
+ * </pre>
+ * 字段逐个手写而不是直接序列化 Spring AI 的类，升级 Spring AI 版本不影响已存储的数据；
+ * 新增字段时提升版本号，并在解码时按版本分支读取。
+ * <p>
+ * 元数据值由 Kryo 序列化，但只允许 {@link #registerMetadataTypes} 中登记的类型（字符串、数值、布尔、
+ * List、Map 及 Spring AI 的消息相关类型），其他类型的值写入时转为字符串。payload 来自数据库，
+ * 解码时遇到未登记的类直接拒绝该条元数据，不会按存储内容实例化任意类。
+ */
+@Component
+@Slf4j
+public class ChatMessageCodec {
+
+    static final byte VERSION_1 = 1;
+
+    static final byte FORMAT_RAW = 0;
+
+    static final byte FORMAT_DEFLATE = 1;
+
+    static final byte FORMAT_BLOB_REF = 2;
+
+    private static final int HEADER_BYTES = 2;
+
+    private static final byte MEDIA_DATA_BYTES = 0;
+
+    private static final byte MEDIA_DATA_URI = 1;
+
+    private static final byte MEDIA_DATA_STRING = 2;
+
+    /**
+     * Kryo 实例不是线程安全的，通过对象池复用
+     */
+    private final Pool<Kryo> kryoPool = new Pool<>(true, false, 16) {
+        @Override
+        protected Kryo create() {
+            Kryo kryo = new Kryo(new MetadataClassResolver(), null);
+            kryo.setRegistrationRequired(true);
+            registerMetadataTypes(kryo);
+            return kryo;
+        }
+    };
+
+    /**
+     * 未开启登记时写入的旧数据按类名记录集合类：只按类名解析登记过的类，其他类名直接拒绝（不加载该类）；
+     * 类名编号表在每个值读完后清空，池中复用的实例不会把上一个值的类名编号带到下一个值
+     */
+    private static final class MetadataClassResolver extends DefaultClassResolver {
+
+        @Override
+        protected Class getTypeByName(String className) {
+            for (Class<?> type : classToRegistration.keys()) {
+                if (type.getName().equals(className)) {
+                    return type;
+                }
+            }
+            throw new KryoException("Class is not registered: " + className);
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            if (classToNameId != null) {
+                classToNameId.clear();
+            }
+            if (nameIdToClass != null) {
+                nameIdToClass.clear();
+            }
+            nextNameId = 0;
+        }
+    }
+
+    /**
+     * 元数据值允许的类型。字符串、基本类型的包装类由 Kryo 默认登记；
+     * 登记 ID 会写入已存储的数据，只能追加，不能修改或复用
+     */
+    static void registerMetadataTypes(Kryo kryo) {
+        kryo.register(ArrayList.class, 20);
+        kryo.register(HashMap.class, 21);
+        kryo.register(LinkedHashMap.class, 22);
+        kryo.register(BigInteger.class, 23);
+        kryo.register(BigDecimal.class, 24);
+        kryo.register(MessageType.class, 25);
+        kryo.register(AssistantMessage.ToolCall.class, 26);
+        kryo.register(ToolResponseMessage.ToolResponse.class, 27);
+    }
+
+    /**
+     * 超过该字节数的正文使用 Deflate 压缩
+     */
+    @Value("${relamind.chat.memory.codec.compress-threshold-bytes:1024}")
+    private int compressThresholdBytes;
+
+    // ==================== 编码 ====================
+
+    /**
+     * 编码一条消息
+     */
+    public byte[] encode(Message message) {
+        byte[] body = writeBody(message);
+        if (body.length <= compressThresholdBytes) {
+            return withHeader(FORMAT_RAW, body);
+        }
+        byte[] compressed = deflate(body);
+        if (compressed.length >= body.length) {
+            // 压缩无收益（如已是压缩数据）时保持原样
+            return withHeader(FORMAT_RAW, body);
+        }
+        try (Output output = new Output(HEADER_BYTES + 5 + compressed.length)) {
+            output.writeByte(VERSION_1);
+            output.writeByte(FORMAT_DEFLATE);
+            output.writeVarInt(body.length, true);
+            output.writeBytes(compressed);
+            return output.toBytes();
+        }
+    }
+
+    /**
+     * 生成大对象引用：消息行中只保存长度和分块数，完整编码分块存放
+     */
+    public byte[] blobReference(int length, int chunkCount) {
+        try (Output output = new Output(HEADER_BYTES + 8)) {
+            output.writeByte(VERSION_1);
+            output.writeByte(FORMAT_BLOB_REF);
+            output.writeInt(length);
+            output.writeInt(chunkCount);
+            return output.toBytes();
+        }
+    }
+
+    // ==================== 解码 ====================
+
+    /**
+     * 解码一条消息
+     *
+     * @throws IllegalArgumentException 版本或格式无法识别，或传入的是大对象引用
+     */
+    public Message decode(ByteBuffer payload) {
+        byte[] bytes = toBytes(payload);
+        checkVersion(bytes);
+        byte format = bytes[1];
+        if (format == FORMAT_RAW) {
+            return readBody(bytes, HEADER_BYTES, bytes.length - HEADER_BYTES);
+        }
+        if (format == FORMAT_DEFLATE) {
+            try (Input input = new Input(bytes, HEADER_BYTES, bytes.length - HEADER_BYTES)) {
+                int length = input.readVarInt(true);
+                byte[] body = inflate(bytes, input.position(), bytes.length - input.position(), length);
+                return readBody(body, 0, body.length);
+            }
+        }
+        throw new IllegalArgumentException("Cannot decode chat message payload format: " + format);
+    }
+
+    public boolean isBlobReference(ByteBuffer payload) {
+        return payload != null && payload.remaining() >= HEADER_BYTES
+                && payload.get(payload.position() + 1) == FORMAT_BLOB_REF;
+    }
+
+    /**
+     * 读取大对象引用中的分块数
+     */
+    public int blobChunkCount(ByteBuffer reference) {
+        // Kryo 的 Output.writeInt 按小端序写入
+        return reference.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(reference.position() + HEADER_BYTES + 4);
+    }
+
+    // ==================== 内部方法 ====================
+
+    private byte[] writeBody(Message message) {
+        Kryo kryo = kryoPool.obtain();
+        try (Output output = new Output(256, -1)) {
+            output.writeString(message.getMessageType().name());
+            output.writeString(message.getText());
+            writeMetadata(kryo, output, message.getMetadata());
+
+            List<Media> media = message instanceof UserMessage user ? user.getMedia()
+                    : message instanceof AssistantMessage assistant ? assistant.getMedia() : List.of();
+            writeMedia(output, media);
+
+            List<AssistantMessage.ToolCall> toolCalls =
+                    message instanceof AssistantMessage assistant ? assistant.getToolCalls() : List.of();
+            output.writeVarInt(toolCalls.size(), true);
+            for (AssistantMessage.ToolCall call : toolCalls) {
+                output.writeString(call.id());
+                output.writeString(call.type());
+                output.writeString(call.name());
+                output.writeString(call.arguments());
+            }
+
+            List<ToolResponseMessage.ToolResponse> responses =
+                    message instanceof ToolResponseMessage tool ? tool.getResponses() : List.of();
+            output.writeVarInt(responses.size(), true);
+            for (ToolResponseMessage.ToolResponse response : responses) {
+                output.writeString(response.id());
+                output.writeString(response.name());
+                output.writeString(response.responseData());
+            }
+            return output.toBytes();
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    private Message readBody(byte[] bytes, int offset, int length) {
+        Kryo kryo = kryoPool.obtain();
+        try (Input input = new Input(bytes, offset, length)) {
+            String type = input.readString();
+            String text = input.readString();
+            Map<String, Object> metadata = readMetadata(kryo, input);
+            List<Media> media = readMedia(input);
+
+            int toolCallCount = input.readVarInt(true);
+            List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>(toolCallCount);
+            for (int i = 0; i < toolCallCount; i++) {
+                toolCalls.add(new AssistantMessage.ToolCall(
+                        input.readString(), input.readString(), input.readString(), input.readString()));
+            }
+
+            int responseCount = input.readVarInt(true);
+            List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(responseCount);
+            for (int i = 0; i < responseCount; i++) {
+                responses.add(new ToolResponseMessage.ToolResponse(
+                        input.readString(), input.readString(), input.readString()));
+            }
+
+            return switch (type) {
+                case "USER" -> UserMessage.builder().text(text != null ? text : "").media(media)
+                        .metadata(metadata).build();
+                case "SYSTEM" -> SystemMessage.builder().text(text != null ? text : "").metadata(metadata).build();
+                case "ASSISTANT" -> new AssistantMessage(text, metadata, toolCalls, media);
+                case "TOOL" -> new ToolResponseMessage(responses, metadata);
+                default -> throw new IllegalArgumentException("Unknown message type in payload: " + type);
+            };
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    /**
+     * 元数据值逐个独立序列化：个别值无法序列化时退化为字符串，不影响整条消息
+     */
+    private void writeMetadata(Kryo kryo, Output output, Map<String, Object> metadata) {
+        Map<String, Object> entries = metadata != null ? metadata : Map.of();
+        output.writeVarInt(entries.size(), true);
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            output.writeString(entry.getKey());
+            byte[] value = serializeValue(kryo, entry.getValue());
+            output.writeVarInt(value.length, true);
+            output.writeBytes(value);
+        }
+    }
+
+    private Map<String, Object> readMetadata(Kryo kryo, Input input) {
+        int size = input.readVarInt(true);
+        Map<String, Object> metadata = new HashMap<>(Math.max(4, size * 2));
+        for (int i = 0; i < size; i++) {
+            String key = input.readString();
+            byte[] value = input.readBytes(input.readVarInt(true));
+            try (Input valueInput = new Input(value)) {
+                Object decoded = kryo.readClassAndObject(valueInput);
+                if (decoded != null) {
+                    metadata.put(key, decoded);
+                }
+            } catch (Exception e) {
+                log.warn("Skipping undecodable metadata entry: {}", key, e);
+            }
+        }
+        return metadata;
+    }
+
+    private static byte[] serializeValue(Kryo kryo, Object value) {
+        try (Output output = new Output(64, -1)) {
+            kryo.writeClassAndObject(output, storable(value));
+            return output.toBytes();
+        } catch (Exception e) {
+            log.debug("Metadata value of type {} is not serializable, storing its string form",
+                    value.getClass().getName());
+            try (Output output = new Output(64, -1)) {
+                kryo.writeClassAndObject(output, String.valueOf(value));
+                return output.toBytes();
+            }
+        }
+    }
+
+    /**
+     * 把元数据值转换为登记过的类型：List、Map 逐个元素转换后复制为 ArrayList、LinkedHashMap
+     * （不依赖 List.of 等实现类的内部结构），其他未登记的类型转为字符串
+     */
+    static Object storable(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean
+                || value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof Float || value instanceof Short || value instanceof Byte
+                || value instanceof BigInteger || value instanceof BigDecimal
+                || value instanceof MessageType || value instanceof AssistantMessage.ToolCall
+                || value instanceof ToolResponseMessage.ToolResponse) {
+            return value;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object element : list) {
+                copy.add(storable(element));
+            }
+            return copy;
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>(Math.max(4, map.size() * 2));
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(storable(entry.getKey()), storable(entry.getValue()));
+            }
+            return copy;
+        }
+        return String.valueOf(value);
+    }
+
+    private static void writeMedia(Output output, List<Media> media) {
+        output.writeVarInt(media.size(), true);
+        for (Media item : media) {
+            output.writeString(item.getMimeType().toString());
+            output.writeString(item.getId());
+            output.writeString(item.getName());
+            Object data = item.getData();
+            if (data instanceof byte[] bytes) {
+                output.writeByte(MEDIA_DATA_BYTES);
+                output.writeVarInt(bytes.length, true);
+                output.writeBytes(bytes);
+            } else if (data instanceof URI uri) {
+                output.writeByte(MEDIA_DATA_URI);
+                output.writeString(uri.toString());
+            } else {
+                output.writeByte(MEDIA_DATA_STRING);
+                output.writeString(String.valueOf(data));
+            }
+        }
+    }
+
+    private static List<Media> readMedia(Input input) {
+        int size = input.readVarInt(true);
+        List<Media> media = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Media.Builder builder = Media.builder()
+                    .mimeType(MimeType.valueOf(input.readString()))
+                    .id(input.readString())
+                    .name(input.readString());
+            byte kind = input.readByte();
+            if (kind == MEDIA_DATA_BYTES) {
+                builder.data(input.readBytes(input.readVarInt(true)));
+            } else if (kind == MEDIA_DATA_URI) {
+                builder.data(URI.create(input.readString()));
+            } else {
+                builder.data((Object) input.readString());
+            }
+            media.add(builder.build());
+        }
+        return media;
+    }
+
+    private static byte[] withHeader(byte format, byte[] body) {
+        byte[] bytes = new byte[HEADER_BYTES + body.length];
+        bytes[0] = VERSION_1;
+        bytes[1] = format;
+        System.arraycopy(body, 0, bytes, HEADER_BYTES, body.length);
+        return bytes;
+    }
+
+    private static void checkVersion(byte[] bytes) {
+        if (bytes.length < HEADER_BYTES) {
+            throw new IllegalArgumentException("Chat message payload is truncated");
+        }
+        if (bytes[0] != VERSION_1) {
+            throw new IllegalArgumentException("Unsupported chat message payload version: " + bytes[0]);
+        }
+    }
+
+    private static byte[] deflate(byte[] body) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int length, int originalLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, length);
+            byte[] body = new byte[originalLength];
+            int read = 0;
+            while (read < originalLength && !inflater.finished()) {
+                int n = inflater.inflate(body, read, originalLength - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != originalLength) {
+                throw new IllegalArgumentException("Chat message payload is corrupted: expected "
+                        + originalLength + " bytes, inflated " + read);
+            }
+            return body;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Chat message payload is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] toBytes(ByteBuffer payload) {
+        ByteBuffer duplicate = payload.duplicate();
+        byte[] bytes = new byte[duplicate.remaining()];
+        duplicate.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,149 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 消息ID生成器（混合逻辑时钟，HLC）
+ * <p>
+ * 生成的ID直接作为 chat_messages 等表的聚类键 timestamp，64 位布局：
+ * <pre>
+ *   | 41 位：自 2024-01-01 起的毫秒 | 12 位：逻辑计数 | 10 位：节点号 |
+ * </pre>
+ * <ul>
+ *     <li>本节点内：时钟以 CAS 单调递增（取物理时间与上一个值 +1 中的较大者），无锁且不会重复，时钟回拨也不会倒序</li>
+ *     <li>跨节点：低位节点号不同，同一毫秒、同一逻辑计数也不会冲突，多个节点并发写同一会话无需任何协调</li>
+ *     <li>读到其他节点写入的更大ID时推进本地时钟（{@link #observe}），保证之后写入的回复排在已读历史之后</li>
+ * </ul>
+ * 旧数据的 timestamp 是毫秒时间戳（小于 2^42），总是小于新ID，混合数据读取时仍保持时间顺序，
+ * 需要时间语义（TTL、时间桶、展示）的地方通过 {@link #millisOf} 还原毫秒。
+ */
+@Component
+@Slf4j
+public class ChatMessageIdGenerator {
+
+    /**
+     * 自定义纪元 2024-01-01T00:00:00Z
+     */
+    static final long EPOCH_MILLIS = 1_704_067_200_000L;
+
+    private static final int NODE_BITS = 10;
+
+    private static final int LOGICAL_BITS = 12;
+
+    private static final long NODE_MASK = (1L << NODE_BITS) - 1;
+
+    private static final long LOGICAL_MASK = (1L << LOGICAL_BITS) - 1;
+
+    /**
+     * 小于该值的 timestamp 是旧格式的毫秒时间戳
+     */
+    private static final long LEGACY_LIMIT = 1L << 42;
+
+    /**
+     * 节点号（0-1023），多节点部署时必须为每个节点配置不同的值（例如 StatefulSet 序号）；
+     * 单节点部署未配置时固定为 0
+     */
+    @Value("${relamind.chat.memory.id.node-id:-1}")
+    private int configuredNodeId;
+
+    /**
+     * 多节点部署：开启后必须配置 node-id，否则启动失败。随机选取的节点号在多个节点之间可能重复，
+     * 重复的节点在同一毫秒、同一逻辑计数下会生成相同的ID，互相覆盖对方的消息
+     */
+    @Value("${relamind.chat.memory.id.multi-node:false}")
+    private boolean multiNode;
+
+    private long nodeId;
+
+    /**
+     * 不含节点号的时钟：物理毫秒（相对纪元）左移 12 位后加上逻辑计数
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * 物理时钟来源，测试中替换以模拟时钟回拨
+     */
+    private LongSupplier currentMillis = System::currentTimeMillis;
+
+    @PostConstruct
+    public void init() {
+        if (configuredNodeId > NODE_MASK) {
+            throw new IllegalStateException("relamind.chat.memory.id.node-id must be between 0 and " + NODE_MASK
+                    + ", got " + configuredNodeId);
+        }
+        if (configuredNodeId >= 0) {
+            nodeId = configuredNodeId;
+        } else if (multiNode) {
+            throw new IllegalStateException("relamind.chat.memory.id.node-id must be set to a value unique per node "
+                    + "when relamind.chat.memory.id.multi-node is true");
+        } else {
+            nodeId = 0;
+            log.info("relamind.chat.memory.id.node-id not set, using node id 0 (single-node deployment)");
+        }
+    }
+
+    /**
+     * 分配一段连续递增的ID（同一节点内严格递增）
+     *
+     * @param count 需要的ID数量
+     * @return 第一个ID，其余ID依次为 first + (i << 10)，可通过 {@link #nth} 计算
+     */
+    public long next(int count) {
+        int n = Math.max(1, count);
+        long physical = physicalClock(currentMillis.getAsLong());
+        long last = clock.updateAndGet(prev -> Math.max(prev + n, physical + n - 1));
+        return toId(last - n + 1);
+    }
+
+    /**
+     * 由 {@link #next} 返回的第一个ID计算同一段中的第 index 个ID
+     */
+    public static long nth(long first, int index) {
+        return first + ((long) index << NODE_BITS);
+    }
+
+    /**
+     * 观察到已存在的ID（如读取到的最新消息），本地时钟推进到不小于它
+     */
+    public void observe(long id) {
+        if (id < LEGACY_LIMIT) {
+            return;
+        }
+        long observed = id >>> NODE_BITS;
+        clock.accumulateAndGet(observed, Math::max);
+    }
+
+    /**
+     * 生成一条分界线：任何节点在当前毫秒及之前分配的ID都不大于它，本节点之后分配的ID都大于它。
+     * 用于软清空等「此前的消息全部隐藏」的场景。
+     */
+    public long fence() {
+        long ceiling = physicalClock(currentMillis.getAsLong()) | LOGICAL_MASK;
+        long current = clock.accumulateAndGet(ceiling, Math::max);
+        return (current << NODE_BITS) | NODE_MASK;
+    }
+
+    /**
+     * 还原ID对应的物理时间（毫秒）；旧格式的毫秒时间戳原样返回
+     */
+    public static long millisOf(long id) {
+        if (id < LEGACY_LIMIT) {
+            return id;
+        }
+        return (id >>> (NODE_BITS + LOGICAL_BITS)) + EPOCH_MILLIS;
+    }
+
+    private static long physicalClock(long millis) {
+        return (millis - EPOCH_MILLIS) << LOGICAL_BITS;
+    }
+
+    private long toId(long clockValue) {
+        return (clockValue << NODE_BITS) | nodeId;
+    }
+}
@@ -0,0 +1,146 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
+import io.el12stu.RelaMind.chatmemory.repository.ChatMessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * chat_messages 到分桶布局的在线迁移器
+ * <p>
+ * 迁移步骤：
+ * <ol>
+ *     <li>以 relamind.chat.memory.layout=DUAL_WRITE 部署，新消息同时写入两种布局</li>
+ *     <li>调用迁移接口，后台逐个会话分页复制旧分区到 chat_messages_by_bucket</li>
+ *     <li>迁移完成后切换为 BUCKETED</li>
+ * </ol>
+ * 复制与双写使用相同的主键，重复写入是幂等覆盖，因此迁移可以随时中断后重新执行。
+ */
+@Component
+@ConditionalOnCassandraChatMemory
+@Slf4j
+public class ChatMessageLayoutMigrator {
+
+    /**
+     * 迁移状态
+     */
+    public enum State {
+        IDLE,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    /**
+     * 迁移进度快照
+     */
+    public record MigrationStatus(State state, long conversations, long rows, String lastConversation,
+                                  String error) {
+    }
+
+    private final CqlSession cqlSession;
+
+    private final ChatMessageRepository chatMessageRepository;
+
+    private final ChatMessageStore chatMessageStore;
+
+    /**
+     * 每次从旧分区读取并写入的条数
+     */
+    @Value("${relamind.chat.memory.migration.page-size:500}")
+    private int pageSize;
+
+    private final AtomicLong migratedConversations = new AtomicLong();
+
+    private final AtomicLong migratedRows = new AtomicLong();
+
+    private volatile State state = State.IDLE;
+
+    private volatile String lastConversation;
+
+    private volatile String error;
+
+    public ChatMessageLayoutMigrator(CqlSession cqlSession,
+                                     ChatMessageRepository chatMessageRepository,
+                                     ChatMessageStore chatMessageStore) {
+        this.cqlSession = cqlSession;
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatMessageStore = chatMessageStore;
+    }
+
+    /**
+     * 启动后台迁移
+     *
+     * @return 已有迁移在运行时返回 false
+     * @throws IllegalStateException 当前布局不是 DUAL_WRITE 时，迁移期间的新消息无法进入分桶布局
+     */
+    public synchronized boolean start() {
+        if (chatMessageStore.getLayout() != ChatMessageStore.Layout.DUAL_WRITE) {
+            throw new IllegalStateException("在线迁移需要 relamind.chat.memory.layout=DUAL_WRITE");
+        }
+        if (state == State.RUNNING) {
+            return false;
+        }
+        state = State.RUNNING;
+        error = null;
+        migratedConversations.set(0);
+        migratedRows.set(0);
+
+        Thread worker = new Thread(this::migrateAll, "chat-message-layout-migrator");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    public MigrationStatus status() {
+        return new MigrationStatus(state, migratedConversations.get(), migratedRows.get(), lastConversation, error);
+    }
+
+    private void migrateAll() {
+        log.info("Chat message layout migration started");
+        try {
+            // 全表扫描分区键，驱动按页自动拉取
+            SimpleStatement distinctKeys = SimpleStatement.newInstance("SELECT DISTINCT key FROM chat_messages")
+                    .setPageSize(pageSize);
+            ResultSet keys = cqlSession.execute(distinctKeys);
+            for (Row row : keys) {
+                String key = row.getString("key");
+                migrateConversation(key);
+                lastConversation = key;
+                migratedConversations.incrementAndGet();
+            }
+            state = State.COMPLETED;
+            log.info("Chat message layout migration completed: {} conversations, {} rows",
+                    migratedConversations.get(), migratedRows.get());
+        } catch (Exception e) {
+            error = e.getMessage();
+            state = State.FAILED;
+            log.error("Chat message layout migration failed after conversation: {}", lastConversation, e);
+        }
+    }
+
+    /**
+     * 分页复制一个会话分区，内存占用只与页大小有关
+     */
+    private void migrateConversation(String key) {
+        Pageable pageable = CassandraPageRequest.first(pageSize);
+        while (pageable != null) {
+            Slice<ChatMessageEntity> slice = chatMessageRepository.findByKey(key, pageable);
+            if (slice.hasContent()) {
+                chatMessageStore.appendBucketedAsync(key, slice.getContent()).join();
+                migratedRows.addAndGet(slice.getNumberOfElements());
+            }
+            pageable = slice.hasNext() ? slice.nextPageable() : null;
+        }
+    }
+}
@@ -0,0 +1,860 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageBlobEntity;
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageBucketEntity;
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageBucketIndexEntity;
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
+import io.el12stu.RelaMind.chatmemory.repository.ChatMessageBlobRepository;
+import io.el12stu.RelaMind.chatmemory.repository.ChatMessageBucketIndexRepository;
+import io.el12stu.RelaMind.chatmemory.repository.ChatMessageBucketRepository;
+import io.el12stu.RelaMind.chatmemory.repository.ChatMessageRepository;
+import com.datastax.oss.driver.api.core.servererrors.ProtocolError;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 聊天消息存储
+ * <p>
+ * 屏蔽分区布局差异，对上层提供统一的按会话读写接口：
+ * <ul>
+ *     <li>LEGACY：单分区 chat_messages（分区键只有会话ID）</li>
+ *     <li>DUAL_WRITE：同时写入两种布局，读取仍走 chat_messages，用于在线迁移期间</li>
+ *     <li>BUCKETED：只读写按时间分桶的 chat_messages_by_bucket，分区键为 (会话ID, 时间桶)</li>
+ * </ul>
+ * 分桶布局下通过 chat_message_buckets 索引从新到旧遍历时间桶，直到填满读取窗口。
+ * <p>
+ * 编码后超过 offload 阈值的 payload 分块写入 chat_message_blobs，消息行只保存引用；
+ * 读取时在这里还原，上层拿到的总是完整的 payload。
+ * <p>
+ * 读取窗口同时提供异步版本（{@link #findLatestAsync}），经 {@link ChatMessageAsyncReader} 全程不阻塞调用线程。
+ * <p>
+ * 分叉会话的读取接受 {@link ConversationLineage}：祖先会话按分叉点加上 timestamp 上界读取，不复制任何消息。
+ */
+@Component
+@ConditionalOnCassandraChatMemory
+@Slf4j
+public class ChatMessageStore {
+
+    /**
+     * 分区布局
+     */
+    public enum Layout {
+        LEGACY,
+        DUAL_WRITE,
+        BUCKETED
+    }
+
+    /**
+     * 一页消息及下一页的续读令牌
+     */
+    public record Page(List<ChatMessageEntity> entities, String nextToken) {
+    }
+
+    /**
+     * 本节点已登记过的 (会话, 时间桶) 数量上限，超出后按插入顺序淘汰
+     */
+    private static final int KNOWN_BUCKETS_CAPACITY = 100_000;
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * payload 分块存放时消息行中保留的 context 字符数
+     */
+    private static final int OFFLOADED_CONTEXT_PREVIEW_CHARS = 1024;
+
+    /**
+     * 分叉会话分页令牌中段序号与段内令牌的分隔符（段内令牌只含 URL 安全的 Base64 字符和 '.'）
+     */
+    private static final String SEGMENT_TOKEN_SEPARATOR = "~";
+
+    private final ChatMessageRepository chatMessageRepository;
+
+    private final ChatMessageBucketRepository bucketRepository;
+
+    private final ChatMessageBucketIndexRepository bucketIndexRepository;
+
+    private final ChatMessageBatchWriter batchWriter;
+
+    private final ChatMessageBlobRepository blobRepository;
+
+    private final ChatMessageCodec codec;
+
+    private final ChatMemoryRetentionPolicy retentionPolicy;
+
+    private final ChatMessageAsyncReader asyncReader;
+
+    @Value("${relamind.chat.memory.layout:LEGACY}")
+    private Layout layout;
+
+    /**
+     * 时间桶大小（天）。桶以起始时间标识，调整大小不影响已写入数据的读取
+     */
+    @Value("${relamind.chat.memory.bucket.size-days:30}")
+    private int bucketSizeDays;
+
+    /**
+     * 单个 BATCH 的最大语句数（避免超过 batch_size_fail_threshold）
+     */
+    @Value("${relamind.chat.memory.write-behind.max-batch-size:50}")
+    private int maxBatchSize;
+
+    /**
+     * payload 超过该字节数时分块存放到 chat_message_blobs
+     */
+    @Value("${relamind.chat.memory.codec.offload-threshold-bytes:262144}")
+    private int offloadThresholdBytes;
+
+    /**
+     * 大对象分块大小（字节）
+     */
+    @Value("${relamind.chat.memory.codec.chunk-size-bytes:65536}")
+    private int chunkSizeBytes;
+
+    /**
+     * 已登记到桶索引的 (会话, 时间桶)，避免每次写入都重复写索引
+     */
+    private final Set<String> knownBuckets = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > KNOWN_BUCKETS_CAPACITY;
+        }
+    });
+
+    public ChatMessageStore(ChatMessageRepository chatMessageRepository,
+                            ChatMessageBucketRepository bucketRepository,
+                            ChatMessageBucketIndexRepository bucketIndexRepository,
+                            ChatMessageBatchWriter batchWriter,
+                            ChatMessageBlobRepository blobRepository,
+                            ChatMessageCodec codec,
+                            ChatMemoryRetentionPolicy retentionPolicy,
+                            ChatMessageAsyncReader asyncReader) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.bucketRepository = bucketRepository;
+        this.bucketIndexRepository = bucketIndexRepository;
+        this.batchWriter = batchWriter;
+        this.blobRepository = blobRepository;
+        this.codec = codec;
+        this.retentionPolicy = retentionPolicy;
+        this.asyncReader = asyncReader;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 同步写入一个会话的新消息
+     */
+    public void append(String key, List<ChatMessageEntity> entities) {
+        appendAsync(key, entities).join();
+    }
+
+    /**
+     * 异步写入一个会话的新消息，按当前布局拆分为单分区 BATCH
+     * 超大 payload 先写分块，分块全部写入后再写引用它的消息行，读取方不会看到悬空引用
+     *
+     * @param entities 同一 key 的消息，按写入顺序排列
+     */
+    public CompletableFuture<Void> appendAsync(String key, List<ChatMessageEntity> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<ChatMessageEntity> rows = new ArrayList<>(entities.size());
+        List<CompletableFuture<Void>> blobWrites = new ArrayList<>();
+        for (ChatMessageEntity entity : entities) {
+            rows.add(offloadIfLarge(entity, blobWrites));
+        }
+        if (blobWrites.isEmpty()) {
+            return writeRows(key, rows);
+        }
+        return CompletableFuture.allOf(blobWrites.toArray(new CompletableFuture[0]))
+                .thenCompose(ignored -> writeRows(key, rows));
+    }
+
+    private CompletableFuture<Void> writeRows(String key, List<ChatMessageEntity> rows) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(2);
+        if (layout != Layout.BUCKETED) {
+            futures.add(batchWriter.writeLegacyAsync(rows, maxBatchSize, this::ttlOf));
+        }
+        if (layout != Layout.LEGACY) {
+            futures.add(appendBucketedAsync(key, rows));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * payload 超过阈值时切分写入 chat_message_blobs，返回只带引用的消息行（不修改入参）
+     * 消息行中的 context 截断为预览：完整正文已在分块中，读取时总会还原 payload，context 只在解码失败时兜底。
+     * 否则正文会在行和分块中各存一份，行的大小也不再受 offload 阈值约束（token_count 仍是完整正文的值）。
+     */
+    private ChatMessageEntity offloadIfLarge(ChatMessageEntity entity, List<CompletableFuture<Void>> blobWrites) {
+        ByteBuffer payload = entity.getPayload();
+        if (payload == null || payload.remaining() <= offloadThresholdBytes) {
+            return entity;
+        }
+        List<ByteBuffer> chunks = split(payload, Math.max(1024, chunkSizeBytes));
+        blobWrites.add(batchWriter.writeBlobChunksAsync(entity.getKey(), entity.getTimestamp(), chunks,
+                ttlOf(entity)));
+
+        ByteBuffer reference = ByteBuffer.wrap(codec.blobReference(payload.remaining(), chunks.size()));
+        return new ChatMessageEntity(entity.getKey(), entity.getTimestamp(), entity.getType(),
+                contextPreview(entity.getContext()), entity.getTokenCount(), reference);
+    }
+
+    private static String contextPreview(String context) {
+        if (context == null || context.length() <= OFFLOADED_CONTEXT_PREVIEW_CHARS) {
+            return context;
+        }
+        int end = OFFLOADED_CONTEXT_PREVIEW_CHARS;
+        // 不在代理对中间截断
+        if (Character.isHighSurrogate(context.charAt(end - 1))) {
+            end--;
+        }
+        return context.substring(0, end) + "…";
+    }
+
+    /**
+     * 按时间桶分组写入分桶布局，并登记本节点尚未登记过的桶
+     * 迁移器也复用此方法把旧分区复制到分桶布局
+     */
+    public CompletableFuture<Void> appendBucketedAsync(String key, List<ChatMessageEntity> entities) {
+        Map<Long, List<ChatMessageEntity>> byBucket = new LinkedHashMap<>();
+        for (ChatMessageEntity entity : entities) {
+            byBucket.computeIfAbsent(bucketOf(entity.getTimestamp()), b -> new ArrayList<>()).add(entity);
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>(byBucket.size() * 2);
+        for (Map.Entry<Long, List<ChatMessageEntity>> group : byBucket.entrySet()) {
+            long bucket = group.getKey();
+            futures.add(batchWriter.writeBucketedAsync(group.getValue(), bucket, maxBatchSize, this::ttlOf));
+            if (markBucketKnown(key, bucket)) {
+                futures.add(batchWriter.writeBucketIndexAsync(key, bucket, bucketIndexTtl(key, bucket))
+                        .whenComplete((ignored, error) -> {
+                            if (error != null) {
+                                // 索引写入失败时下次写入重新登记
+                                forgetBucket(key, bucket);
+                            }
+                        }));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 读取会话的全部消息（时间升序）
+     */
+    public List<ChatMessageEntity> findAll(String key) {
+        return findAll(key, ConversationLineage.UNBOUNDED);
+    }
+
+    /**
+     * 按谱系读取分叉会话的全部消息（时间升序）：依次读取各祖先分叉点之前的消息，最后是会话自身的消息
+     */
+    public List<ChatMessageEntity> findAll(ConversationLineage lineage) {
+        if (!lineage.isForked()) {
+            return findAll(lineage.conversationId());
+        }
+        List<ChatMessageEntity> all = new ArrayList<>();
+        for (ConversationLineage.Segment segment : lineage.segments()) {
+            all.addAll(findAll(segment.key(), segment.until()));
+        }
+        return all;
+    }
+
+    private List<ChatMessageEntity> findAll(String key, long until) {
+        if (!readsBucketed()) {
+            List<ChatMessageEntity> rows = until == ConversationLineage.UNBOUNDED
+                    ? chatMessageRepository.findByKey(key)
+                    : chatMessageRepository.findByKeyAndTimestampLessThanEqual(key, until);
+            return rows.stream().map(this::resolvePayload).toList();
+        }
+        List<ChatMessageEntity> all = new ArrayList<>();
+        for (Long bucket : bucketsOldestFirst(key, until)) {
+            List<ChatMessageBucketEntity> rows = until == ConversationLineage.UNBOUNDED
+                    ? bucketRepository.findByKeyAndBucket(key, bucket)
+                    : bucketRepository.findByKeyAndBucketAndTimestampLessThanEqual(key, bucket, until);
+            for (ChatMessageBucketEntity row : rows) {
+                all.add(fromBucketRow(row));
+            }
+        }
+        return all;
+    }
+
+    /**
+     * 读取最新的 N 条消息（时间降序，最新的在前）
+     */
+    public List<ChatMessageEntity> findLatest(String key, int limit) {
+        return findLatest(key, ConversationLineage.UNBOUNDED, limit);
+    }
+
+    /**
+     * 从最后一段往前依次读取谱系中的各段，直到凑满 N 条（时间降序，最新的在前）
+     * 用于分叉会话自身的消息不足一个窗口时，从祖先的分叉点往前补齐
+     *
+     * @param segments 从旧到新排列的谱系段
+     */
+    public List<ChatMessageEntity> findLatest(List<ConversationLineage.Segment> segments, int limit) {
+        List<ChatMessageEntity> latest = new ArrayList<>(limit);
+        for (int i = segments.size() - 1; i >= 0 && latest.size() < limit; i--) {
+            ConversationLineage.Segment segment = segments.get(i);
+            latest.addAll(findLatest(segment.key(), segment.until(), limit - latest.size()));
+        }
+        return latest;
+    }
+
+    private List<ChatMessageEntity> findLatest(String key, long until, int limit) {
+        if (!readsBucketed()) {
+            List<ChatMessageEntity> rows = until == ConversationLineage.UNBOUNDED
+                    ? chatMessageRepository.findLatestByKey(key, limit)
+                    : chatMessageRepository.findLatestByKeyUntil(key, until, limit);
+            return rows.stream().map(this::resolvePayload).toList();
+        }
+        List<ChatMessageEntity> latest = new ArrayList<>(limit);
+        Iterator<ChatMessageEntity> iterator = newestFirst(key, until, limit);
+        while (latest.size() < limit && iterator.hasNext()) {
+            latest.add(iterator.next());
+        }
+        return latest;
+    }
+
+    /**
+     * 异步读取最新的 N 条消息（时间降序，最新的在前），大对象引用在返回前还原
+     * 分桶布局下从新到旧逐桶读取，前一个桶不够 N 条时才读取下一个桶
+     */
+    public CompletableFuture<List<ChatMessageEntity>> findLatestAsync(String key, int limit) {
+        return findLatestAsync(key, ConversationLineage.UNBOUNDED, limit);
+    }
+
+    /**
+     * {@link #findLatest(List, int)} 的异步版本：前一段读完仍不够 N 条时才读取更早的一段
+     */
+    public CompletableFuture<List<ChatMessageEntity>> findLatestAsync(List<ConversationLineage.Segment> segments,
+                                                                      int limit) {
+        return collectSegments(segments, segments.size() - 1, limit, new ArrayList<>(limit));
+    }
+
+    private CompletableFuture<List<ChatMessageEntity>> collectSegments(List<ConversationLineage.Segment> segments,
+                                                                       int index, int limit,
+                                                                       List<ChatMessageEntity> collected) {
+        if (index < 0 || collected.size() >= limit) {
+            return CompletableFuture.completedFuture(collected);
+        }
+        ConversationLineage.Segment segment = segments.get(index);
+        return findLatestAsync(segment.key(), segment.until(), limit - collected.size())
+                .thenCompose(rows -> {
+                    collected.addAll(rows);
+                    return collectSegments(segments, index - 1, limit, collected);
+                });
+    }
+
+    private CompletableFuture<List<ChatMessageEntity>> findLatestAsync(String key, long until, int limit) {
+        CompletableFuture<List<ChatMessageEntity>> rows;
+        if (!readsBucketed()) {
+            rows = asyncReader.findLatestAsync(key, until, limit);
+        } else {
+            rows = asyncReader.findBucketsAsync(key)
+                    .thenCompose(buckets -> collectBuckets(key, visibleBuckets(buckets, until), 0, until, limit,
+                            new ArrayList<>(limit)));
+        }
+        return rows.thenCompose(this::resolvePayloadsAsync);
+    }
+
+    private CompletableFuture<List<ChatMessageEntity>> collectBuckets(String key, List<Long> bucketsNewestFirst,
+                                                                      int index, long until, int limit,
+                                                                      List<ChatMessageEntity> collected) {
+        if (index >= bucketsNewestFirst.size() || collected.size() >= limit) {
+            return CompletableFuture.completedFuture(collected);
+        }
+        long bucket = bucketsNewestFirst.get(index);
+        return asyncReader.findLatestInBucketAsync(key, bucket, until, limit - collected.size())
+                .thenCompose(rows -> {
+                    collected.addAll(rows);
+                    return collectBuckets(key, bucketsNewestFirst, index + 1, until, limit, collected);
+                });
+    }
+
+    /**
+     * 从最新消息开始倒序惰性遍历，每次按 pageSize 条分页查询，消费到哪里才查询到哪里
+     */
+    public Iterator<ChatMessageEntity> newestFirst(String key, int pageSize) {
+        return newestFirst(key, ConversationLineage.UNBOUNDED, pageSize);
+    }
+
+    /**
+     * 按谱系倒序惰性遍历：先遍历会话自身，再依次遍历各祖先分叉点之前的消息
+     */
+    public Iterator<ChatMessageEntity> newestFirst(ConversationLineage lineage, int pageSize) {
+        if (!lineage.isForked()) {
+            return newestFirst(lineage.conversationId(), pageSize);
+        }
+        List<ConversationLineage.Segment> segments = new ArrayList<>(lineage.segments());
+        Collections.reverse(segments);
+        return new ChainedIterator<>(segments.iterator(),
+                segment -> newestFirst(segment.key(), segment.until(), pageSize));
+    }
+
+    private Iterator<ChatMessageEntity> newestFirst(String key, long until, int pageSize) {
+        boolean bounded = until != ConversationLineage.UNBOUNDED;
+        if (!readsBucketed()) {
+            return new SliceIterator<>(
+                    pageable -> bounded
+                            ? chatMessageRepository.findByKeyAndTimestampLessThanEqualOrderByTimestampDesc(
+                                    key, until, pageable)
+                            : chatMessageRepository.findByKeyOrderByTimestampDesc(key, pageable),
+                    pageSize, this::resolvePayload);
+        }
+        Iterator<Long> buckets = visibleBuckets(bucketsNewestFirst(key), until).iterator();
+        return new ChainedIterator<>(buckets, bucket -> new SliceIterator<>(
+                pageable -> bounded
+                        ? bucketRepository.findByKeyAndBucketAndTimestampLessThanEqualOrderByTimestampDesc(
+                                key, bucket, until, pageable)
+                        : bucketRepository.findByKeyAndBucketOrderByTimestampDesc(key, bucket, pageable),
+                pageSize, this::fromBucketRow));
+    }
+
+    /**
+     * 正序分页读取，token 为上一页返回的 nextToken，首页传 null
+     * 分桶布局下 token 同时记录当前桶和桶内 paging state，跨桶时页可能不满
+     */
+    public Page readPage(String key, int pageSize, String token) {
+        return readPage(key, ConversationLineage.UNBOUNDED, pageSize, token);
+    }
+
+    /**
+     * 按谱系正序分页读取：先读完各祖先分叉点之前的消息，再读会话自身
+     * 分叉会话的 token 以「段序号~段内 token」记录当前段，跨段时页可能不满
+     */
+    public Page readPage(ConversationLineage lineage, int pageSize, String token) {
+        if (!lineage.isForked()) {
+            return readPage(lineage.conversationId(), pageSize, token);
+        }
+        List<ConversationLineage.Segment> segments = lineage.segments();
+        SegmentToken position = token != null && !token.isBlank()
+                ? SegmentToken.parse(token, segments.size())
+                : new SegmentToken(0, null);
+        int index = position.index();
+        String segmentToken = position.token();
+        ConversationLineage.Segment segment = segments.get(index);
+        Page page = readPage(segment.key(), segment.until(), pageSize, segmentToken);
+        String next = null;
+        if (page.nextToken() != null) {
+            next = index + SEGMENT_TOKEN_SEPARATOR + page.nextToken();
+        } else if (index + 1 < segments.size()) {
+            next = (index + 1) + SEGMENT_TOKEN_SEPARATOR;
+        }
+        return new Page(page.entities(), next);
+    }
+
+    private Page readPage(String key, long until, int pageSize, String token) {
+        boolean bounded = until != ConversationLineage.UNBOUNDED;
+        if (!readsBucketed()) {
+            Pageable pageable = pageable(pageSize, token);
+            Slice<ChatMessageEntity> slice = withPagingState(token, () -> bounded
+                    ? chatMessageRepository.findByKeyAndTimestampLessThanEqual(key, until, pageable)
+                    : chatMessageRepository.findByKey(key, pageable));
+            String next = slice.hasNext() ? encodePagingState(slice.nextPageable()) : null;
+            return new Page(slice.getContent().stream().map(this::resolvePayload).toList(), next);
+        }
+
+        List<Long> buckets = bucketsOldestFirst(key, until);
+        if (buckets.isEmpty()) {
+            return new Page(List.of(), null);
+        }
+        BucketToken position = token != null && !token.isBlank()
+                ? BucketToken.parse(token)
+                : new BucketToken(buckets.get(0), null);
+        long bucket = position.bucket();
+        String state = position.state();
+
+        Pageable pageable = pageable(pageSize, state);
+        Slice<ChatMessageBucketEntity> slice = withPagingState(state, () -> bounded
+                ? bucketRepository.findByKeyAndBucketAndTimestampLessThanEqual(key, bucket, until, pageable)
+                : bucketRepository.findByKeyAndBucket(key, bucket, pageable));
+        List<ChatMessageEntity> entities = slice.getContent().stream().map(this::fromBucketRow).toList();
+
+        String next = null;
+        if (slice.hasNext()) {
+            next = bucket + "." + encodePagingState(slice.nextPageable());
+        } else {
+            int index = buckets.indexOf(bucket);
+            if (index >= 0 && index + 1 < buckets.size()) {
+                next = buckets.get(index + 1) + ".";
+            }
+        }
+        return new Page(entities, next);
+    }
+
+    // ==================== 删除 ====================
+
+    /**
+     * 删除会话的全部消息（分区删除）
+     */
+    public void deleteConversation(String key) {
+        if (layout != Layout.BUCKETED) {
+            chatMessageRepository.deleteByKey(key);
+        }
+        if (layout != Layout.LEGACY) {
+            for (Long bucket : bucketsNewestFirst(key)) {
+                bucketRepository.deleteByKeyAndBucket(key, bucket);
+            }
+            bucketIndexRepository.deleteByKey(key);
+            synchronized (knownBuckets) {
+                knownBuckets.removeIf(known -> known.startsWith(key + "|"));
+            }
+        }
+        blobRepository.deleteByKey(key);
+    }
+
+    // ==================== 内部方法 ====================
+
+    private boolean readsBucketed() {
+        return layout == Layout.BUCKETED;
+    }
+
+    /**
+     * 计算消息所属时间桶的起始时间（毫秒）
+     *
+     * @param timestamp 消息的聚类键（消息ID或旧格式的毫秒时间戳）
+     */
+    long bucketOf(long timestamp) {
+        long millis = ChatMessageIdGenerator.millisOf(timestamp);
+        long bucketMillis = Math.max(1, bucketSizeDays) * DAY_MILLIS;
+        return millis - Math.floorMod(millis, bucketMillis);
+    }
+
+    /**
+     * 消息的剩余 TTL（秒）：按消息时间而不是写入时间计算，迁移复制的旧消息不会因此延长保留期
+     */
+    private int ttlOf(ChatMessageEntity entity) {
+        int ttl = retentionPolicy.ttlSeconds(entity.getKey(), entity.getType());
+        if (ttl <= 0) {
+            return 0;
+        }
+        long messageMillis = ChatMessageIdGenerator.millisOf(entity.getTimestamp());
+        long elapsedSeconds = Math.max(0, (System.currentTimeMillis() - messageMillis) / 1000);
+        return (int) Math.max(1, ttl - elapsedSeconds);
+    }
+
+    /**
+     * 时间桶索引的 TTL：桶内最后一条可能的消息过期之后才过期
+     * 索引只在本节点首次写入该桶时登记一次，因此按桶结束时间计算
+     */
+    private int bucketIndexTtl(String key, long bucket) {
+        int maxTtl = retentionPolicy.maxTtlSeconds(key);
+        if (maxTtl <= 0) {
+            return 0;
+        }
+        long bucketEnd = bucket + Math.max(1, bucketSizeDays) * DAY_MILLIS;
+        long untilBucketEnd = Math.max(0, (bucketEnd - System.currentTimeMillis()) / 1000);
+        return (int) Math.min(ChatMemoryRetentionPolicy.MAX_TTL_SECONDS, untilBucketEnd + maxTtl);
+    }
+
+    private boolean markBucketKnown(String key, long bucket) {
+        synchronized (knownBuckets) {
+            return knownBuckets.add(key + "|" + bucket);
+        }
+    }
+
+    private void forgetBucket(String key, long bucket) {
+        synchronized (knownBuckets) {
+            knownBuckets.remove(key + "|" + bucket);
+        }
+    }
+
+    private List<Long> bucketsNewestFirst(String key) {
+        return bucketIndexRepository.findByKey(key).stream()
+                .map(ChatMessageBucketIndexEntity::getBucket)
+                .toList();
+    }
+
+    private List<Long> bucketsOldestFirst(String key, long until) {
+        List<Long> buckets = new ArrayList<>(visibleBuckets(bucketsNewestFirst(key), until));
+        Collections.reverse(buckets);
+        return buckets;
+    }
+
+    /**
+     * 去掉起始时间晚于上界所在桶的时间桶，这些桶中不会有上界之前的消息
+     */
+    private List<Long> visibleBuckets(List<Long> buckets, long until) {
+        if (until == ConversationLineage.UNBOUNDED) {
+            return buckets;
+        }
+        long lastBucket = bucketOf(until);
+        return buckets.stream().filter(bucket -> bucket <= lastBucket).toList();
+    }
+
+    private ChatMessageEntity fromBucketRow(ChatMessageBucketEntity row) {
+        return resolvePayload(new ChatMessageEntity(row.getKey(), row.getTimestamp(), row.getType(),
+                row.getContext(), row.getTokenCount(), row.getPayload()));
+    }
+
+    /**
+     * payload 为大对象引用时读取并拼接全部分块
+     */
+    private ChatMessageEntity resolvePayload(ChatMessageEntity entity) {
+        ByteBuffer payload = entity.getPayload();
+        if (!codec.isBlobReference(payload)) {
+            return entity;
+        }
+        List<ByteBuffer> chunks = blobRepository.findByKeyAndMessageTimestamp(entity.getKey(), entity.getTimestamp())
+                .stream()
+                .map(ChatMessageBlobEntity::getData)
+                .toList();
+        entity.setPayload(assemble(entity, chunks, codec.blobChunkCount(payload)));
+        return entity;
+    }
+
+    /**
+     * {@link #resolvePayload} 的异步版本：并发读取所有大对象的分块，没有大对象时直接返回
+     */
+    private CompletableFuture<List<ChatMessageEntity>> resolvePayloadsAsync(List<ChatMessageEntity> entities) {
+        List<CompletableFuture<Void>> reads = new ArrayList<>();
+        for (ChatMessageEntity entity : entities) {
+            ByteBuffer payload = entity.getPayload();
+            if (!codec.isBlobReference(payload)) {
+                continue;
+            }
+            int expected = codec.blobChunkCount(payload);
+            reads.add(asyncReader.findBlobChunksAsync(entity.getKey(), entity.getTimestamp())
+                    .thenAccept(chunks -> entity.setPayload(assemble(entity, chunks, expected))));
+        }
+        if (reads.isEmpty()) {
+            return CompletableFuture.completedFuture(entities);
+        }
+        return CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).thenApply(ignored -> entities);
+    }
+
+    /**
+     * 把 payload 切分为不超过 chunkSize 字节的分块（共享底层数据，不复制）
+     */
+    static List<ByteBuffer> split(ByteBuffer payload, int chunkSize) {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        ByteBuffer remaining = payload.duplicate();
+        while (remaining.hasRemaining()) {
+            ByteBuffer chunk = remaining.slice();
+            chunk.limit(Math.min(chunkSize, remaining.remaining()));
+            chunks.add(chunk);
+            remaining.position(remaining.position() + chunk.remaining());
+        }
+        return chunks;
+    }
+
+    /**
+     * 按顺序拼接分块，还原完整的 payload
+     *
+     * @throws IllegalStateException 分块数与引用中记录的不一致
+     */
+    static ByteBuffer assemble(ChatMessageEntity entity, List<ByteBuffer> chunks, int expected) {
+        if (chunks.size() != expected) {
+            throw new IllegalStateException("Chat message blob is incomplete: key=" + entity.getKey()
+                    + ", timestamp=" + entity.getTimestamp() + ", chunks=" + chunks.size() + "/" + expected);
+        }
+        int length = chunks.stream().mapToInt(ByteBuffer::remaining).sum();
+        ByteBuffer assembled = ByteBuffer.allocate(length);
+        for (ByteBuffer chunk : chunks) {
+            assembled.put(chunk.duplicate());
+        }
+        assembled.flip();
+        return assembled;
+    }
+
+    /**
+     * 分叉会话的分页令牌「段序号~段内令牌」
+     */
+    record SegmentToken(int index, String token) {
+
+        /**
+         * @param segmentCount 会话谱系的段数
+         * @throws InvalidPagingStateException 缺少分隔符、段序号不是数字或超出谱系的段数
+         */
+        static SegmentToken parse(String token, int segmentCount) {
+            int separator = token.indexOf(SEGMENT_TOKEN_SEPARATOR);
+            if (separator <= 0) {
+                throw new InvalidPagingStateException("missing segment");
+            }
+            int index;
+            try {
+                index = Integer.parseInt(token.substring(0, separator));
+            } catch (NumberFormatException e) {
+                throw new InvalidPagingStateException("malformed segment", e);
+            }
+            if (index < 0 || index >= segmentCount) {
+                throw new InvalidPagingStateException("segment out of range");
+            }
+            return new SegmentToken(index, token.substring(separator + SEGMENT_TOKEN_SEPARATOR.length()));
+        }
+    }
+
+    /**
+     * 分桶布局的分页令牌「时间桶.桶内 paging state」，桶内 paging state 为空表示从该桶开头读取
+     */
+    record BucketToken(long bucket, String state) {
+
+        /**
+         * @throws InvalidPagingStateException 缺少分隔符或时间桶不是数字
+         */
+        static BucketToken parse(String token) {
+            int separator = token.indexOf('.');
+            if (separator <= 0) {
+                throw new InvalidPagingStateException("missing bucket");
+            }
+            try {
+                return new BucketToken(Long.parseLong(token.substring(0, separator)), token.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new InvalidPagingStateException("malformed bucket", e);
+            }
+        }
+    }
+
+    /**
+     * 把客户端传回的 paging state 还原为分页请求
+     *
+     * @throws InvalidPagingStateException 不是合法的 URL 安全 Base64 或内容为空
+     */
+    static Pageable pageable(int pageSize, String pagingState) {
+        if (pagingState == null || pagingState.isBlank()) {
+            return CassandraPageRequest.first(pageSize);
+        }
+        byte[] state;
+        try {
+            state = Base64.getUrlDecoder().decode(pagingState);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPagingStateException("malformed encoding", e);
+        }
+        if (state.length == 0) {
+            throw new InvalidPagingStateException("empty state");
+        }
+        return CassandraPageRequest.of(PageRequest.of(0, pageSize), ByteBuffer.wrap(state));
+    }
+
+    /**
+     * 执行带客户端 paging state 的分页查询
+     * paging state 的内容只有驱动和 Cassandra 能解析：编码合法但内容被篡改或截断时由驱动或服务端拒绝，
+     * 这类拒绝转换为 {@link InvalidPagingStateException}，不当作服务端错误
+     */
+    static <T> T withPagingState(String pagingState, Supplier<T> query) {
+        try {
+            return query.get();
+        } catch (RuntimeException e) {
+            if (pagingState != null && !pagingState.isBlank() && isPagingStateRejection(e)) {
+                throw new InvalidPagingStateException("rejected by the driver", e);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isPagingStateRejection(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IllegalArgumentException
+                    || cause instanceof InvalidDataAccessApiUsageException
+                    || cause instanceof ProtocolError) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String encodePagingState(Pageable pageable) {
+        if (pageable instanceof CassandraPageRequest cassandraPageRequest
+                && cassandraPageRequest.getPagingState() != null) {
+            ByteBuffer state = cassandraPageRequest.getPagingState().duplicate();
+            byte[] bytes = new byte[state.remaining()];
+            state.get(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        }
+        return "";
+    }
+
+    /**
+     * 基于 Slice 的惰性迭代器：当前页消费完后才查询下一页
+     */
+    private static final class SliceIterator<T> implements Iterator<ChatMessageEntity> {
+
+        private final Function<Pageable, Slice<T>> query;
+        private final Function<T, ChatMessageEntity> mapper;
+        private Pageable nextPageable;
+        private Iterator<T> current = Collections.emptyIterator();
+
+        private SliceIterator(Function<Pageable, Slice<T>> query, int pageSize,
+                              Function<T, ChatMessageEntity> mapper) {
+            this.query = query;
+            this.mapper = mapper;
+            this.nextPageable = CassandraPageRequest.first(pageSize);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && nextPageable != null) {
+                Slice<T> slice = query.apply(nextPageable);
+                current = slice.getContent().iterator();
+                nextPageable = slice.hasNext() ? slice.nextPageable() : null;
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public ChatMessageEntity next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return mapper.apply(current.next());
+        }
+    }
+
+    /**
+     * 依次遍历多个来源（时间桶、谱系中的会话）的迭代器，当前来源读完后才打开下一个
+     */
+    private static final class ChainedIterator<S> implements Iterator<ChatMessageEntity> {
+
+        private final Iterator<S> sources;
+        private final Function<S, Iterator<ChatMessageEntity>> opener;
+        private Iterator<ChatMessageEntity> current = Collections.emptyIterator();
+
+        private ChainedIterator(Iterator<S> sources,
+                                Function<S, Iterator<ChatMessageEntity>> opener) {
+            this.sources = sources;
+            this.opener = opener;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && sources.hasNext()) {
+                current = opener.apply(sources.next());
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public ChatMessageEntity next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 只在聊天记忆后端为 Cassandra（默认）时注册的组件
+ * 选择其他后端时这些组件都不会创建，应用可以在没有 Cassandra 集群的环境中启动
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@ConditionalOnProperty(name = "relamind.chat.memory.backend", havingValue = "cassandra", matchIfMissing = true)
+public @interface ConditionalOnCassandraChatMemory {
+}
@@ -0,0 +1,15 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 同一会话已有请求在处理（REJECT 模式）或排队已满时抛出
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class ConversationBusyException extends RuntimeException {
+
+    public ConversationBusyException(String conversationId) {
+        super("Conversation is busy: " + conversationId);
+    }
+}
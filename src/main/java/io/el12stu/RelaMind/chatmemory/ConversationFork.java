@@ -0,0 +1,11 @@
+package io.el12stu.RelaMind.chatmemory;
+
+/**
+ * 分叉结果
+ *
+ * @param conversationId       新会话ID
+ * @param parentConversationId 父会话ID
+ * @param forkPoint            分叉点：父会话中消息ID不大于它的消息属于新会话的历史
+ */
+public record ConversationFork(String conversationId, String parentConversationId, long forkPoint) {
+}
@@ -0,0 +1,324 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 活跃会话的进程内热窗口缓存（L1）
+ * <p>
+ * 每个会话只缓存最近 N 条消息（N 即读取窗口大小），由 add 写穿更新、clear 失效，
+ * 按访问时间淘汰空闲会话，并按消息体积（字符数估算的堆占用）限制总大小。
+ * <p>
+ * 注意：缓存只反映本节点的写入。多节点部署时应使用会话粘滞（同一 chatId 落到同一节点），
+ * 或调小 expire-after-access，使其他节点的写入能在空闲过期后重新从 Cassandra 加载。
+ */
+@Component
+@Slf4j
+public class ConversationHotCache {
+
+    /**
+     * 单条消息的固定开销估算（对象头、引用、元数据 Map 等），单位：字节
+     */
+    private static final int MESSAGE_OVERHEAD_BYTES = 64;
+
+    /**
+     * 版本条带数量：add/clear 会递增会话所在条带的版本号，
+     * 回源加载前后版本不一致时放弃回填，避免把旧数据写回缓存
+     */
+    private static final int VERSION_STRIPES = 1024;
+
+    /**
+     * 缓存的消息及其写入时计算好的 token 数
+     */
+    private record CachedMessage(Message message, int tokenCount) {
+    }
+
+    private static final class Entry {
+        /**
+         * 滚动摘要（开启压缩且已生成摘要时存在），总是放在窗口最前面返回
+         */
+        private final CachedMessage summary;
+        private final ArrayDeque<CachedMessage> messages;
+        private long weight;
+        private long lastAccessNanos;
+
+        private Entry(CachedMessage summary, ArrayDeque<CachedMessage> messages, long weight) {
+            this.summary = summary;
+            this.messages = messages;
+            this.weight = weight;
+        }
+    }
+
+    @Value("${relamind.chat.memory.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${relamind.chat.memory.cache.max-conversations:10000}")
+    private int maxConversations;
+
+    /**
+     * 缓存总体积上限（字节，按字符数 * 2 + 固定开销估算）
+     */
+    @Value("${relamind.chat.memory.cache.max-weight-bytes:67108864}")
+    private long maxWeightBytes;
+
+    @Value("${relamind.chat.memory.cache.expire-after-access-seconds:1800}")
+    private long expireAfterAccessSeconds;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 按访问顺序排列的 LinkedHashMap：头部为最久未访问的会话
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private long totalWeight;
+
+    public ConversationHotCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        FunctionCounter.builder("relamind.chat.memory.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("relamind.chat.memory.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("relamind.chat.memory.cache.evictions", evictions, LongAdder::sum)
+                .register(meterRegistry);
+        Gauge.builder("relamind.chat.memory.cache.conversations", this, ConversationHotCache::size)
+                .register(meterRegistry);
+        Gauge.builder("relamind.chat.memory.cache.weight.bytes", this, ConversationHotCache::weight)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查询缓存中的最近消息窗口
+     *
+     * @return 命中时返回消息副本（时间正序），未命中返回 null
+     */
+    public List<Message> get(String conversationId) {
+        return get(conversationId, 0);
+    }
+
+    /**
+     * 查询缓存中的最近消息窗口，并按 token 预算从最新消息往前截取。
+     * 有摘要时摘要总是返回，其 token 数先从预算中扣除。
+     *
+     * @param tokenBudget token 预算，小于等于 0 表示不按 token 截取
+     * @return 命中时返回消息副本（时间正序），未命中返回 null
+     */
+    public List<Message> get(String conversationId, int tokenBudget) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            Entry entry = entries.get(conversationId);
+            if (entry != null && !isExpired(entry, now)) {
+                entry.lastAccessNanos = now;
+                hits.increment();
+                return copyWithinBudget(entry, tokenBudget);
+            }
+            if (entry != null) {
+                remove(conversationId);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 获取会话当前的版本号，回源加载前调用，配合 {@link #putIfUnchanged} 使用
+     */
+    public long version(String conversationId) {
+        return versions.get(stripe(conversationId));
+    }
+
+    /**
+     * 回填从 Cassandra 加载的窗口；如果加载期间会话被写入或清空，则放弃回填
+     *
+     * @param tokenCounts 与 window 一一对应的 token 数
+     */
+    public void putIfUnchanged(String conversationId, List<Message> window, int[] tokenCounts, long version) {
+        putIfUnchanged(conversationId, null, 0, window, tokenCounts, version);
+    }
+
+    /**
+     * 回填「摘要 + 尾部窗口」
+     *
+     * @param summary            滚动摘要消息，没有摘要时传 null
+     * @param summaryTokenCount  摘要的 token 数
+     */
+    public void putIfUnchanged(String conversationId, Message summary, int summaryTokenCount,
+                               List<Message> window, int[] tokenCounts, long version) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (versions.get(stripe(conversationId)) != version) {
+                return;
+            }
+            remove(conversationId);
+            ArrayDeque<CachedMessage> messages = new ArrayDeque<>(window.size());
+            for (int i = 0; i < window.size(); i++) {
+                messages.addLast(new CachedMessage(window.get(i), tokenCounts[i]));
+            }
+            CachedMessage cachedSummary = summary != null ? new CachedMessage(summary, summaryTokenCount) : null;
+            long weight = weigh(messages) + (cachedSummary != null ? weigh(cachedSummary) : 0L);
+            Entry entry = new Entry(cachedSummary, messages, weight);
+            entry.lastAccessNanos = now;
+            entries.put(conversationId, entry);
+            totalWeight += entry.weight;
+            evictIfNecessary(now);
+        }
+    }
+
+    /**
+     * 写穿：把新消息追加到已缓存的窗口尾部，并保持窗口大小不超过 windowSize。
+     * 未缓存的会话不创建条目（不知道其历史），只递增版本号使进行中的回源失效。
+     */
+    public void append(String conversationId, List<Message> newMessages, int[] tokenCounts, int windowSize) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            versions.incrementAndGet(stripe(conversationId));
+            Entry entry = entries.get(conversationId);
+            if (entry == null) {
+                return;
+            }
+            for (int i = 0; i < newMessages.size(); i++) {
+                CachedMessage cached = new CachedMessage(newMessages.get(i), tokenCounts[i]);
+                entry.messages.addLast(cached);
+                long w = weigh(cached);
+                entry.weight += w;
+                totalWeight += w;
+            }
+            while (entry.messages.size() > windowSize) {
+                long w = weigh(entry.messages.removeFirst());
+                entry.weight -= w;
+                totalWeight -= w;
+            }
+            entry.lastAccessNanos = now;
+            evictIfNecessary(now);
+        }
+    }
+
+    /**
+     * 使会话缓存失效（clear 时调用）
+     */
+    public void invalidate(String conversationId) {
+        synchronized (this) {
+            versions.incrementAndGet(stripe(conversationId));
+            remove(conversationId);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
+    /**
+     * 淘汰：先移除过期条目，再按访问时间从旧到新淘汰，直到数量和体积都满足上限
+     */
+    private void evictIfNecessary(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            boolean overCapacity = entries.size() > maxConversations || totalWeight > maxWeightBytes;
+            if (!overCapacity && !isExpired(eldest, now)) {
+                break;
+            }
+            iterator.remove();
+            totalWeight -= eldest.weight;
+            evictions.increment();
+        }
+    }
+
+    private void remove(String conversationId) {
+        Entry removed = entries.remove(conversationId);
+        if (removed != null) {
+            totalWeight -= removed.weight;
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.lastAccessNanos > expireAfterAccessSeconds * 1_000_000_000L;
+    }
+
+    /**
+     * 从最新消息往前累加 token，直到再加一条就会超出预算；摘要（如有）放在最前面
+     */
+    private static List<Message> copyWithinBudget(Entry entry, int tokenBudget) {
+        ArrayDeque<CachedMessage> messages = entry.messages;
+        if (tokenBudget <= 0) {
+            List<Message> copy = new ArrayList<>(messages.size() + 1);
+            if (entry.summary != null) {
+                copy.add(entry.summary.message());
+            }
+            for (CachedMessage cached : messages) {
+                copy.add(cached.message());
+            }
+            return copy;
+        }
+        ArrayDeque<Message> window = new ArrayDeque<>();
+        long used = entry.summary != null ? entry.summary.tokenCount() : 0;
+        Iterator<CachedMessage> newestFirst = messages.descendingIterator();
+        while (newestFirst.hasNext()) {
+            CachedMessage cached = newestFirst.next();
+            if (used + cached.tokenCount() > tokenBudget) {
+                break;
+            }
+            used += cached.tokenCount();
+            window.addFirst(cached.message());
+        }
+        if (entry.summary != null) {
+            window.addFirst(entry.summary.message());
+        }
+        return new ArrayList<>(window);
+    }
+
+    private static long weigh(Iterable<CachedMessage> messages) {
+        long weight = 0;
+        for (CachedMessage cached : messages) {
+            weight += weigh(cached);
+        }
+        return weight;
+    }
+
+    private static long weigh(CachedMessage cached) {
+        String text = cached.message().getText();
+        return MESSAGE_OVERHEAD_BYTES + (text != null ? 2L * text.length() : 0L);
+    }
+
+    private static int stripe(String conversationId) {
+        return (conversationId.hashCode() & 0x7fffffff) % VERSION_STRIPES;
+    }
+}
@@ -0,0 +1,232 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 会话执行通道
+ * <p>
+ * 每个会话一个轻量的信箱（mailbox）：同一会话的对话轮次按到达顺序逐个执行，
+ * 不同会话之间完全并行。用户重复发送或多个标签页使用同一 chatId 时，
+ * 读取记忆 → 调用模型 → 写入记忆 作为一个整体执行，历史不会交错。
+ * <p>
+ * 等待期间不占用线程：流式请求在轮到自己时才订阅上游，同步请求在调用线程上等待。
+ * 空闲会话的信箱随即移除，内存只与正在处理的会话数相关。
+ * <p>
+ * 模式由 relamind.chat.memory.lane.mode 决定：
+ * <ul>
+ *     <li>QUEUE：排队等待，单个会话最多排队 max-queued 个请求，超出时拒绝</li>
+ *     <li>REJECT：会话正忙时直接拒绝（{@link ConversationBusyException}）</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class ConversationLanes {
+
+    /**
+     * 会话正忙时的处理方式
+     */
+    public enum Mode {
+        QUEUE,
+        REJECT
+    }
+
+    /**
+     * 排队中的请求，轮到它时完成 granted
+     */
+    private record Waiter(CompletableFuture<Void> granted, long enqueuedAt) {
+    }
+
+    /**
+     * 一个会话的信箱：当前是否有请求在执行，以及排队中的请求
+     * 只在 ConcurrentHashMap.compute 中访问，由其保证原子性
+     */
+    private static final class Lane {
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    @Value("${relamind.chat.memory.lane.enabled:true}")
+    private boolean enabled;
+
+    @Value("${relamind.chat.memory.lane.mode:QUEUE}")
+    private Mode mode;
+
+    /**
+     * 单个会话最多排队的请求数（不含正在执行的请求）
+     */
+    @Value("${relamind.chat.memory.lane.max-queued:8}")
+    private int maxQueued;
+
+    /**
+     * 排队等待的最长时间，超时后放弃本次请求
+     */
+    @Value("${relamind.chat.memory.lane.acquire-timeout-ms:60000}")
+    private long acquireTimeoutMs;
+
+    private Timer waitTimer;
+
+    private Counter rejectedCounter;
+
+    public ConversationLanes(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        waitTimer = Timer.builder("relamind.chat.memory.lane.wait")
+                .description("Time a chat turn waited for earlier turns of the same conversation")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("relamind.chat.memory.lane.rejected")
+                .description("Chat turns rejected because the conversation was busy")
+                .register(meterRegistry);
+        Gauge.builder("relamind.chat.memory.lane.active", lanes, Map::size)
+                .description("Conversations with a chat turn in progress")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 在会话通道内执行同步调用，轮到本请求前阻塞调用线程
+     */
+    public <T> T call(String conversationId, Supplier<T> task) {
+        if (!enabled || conversationId == null) {
+            return task.get();
+        }
+        CompletableFuture<Void> granted = acquire(conversationId);
+        try {
+            granted.get(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (granted.cancel(false)) {
+                throw new ConversationBusyException(conversationId);
+            }
+            // 取消前已经轮到本请求，继续执行
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+        try {
+            return task.get();
+        } finally {
+            release(conversationId);
+        }
+    }
+
+    /**
+     * 在会话通道内执行流式调用：轮到本请求时才订阅上游，流结束、出错或被取消时让出通道
+     */
+    public <T> Flux<T> stream(String conversationId, Supplier<Flux<T>> task) {
+        if (!enabled || conversationId == null) {
+            return Flux.defer(task);
+        }
+        Mono<Boolean> permit = Mono.<Boolean>create(sink -> {
+            CompletableFuture<Void> granted = acquire(conversationId);
+            AtomicBoolean handedOver = new AtomicBoolean();
+            granted.whenComplete((ignored, error) -> {
+                if (error != null) {
+                    sink.error(error);
+                } else if (handedOver.compareAndSet(false, true)) {
+                    sink.success(Boolean.TRUE);
+                }
+            });
+            sink.onCancel(() -> {
+                // 尚未交给下游前被取消：还在排队则撤销，已经轮到则立即让出
+                if (handedOver.compareAndSet(false, true) && !granted.cancel(false)
+                        && !granted.isCompletedExceptionally()) {
+                    release(conversationId);
+                }
+            });
+        }).timeout(Duration.ofMillis(acquireTimeoutMs),
+                Mono.error(() -> new ConversationBusyException(conversationId)));
+
+        return Flux.usingWhen(permit,
+                ignored -> task.get(),
+                ignored -> Mono.fromRunnable(() -> release(conversationId)),
+                (ignored, error) -> Mono.fromRunnable(() -> release(conversationId)),
+                ignored -> Mono.fromRunnable(() -> release(conversationId)));
+    }
+
+    /**
+     * 申请会话通道：空闲时立即获得，否则排队
+     *
+     * @return 轮到本请求时完成的 Future；被拒绝时以 {@link ConversationBusyException} 异常完成
+     */
+    private CompletableFuture<Void> acquire(String conversationId) {
+        Waiter waiter = new Waiter(new CompletableFuture<>(), System.nanoTime());
+        boolean[] grantNow = new boolean[1];
+        boolean[] rejected = new boolean[1];
+        lanes.compute(conversationId, (key, lane) -> {
+            if (lane == null) {
+                grantNow[0] = true;
+                return new Lane();
+            }
+            if (mode == Mode.REJECT || lane.waiters.size() >= maxQueued) {
+                rejected[0] = true;
+                return lane;
+            }
+            lane.waiters.addLast(waiter);
+            return lane;
+        });
+        if (rejected[0]) {
+            rejectedCounter.increment();
+            log.debug("Conversation busy, rejecting chat turn: {}", conversationId);
+            waiter.granted().completeExceptionally(new ConversationBusyException(conversationId));
+        } else if (grantNow[0]) {
+            grant(waiter, conversationId);
+        }
+        return waiter.granted();
+    }
+
+    /**
+     * 让出会话通道，交给下一个仍在等待的请求；没有等待者时移除信箱
+     */
+    private void release(String conversationId) {
+        while (true) {
+            Waiter[] next = new Waiter[1];
+            lanes.computeIfPresent(conversationId, (key, lane) -> {
+                next[0] = lane.waiters.pollFirst();
+                return next[0] != null ? lane : null;
+            });
+            if (next[0] == null || grant(next[0], conversationId)) {
+                return;
+            }
+            // 等待者已取消（客户端断开或等待超时），继续交给下一个
+        }
+    }
+
+    private boolean grant(Waiter waiter, String conversationId) {
+        waitTimer.record(System.nanoTime() - waiter.enqueuedAt(), TimeUnit.NANOSECONDS);
+        boolean granted = waiter.granted().complete(null);
+        if (!granted) {
+            log.debug("Skipping cancelled chat turn for conversation: {}", conversationId);
+        }
+        return granted;
+    }
+}
@@ -0,0 +1,94 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.el12stu.RelaMind.chatmemory.entity.ConversationStateEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 会话的分叉谱系
+ * 分叉会话不复制父会话的消息，只在 conversation_state 中记录祖先会话及各自的分叉点；
+ * 读取时按谱系依次读取各段：祖先会话只取分叉点（含）之前的消息，最后一段是会话自身的全部消息。
+ *
+ * @param segments 从最早的祖先到会话自身依次排列，最后一段的上界为 {@link #UNBOUNDED}
+ */
+public record ConversationLineage(List<Segment> segments) {
+
+    /**
+     * 会话自身没有上界
+     */
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+
+    /**
+     * 谱系中的一段
+     *
+     * @param key   会话ID
+     * @param until 可见消息ID的上界（含）
+     */
+    public record Segment(String key, long until) {
+    }
+
+    /**
+     * 由会话状态还原谱系，未分叉的会话只有自身一段
+     */
+    public static ConversationLineage of(String conversationId, ConversationStateEntity state) {
+        List<Segment> segments = new ArrayList<>();
+        if (state != null && state.getForkParents() != null && state.getForkPoints() != null) {
+            List<String> parents = state.getForkParents();
+            List<Long> points = state.getForkPoints();
+            for (int i = 0; i < Math.min(parents.size(), points.size()); i++) {
+                segments.add(new Segment(parents.get(i), points.get(i)));
+            }
+        }
+        segments.add(new Segment(conversationId, UNBOUNDED));
+        return new ConversationLineage(List.copyOf(segments));
+    }
+
+    /**
+     * 在 forkPoint（含）处分叉出新会话的谱系：
+     * 每个祖先的上界收紧到不超过分叉点，当前会话成为新会话的直接父会话
+     */
+    public ConversationLineage fork(String conversationId, long forkPoint) {
+        List<Segment> forked = new ArrayList<>(segments.size() + 1);
+        for (Segment segment : segments) {
+            forked.add(new Segment(segment.key(), Math.min(segment.until(), forkPoint)));
+        }
+        forked.add(new Segment(conversationId, UNBOUNDED));
+        return new ConversationLineage(List.copyOf(forked));
+    }
+
+    /**
+     * 会话自身的ID
+     */
+    public String conversationId() {
+        return segments.get(segments.size() - 1).key();
+    }
+
+    public boolean isForked() {
+        return segments.size() > 1;
+    }
+
+    /**
+     * 祖先各段（从旧到新），只保留还有消息ID大于 hiddenUntil 的段：
+     * 会话被软清空或已折叠进摘要的部分覆盖了整个祖先时，不再读取该祖先
+     */
+    public List<Segment> ancestors(long hiddenUntil) {
+        return segments.subList(0, segments.size() - 1).stream()
+                .filter(segment -> segment.until() > hiddenUntil)
+                .toList();
+    }
+
+    /**
+     * 写回 conversation_state 的祖先会话ID列表
+     */
+    List<String> parentKeys() {
+        return segments.subList(0, segments.size() - 1).stream().map(Segment::key).toList();
+    }
+
+    /**
+     * 写回 conversation_state 的分叉点列表，与 {@link #parentKeys()} 一一对应
+     */
+    List<Long> forkPoints() {
+        return segments.subList(0, segments.size() - 1).stream().map(Segment::until).toList();
+    }
+}
@@ -0,0 +1,162 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内聊天记忆引擎
+ * 通过 relamind.chat.memory.backend=in-memory 启用（或激活 inmemory profile），用于本地开发、测试和单机部署，不依赖 Cassandra。
+ * <p>
+ * 每个会话一个定长环形缓冲区：消息和 token 数分别存放在数组中，按下标覆盖写入，追加时不产生额外对象；
+ * 缓冲区满后最旧的消息被覆盖。窗口语义与 {@link CassandraBasedChatMemory} 一致：
+ * 先取最新 max-messages 条，再从最新消息往前按 max-tokens 截取。
+ * 数据只保存在当前进程内，重启后丢失；不支持摘要压缩、保留策略、历史分页等 Cassandra 专属功能。
+ */
+@Component
+@ConditionalOnProperty(name = "relamind.chat.memory.backend", havingValue = "in-memory")
+public class InMemoryChatMemory implements ChatMemory {
+
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    private final int maxMessages;
+
+    private final int maxTokens;
+
+    /**
+     * 每个会话保留的消息条数，配置了 max-messages 时取两者较小值
+     */
+    private final int capacity;
+
+    /**
+     * 只在配置了 token 预算时计算 token 数
+     */
+    private final TokenCountEstimator tokenCountEstimator;
+
+    public InMemoryChatMemory(@Value("${relamind.chat.memory.max-messages:0}") int maxMessages,
+                              @Value("${relamind.chat.memory.max-tokens:0}") int maxTokens,
+                              @Value("${relamind.chat.memory.in-memory.capacity:1000}") int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("relamind.chat.memory.in-memory.capacity must be positive");
+        }
+        this.maxMessages = maxMessages;
+        this.maxTokens = maxTokens;
+        this.capacity = maxMessages > 0 ? Math.min(maxMessages, capacity) : capacity;
+        this.tokenCountEstimator = maxTokens > 0 ? new JTokkitTokenCountEstimator() : null;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        int[] tokenCounts = new int[messages.size()];
+        if (tokenCountEstimator != null) {
+            for (int i = 0; i < tokenCounts.length; i++) {
+                String text = messages.get(i).getText();
+                tokenCounts[i] = text != null ? tokenCountEstimator.estimate(text) : 0;
+            }
+        }
+        // 在 compute 内追加，与 clear 的移除互斥，不会写进已被清空的缓冲区
+        rings.compute(conversationId, (id, ring) -> {
+            Ring target = ring != null ? ring : new Ring(capacity);
+            target.append(messages, tokenCounts);
+            return target;
+        });
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        Ring ring = rings.get(conversationId);
+        if (ring == null) {
+            return new ArrayList<>();
+        }
+        return ring.window(maxMessages, maxTokens);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        rings.remove(conversationId);
+    }
+
+    /**
+     * 单个会话的环形缓冲区，所有访问都在自身锁内
+     */
+    private static final class Ring {
+
+        private final Message[] messages;
+
+        private final int[] tokenCounts;
+
+        /**
+         * 最旧一条消息的下标
+         */
+        private int head;
+
+        private int size;
+
+        Ring(int capacity) {
+            this.messages = new Message[capacity];
+            this.tokenCounts = new int[capacity];
+        }
+
+        synchronized void append(List<Message> newMessages, int[] newTokenCounts) {
+            int capacity = messages.length;
+            // 一次追加超过容量时只有最后 capacity 条会留下
+            int skip = Math.max(0, newMessages.size() - capacity);
+            for (int i = skip; i < newMessages.size(); i++) {
+                int slot;
+                if (size < capacity) {
+                    slot = (head + size) % capacity;
+                    size++;
+                } else {
+                    slot = head;
+                    head = (head + 1) % capacity;
+                }
+                messages[slot] = newMessages.get(i);
+                tokenCounts[slot] = newTokenCounts[i];
+            }
+        }
+
+        /**
+         * 从最新消息往前取窗口，返回按时间升序的副本
+         */
+        synchronized List<Message> window(int maxMessages, int maxTokens) {
+            int count = maxMessages > 0 ? Math.min(maxMessages, size) : size;
+            if (maxTokens > 0) {
+                long used = 0;
+                int fit = 0;
+                for (int i = 0; i < count; i++) {
+                    int slot = slotOf(size - 1 - i);
+                    if (used + tokenCounts[slot] > maxTokens) {
+                        break;
+                    }
+                    used += tokenCounts[slot];
+                    fit++;
+                }
+                count = fit;
+            }
+            List<Message> window = new ArrayList<>(count);
+            for (int i = size - count; i < size; i++) {
+                window.add(messages[slotOf(i)]);
+            }
+            return window;
+        }
+
+        /**
+         * 第 index 条（0 为最旧）消息所在的下标
+         */
+        private int slotOf(int index) {
+            return (head + index) % messages.length;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * {@link InMemoryChatMemory} 的响应式视图
+ * 所有操作只访问内存，直接在订阅线程完成，不需要切换调度器
+ */
+@Component
+@ConditionalOnProperty(name = "relamind.chat.memory.backend", havingValue = "in-memory")
+public class InMemoryReactiveChatMemory implements ReactiveChatMemory {
+
+    private final InMemoryChatMemory chatMemory;
+
+    public InMemoryReactiveChatMemory(InMemoryChatMemory chatMemory) {
+        this.chatMemory = chatMemory;
+    }
+
+    @Override
+    public Mono<Void> add(String conversationId, List<Message> messages) {
+        return Mono.fromRunnable(() -> chatMemory.add(conversationId, messages));
+    }
+
+    @Override
+    public Mono<List<Message>> get(String conversationId) {
+        return Mono.fromCallable(() -> chatMemory.get(conversationId));
+    }
+
+    @Override
+    public Mono<Void> clear(String conversationId) {
+        return Mono.fromRunnable(() -> chatMemory.clear(conversationId));
+    }
+}
@@ -0,0 +1,19 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 客户端传入的分页令牌（pagingState）格式错误、被截断或被篡改时抛出
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidPagingStateException extends IllegalArgumentException {
+
+    public InvalidPagingStateException(String reason) {
+        super("Invalid paging state: " + reason);
+    }
+
+    public InvalidPagingStateException(String reason, Throwable cause) {
+        super("Invalid paging state: " + reason, cause);
+    }
+}
@@ -0,0 +1,29 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import org.springframework.ai.chat.messages.Message;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * 响应式聊天记忆
+ * 语义与 {@link org.springframework.ai.chat.memory.ChatMemory} 相同，但所有操作返回 Mono，
+ * 订阅线程不会因为等待存储 I/O 而阻塞，供流式（SSE）对话链路使用。
+ */
+public interface ReactiveChatMemory {
+
+    /**
+     * 保存一批新消息
+     */
+    Mono<Void> add(String conversationId, List<Message> messages);
+
+    /**
+     * 读取会话记忆（时间正序）
+     */
+    Mono<List<Message>> get(String conversationId);
+
+    /**
+     * 清空会话
+     */
+    Mono<Void> clear(String conversationId);
+}
@@ -0,0 +1,65 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 并发加载合并（single-flight）
+ * 同一个 key 同时只有一次加载在进行，期间到达的调用共享这次加载的结果，不再重复查询；
+ * 加载完成后立即移除，之后的调用重新加载。
+ *
+ * @param <K> 加载的标识
+ * @param <V> 加载结果，会被多个调用方共享，调用方不应修改
+ */
+public final class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter coalescedCounter;
+
+    /**
+     * @param coalescedCounter 共享了他人加载结果的调用次数
+     */
+    public SingleFlight(Counter coalescedCounter) {
+        this.coalescedCounter = coalescedCounter;
+    }
+
+    /**
+     * 执行或加入一次加载
+     *
+     * @param loader 没有进行中的加载时调用，可以同步完成（返回已完成的 Future）也可以异步完成
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            coalescedCounter.increment();
+            return existing;
+        }
+        try {
+            loader.get().whenComplete((value, error) -> {
+                inFlight.remove(key, promise);
+                if (error != null) {
+                    promise.completeExceptionally(error);
+                } else {
+                    promise.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+        return promise;
+    }
+
+    /**
+     * 数据已变更：之后的调用不再加入进行中的加载（已加入的调用仍拿到原结果）
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+}
@@ -0,0 +1,212 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import cn.hutool.core.util.StrUtil;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import io.el12stu.RelaMind.chatmemory.entity.UserConversationSummary;
+import io.el12stu.RelaMind.chatmemory.repository.UserConversationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户会话索引（user_conversation_index）的增量维护
+ * <p>
+ * 会话ID约定为 {userId}{separator}{chatId}，add 写入消息的同时按分隔符前的用户ID upsert 一行会话摘要，
+ * 不能解析出用户ID的会话不建立索引。
+ * <p>
+ * 写入不做先读后写：USING TIMESTAMP 取本批最新消息的时间，重试写入相同的值和时间戳（幂等），
+ * 乱序到达的旧批次写入时间戳更小，不会覆盖新值。片段取本批最后一条消息。
+ * <p>
+ * 标题是会话的第一条用户消息，只写一次：以 {@code IF title = null} 条件写入（LWT），已有标题时不生效。
+ * 条件写入需要多轮协调，进程内记住已有标题的会话，之后的批次不再尝试；重启或记录清空后最多多一次不生效的条件写入。
+ * 标题单元格不随后续写入续期，会话持续超过保留期时，标题随第一条消息一起过期，之后由当时的用户消息重新设置。
+ */
+@Component
+@ConditionalOnCassandraChatMemory
+@Slf4j
+public class UserConversationIndex {
+
+    private static final String UPSERT_CQL =
+            "UPDATE user_conversation_index USING TIMESTAMP ? AND TTL ? "
+                    + "SET latest_timestamp = ?, latest_message_snippet = ? WHERE user_id = ? AND conversation_id = ?";
+
+    /**
+     * 条件写入不能指定 USING TIMESTAMP，只能指定 TTL
+     */
+    private static final String SET_TITLE_IF_ABSENT_CQL =
+            "UPDATE user_conversation_index USING TTL ? SET title = ? "
+                    + "WHERE user_id = ? AND conversation_id = ? IF title = null";
+
+    /**
+     * 进程内最多记住的已有标题会话数，超出后整体清空（只会多一次不生效的条件写入）
+     */
+    private static final int MAX_TITLED_CONVERSATIONS = 100_000;
+
+    private static final int TITLE_MAX_LENGTH = 30;
+
+    private static final int SNIPPET_MAX_LENGTH = 100;
+
+    private final CqlSession cqlSession;
+
+    private final UserConversationRepository userConversationRepository;
+
+    private final ChatMemoryRetentionPolicy retentionPolicy;
+
+    /**
+     * 延迟预编译，原因同 {@link ChatMessageBatchWriter}，同样缓存 prepareAsync 的 Future，不阻塞写入线程
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<PreparedStatement>> preparedStatements =
+            new ConcurrentHashMap<>();
+
+    /**
+     * 已确认有标题的会话
+     */
+    private final Set<String> titledConversations = ConcurrentHashMap.newKeySet();
+
+    @Value("${relamind.chat.memory.user-index.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 会话ID中用户ID与会话编号之间的分隔符
+     */
+    @Value("${relamind.chat.memory.user-index.separator::}")
+    private String separator;
+
+    public UserConversationIndex(CqlSession cqlSession,
+                                 UserConversationRepository userConversationRepository,
+                                 ChatMemoryRetentionPolicy retentionPolicy) {
+        this.cqlSession = cqlSession;
+        this.userConversationRepository = userConversationRepository;
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    /**
+     * 从会话ID中解析用户ID
+     *
+     * @return 无法解析时返回 null
+     */
+    public String userIdOf(String conversationId) {
+        if (conversationId == null || StrUtil.isEmpty(separator)) {
+            return null;
+        }
+        int index = conversationId.indexOf(separator);
+        return index > 0 ? conversationId.substring(0, index) : null;
+    }
+
+    /**
+     * 按约定拼接用户的会话ID
+     */
+    public String conversationIdOf(String userId, String chatId) {
+        return userId + separator + chatId;
+    }
+
+    /**
+     * 用一批新消息更新会话摘要（异步，不阻塞消息写入）
+     *
+     * @param messages         本次写入的消息
+     * @param latestTimestamp  本批最后一条消息的时间戳（毫秒）
+     */
+    public CompletableFuture<Void> recordAsync(String conversationId, List<Message> messages, long latestTimestamp) {
+        String userId = enabled ? userIdOf(conversationId) : null;
+        if (userId == null || messages == null || messages.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int ttl = retentionPolicy.maxTtlSeconds(conversationId);
+        long writeTime = latestTimestamp * 1000;
+
+        String snippet = truncate(messages.get(messages.size() - 1).getText(), SNIPPET_MAX_LENGTH);
+        CompletableFuture<Void> write = prepared(UPSERT_CQL)
+                .thenCompose(upsert -> cqlSession.executeAsync(upsert.bind(writeTime, ttl, latestTimestamp, snippet,
+                        userId, conversationId)))
+                .thenApply(ignored -> null);
+
+        String title = titledConversations.contains(conversationId) ? null : firstUserText(messages);
+        if (title != null) {
+            // 本批没有用户消息（如只有工具返回）时不尝试设置标题
+            CompletableFuture<Void> titleWrite = prepared(SET_TITLE_IF_ABSENT_CQL)
+                    .thenCompose(setTitle -> cqlSession.executeAsync(setTitle.bind(ttl, title, userId, conversationId)))
+                    // 写入成功或已有标题，之后都不再尝试
+                    .thenAccept(ignored -> markTitled(conversationId));
+            write = CompletableFuture.allOf(write, titleWrite);
+        }
+        return write
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        // 索引是派生数据，下一次 add 会再次 upsert，这里只记录日志
+                        log.warn("Failed to update user conversation index: {}", conversationId, error);
+                    }
+                });
+    }
+
+    /**
+     * 分页读取用户的会话列表（单分区查询）
+     *
+     * @param pagingState 上一页返回的 nextPagingState，首页传 null
+     * @throws InvalidPagingStateException pagingState 无效
+     */
+    public UserConversationPage readPage(String userId, int pageSize, String pagingState) {
+        Pageable pageable = ChatMessageStore.pageable(pageSize, pagingState);
+        Slice<UserConversationSummary> slice = ChatMessageStore.withPagingState(pagingState,
+                () -> userConversationRepository.findByUserId(userId, pageable));
+        String next = slice.hasNext() ? ChatMessageStore.encodePagingState(slice.nextPageable()) : null;
+        return new UserConversationPage(slice.getContent(), next);
+    }
+
+    /**
+     * 会话被清空时从用户的会话列表中移除
+     */
+    public void remove(String conversationId) {
+        String userId = userIdOf(conversationId);
+        if (enabled && userId != null) {
+            userConversationRepository.deleteByUserIdAndConversationId(userId, conversationId);
+            titledConversations.remove(conversationId);
+        }
+    }
+
+    private void markTitled(String conversationId) {
+        if (titledConversations.size() > MAX_TITLED_CONVERSATIONS) {
+            titledConversations.clear();
+        }
+        titledConversations.add(conversationId);
+    }
+
+    /**
+     * 本批第一条非空用户消息截断后的文本，没有时返回 null
+     */
+    private static String firstUserText(List<Message> messages) {
+        for (Message message : messages) {
+            if (message instanceof UserMessage && StrUtil.isNotBlank(message.getText())) {
+                return truncate(message.getText(), TITLE_MAX_LENGTH);
+            }
+        }
+        return null;
+    }
+
+    private static String truncate(String text, int maxLength) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.strip();
+        return trimmed.length() <= maxLength ? trimmed : trimmed.substring(0, maxLength) + "…";
+    }
+
+    private CompletableFuture<PreparedStatement> prepared(String cql) {
+        CompletableFuture<PreparedStatement> prepared = preparedStatements.computeIfAbsent(cql,
+                statement -> cqlSession.prepareAsync(statement).toCompletableFuture());
+        if (prepared.isCompletedExceptionally()) {
+            // 预编译失败时不缓存失败结果，下次写入重新预编译
+            preparedStatements.remove(cql, prepared);
+        }
+        return prepared;
+    }
+}
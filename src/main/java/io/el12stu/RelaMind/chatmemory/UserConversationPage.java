@@ -0,0 +1,14 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.el12stu.RelaMind.chatmemory.entity.UserConversationSummary;
+
+import java.util.List;
+
+/**
+ * 用户会话列表的一页
+ *
+ * @param conversations   当前页的会话摘要
+ * @param nextPagingState 下一页的 paging state，为 null 表示已经是最后一页
+ */
+public record UserConversationPage(List<UserConversationSummary> conversations, String nextPagingState) {
+}
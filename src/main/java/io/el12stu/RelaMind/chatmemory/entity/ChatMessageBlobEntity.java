@@ -0,0 +1,43 @@
+package io.el12stu.RelaMind.chatmemory.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 超大消息的分块存储
+ * 编码后超过阈值的消息不直接写入消息行，而是切分为固定大小的分块写入这里，
+ * 消息行的 payload 只保存引用（长度 + 分块数），避免单行过大影响读取和 compaction。
+ */
+@Table("chat_message_blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageBlobEntity {
+
+    /**
+     * 分区键：会话ID，clear 时可以按分区一次删除
+     */
+    @PrimaryKeyColumn(name = "key", type = PrimaryKeyType.PARTITIONED, ordinal = 0)
+    private String key;
+
+    /**
+     * 聚类键1：所属消息的 timestamp
+     */
+    @PrimaryKeyColumn(name = "message_timestamp", type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING, ordinal = 1)
+    private Long messageTimestamp;
+
+    /**
+     * 聚类键2：分块序号，从 0 开始
+     */
+    @PrimaryKeyColumn(name = "chunk", type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING, ordinal = 2)
+    private Integer chunk;
+
+    private ByteBuffer data;
+}
@@ -0,0 +1,52 @@
+package io.el12stu.RelaMind.chatmemory.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 按时间分桶的聊天消息实体类
+ * 分区键为 (会话ID, 时间桶)，单个分区的大小被限制在一个时间桶内，
+ * 避免长期陪伴型会话无限增长成超大分区，影响 compaction、读取延迟和 repair。
+ */
+@Table("chat_messages_by_bucket")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageBucketEntity {
+
+    /**
+     * 分区键1：会话ID
+     */
+    @PrimaryKeyColumn(name = "key", type = PrimaryKeyType.PARTITIONED, ordinal = 0)
+    private String key;
+
+    /**
+     * 分区键2：时间桶起始时间（毫秒）
+     * 使用桶起始时间而不是桶序号，调整桶大小后新旧桶仍然可以按时间排序
+     */
+    @PrimaryKeyColumn(name = "bucket", type = PrimaryKeyType.PARTITIONED, ordinal = 1)
+    private Long bucket;
+
+    /**
+     * 聚类键：与 chat_messages 的 timestamp 相同，升序
+     */
+    @PrimaryKeyColumn(name = "timestamp", type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING, ordinal = 2)
+    private Long timestamp;
+
+    private String type;
+
+    private String context;
+
+    @Column("token_count")
+    private Integer tokenCount;
+
+    private ByteBuffer payload;
+}
@@ -0,0 +1,32 @@
+package io.el12stu.RelaMind.chatmemory.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+/**
+ * 会话时间桶索引
+ * 记录一个会话有数据的所有时间桶，读取时按桶从新到旧遍历，稀疏会话也无需逐桶试探。
+ */
+@Table("chat_message_buckets")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageBucketIndexEntity {
+
+    /**
+     * 分区键：会话ID
+     */
+    @PrimaryKeyColumn(name = "key", type = PrimaryKeyType.PARTITIONED, ordinal = 0)
+    private String key;
+
+    /**
+     * 聚类键：时间桶起始时间（毫秒），降序，最新的桶排在前面
+     */
+    @PrimaryKeyColumn(name = "bucket", type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING, ordinal = 1)
+    private Long bucket;
+}
@@ -5,9 +5,12 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.cassandra.core.cql.Ordering;
 import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
 import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
 import org.springframework.data.cassandra.core.mapping.Table;
 
+import java.nio.ByteBuffer;
+
 /**
  * Cassandra 聊天消息实体类
  * 优化：在 Table 注解中显式指定 Clustering Order
@@ -28,6 +31,7 @@ public class ChatMessageEntity {
     /**
      * 聚类键：决定分区内数据的排序。
      * 对应 timestamp，设置为升序 (ASC)
+     * 新数据为 {@link io.el12stu.RelaMind.chatmemory.ChatMessageIdGenerator} 生成的消息ID，旧数据为毫秒时间戳
      */
     @PrimaryKeyColumn(name = "timestamp", type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING)
     private Long timestamp;
@@ -37,4 +41,18 @@ public class ChatMessageEntity {
     // 建议：对于长文本，虽然 Cassandra 处理 Text 很好，但如果内容极大，
     // 生产环境有时会拆分为 blob 或外部存储，普通聊天记录用默认 Text 即可。
     private String context;
+
+    /**
+     * 写入时预先计算的 token 数，用于按 token 预算截取历史窗口，读取时无需再分词。
+     * 旧数据该列为 null，读取时按字符数粗略估算。
+     */
+    @Column("token_count")
+    private Integer tokenCount;
+
+    /**
+     * 完整消息的二进制编码（见 ChatMessageCodec），包含工具调用、工具返回和元数据。
+     * context 写入正文，payload 是它的超集；payload 分块存放到 chat_message_blobs 时 context 只保留开头的预览。
+     * 旧数据只有 context。
+     */
+    private ByteBuffer payload;
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package io.el12stu.RelaMind.chatmemory.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.util.List;
+
+/**
+ * 会话状态实体类
+ * 每个会话一行，保存滚动摘要等会话级元数据，读取记忆时与消息尾部一起使用。
+ */
+@Table("conversation_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationStateEntity {
+
+    /**
+     * 分区键：会话ID，对应 ChatMessageEntity 的 key
+     */
+    @PrimaryKeyColumn(name = "key", type = PrimaryKeyType.PARTITIONED)
+    private String key;
+
+    /**
+     * 更早历史的滚动摘要
+     */
+    private String summary;
+
+    /**
+     * 摘要覆盖到的最后一条消息的 timestamp（含），之后的消息以原文返回
+     */
+    @Column("summarized_until")
+    private Long summarizedUntil;
+
+    /**
+     * 摘要的 token 数，按 token 预算截取时从预算中扣除
+     */
+    @Column("summary_token_count")
+    private Integer summaryTokenCount;
+
+    /**
+     * 软清空分界线：清空时生成的消息ID（旧数据为毫秒时间戳），timestamp 不大于它的消息不再返回
+     */
+    @Column("cleared_at")
+    private Long clearedAt;
+
+    /**
+     * 最后一次更新时间（毫秒）
+     */
+    @Column("updated_at")
+    private Long updatedAt;
+
+    /**
+     * 分叉会话的祖先会话ID（从最早的祖先到直接父会话），未分叉时为 null
+     */
+    @Column("fork_parents")
+    private List<String> forkParents;
+
+    /**
+     * 与 forkParents 一一对应的分叉点：该祖先中消息ID不大于它的消息属于本会话的历史
+     */
+    @Column("fork_points")
+    private List<Long> forkPoints;
+}
@@ -5,19 +5,22 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.cassandra.core.cql.Ordering;
 import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
 import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
 import org.springframework.data.cassandra.core.mapping.Table;
 
 /**
  * 用户会话摘要实体类
  * 用于支持根据 userId 查询该用户拥有的所有会话及其最近一条消息的摘要
- * 
+ *
  * 主键设计：
- * - 分区键：userId（决定数据存储在哪个节点）
- * - 聚类键1：latestTimestamp（降序，以便快速获取用户最新的会话）
- * - 聚类键2：conversationId（保证主键唯一性，避免并发环境下相同时间戳导致的数据覆盖）
+ * - 分区键：userId（一个用户的会话列表在同一个分区，一次查询即可分页读取）
+ * - 聚类键：conversationId（每个会话固定一行）
+ *
+ * latestTimestamp 是普通列而不是聚类键：聚类键中的时间戳每次更新都要先读出旧值再删除旧行，
+ * 作为普通列则可以在写入路径上直接 upsert，由写入时间戳（USING TIMESTAMP）保证乱序和重试下的幂等。
  */
-@Table("user_conversation_summary")
+@Table("user_conversation_index")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,29 +33,26 @@ public class UserConversationSummary {
     private String userId;
 
     /**
-     * 聚类键1：会话的最新消息时间戳，设置为降序 (DESC)
-     * 这样查询时，最新的会话会自动排在前面
+     * 聚类键：会话ID，对应 ChatMessageEntity 的 key
      */
-    @PrimaryKeyColumn(name = "latest_timestamp", type = PrimaryKeyType.CLUSTERED, ordering = Ordering.DESCENDING, ordinal = 0)
-    private Long latestTimestamp;
+    @PrimaryKeyColumn(name = "conversation_id", type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING)
+    private String conversationId;
 
     /**
-     * 聚类键2：会话ID，对应 ChatMessageEntity 的 key
-     * 作为第二个聚类键，保证主键唯一性，避免并发环境下相同时间戳导致的数据覆盖
+     * 会话最新消息的时间戳
      */
-    @PrimaryKeyColumn(name = "conversation_id", type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING, ordinal = 1)
-    private String conversationId;
+    @Column("latest_timestamp")
+    private Long latestTimestamp;
 
     /**
-     * 会话标题或最新消息摘要
+     * 会话标题：取会话第一条用户消息的开头
      * 可用于显示在会话列表中
      */
     private String title;
 
     /**
-     * 最新消息的片段（可选，用于显示预览）
-     * 如果 title 已经足够，这个字段可以为空
+     * 最新消息的片段，用于显示预览
      */
+    @Column("latest_message_snippet")
     private String latestMessageSnippet;
 }
-
@@ -0,0 +1,27 @@
+package io.el12stu.RelaMind.chatmemory.repository;
+
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageBlobEntity;
+import org.springframework.data.cassandra.core.mapping.MapId;
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 超大消息分块 Repository
+ */
+@Repository
+public interface ChatMessageBlobRepository extends CassandraRepository<ChatMessageBlobEntity, MapId> {
+
+    /**
+     * 查询一条消息的全部分块（按分块序号升序）
+     */
+    List<ChatMessageBlobEntity> findByKeyAndMessageTimestamp(String key, Long messageTimestamp);
+
+    /**
+     * 删除会话的全部分块
+     */
+    @Query("DELETE FROM chat_message_blobs WHERE key = ?0")
+    void deleteByKey(String key);
+}
@@ -0,0 +1,27 @@
+package io.el12stu.RelaMind.chatmemory.repository;
+
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageBucketIndexEntity;
+import org.springframework.data.cassandra.core.mapping.MapId;
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 会话时间桶索引 Repository
+ */
+@Repository
+public interface ChatMessageBucketIndexRepository extends CassandraRepository<ChatMessageBucketIndexEntity, MapId> {
+
+    /**
+     * 查询会话的所有时间桶（按桶时间降序，最新的在前）
+     */
+    List<ChatMessageBucketIndexEntity> findByKey(String key);
+
+    /**
+     * 删除会话的时间桶索引
+     */
+    @Query("DELETE FROM chat_message_buckets WHERE key = ?0")
+    void deleteByKey(String key);
+}
@@ -0,0 +1,52 @@
+package io.el12stu.RelaMind.chatmemory.repository;
+
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageBucketEntity;
+import org.springframework.data.cassandra.core.mapping.MapId;
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 分桶聊天消息 Repository
+ * 所有查询都同时指定 key 和 bucket，只命中单个分区。
+ */
+@Repository
+public interface ChatMessageBucketRepository extends CassandraRepository<ChatMessageBucketEntity, MapId> {
+
+    /**
+     * 读取一个时间桶内的全部消息（时间升序）
+     */
+    List<ChatMessageBucketEntity> findByKeyAndBucket(String key, Long bucket);
+
+    /**
+     * 分页正序读取一个时间桶
+     */
+    Slice<ChatMessageBucketEntity> findByKeyAndBucket(String key, Long bucket, Pageable pageable);
+
+    /**
+     * 分页倒序读取一个时间桶（最新的在前）
+     */
+    Slice<ChatMessageBucketEntity> findByKeyAndBucketOrderByTimestampDesc(String key, Long bucket, Pageable pageable);
+
+    /*
+     * 以下带 timestamp 上界的查询用于读取分叉会话的祖先：只读取分叉点（含）之前的消息
+     */
+
+    List<ChatMessageBucketEntity> findByKeyAndBucketAndTimestampLessThanEqual(String key, Long bucket, Long timestamp);
+
+    Slice<ChatMessageBucketEntity> findByKeyAndBucketAndTimestampLessThanEqual(String key, Long bucket,
+                                                                             Long timestamp, Pageable pageable);
+
+    Slice<ChatMessageBucketEntity> findByKeyAndBucketAndTimestampLessThanEqualOrderByTimestampDesc(
+            String key, Long bucket, Long timestamp, Pageable pageable);
+
+    /**
+     * 删除一个时间桶分区
+     */
+    @Query("DELETE FROM chat_messages_by_bucket WHERE key = ?0 AND bucket = ?1")
+    void deleteByKeyAndBucket(String key, Long bucket);
+}
@@ -3,6 +3,8 @@ package io.el12stu.RelaMind.chatmemory.repository;
 import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
 import org.springframework.data.cassandra.repository.CassandraRepository;
 import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,6 +19,16 @@ public interface ChatMessageRepository extends CassandraRepository<ChatMessageEn
      */
     List<ChatMessageEntity> findByKey(String key);
 
+    /**
+     * 分页正序读取：按时间升序，每页 pageable.getPageSize() 条。
+     * 用于长会话的流式导出，传入 CassandraPageRequest 时通过 paging state 续读，内存占用只与页大小有关。
+     *
+     * @param key 会话ID
+     * @param pageable 分页参数（首页使用 CassandraPageRequest.first(size)，之后使用 slice.nextPageable()）
+     * @return 当前页的消息（按时间升序排列）
+     */
+    Slice<ChatMessageEntity> findByKey(String key, Pageable pageable);
+
     /**
      * 范围查询优化：获取最新的 N 条消息。
      * 使用 CQL 的 ORDER BY DESC 和 LIMIT 来高效获取最新的消息，
@@ -29,6 +41,29 @@ public interface ChatMessageRepository extends CassandraRepository<ChatMessageEn
     @Query("SELECT * FROM chat_messages WHERE key = ?0 ORDER BY timestamp DESC LIMIT ?1")
     List<ChatMessageEntity> findLatestByKey(String key, int limit);
 
+    /**
+     * 分页倒序读取：从最新的消息开始，每页 pageable.getPageSize() 条。
+     * 传入 CassandraPageRequest 时使用 Cassandra 的 paging state 翻页，不会重复扫描已读取的行。
+     *
+     * @param key 会话ID
+     * @param pageable 分页参数（首页使用 CassandraPageRequest.first(size)，之后使用 slice.nextPageable()）
+     * @return 当前页的消息（按时间降序排列）
+     */
+    Slice<ChatMessageEntity> findByKeyOrderByTimestampDesc(String key, Pageable pageable);
+
+    /*
+     * 以下带 timestamp 上界的查询用于读取分叉会话的祖先：只读取分叉点（含）之前的消息
+     */
+
+    List<ChatMessageEntity> findByKeyAndTimestampLessThanEqual(String key, Long timestamp);
+
+    Slice<ChatMessageEntity> findByKeyAndTimestampLessThanEqual(String key, Long timestamp, Pageable pageable);
+
+    @Query("SELECT * FROM chat_messages WHERE key = ?0 AND timestamp <= ?1 ORDER BY timestamp DESC LIMIT ?2")
+    List<ChatMessageEntity> findLatestByKeyUntil(String key, long until, int limit);
+
+    Slice<ChatMessageEntity> findByKeyAndTimestampLessThanEqualOrderByTimestampDesc(String key, Long timestamp,
+                                                                                   Pageable pageable);
 
     /**
      * 删除整个会话（删除分区）
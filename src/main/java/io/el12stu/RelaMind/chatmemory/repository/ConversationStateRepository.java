@@ -0,0 +1,25 @@
+package io.el12stu.RelaMind.chatmemory.repository;
+
+import io.el12stu.RelaMind.chatmemory.entity.ConversationStateEntity;
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 会话状态 Repository
+ * 主键即会话ID，按 ID 单行读写
+ */
+@Repository
+public interface ConversationStateRepository extends CassandraRepository<ConversationStateEntity, String> {
+
+    /**
+     * 软清空：记录清空时间，并丢弃摘要（摘要描述的是被清空的历史）
+     * 只更新单行中的几个单元格，不会像分区删除那样让后续读取扫描大量墓碑
+     *
+     * @param clearedAt 消息ID分界线（{@link io.el12stu.RelaMind.chatmemory.ChatMessageIdGenerator#fence}）
+     * @param updatedAt 更新时间（毫秒），与其他写入 updated_at 的地方单位一致
+     */
+    @Query("UPDATE conversation_state SET cleared_at = ?1, updated_at = ?2, summary = null, "
+            + "summarized_until = null, summary_token_count = null WHERE key = ?0")
+    void markCleared(String key, long clearedAt, long updatedAt);
+}
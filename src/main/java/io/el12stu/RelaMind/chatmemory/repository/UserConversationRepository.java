@@ -1,8 +1,11 @@
 package io.el12stu.RelaMind.chatmemory.repository;
 
 import io.el12stu.RelaMind.chatmemory.entity.UserConversationSummary;
+import org.springframework.data.cassandra.core.mapping.MapId;
 import org.springframework.data.cassandra.repository.CassandraRepository;
 import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,25 +13,31 @@ import java.util.List;
 /**
  * 用户会话摘要 Repository
  * 支持根据 userId 查询该用户的所有会话摘要
+ * 写入由 UserConversationIndex 通过预编译语句完成（需要 USING TIMESTAMP / TTL），这里只负责读取和删除
  */
 @Repository
-public interface UserConversationRepository extends CassandraRepository<UserConversationSummary, String> {
+public interface UserConversationRepository extends CassandraRepository<UserConversationSummary, MapId> {
 
     /**
-     * 根据用户ID查询该用户的所有会话摘要。
-     * 由于实体中定义了 latestTimestamp 为降序排列，
-     * 返回的列表会自动按照最新消息时间降序排列（最新的在前）。
-     * 
+     * 根据用户ID查询该用户的所有会话摘要（按会话ID排序）
+     *
      * @param userId 用户ID
-     * @return 该用户的所有会话摘要列表，按最新消息时间降序排列
+     * @return 该用户的所有会话摘要列表
      */
     List<UserConversationSummary> findByUserId(String userId);
 
+    /**
+     * 分页读取用户的会话摘要，单分区查询，通过 paging state 续读
+     *
+     * @param userId 用户ID（分区键）
+     * @param pageable 分页参数（首页使用 CassandraPageRequest.first(size)，之后使用 slice.nextPageable()）
+     * @return 当前页的会话摘要（按会话ID排序）
+     */
+    Slice<UserConversationSummary> findByUserId(String userId, Pageable pageable);
+
     /**
      * 根据用户ID和会话ID查询会话摘要
-     * 由于主键结构包含 (userId, latestTimestamp, conversationId)，
-     * Spring Data Cassandra 可以高效地使用复合键进行查询。
-     * 
+     *
      * @param userId 用户ID（分区键）
      * @param conversationId 会话ID（聚类键）
      * @return 匹配的会话摘要列表（理论上只有一条，因为主键唯一）
@@ -37,22 +46,20 @@ public interface UserConversationRepository extends CassandraRepository<UserConv
 
     /**
      * 根据用户ID和会话ID删除会话摘要
-     * 由于主键包含 userId 和 conversationId，这是一个高效的操作
-     * 
+     * 主键为 (userId, conversationId)，这是最精确的行删除
+     *
      * @param userId 用户ID（分区键）
      * @param conversationId 会话ID（聚类键）
      */
-    @Query("DELETE FROM user_conversation_summary WHERE user_id = ?0 AND conversation_id = ?1")
-    // 这是最精确的行删除，需要知道完整的 PK
-    void deleteByUserIdAndLatestTimestampAndConversationId(String userId, Long latestTimestamp, String conversationId);
+    @Query("DELETE FROM user_conversation_index WHERE user_id = ?0 AND conversation_id = ?1")
+    void deleteByUserIdAndConversationId(String userId, String conversationId);
 
     /**
      * 根据用户ID删除该用户的所有会话摘要
      * 这是一个高效的操作，因为 userId 是分区键
-     * 
+     *
      * @param userId 用户ID
      */
-    @Query("DELETE FROM user_conversation_summary WHERE user_id = ?0")
+    @Query("DELETE FROM user_conversation_index WHERE user_id = ?0")
     void deleteByUserId(String userId);
 }
-
@@ -0,0 +1,95 @@
+package io.el12stu.RelaMind.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.el12stu.RelaMind.chatmemory.CassandraBasedChatMemory;
+import io.el12stu.RelaMind.chatmemory.ChatHistoryItem;
+import io.el12stu.RelaMind.chatmemory.ChatHistoryPage;
+import io.el12stu.RelaMind.chatmemory.ConditionalOnCassandraChatMemory;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 会话历史控制器
+ * 提供按页读取和 NDJSON 流式导出两种方式，服务端内存占用只与页大小有关
+ */
+@ConditionalOnCassandraChatMemory
+@RestController
+@RequestMapping("/chat/history")
+@Slf4j
+public class ChatHistoryController {
+
+    /**
+     * 单页条数上限，防止客户端一次拉取过多
+     */
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Resource
+    private CassandraBasedChatMemory cassandraBasedChatMemory;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 分页读取会话历史
+     *
+     * @param chatId      会话ID
+     * @param pageSize    每页条数
+     * @param pagingState 上一页返回的 nextPagingState，首页不传
+     * @return 当前页消息及下一页的 paging state；pagingState 无效时返回 400
+     */
+    @GetMapping("/{chatId}")
+    public ChatHistoryPage page(@PathVariable String chatId,
+                                @RequestParam(defaultValue = "50") int pageSize,
+                                @RequestParam(required = false) String pagingState) {
+        return cassandraBasedChatMemory.readHistoryPage(chatId, clampPageSize(pageSize), pagingState);
+    }
+
+    /**
+     * 以 NDJSON 流式导出整个会话历史
+     * 每行一条消息，逐页查询、逐页写出并刷新，适合超长会话的导出
+     *
+     * @param chatId   会话ID
+     * @param pageSize 每次从 Cassandra 读取的条数
+     */
+    @GetMapping("/{chatId}/stream")
+    public ResponseEntity<StreamingResponseBody> stream(@PathVariable String chatId,
+                                                        @RequestParam(defaultValue = "200") int pageSize) {
+        int size = clampPageSize(pageSize);
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<List<ChatHistoryItem>> pages = cassandraBasedChatMemory.streamHistoryPages(chatId, size)) {
+                Iterator<List<ChatHistoryItem>> iterator = pages.iterator();
+                while (iterator.hasNext()) {
+                    for (ChatHistoryItem item : iterator.next()) {
+                        outputStream.write(objectMapper.writeValueAsBytes(item));
+                        outputStream.write('\n');
+                    }
+                    outputStream.flush();
+                }
+            } catch (Exception e) {
+                log.error("导出会话历史失败: {}", chatId, e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private static int clampPageSize(int pageSize) {
+        return Math.max(1, Math.min(MAX_PAGE_SIZE, pageSize));
+    }
+}
@@ -0,0 +1,47 @@
+package io.el12stu.RelaMind.controller;
+
+import io.el12stu.RelaMind.chatmemory.ChatMessageLayoutMigrator;
+import io.el12stu.RelaMind.chatmemory.ConditionalOnCassandraChatMemory;
+import jakarta.annotation.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 聊天记忆运维接口
+ * 仅供运维使用，生产环境应在网关层限制访问
+ */
+@ConditionalOnCassandraChatMemory
+@RestController
+@RequestMapping("/admin/chat-memory")
+public class ChatMemoryAdminController {
+
+    @Resource
+    private ChatMessageLayoutMigrator chatMessageLayoutMigrator;
+
+    /**
+     * 启动 chat_messages 到分桶布局的在线迁移
+     * 需要先以 layout=DUAL_WRITE 部署
+     */
+    @PostMapping("/migration")
+    public ResponseEntity<ChatMessageLayoutMigrator.MigrationStatus> startMigration() {
+        try {
+            boolean started = chatMessageLayoutMigrator.start();
+            HttpStatus status = started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT;
+            return ResponseEntity.status(status).body(chatMessageLayoutMigrator.status());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(chatMessageLayoutMigrator.status());
+        }
+    }
+
+    /**
+     * 查询迁移进度
+     */
+    @GetMapping("/migration")
+    public ChatMessageLayoutMigrator.MigrationStatus migrationStatus() {
+        return chatMessageLayoutMigrator.status();
+    }
+}
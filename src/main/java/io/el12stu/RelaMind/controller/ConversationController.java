@@ -0,0 +1,90 @@
+package io.el12stu.RelaMind.controller;
+
+import io.el12stu.RelaMind.chatmemory.CassandraBasedChatMemory;
+import io.el12stu.RelaMind.chatmemory.ConditionalOnCassandraChatMemory;
+import io.el12stu.RelaMind.chatmemory.ConversationFork;
+import io.el12stu.RelaMind.chatmemory.UserConversationIndex;
+import io.el12stu.RelaMind.chatmemory.UserConversationPage;
+import jakarta.annotation.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+
+/**
+ * 用户会话列表控制器
+ * 数据来自聊天写入时增量维护的 user_conversation_index，每页只查询用户所在的一个分区
+ * 同时提供会话分叉（「从这里重试」、分支对话）
+ */
+@ConditionalOnCassandraChatMemory
+@RestController
+@RequestMapping("/conversations")
+public class ConversationController {
+
+    /**
+     * 单页条数上限，防止客户端一次拉取过多
+     */
+    private static final int MAX_PAGE_SIZE = 200;
+
+    @Resource
+    private UserConversationIndex userConversationIndex;
+
+    @Resource
+    private CassandraBasedChatMemory cassandraBasedChatMemory;
+
+    /**
+     * 分页读取用户的会话列表
+     * 会话ID需要按 {userId}:{chatId} 的格式传给聊天接口，才会出现在对应用户的列表中
+     *
+     * @param userId      用户ID
+     * @param pageSize    每页条数
+     * @param pagingState 上一页返回的 nextPagingState，首页不传
+     * @return 当前页会话摘要（按会话ID排序，每条带最新消息时间）及下一页的 paging state；pagingState 无效时返回 400
+     */
+    @GetMapping
+    public UserConversationPage list(@RequestParam String userId,
+                                     @RequestParam(defaultValue = "20") int pageSize,
+                                     @RequestParam(required = false) String pagingState) {
+        int size = Math.max(1, Math.min(MAX_PAGE_SIZE, pageSize));
+        return userConversationIndex.readPage(userId, size, pagingState);
+    }
+
+    /**
+     * 从指定消息处分叉会话，新会话共享分叉点之前的历史，不复制消息
+     * 新会话在写入第一条消息后出现在用户的会话列表中
+     *
+     * @param chatId    父会话ID
+     * @param atId      分叉点消息ID（历史接口返回的 id），该消息保留在新会话中；不传则在最新消息处分叉
+     * @param newChatId 新会话ID，不传时按父会话的用户前缀生成
+     * @return 201 分叉结果；父会话不存在返回 404；新会话ID已被使用返回 409
+     */
+    @PostMapping("/{chatId}/fork")
+    public ResponseEntity<ConversationFork> fork(@PathVariable String chatId,
+                                                 @RequestParam(required = false) Long atId,
+                                                 @RequestParam(required = false) String newChatId) {
+        String target = newChatId != null && !newChatId.isBlank() ? newChatId : newConversationId(chatId);
+        try {
+            ConversationFork fork = cassandraBasedChatMemory.fork(chatId, target, atId);
+            return ResponseEntity.status(HttpStatus.CREATED).body(fork);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * 新会话沿用父会话的用户前缀，保证出现在同一用户的会话列表中
+     */
+    private String newConversationId(String parentId) {
+        String userId = userConversationIndex.userIdOf(parentId);
+        String chatId = UUID.randomUUID().toString();
+        return userId != null ? userConversationIndex.conversationIdOf(userId, chatId) : chatId;
+    }
+}
@@ -0,0 +1,49 @@
+package io.el12stu.RelaMind.controller;
+
+import io.el12stu.RelaMind.service.SensitiveWordDictionaryStatus;
+import io.el12stu.RelaMind.service.SensitiveWordService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * 敏感词库运维接口
+ * 仅供运维使用，生产环境应在网关层限制访问
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/sensitive-words")
+public class SensitiveWordAdminController {
+
+    @Resource
+    private SensitiveWordService sensitiveWordService;
+
+    /**
+     * 重新加载词库，新词库生效后返回其版本、词数与构建耗时
+     * 加载失败时返回 500，原词库继续生效
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<SensitiveWordDictionaryStatus> reload() {
+        try {
+            return ResponseEntity.ok(sensitiveWordService.reload().join());
+        } catch (CompletionException e) {
+            log.warn("Sensitive-word dictionary reload failed", e.getCause());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(sensitiveWordService.dictionaryStatus());
+        }
+    }
+
+    /**
+     * 查询当前生效的词库
+     */
+    @GetMapping
+    public SensitiveWordDictionaryStatus status() {
+        return sensitiveWordService.dictionaryStatus();
+    }
+}
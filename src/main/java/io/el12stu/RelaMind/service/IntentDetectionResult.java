@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 /**
  * 意图识别结果
  */
@@ -31,6 +33,15 @@ public class IntentDetectionResult {
      */
     private String reason;
     
+    /**
+     * 规则匹配命中的意图类别及各自的命中次数（没有命中的类别不出现；LLM 识别时为空）
+     */
+    private Map<ChatIntent, Integer> ruleMatches = Map.of();
+    
+    public IntentDetectionResult(ChatIntent intent, Double confidence, Boolean needConfirmation, String reason) {
+        this(intent, confidence, needConfirmation, reason, Map.of());
+    }
+    
     /**
      * 聊天意图枚举
      */
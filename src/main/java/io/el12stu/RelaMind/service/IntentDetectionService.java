@@ -1,30 +1,133 @@
 package io.el12stu.RelaMind.service;
 
 import io.el12stu.RelaMind.service.IntentDetectionResult.ChatIntent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 
-import java.util.regex.Pattern;
-import java.util.Arrays;
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 /**
  * 意图识别服务
- * 支持基于规则和基于 LLM 的意图识别
+ * 先用关键词打分（{@link IntentKeywordScorer}）得到意图与置信度，置信度过低时才交给 LLM 分类
+ * <p>
+ * 关键词及其权重在 relamind.intent.keywords 指向的文件中，由 {@link IntentWeightCalibrator} 在标注集上校准，
+ * 置信度是校准后的 softmax 概率：开启 LLM 兜底时低于 llm-fallback.threshold 的消息调用 LLM，
+ * 命中了关键词但置信度低于 confirmation-threshold 时请用户确认（没有命中任何关键词的消息默认普通聊天，不确认）。
+ * <p>
+ * 需要 LLM 分类的消息先查 {@link IntentResultCache}：键为归一化后的消息，命中时直接复用之前的 LLM 结论。
+ * 启动时从 relamind.intent.cache.warmup 载入常见说法及其标注作为预置，这些说法从第一次出现起就不调用 LLM。
+ * <p>
+ * 指标：
+ * <ul>
+ *     <li>relamind.intent.detections（source=rule/llm/cache，intent）：各来源给出的识别结果数，source=llm 的占比即 LLM 调用比例</li>
+ *     <li>relamind.intent.rule.confidence：规则打分的置信度分布</li>
+ *     <li>relamind.intent.llm：LLM 分类的耗时（含失败）</li>
+ *     <li>relamind.intent.cache.requests（result=hit/miss）、relamind.intent.cache.hit.ratio：缓存命中情况</li>
+ *     <li>relamind.intent.cache.saved.latency：命中缓存省下的 LLM 耗时，按命中时成功 LLM 调用的平均耗时估算</li>
+ * </ul>
  */
 @Service
 @Slf4j
 public class IntentDetectionService {
 
     private final ChatClient intentDetectionClient;
-    
-    // 置信度阈值：低于此值需要询问用户确认
-    private static final double CONFIDENCE_THRESHOLD = 0.7;
-    
-    // 是否使用 LLM 进行意图识别（默认使用规则，可切换为 LLM）
-    private static final boolean USE_LLM_DETECTION = false;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ResourceLoader resourceLoader;
+
+    /**
+     * 关键词权重文件
+     */
+    @Value("${relamind.intent.keywords:classpath:intent_keywords.txt}")
+    private String keywordsLocation;
+
+    /**
+     * 置信度阈值：低于此值需要询问用户确认
+     */
+    @Value("${relamind.intent.confirmation-threshold:0.7}")
+    private double confirmationThreshold;
+
+    /**
+     * 规则置信度低于该值时调用 LLM 分类
+     */
+    @Value("${relamind.intent.llm-fallback.threshold:0.5}")
+    private double llmFallbackThreshold;
+
+    /**
+     * 是否在规则置信度低时同步调用 LLM 分类（每次调用增加一次模型往返），默认关闭
+     */
+    @Value("${relamind.intent.llm-fallback.enabled:false}")
+    private boolean llmFallbackEnabled;
+
+    @Value("${relamind.intent.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    /**
+     * 缓存的 LLM 结论条数上限（不含预置说法）
+     */
+    @Value("${relamind.intent.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    @Value("${relamind.intent.cache.ttl-seconds:21600}")
+    private long cacheTtlSeconds;
+
+    /**
+     * 超过该长度的消息不缓存
+     */
+    @Value("${relamind.intent.cache.max-message-length:200}")
+    private int cacheMaxMessageLength;
+
+    /**
+     * 预置说法文件（意图<Tab>消息），为空时不预置
+     */
+    @Value("${relamind.intent.cache.warmup:classpath:intent_warmup.txt}")
+    private String cacheWarmupLocation;
+
+    private IntentKeywordScorer scorer;
+
+    /**
+     * LLM 结论缓存，未开启缓存或 LLM 兜底时为 null
+     */
+    private IntentResultCache intentCache;
+
+    private final Map<ChatIntent, Counter> cacheDetections = new EnumMap<>(ChatIntent.class);
+
+    /**
+     * 成功的 LLM 调用次数与总耗时，用于估算缓存命中省下的时间
+     */
+    private final LongAdder llmCalls = new LongAdder();
+
+    private final LongAdder llmNanos = new LongAdder();
+
+    private final LongAdder savedNanos = new LongAdder();
+
+    private final Map<ChatIntent, Counter> ruleDetections = new EnumMap<>(ChatIntent.class);
+
+    private final Map<ChatIntent, Counter> llmDetections = new EnumMap<>(ChatIntent.class);
+
+    private DistributionSummary ruleConfidence;
+
+    private Timer llmTimer;
 
     /**
      * 意图识别结果的结构化输出（用于 LLM 分类）
@@ -46,46 +149,13 @@ public class IntentDetectionService {
         String reason
     ) {}
 
-    // 历史查询关键词模式
-    private static final List<Pattern> HISTORY_QUERY_PATTERNS = Arrays.asList(
-        // 时间相关查询
-        Pattern.compile(".*(之前|以前|过去|去年|前年|上个月|上周|昨天|前天|几.*年前|几.*个月前).*"),
-        Pattern.compile(".*(什么时候|何时|哪天|哪一天).*"),
-        Pattern.compile(".*(.*年前|.*个月前|.*周前|.*天前).*"),
-        Pattern.compile(".*(.*年.*月.*日|.*月.*日).*"),
-        
-        // 历史记录查询
-        Pattern.compile(".*(记录|日记|写过|记过|之前.*写过).*"),
-        Pattern.compile(".*(回顾|回忆|回想|想起|记得).*"),
-        Pattern.compile(".*(之前.*做过|以前.*做过|过去.*做过).*"),
-        
-        // 模式分析查询
-        Pattern.compile(".*(分析|统计|总结|模式|规律|趋势).*"),
-        Pattern.compile(".*(变化|对比|比较|差异).*"),
-        Pattern.compile(".*(经常|总是|通常|习惯).*"),
-        
-        // 相似经历查询
-        Pattern.compile(".*(类似|相似|一样|同样|遇到过).*"),
-        Pattern.compile(".*(之前.*怎么|以前.*怎么|过去.*怎么).*"),
-        Pattern.compile(".*(怎么解决|如何处理|怎么办).*"),
-        
-        // 直接查询历史
-        Pattern.compile(".*(查找|搜索|检索|查询).*历史.*"),
-        Pattern.compile(".*(我的.*历史|我的.*记录|我的.*日记).*")
-    );
-
-    // 工具调用关键词模式
-    private static final List<Pattern> TOOL_QUERY_PATTERNS = Arrays.asList(
-        Pattern.compile(".*(搜索|查找|找|下载|保存|生成|执行|运行).*"),
-        Pattern.compile(".*(网页|网站|链接|URL).*"),
-        Pattern.compile(".*(文件|文档|PDF|图片).*"),
-        Pattern.compile(".*(代码|脚本|命令).*")
-    );
-
-    public IntentDetectionService(ChatModel dashscopeChatModel) {
+    public IntentDetectionService(ChatModel dashscopeChatModel, MeterRegistry meterRegistry,
+                                  ResourceLoader resourceLoader) {
         if (dashscopeChatModel == null) {
             throw new IllegalArgumentException("ChatModel cannot be null");
         }
+        this.meterRegistry = meterRegistry;
+        this.resourceLoader = resourceLoader;
         
         String intentDetectionPrompt = """
             你是一个专业的用户意图分类器。根据用户消息，判断用户的真实意图。
@@ -109,9 +179,88 @@ public class IntentDetectionService {
                 .build();
     }
 
+    /**
+     * 加载关键词权重与预置说法并注册指标
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        try (InputStream input = resourceLoader.getResource(keywordsLocation).getInputStream()) {
+            scorer = IntentKeywordScorer.read(input);
+        }
+        log.info("意图关键词加载完成，共 {} 个关键词，LLM 兜底{}（置信度低于 {}）",
+                scorer.keywords().size(), llmFallbackEnabled ? "开启" : "关闭", llmFallbackThreshold);
+
+        for (ChatIntent intent : ChatIntent.values()) {
+            ruleDetections.put(intent, detectionCounter("rule", intent));
+            llmDetections.put(intent, detectionCounter("llm", intent));
+        }
+        ruleConfidence = DistributionSummary.builder("relamind.intent.rule.confidence")
+                .description("Confidence of keyword-scored intents")
+                .publishPercentiles(0.1, 0.5)
+                .register(meterRegistry);
+        llmTimer = Timer.builder("relamind.intent.llm")
+                .description("Latency of LLM intent classification, including failures")
+                .register(meterRegistry);
+
+        if (llmFallbackEnabled && cacheEnabled) {
+            initCache();
+        }
+    }
+
+    private void initCache() throws IOException {
+        intentCache = new IntentResultCache(cacheMaxSize, TimeUnit.SECONDS.toNanos(cacheTtlSeconds),
+                cacheMaxMessageLength);
+        if (cacheWarmupLocation != null && !cacheWarmupLocation.isBlank()) {
+            Map<String, IntentResultCache.CachedIntent> presets = new LinkedHashMap<>();
+            try (InputStream input = resourceLoader.getResource(cacheWarmupLocation).getInputStream()) {
+                for (IntentWeightCalibrator.Example example : IntentWeightCalibrator.readExamples(input)) {
+                    presets.putIfAbsent(example.message(),
+                            new IntentResultCache.CachedIntent(example.intent(), 1.0, "预置常见说法"));
+                }
+            }
+            intentCache.preset(presets);
+        }
+        log.info("意图识别缓存已开启，预置 {} 条说法，最多缓存 {} 条 LLM 结论，有效期 {} 秒",
+                intentCache.presetCount(), cacheMaxSize, cacheTtlSeconds);
+
+        for (ChatIntent intent : ChatIntent.values()) {
+            cacheDetections.put(intent, detectionCounter("cache", intent));
+        }
+        FunctionCounter.builder("relamind.intent.cache.requests", intentCache.hits(), LongAdder::sum)
+                .description("Intent cache lookups for messages that would go to the LLM")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("relamind.intent.cache.requests", intentCache.misses(), LongAdder::sum)
+                .description("Intent cache lookups for messages that would go to the LLM")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("relamind.intent.cache.evictions", intentCache.evictions(), LongAdder::sum)
+                .description("Cached LLM intents dropped for size or expiry")
+                .register(meterRegistry);
+        Gauge.builder("relamind.intent.cache.hit.ratio", intentCache, IntentResultCache::hitRatio)
+                .description("Share of intent cache lookups served without calling the LLM")
+                .register(meterRegistry);
+        Gauge.builder("relamind.intent.cache.size", intentCache, IntentResultCache::size)
+                .description("Cached LLM intents, excluding warmup presets")
+                .register(meterRegistry);
+        FunctionCounter.builder("relamind.intent.cache.saved.latency", savedNanos,
+                        nanos -> nanos.sum() / (double) TimeUnit.SECONDS.toNanos(1))
+                .description("Estimated LLM latency avoided by intent cache hits")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    private Counter detectionCounter(String source, ChatIntent intent) {
+        return Counter.builder("relamind.intent.detections")
+                .description("Intent detections by the source that decided them")
+                .tag("source", source)
+                .tag("intent", intent.name())
+                .register(meterRegistry);
+    }
+
     /**
      * 检测用户意图
-     * 优先使用规则匹配（快速），可选使用 LLM 分类（准确）
+     * 先用关键词打分（快速），置信度低于 LLM 兜底阈值时再用 LLM 分类（准确）
      */
     public IntentDetectionResult detectIntent(String message) {
         if (message == null || message.trim().isEmpty()) {
@@ -123,52 +272,70 @@ public class IntentDetectionService {
             );
         }
 
-        if (USE_LLM_DETECTION) {
-            return detectIntentByLLM(message);
-        } else {
-            return detectIntentByRule(message);
+        IntentDetectionResult ruleResult = detectIntentByRule(message);
+        if (llmFallbackEnabled && ruleResult.getConfidence() < llmFallbackThreshold) {
+            log.debug("规则置信度 {} 低于 {}，使用 LLM 识别", ruleResult.getConfidence(), llmFallbackThreshold);
+            return detectIntentByLLM(message, ruleResult);
         }
+        ruleDetections.get(ruleResult.getIntent()).increment();
+        return ruleResult;
     }
 
     /**
-     * 基于规则的意图识别（快速）
+     * 基于关键词打分的意图识别（快速）
+     * 单次扫描消息，按各意图关键词的命中与权重计算概率，概率最高的意图及其概率即结果与置信度
      */
     private IntentDetectionResult detectIntentByRule(String message) {
-        String lowerMessage = message.toLowerCase();
-
-        // 优先检测是否需要工具调用
-        if (matchesPattern(lowerMessage, TOOL_QUERY_PATTERNS)) {
-            return new IntentDetectionResult(
-                ChatIntent.TOOL_CALL,
-                0.85,
-                false,
-                "检测到工具调用关键词"
-            );
-        }
+        IntentKeywordScorer.Score score = scorer.score(message);
+        ruleConfidence.record(score.confidence());
+        log.debug("规则意图打分: {}，命中: {}", score.probabilities(), score.ruleMatches());
 
-        // 检测是否需要 RAG 检索
-        if (matchesPattern(lowerMessage, HISTORY_QUERY_PATTERNS)) {
-            return new IntentDetectionResult(
-                ChatIntent.RAG_QUERY,
-                0.80,
-                false,
-                "检测到历史查询关键词"
-            );
-        }
-
-        // 默认普通聊天
+        String probabilities = score.probabilities().entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + String.format(Locale.ROOT, "%.2f", entry.getValue()))
+                .collect(Collectors.joining(", "));
+        String reason = score.evidence().isEmpty()
+                ? "未匹配到" + (score.intent() == ChatIntent.NORMAL_CHAT ? "特殊意图，默认为普通聊天" : "关键词")
+                : "检测到关键词 " + score.evidence();
+        // 没有命中任何关键词时只是默认普通聊天，置信度只反映截距，不请用户确认
+        boolean needConfirmation = !score.evidence().isEmpty() && score.confidence() < confirmationThreshold;
         return new IntentDetectionResult(
-            ChatIntent.NORMAL_CHAT,
-            0.90,
-            false,
-            "未匹配到特殊意图，默认为普通聊天"
+            score.intent(),
+            score.confidence(),
+            needConfirmation,
+            reason + "（" + probabilities + "）",
+            score.ruleMatches()
         );
     }
 
     /**
      * 基于 LLM 的意图识别（准确）
+     *
+     * 先查缓存，未命中时调用 LLM，成功的结论写入缓存
+     *
+     * @param ruleResult LLM 不可用时返回的规则识别结果
      */
-    private IntentDetectionResult detectIntentByLLM(String message) {
+    private IntentDetectionResult detectIntentByLLM(String message, IntentDetectionResult ruleResult) {
+        String cacheKey = intentCache != null ? intentCache.key(message) : null;
+        if (cacheKey != null) {
+            IntentResultCache.CachedIntent cached = intentCache.get(cacheKey);
+            if (cached != null) {
+                long calls = llmCalls.sum();
+                if (calls > 0) {
+                    savedNanos.add(llmNanos.sum() / calls);
+                }
+                log.debug("意图识别命中缓存: intent={}, reason={}", cached.intent(), cached.reason());
+                cacheDetections.get(cached.intent()).increment();
+                return new IntentDetectionResult(
+                    cached.intent(),
+                    cached.confidence(),
+                    cached.confidence() < confirmationThreshold,
+                    cached.reason() + "（缓存）",
+                    ruleResult.getRuleMatches()
+                );
+            }
+        }
+
+        long start = System.nanoTime();
         try {
             // 使用 LLM 进行意图分类（结构化输出）
             IntentClassification classification = intentDetectionClient
@@ -179,7 +346,8 @@ public class IntentDetectionService {
 
             if (classification == null) {
                 log.warn("LLM 返回的意图分类为 null，降级为规则匹配");
-                return detectIntentByRule(message);
+                ruleDetections.get(ruleResult.getIntent()).increment();
+                return ruleResult;
             }
 
             // 解析意图类型
@@ -188,22 +356,32 @@ public class IntentDetectionService {
                 ? Math.max(0.0, Math.min(1.0, classification.confidence())) 
                 : 0.5; // 默认置信度
 
-            boolean needConfirmation = confidence < CONFIDENCE_THRESHOLD;
+            boolean needConfirmation = confidence < confirmationThreshold;
             String reason = classification.reason() != null ? classification.reason() : "LLM 识别";
 
             log.info("LLM 意图识别结果: intent={}, confidence={}, reason={}", 
                 intent, confidence, reason);
 
+            llmCalls.increment();
+            llmNanos.add(System.nanoTime() - start);
+            llmDetections.get(intent).increment();
+            if (cacheKey != null) {
+                intentCache.put(cacheKey, new IntentResultCache.CachedIntent(intent, confidence, reason));
+            }
             return new IntentDetectionResult(
                 intent,
                 confidence,
                 needConfirmation,
-                reason
+                reason,
+                ruleResult.getRuleMatches()
             );
         } catch (Exception e) {
             log.error("LLM 意图识别失败，降级为规则匹配", e);
             // 降级为规则匹配
-            return detectIntentByRule(message);
+            ruleDetections.get(ruleResult.getIntent()).increment();
+            return ruleResult;
+        } finally {
+            llmTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
@@ -223,12 +401,5 @@ public class IntentDetectionService {
             return ChatIntent.NORMAL_CHAT;
         }
     }
-
-    /**
-     * 检查消息是否匹配模式列表
-     */
-    private boolean matchesPattern(String message, List<Pattern> patterns) {
-        return patterns.stream().anyMatch(pattern -> pattern.matcher(message).matches());
-    }
 }
 
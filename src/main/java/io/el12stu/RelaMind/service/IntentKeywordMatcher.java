@@ -0,0 +1,245 @@
+package io.el12stu.RelaMind.service;
+
+import io.el12stu.RelaMind.service.IntentDetectionResult.ChatIntent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 意图关键词的单次扫描匹配器
+ * <p>
+ * 规则写法是正则的一个子集：「|」分隔的候选，候选内可用「.*」连接多个片段（如「几.*年前」），
+ * 含义与 {@code .*(候选1|候选2).*} 相同，只是作用于消息的任意位置。
+ * 全部规则的全部片段编译进同一个 {@link SensitiveWordAutomaton}（每个片段自成一个分类），
+ * 消息只扫描一次：单片段候选每次出现计一次命中；多片段候选按出现顺序贪心推进，最后一个片段出现时计一次命中。
+ * 与正则的 {@code .} 一致，片段之间不能跨越换行。
+ * <p>
+ * 不回溯，耗时只与消息长度成正比；消息按忽略大小写、全角转半角比较，不需要先生成小写副本。
+ */
+final class IntentKeywordMatcher {
+
+    private static final String GAP = ".*";
+
+    private static final SensitiveWordNormalizer NORMALIZER =
+            new SensitiveWordNormalizer(true, true, "", Map.of());
+
+    private final SensitiveWordAutomaton automaton;
+
+    /**
+     * 每个候选所属的意图与原始写法
+     */
+    private final ChatIntent[] intents;
+
+    private final String[] alternatives;
+
+    /**
+     * 每个候选的片段数
+     */
+    private final int[] segmentCounts;
+
+    /**
+     * 片段（自动机分类下标）→ 用到它的 (候选下标, 片段序号)，按候选、片段顺序排列
+     */
+    private final long[][] usesBySegment;
+
+    /**
+     * 意图关键词：一个候选（可含「.*」）及其所属意图
+     */
+    record Keyword(ChatIntent intent, String pattern) {
+    }
+
+    /**
+     * @param rules 意图 → 规则列表，每条规则是「|」分隔的候选
+     * @throws IllegalArgumentException 候选为空或含空片段
+     */
+    IntentKeywordMatcher(Map<ChatIntent, List<String>> rules) {
+        this(rules.entrySet().stream()
+                .flatMap(entry -> entry.getValue().stream()
+                        .flatMap(rule -> Arrays.stream(rule.split("\\|")))
+                        .map(alternative -> new Keyword(entry.getKey(), alternative)))
+                .toList());
+    }
+
+    /**
+     * @param keywords 关键词列表，下标即 {@link Hits#count(int)} 的下标
+     * @throws IllegalArgumentException 候选为空或含空片段
+     */
+    IntentKeywordMatcher(List<Keyword> keywords) {
+        List<ChatIntent> intentList = new ArrayList<>();
+        List<String> alternativeList = new ArrayList<>();
+        List<String[]> segmentList = new ArrayList<>();
+        Map<String, List<Long>> uses = new LinkedHashMap<>();
+        for (Keyword keyword : keywords) {
+            String alternative = keyword.pattern();
+            String[] segments = alternative.split(Pattern.quote(GAP), -1);
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = NORMALIZER.normalize(segments[i]);
+                if (segments[i].isEmpty()) {
+                    throw new IllegalArgumentException("意图规则含空片段: " + alternative);
+                }
+                long use = (long) alternativeList.size() << 32 | i;
+                uses.computeIfAbsent(segments[i], key -> new ArrayList<>()).add(use);
+            }
+            intentList.add(keyword.intent());
+            alternativeList.add(alternative);
+            segmentList.add(segments);
+        }
+
+        // 片段即分类：分类下标按片段首次出现的顺序分配，与 uses 的遍历顺序一致
+        Map<String, String> words = new LinkedHashMap<>();
+        uses.keySet().forEach(segment -> words.put(segment, segment));
+        this.automaton = SensitiveWordAutomaton.build(words, NORMALIZER);
+        this.usesBySegment = new long[uses.size()][];
+        int index = 0;
+        for (List<Long> segmentUses : uses.values()) {
+            usesBySegment[index++] = segmentUses.stream().mapToLong(Long::longValue).toArray();
+        }
+        this.intents = intentList.toArray(new ChatIntent[0]);
+        this.alternatives = alternativeList.toArray(new String[0]);
+        this.segmentCounts = segmentList.stream().mapToInt(segments -> segments.length).toArray();
+    }
+
+    /**
+     * 关键词（候选）数量
+     */
+    int size() {
+        return alternatives.length;
+    }
+
+    /**
+     * 扫描一次消息，返回每个候选的命中次数
+     */
+    Hits match(CharSequence message) {
+        int[] counts = new int[alternatives.length];
+        if (message == null || message.isEmpty()) {
+            return new Hits(counts);
+        }
+        // 多片段候选的推进状态：已匹配的片段数，以及下一个片段最早可以开始的位置
+        int[] progress = new int[alternatives.length];
+        int[] readyAt = new int[alternatives.length];
+        LineBreaks lineBreaks = new LineBreaks(message);
+        automaton.scan(message, (offset, length, segment) -> {
+            for (long use : usesBySegment[segment]) {
+                int alternative = (int) (use >>> 32);
+                int position = (int) use;
+                int segments = segmentCounts[alternative];
+                if (segments == 1) {
+                    counts[alternative]++;
+                    continue;
+                }
+                // 已匹配的部分与本次出现之间隔着换行，之前的推进作废
+                if (progress[alternative] > 0 && lineBreaks.lastBefore(offset) >= readyAt[alternative]) {
+                    progress[alternative] = 0;
+                }
+                if (position != progress[alternative] || offset < readyAt[alternative]) {
+                    continue;
+                }
+                readyAt[alternative] = offset + length;
+                if (++progress[alternative] == segments) {
+                    counts[alternative]++;
+                    progress[alternative] = 0;
+                }
+            }
+        });
+        return new Hits(counts);
+    }
+
+    /**
+     * 按需向前推进的换行位置：命中按结束位置依次报告，且命中内部不含换行，游标只需向前移动
+     */
+    private static final class LineBreaks {
+
+        private final CharSequence text;
+
+        private int scanned;
+
+        private int last = -1;
+
+        private LineBreaks(CharSequence text) {
+            this.text = text;
+        }
+
+        /**
+         * position 之前最后一个换行的位置，没有时为 -1
+         */
+        int lastBefore(int position) {
+            for (; scanned < position; scanned++) {
+                if (isLineTerminator(text.charAt(scanned))) {
+                    last = scanned;
+                }
+            }
+            return last;
+        }
+
+        /**
+         * 与正则 {@code .} 不匹配的行结束符一致
+         */
+        private static boolean isLineTerminator(char ch) {
+            return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+        }
+    }
+
+    /**
+     * 一次扫描的结果
+     */
+    final class Hits {
+
+        private final int[] counts;
+
+        private Hits(int[] counts) {
+            this.counts = counts;
+        }
+
+        /**
+         * 某个候选的命中次数
+         */
+        int count(int alternative) {
+            return counts[alternative];
+        }
+
+        /**
+         * 某个意图的全部候选命中次数之和
+         */
+        int count(ChatIntent intent) {
+            int total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (intents[i] == intent) {
+                    total += counts[i];
+                }
+            }
+            return total;
+        }
+
+        /**
+         * 命中的意图及各自的命中次数，没有命中的意图不出现
+         */
+        Map<ChatIntent, Integer> byIntent() {
+            Map<ChatIntent, Integer> byIntent = new EnumMap<>(ChatIntent.class);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    byIntent.merge(intents[i], counts[i], Integer::sum);
+                }
+            }
+            return Collections.unmodifiableMap(byIntent);
+        }
+
+        /**
+         * 某个意图下命中的候选（原始写法），用于说明识别理由
+         */
+        List<String> alternatives(ChatIntent intent) {
+            List<String> hit = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0 && intents[i] == intent) {
+                    hit.add(alternatives[i]);
+                }
+            }
+            return hit;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package io.el12stu.RelaMind.service;
+
+import io.el12stu.RelaMind.service.IntentDetectionResult.ChatIntent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 基于关键词命中的意图打分模型
+ * <p>
+ * 每个意图的得分 = 截距 + Σ 关键词权重 * ln(1 + 命中次数)，三个意图的得分经 softmax 得到概率，
+ * 概率最高的意图即识别结果，其概率即置信度。命中次数取对数，同一个词反复出现时证据递减；
+ * 不同意图的关键词同时命中时由权重决定谁胜出，而不是固定的检查顺序。
+ * <p>
+ * 权重文件每行「意图<Tab>关键词<Tab>权重」，关键词写法见 {@link IntentKeywordMatcher}，
+ * 关键词为「*」的行是该意图的截距；# 开头为注释。权重由 {@link IntentWeightCalibrator} 在标注集上校准后写回。
+ */
+final class IntentKeywordScorer {
+
+    /**
+     * 截距行的关键词
+     */
+    static final String BIAS = "*";
+
+    private static final ChatIntent[] INTENTS = ChatIntent.values();
+
+    private final IntentKeywordMatcher matcher;
+
+    private final List<IntentKeywordMatcher.Keyword> keywords;
+
+    private final double[] weights;
+
+    /**
+     * 按意图序号的截距
+     */
+    private final double[] biases;
+
+    /**
+     * 原始文件内容，写回时只替换权重列，保留注释与顺序
+     */
+    private final List<String> lines;
+
+    /**
+     * 每行对应的关键词下标；截距行为 -1 - 意图序号，注释与空行为 Integer.MIN_VALUE
+     */
+    private final int[] lineTargets;
+
+    private IntentKeywordScorer(IntentKeywordMatcher matcher, List<IntentKeywordMatcher.Keyword> keywords,
+                                double[] weights, double[] biases, List<String> lines, int[] lineTargets) {
+        this.matcher = matcher;
+        this.keywords = keywords;
+        this.weights = weights;
+        this.biases = biases;
+        this.lines = lines;
+        this.lineTargets = lineTargets;
+    }
+
+    /**
+     * 读取权重文件
+     *
+     * @throws IllegalArgumentException 行格式错误、意图未知或权重不是数字
+     */
+    static IntentKeywordScorer read(InputStream input) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        List<IntentKeywordMatcher.Keyword> keywords = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        double[] biases = new double[INTENTS.length];
+        int[] lineTargets = new int[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                lineTargets[i] = Integer.MIN_VALUE;
+                continue;
+            }
+            String[] columns = line.split("\t");
+            if (columns.length != 3) {
+                throw new IllegalArgumentException("意图权重格式错误，应为「意图<Tab>关键词<Tab>权重」: " + line);
+            }
+            ChatIntent intent;
+            double weight;
+            try {
+                intent = ChatIntent.valueOf(columns[0].strip());
+                weight = Double.parseDouble(columns[2].strip());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("意图权重格式错误: " + line, e);
+            }
+            String pattern = columns[1].strip();
+            if (BIAS.equals(pattern)) {
+                biases[intent.ordinal()] = weight;
+                lineTargets[i] = -1 - intent.ordinal();
+            } else {
+                lineTargets[i] = keywords.size();
+                keywords.add(new IntentKeywordMatcher.Keyword(intent, pattern));
+                weights.add(weight);
+            }
+        }
+        return new IntentKeywordScorer(new IntentKeywordMatcher(keywords), List.copyOf(keywords),
+                weights.stream().mapToDouble(Double::doubleValue).toArray(), biases, List.copyOf(lines), lineTargets);
+    }
+
+    /**
+     * 识别消息的意图
+     */
+    Score score(CharSequence message) {
+        IntentKeywordMatcher.Hits hits = matcher.match(message);
+        double[] probabilities = probabilities(features(hits), weights, biases);
+        int best = 0;
+        for (int c = 1; c < probabilities.length; c++) {
+            if (probabilities[c] > probabilities[best]) {
+                best = c;
+            }
+        }
+        ChatIntent intent = INTENTS[best];
+        Map<ChatIntent, Double> byIntent = new EnumMap<>(ChatIntent.class);
+        for (ChatIntent each : INTENTS) {
+            byIntent.put(each, probabilities[each.ordinal()]);
+        }
+        return new Score(intent, probabilities[best], byIntent, hits.byIntent(), hits.alternatives(intent));
+    }
+
+    /**
+     * 一次识别的结果
+     *
+     * @param intent        概率最高的意图
+     * @param confidence    该意图的概率
+     * @param probabilities 各意图的概率
+     * @param ruleMatches   命中的意图类别及命中次数
+     * @param evidence      识别出的意图下命中的关键词
+     */
+    record Score(ChatIntent intent, double confidence, Map<ChatIntent, Double> probabilities,
+                 Map<ChatIntent, Integer> ruleMatches, List<String> evidence) {
+    }
+
+    /**
+     * 关键词特征：ln(1 + 命中次数)
+     */
+    double[] features(CharSequence message) {
+        return features(matcher.match(message));
+    }
+
+    private double[] features(IntentKeywordMatcher.Hits hits) {
+        double[] features = new double[keywords.size()];
+        for (int k = 0; k < features.length; k++) {
+            int count = hits.count(k);
+            if (count > 0) {
+                features[k] = Math.log1p(count);
+            }
+        }
+        return features;
+    }
+
+    /**
+     * 按意图序号的 softmax 概率
+     */
+    double[] probabilities(double[] features, double[] weights, double[] biases) {
+        double[] scores = biases.clone();
+        for (int k = 0; k < features.length; k++) {
+            if (features[k] != 0) {
+                scores[keywords.get(k).intent().ordinal()] += weights[k] * features[k];
+            }
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (double score : scores) {
+            max = Math.max(max, score);
+        }
+        double sum = 0;
+        for (int c = 0; c < scores.length; c++) {
+            scores[c] = Math.exp(scores[c] - max);
+            sum += scores[c];
+        }
+        for (int c = 0; c < scores.length; c++) {
+            scores[c] /= sum;
+        }
+        return scores;
+    }
+
+    List<IntentKeywordMatcher.Keyword> keywords() {
+        return keywords;
+    }
+
+    double[] weights() {
+        return weights.clone();
+    }
+
+    double[] biases() {
+        return biases.clone();
+    }
+
+    /**
+     * 替换权重与截距，关键词不变
+     */
+    IntentKeywordScorer withWeights(double[] weights, double[] biases) {
+        return new IntentKeywordScorer(matcher, keywords, weights.clone(), biases.clone(), lines, lineTargets);
+    }
+
+    /**
+     * 按原文件的格式写出，只替换权重列
+     */
+    void write(Writer writer) throws IOException {
+        for (int i = 0; i < lines.size(); i++) {
+            int target = lineTargets[i];
+            if (target == Integer.MIN_VALUE) {
+                writer.write(lines.get(i));
+            } else {
+                String[] columns = lines.get(i).strip().split("\t");
+                double weight = target >= 0 ? weights[target] : biases[-1 - target];
+                writer.write(columns[0] + "\t" + columns[1] + "\t" + String.format(Locale.ROOT, "%.3f", weight));
+            }
+            writer.write('\n');
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package io.el12stu.RelaMind.service;
+
+import io.el12stu.RelaMind.service.IntentDetectionResult.ChatIntent;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LLM 意图识别结果缓存，键为归一化后的消息
+ * <p>
+ * 归一化：全角转半角、忽略大小写、去掉空白与标点，「帮我搜索一下！」与「帮我 搜索一下」共用一条缓存。
+ * 过长的消息几乎不会重复，不缓存。
+ * <p>
+ * 两部分：
+ * <ul>
+ *     <li>预置：启动时从常见说法及其标注加载，不过期、不淘汰，这些说法从不调用 LLM</li>
+ *     <li>缓存：LLM 的识别结果，写入后 ttl 过期，超过容量时淘汰最久未访问的</li>
+ * </ul>
+ */
+final class IntentResultCache {
+
+    /**
+     * 计算缓存键时去掉的字符：空白、ASCII 与中文标点
+     */
+    private static final String IGNORED_CHARS = " \t\r\n\u3000\u200B"
+            + "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~"
+            + "，。！？、；：“”‘’（）《》〈〉【】「」『』…—～·";
+
+    private static final SensitiveWordNormalizer NORMALIZER =
+            new SensitiveWordNormalizer(true, true, IGNORED_CHARS, Map.of());
+
+    /**
+     * 缓存的识别结论
+     */
+    record CachedIntent(ChatIntent intent, double confidence, String reason) {
+    }
+
+    private record Entry(CachedIntent intent, long writtenAtNanos) {
+    }
+
+    private final int maxEntries;
+
+    private final long ttlNanos;
+
+    private final int maxMessageLength;
+
+    private volatile Map<String, CachedIntent> presets = Map.of();
+
+    /**
+     * 按访问顺序排列的 LinkedHashMap：头部为最久未访问的消息
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries       缓存条数上限（不含预置）
+     * @param ttlNanos         写入后的存活时间
+     * @param maxMessageLength 超过该长度的消息不缓存
+     */
+    IntentResultCache(int maxEntries, long ttlNanos, int maxMessageLength) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    /**
+     * 缓存键；消息过长或归一化后为空时返回 null，表示不缓存
+     */
+    String key(String message) {
+        if (message == null || message.length() > maxMessageLength) {
+            return null;
+        }
+        String key = NORMALIZER.normalize(message);
+        return key.isEmpty() ? null : key;
+    }
+
+    /**
+     * 替换预置说法
+     *
+     * @return 去重后的预置条数
+     */
+    int preset(Map<String, CachedIntent> phrasings) {
+        Map<String, CachedIntent> normalized = new HashMap<>();
+        phrasings.forEach((message, intent) -> {
+            String key = key(message);
+            if (key != null) {
+                normalized.putIfAbsent(key, intent);
+            }
+        });
+        presets = Map.copyOf(normalized);
+        return normalized.size();
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @return 命中时返回结论，未命中或已过期返回 null
+     */
+    CachedIntent get(String key) {
+        CachedIntent preset = presets.get(key);
+        if (preset != null) {
+            hits.increment();
+            return preset;
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.writtenAtNanos() < ttlNanos) {
+                hits.increment();
+                return entry.intent();
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入 LLM 的识别结论，超过容量时淘汰最久未访问的消息
+     */
+    void put(String key, CachedIntent intent) {
+        if (maxEntries <= 0 || presets.containsKey(key)) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            entries.put(key, new Entry(intent, now));
+            while (entries.size() > maxEntries) {
+                entries.pollFirstEntry();
+                evictions.increment();
+            }
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    int presetCount() {
+        return presets.size();
+    }
+
+    LongAdder hits() {
+        return hits;
+    }
+
+    LongAdder misses() {
+        return misses;
+    }
+
+    LongAdder evictions() {
+        return evictions;
+    }
+
+    double hitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+}
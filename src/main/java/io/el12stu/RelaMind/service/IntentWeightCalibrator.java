@@ -0,0 +1,175 @@
+package io.el12stu.RelaMind.service;
+
+import io.el12stu.RelaMind.service.IntentDetectionResult.ChatIntent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 离线工具：在标注集上校准意图关键词权重，写回权重文件
+ * <p>
+ * 用法：
+ * <pre>
+ * java -cp target/classes io.el12stu.RelaMind.service.IntentWeightCalibrator &lt;权重文件&gt; &lt;标注集&gt;
+ *     [--output=输出文件] [--epochs=2000] [--l2=0.003] [--threshold=0.5]
+ * </pre>
+ * 标注集每行「意图<Tab>消息」。模型即 {@link IntentKeywordScorer} 的多分类逻辑回归，
+ * 全量梯度下降最小化交叉熵，得到的 softmax 概率可以直接作为置信度使用。
+ * L2 正则把权重拉向文件中现有的权重（先验）而不是 0：标注集远小于关键词数时，
+ * 没有样本覆盖的关键词保持人工设定的权重，样本只在有证据的地方修正它。
+ * 输出标注集上的准确率，以及置信度低于 threshold（即会走 LLM 兜底）的消息占比。
+ * 不指定 --output 时覆盖原权重文件，只替换权重列。
+ */
+public final class IntentWeightCalibrator {
+
+    private static final double LEARNING_RATE = 0.5;
+
+    private IntentWeightCalibrator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: IntentWeightCalibrator <weights> <labeled> [--output=<file>] "
+                    + "[--epochs=<n>] [--l2=<lambda>] [--threshold=<confidence>]");
+            System.exit(2);
+        }
+        Path weightsFile = Path.of(args[0]);
+        Path labeledFile = Path.of(args[1]);
+        Path output = weightsFile;
+        int epochs = 2000;
+        double l2 = 0.003;
+        double threshold = 0.5;
+        for (int i = 2; i < args.length; i++) {
+            String option = args[i];
+            if (option.startsWith("--output=")) {
+                output = Path.of(option.substring("--output=".length()));
+            } else if (option.startsWith("--epochs=")) {
+                epochs = Integer.parseInt(option.substring("--epochs=".length()));
+            } else if (option.startsWith("--l2=")) {
+                l2 = Double.parseDouble(option.substring("--l2=".length()));
+            } else if (option.startsWith("--threshold=")) {
+                threshold = Double.parseDouble(option.substring("--threshold=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+
+        IntentKeywordScorer scorer;
+        try (InputStream input = Files.newInputStream(weightsFile)) {
+            scorer = IntentKeywordScorer.read(input);
+        }
+        List<Example> examples = readExamples(labeledFile);
+        System.out.printf("Before: %s%n", evaluate(scorer, examples, threshold));
+        IntentKeywordScorer calibrated = calibrate(scorer, examples, epochs, l2);
+        System.out.printf("After:  %s%n", evaluate(calibrated, examples, threshold));
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            calibrated.write(writer);
+        }
+        System.out.printf("Wrote %d keyword weights to %s%n", calibrated.keywords().size(), output);
+    }
+
+    /**
+     * 一条标注样本
+     */
+    record Example(ChatIntent intent, String message) {
+    }
+
+    /**
+     * 读取标注集：每行「意图<Tab>消息」，# 开头为注释
+     */
+    static List<Example> readExamples(Path file) throws IOException {
+        return readExamples(Files.newInputStream(file));
+    }
+
+    /**
+     * 读取标注集，读完后关闭输入流
+     */
+    static List<Example> readExamples(InputStream input) throws IOException {
+        List<Example> examples = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    throw new IllegalArgumentException("标注格式错误，应为「意图<Tab>消息」: " + line);
+                }
+                examples.add(new Example(ChatIntent.valueOf(line.substring(0, tab).strip()), line.substring(tab + 1)));
+            }
+        }
+        return examples;
+    }
+
+    /**
+     * 全量梯度下降拟合权重与截距，以 scorer 现有的权重为先验
+     */
+    static IntentKeywordScorer calibrate(IntentKeywordScorer scorer, List<Example> examples, int epochs, double l2) {
+        List<IntentKeywordMatcher.Keyword> keywords = scorer.keywords();
+        double[] prior = scorer.weights();
+        double[] weights = scorer.weights();
+        double[] biases = scorer.biases();
+        double[][] features = new double[examples.size()][];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = scorer.features(examples.get(i).message());
+        }
+        int n = examples.size();
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            double[] weightGradient = new double[weights.length];
+            double[] biasGradient = new double[biases.length];
+            for (int i = 0; i < n; i++) {
+                double[] probabilities = scorer.probabilities(features[i], weights, biases);
+                int label = examples.get(i).intent().ordinal();
+                for (int c = 0; c < biases.length; c++) {
+                    biasGradient[c] += probabilities[c] - (c == label ? 1 : 0);
+                }
+                for (int k = 0; k < weights.length; k++) {
+                    if (features[i][k] != 0) {
+                        int c = keywords.get(k).intent().ordinal();
+                        weightGradient[k] += (probabilities[c] - (c == label ? 1 : 0)) * features[i][k];
+                    }
+                }
+            }
+            for (int k = 0; k < weights.length; k++) {
+                weights[k] -= LEARNING_RATE * (weightGradient[k] / n + l2 * (weights[k] - prior[k]));
+            }
+            for (int c = 0; c < biases.length; c++) {
+                biases[c] -= LEARNING_RATE * biasGradient[c] / n;
+            }
+        }
+        return scorer.withWeights(weights, biases);
+    }
+
+    /**
+     * 准确率、平均置信度，以及置信度低于 threshold 的占比与其中的准确率
+     */
+    static String evaluate(IntentKeywordScorer scorer, List<Example> examples, double threshold) {
+        int correct = 0;
+        int low = 0;
+        int lowCorrect = 0;
+        double confidence = 0;
+        for (Example example : examples) {
+            IntentKeywordScorer.Score score = scorer.score(example.message());
+            boolean right = score.intent() == example.intent();
+            correct += right ? 1 : 0;
+            confidence += score.confidence();
+            if (score.confidence() < threshold) {
+                low++;
+                lowCorrect += right ? 1 : 0;
+            }
+        }
+        int n = Math.max(examples.size(), 1);
+        return String.format("accuracy %.1f%% (%d/%d), mean confidence %.3f, below %.2f: %.1f%% (accuracy %.1f%%)",
+                100.0 * correct / n, correct, examples.size(), confidence / n, threshold,
+                100.0 * low / n, low == 0 ? 0.0 : 100.0 * lowCorrect / low);
+    }
+}
@@ -0,0 +1,757 @@
+package io.el12stu.RelaMind.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 敏感词 Aho–Corasick 自动机（双数组实现）
+ * <p>
+ * 构建时先建普通 Trie，再压缩为双数组：状态 s 经字符编码 c 的转移为 t = base[s] + c，当且仅当 check[t] == s 时转移存在；
+ * 字符到编码的映射是一张按 char 下标的数组，匹配过程中没有装箱、没有哈希查找。
+ * 失配时沿 fail 指针回退，整段文本只扫描一遍（O(n)），匹配过程不分配任何对象。
+ * <p>
+ * 归一化（{@link SensitiveWordNormalizer}）在构建时折叠进编码表：全角、大小写、繁简不同的字符直接映射到同一个编码，
+ * 干扰字符映射为 {@link #SKIP}，读到时状态保持不变。词条按同样的规则归一化后入库，匹配时不生成新字符串。
+ * <p>
+ * 每个词条带一个分类。{@link #scan} 单次扫描报告全部命中的位置（原文偏移与长度，含其中的干扰字符）与分类，
+ * {@link #mask} 在同一次扫描中把命中改写为遮盖字符，写入调用方复用的缓冲区。
+ * <p>
+ * 自动机的唯一表示是一块紧凑的二进制镜像（小端序，格式见 {@link #load}），各张表是镜像上的 {@link IntBuffer} /
+ * {@link CharBuffer} 视图。构建出的自动机把镜像放在堆外内存中；镜像也可以用 {@link #writeTo} 写成文件，
+ * 启动时内存映射后直接 {@link #load}，不需要重建，同一主机上的多个进程共享同一份页缓存。
+ * <p>
+ * 构建完成后不可变，可以被任意线程并发使用。
+ */
+public final class SensitiveWordAutomaton {
+
+    /**
+     * 根状态
+     */
+    public static final int ROOT = 0;
+
+    /**
+     * 未指定分类的词条所属的分类
+     */
+    public static final String DEFAULT_CATEGORY = "default";
+
+    /**
+     * 编码表中表示「跳过该字符」的编码
+     */
+    private static final char SKIP = Character.MAX_VALUE;
+
+    /**
+     * 镜像文件头魔数（"RMSW"）
+     */
+    private static final int MAGIC = 0x524D5357;
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * 文件头：魔数、格式版本、状态数、槽位数、词数、分类数、最长词长度、保留
+     */
+    private static final int HEADER_INTS = 8;
+
+    private static final int CODES_LENGTH = Character.MAX_VALUE + 1;
+
+    /**
+     * 每个状态槽位的表：base、check、fail、output、matchState、depth
+     */
+    private static final int TABLES_PER_STATE = 6;
+
+    /**
+     * 每个词条的表：wordLengths、wordCategories
+     */
+    private static final int TABLES_PER_WORD = 2;
+
+    /**
+     * 字符编码表：下标为原始字符，值为其归一化字符的 1 开始的紧凑编码，0 表示字符不在任何敏感词中，SKIP 表示干扰字符
+     */
+    private final char[] codes;
+
+    private final IntBuffer base;
+
+    private final IntBuffer check;
+
+    private final IntBuffer fail;
+
+    /**
+     * 在该状态结束的敏感词下标，没有时为 -1
+     */
+    private final IntBuffer output;
+
+    /**
+     * 沿 fail 链（含自身）最近的有输出的状态，没有时为 -1；非 -1 即表示到达该状态时命中了敏感词
+     */
+    private final IntBuffer matchState;
+
+    /**
+     * 各敏感词的长度
+     */
+    private final IntBuffer wordLengths;
+
+    /**
+     * 各敏感词的分类下标
+     */
+    private final IntBuffer wordCategories;
+
+    /**
+     * 分类名称
+     */
+    private final String[] categories;
+
+    /**
+     * 各状态对应的前缀长度（根为 0）：文本读到某状态时，只有最后 depth 个字符还可能成为后续命中的一部分
+     */
+    private final IntBuffer depth;
+
+    private final int stateCount;
+
+    private final int maxWordLength;
+
+    /**
+     * 完整的二进制镜像
+     */
+    private final ByteBuffer image;
+
+    private SensitiveWordAutomaton(ByteBuffer image) {
+        ByteBuffer header = image.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < HEADER_INTS * Integer.BYTES || header.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("不是敏感词自动机镜像");
+        }
+        if (header.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalArgumentException("不支持的敏感词自动机镜像版本: " + header.getInt(4));
+        }
+        this.image = image;
+        this.stateCount = header.getInt(8);
+        int capacity = header.getInt(12);
+        int wordCount = header.getInt(16);
+        int categoryCount = header.getInt(20);
+        this.maxWordLength = header.getInt(24);
+        long tableBytes = (long) HEADER_INTS * Integer.BYTES + (long) CODES_LENGTH * Character.BYTES
+                + (long) TABLES_PER_STATE * capacity * Integer.BYTES + (long) TABLES_PER_WORD * wordCount * Integer.BYTES;
+        if (capacity < stateCount || wordCount < 0 || categoryCount < 0 || header.limit() < tableBytes) {
+            throw new IllegalArgumentException("敏感词自动机镜像不完整");
+        }
+
+        int offset = HEADER_INTS * Integer.BYTES;
+        this.codes = new char[CODES_LENGTH];
+        slice(image, offset, CODES_LENGTH * Character.BYTES).asCharBuffer().get(codes);
+        offset += CODES_LENGTH * Character.BYTES;
+        int stateBytes = capacity * Integer.BYTES;
+        this.base = slice(image, offset, stateBytes).asIntBuffer();
+        this.check = slice(image, offset += stateBytes, stateBytes).asIntBuffer();
+        this.fail = slice(image, offset += stateBytes, stateBytes).asIntBuffer();
+        this.output = slice(image, offset += stateBytes, stateBytes).asIntBuffer();
+        this.matchState = slice(image, offset += stateBytes, stateBytes).asIntBuffer();
+        this.depth = slice(image, offset += stateBytes, stateBytes).asIntBuffer();
+        offset += stateBytes;
+        int wordBytes = wordCount * Integer.BYTES;
+        this.wordLengths = slice(image, offset, wordBytes).asIntBuffer();
+        this.wordCategories = slice(image, offset += wordBytes, wordBytes).asIntBuffer();
+        offset += wordBytes;
+        this.categories = new String[categoryCount];
+        for (int i = 0; i < categoryCount; i++) {
+            int length = header.getInt(offset);
+            if (length < 0 || offset + Integer.BYTES + length > header.limit()) {
+                throw new IllegalArgumentException("敏感词自动机镜像不完整");
+            }
+            byte[] name = new byte[length];
+            header.get(offset + Integer.BYTES, name);
+            categories[i] = new String(name, StandardCharsets.UTF_8);
+            offset += Integer.BYTES + length;
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer image, int offset, int length) {
+        return image.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 从二进制镜像加载自动机，不复制镜像内容；镜像通常是 {@link #writeTo} 写出的文件的内存映射
+     * <p>
+     * 格式（小端序）：8 个 int 的文件头（魔数、格式版本、状态数、槽位数 n、词数 m、分类数、最长词长度、保留），
+     * 65536 个 char 的编码表，base / check / fail / output / matchState / depth 各 n 个 int，
+     * wordLengths / wordCategories 各 m 个 int，最后是各分类名（int 字节数 + UTF-8）。
+     *
+     * @throws IllegalArgumentException 魔数或格式版本不匹配，或镜像不完整
+     */
+    public static SensitiveWordAutomaton load(ByteBuffer image) {
+        return new SensitiveWordAutomaton(image);
+    }
+
+    /**
+     * 写出二进制镜像
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer content = image.duplicate();
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+
+    /**
+     * 镜像字节数
+     */
+    public int imageBytes() {
+        return image.limit();
+    }
+
+    /**
+     * 由敏感词构建自动机，空白词忽略，重复词只保留一个
+     */
+    public static SensitiveWordAutomaton build(Collection<String> words) {
+        return build(words, SensitiveWordNormalizer.none());
+    }
+
+    /**
+     * 由敏感词构建自动机，词条与待检测文本都按 normalizer 归一化后比较
+     */
+    public static SensitiveWordAutomaton build(Collection<String> words, SensitiveWordNormalizer normalizer) {
+        Map<String, String> categorized = new LinkedHashMap<>();
+        for (String word : words) {
+            categorized.putIfAbsent(word, DEFAULT_CATEGORY);
+        }
+        return build(categorized, normalizer);
+    }
+
+    /**
+     * 由「敏感词 → 分类」构建自动机；归一化后重复的词条保留先出现的分类
+     */
+    public static SensitiveWordAutomaton build(Map<String, String> categorizedWords, SensitiveWordNormalizer normalizer) {
+        return new Builder(categorizedWords, normalizer).build();
+    }
+
+    /**
+     * 文本中是否包含任意敏感词
+     */
+    public boolean matches(CharSequence text) {
+        if (text == null) {
+            return false;
+        }
+        int state = ROOT;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            state = next(state, text.charAt(i));
+            if (matchState.get(state) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 单次扫描报告文本中的全部命中（包括重叠、嵌套的词），不分配对象
+     *
+     * @return 命中次数
+     */
+    public int scan(CharSequence text, MatchListener listener) {
+        if (text == null) {
+            return 0;
+        }
+        int count = 0;
+        int state = ROOT;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            state = next(state, text.charAt(i));
+            // 沿 fail 链依次报告在此结束的每个词，最长的在前
+            for (int terminal = matchState.get(state); terminal >= 0; terminal = matchState.get(fail.get(terminal))) {
+                int word = output.get(terminal);
+                int start = spanStart(text, i, wordLengths.get(word));
+                listener.onMatch(start, i + 1 - start, wordCategories.get(word));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 返回文本中全部命中的位置与分类
+     */
+    public List<SensitiveWordMatch> findAll(CharSequence text) {
+        List<SensitiveWordMatch> matches = new ArrayList<>();
+        scan(text, (offset, length, category) ->
+                matches.add(new SensitiveWordMatch(offset, length, categories[category])));
+        return matches;
+    }
+
+    /**
+     * 单次扫描并遮盖全部命中：有命中时 buffer 被清空后写入遮盖后的文本，没有命中时 buffer 保持为空，调用方直接使用原文
+     *
+     * @return 命中次数
+     */
+    public int mask(CharSequence text, StringBuilder buffer, char mask) {
+        buffer.setLength(0);
+        if (text == null) {
+            return 0;
+        }
+        int count = 0;
+        int state = ROOT;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            state = next(state, text.charAt(i));
+            int terminal = matchState.get(state);
+            if (terminal < 0) {
+                continue;
+            }
+            if (buffer.isEmpty()) {
+                buffer.append(text);
+            }
+            // 最长的词覆盖了在此结束的其余所有词
+            for (int k = spanStart(text, i, wordLengths.get(output.get(terminal))); k <= i; k++) {
+                buffer.setCharAt(k, mask);
+            }
+            for (; terminal >= 0; terminal = matchState.get(fail.get(terminal))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 在 end 处结束、含 length 个有效字符的命中在原文中的起点（向前跨过夹在其中的干扰字符）
+     */
+    private int spanStart(CharSequence text, int end, int length) {
+        int start = end;
+        for (int remaining = length - 1; remaining > 0; ) {
+            start--;
+            if (!isSkipped(text.charAt(start))) {
+                remaining--;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * 分类名称
+     */
+    public String category(int index) {
+        return categories[index];
+    }
+
+    /**
+     * 从 state 读入一个字符后的状态，干扰字符不改变状态
+     */
+    public int next(int state, char ch) {
+        int code = codes[ch];
+        if (code == 0) {
+            return ROOT;
+        }
+        return code == SKIP ? state : transition(base, check, fail, state, code);
+    }
+
+    /**
+     * 该字符是否为匹配时跳过的干扰字符
+     */
+    public boolean isSkipped(char ch) {
+        return codes[ch] == SKIP;
+    }
+
+    /**
+     * 按编码转移，没有直接转移时沿 fail 指针回退
+     */
+    private static int transition(IntBuffer base, IntBuffer check, IntBuffer fail, int state, int code) {
+        int s = state;
+        while (true) {
+            int t = base.get(s) + code;
+            if (check.get(t) == s) {
+                return t;
+            }
+            if (s == ROOT) {
+                return ROOT;
+            }
+            s = fail.get(s);
+        }
+    }
+
+    /**
+     * 到达该状态时是否命中了敏感词
+     */
+    public boolean isMatch(int state) {
+        return matchState.get(state) >= 0;
+    }
+
+    /**
+     * 到达该状态时命中的最长敏感词长度，未命中时为 0
+     * 命中的词都是当前已读文本的后缀，最长的那个覆盖了其余所有命中
+     */
+    public int matchLength(int state) {
+        int terminal = matchState.get(state);
+        return terminal >= 0 ? wordLengths.get(output.get(terminal)) : 0;
+    }
+
+    /**
+     * 该状态对应的前缀长度（不含跳过的干扰字符）
+     */
+    public int depth(int state) {
+        return depth.get(state);
+    }
+
+    /**
+     * 最长敏感词的长度（归一化后）
+     */
+    public int maxWordLength() {
+        return maxWordLength;
+    }
+
+    /**
+     * 敏感词数量
+     */
+    public int wordCount() {
+        return wordLengths.limit();
+    }
+
+    /**
+     * 自动机状态数（Trie 节点数）
+     */
+    public int stateCount() {
+        return stateCount;
+    }
+
+    /**
+     * 双数组的槽位数，与状态数之比反映压缩率
+     */
+    public int capacity() {
+        return check.limit();
+    }
+
+    /**
+     * 自动机各张表占用的内存估算（字节）；从镜像加载时这部分位于内存映射区域而非堆上
+     */
+    public long memoryBytes() {
+        return (long) codes.length * Character.BYTES
+                + ((long) check.limit() * TABLES_PER_STATE + (long) wordLengths.limit() * TABLES_PER_WORD)
+                * Integer.BYTES;
+    }
+
+    /**
+     * 命中回调
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+
+        /**
+         * @param offset   命中在原文中的起点
+         * @param length   命中在原文中的长度（含夹在其中的干扰字符）
+         * @param category 分类下标，见 {@link #category(int)}
+         */
+        void onMatch(int offset, int length, int category);
+    }
+
+    /**
+     * 构建器：Trie → 双数组 → fail 指针，只在构建期分配临时对象
+     */
+    private static final class Builder {
+
+        /**
+         * 多个子节点连续尝试这么多个空槽仍放不下时，推进找空位的起点
+         */
+        private static final int MAX_TRIES = 64;
+
+        private final char[] codes = new char[Character.MAX_VALUE + 1];
+
+        private final SensitiveWordNormalizer normalizer;
+
+        /**
+         * Trie 节点的子节点：编码 → 节点下标（按编码升序，便于为双数组找空位）
+         */
+        private final List<TreeMap<Integer, Integer>> children = new ArrayList<>();
+
+        /**
+         * Trie 节点上结束的词下标
+         */
+        private final List<Integer> terminals = new ArrayList<>();
+
+        private final List<Integer> wordLengths = new ArrayList<>();
+
+        private final List<Integer> wordCategories = new ArrayList<>();
+
+        private final Map<String, Integer> categoryIndex = new LinkedHashMap<>();
+
+        private int alphabetSize;
+
+        private int[] base = new int[0];
+
+        private int[] check = new int[0];
+
+        /**
+         * 空槽查找（并查集）：freeFrom[i] 沿路径压缩指向不小于 i 的第一个空槽，占用槽 i 时令其指向 i + 1
+         */
+        private int[] freeFrom = new int[0];
+
+        /**
+         * 多个子节点找空位的起点：之前的区域已几乎占满或多次尝试都放不下，剩下的零星空槽留给单个子节点
+         */
+        private int nextCheckPosition = 1;
+
+        Builder(Map<String, String> categorizedWords, SensitiveWordNormalizer normalizer) {
+            this.normalizer = normalizer;
+            newNode();
+            for (Map.Entry<String, String> entry : categorizedWords.entrySet()) {
+                String word = entry.getKey();
+                if (word != null && !word.isBlank()) {
+                    String normalized = normalizer.normalize(word.strip());
+                    if (!normalized.isEmpty()) {
+                        String category = entry.getValue() == null || entry.getValue().isBlank()
+                                ? DEFAULT_CATEGORY : entry.getValue().strip();
+                        insert(normalized, categoryIndex.computeIfAbsent(category, key -> categoryIndex.size()));
+                    }
+                }
+            }
+            if (alphabetSize >= SKIP) {
+                throw new IllegalStateException("敏感词使用的字符过多: " + alphabetSize);
+            }
+        }
+
+        private int newNode() {
+            children.add(new TreeMap<>());
+            terminals.add(-1);
+            return children.size() - 1;
+        }
+
+        private void insert(String word, int category) {
+            int node = 0;
+            for (int i = 0; i < word.length(); i++) {
+                char ch = word.charAt(i);
+                if (codes[ch] == 0) {
+                    codes[ch] = (char) ++alphabetSize;
+                }
+                int code = codes[ch];
+                Integer child = children.get(node).get(code);
+                if (child == null) {
+                    child = newNode();
+                    children.get(node).put(code, child);
+                }
+                node = child;
+            }
+            if (terminals.get(node) < 0) {
+                terminals.set(node, wordLengths.size());
+                wordLengths.add(word.length());
+                wordCategories.add(category);
+            }
+        }
+
+        SensitiveWordAutomaton build() {
+            int nodeCount = children.size();
+            // Trie 节点 → 双数组状态
+            int[] stateOf = new int[nodeCount];
+            ensureCapacity(Math.max(1024, nodeCount + alphabetSize + 1));
+            occupy(ROOT, Integer.MIN_VALUE);
+            stateOf[0] = ROOT;
+
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(0);
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                TreeMap<Integer, Integer> nodeChildren = children.get(node);
+                if (nodeChildren.isEmpty()) {
+                    continue;
+                }
+                int state = stateOf[node];
+                int b = findBase(nodeChildren);
+                base[state] = b;
+                for (Map.Entry<Integer, Integer> child : nodeChildren.entrySet()) {
+                    int t = b + child.getKey();
+                    occupy(t, state);
+                    stateOf[child.getValue()] = t;
+                    queue.add(child.getValue());
+                }
+            }
+
+            // 末尾留出一个字母表宽度的空槽，任意 base + code 都不越界，转移时不必再判断下标范围
+            int size = 0;
+            int maxBase = 0;
+            for (int i = 0; i < check.length; i++) {
+                if (check[i] != -1) {
+                    size = i + 1;
+                    maxBase = Math.max(maxBase, base[i]);
+                }
+            }
+            size = Math.max(size, maxBase + alphabetSize + 1);
+            ensureCapacity(size);
+            int[] finalBase = Arrays.copyOf(base, size);
+            int[] finalCheck = Arrays.copyOf(check, size);
+            int[] fail = new int[size];
+            int[] output = new int[size];
+            int[] matchState = new int[size];
+            int[] depth = new int[size];
+            Arrays.fill(output, -1);
+            Arrays.fill(matchState, -1);
+            for (int node = 0; node < nodeCount; node++) {
+                output[stateOf[node]] = terminals.get(node);
+            }
+
+            // 按 BFS 顺序计算 fail 指针：处理子状态时，父状态及所有更浅状态的 fail 都已确定
+            queue.add(0);
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                int state = stateOf[node];
+                for (Map.Entry<Integer, Integer> child : children.get(node).entrySet()) {
+                    int childState = stateOf[child.getValue()];
+                    fail[childState] = state == ROOT
+                            ? ROOT
+                            : transition(finalBase, finalCheck, fail, fail[state], child.getKey());
+                    matchState[childState] = output[childState] >= 0 ? childState : matchState[fail[childState]];
+                    depth[childState] = depth[state] + 1;
+                    queue.add(child.getValue());
+                }
+            }
+
+            int[] lengths = wordLengths.stream().mapToInt(Integer::intValue).toArray();
+            int[] categoryOfWord = wordCategories.stream().mapToInt(Integer::intValue).toArray();
+            return new SensitiveWordAutomaton(encode(foldedCodes(), size, new int[][]{finalBase, finalCheck, fail,
+                    output, matchState, depth}, lengths, categoryOfWord, nodeCount));
+        }
+
+        /**
+         * 按镜像格式写入堆外内存
+         */
+        private ByteBuffer encode(char[] foldedCodes, int capacity, int[][] stateTables, int[] lengths,
+                                  int[] categoryOfWord, int nodeCount) {
+            List<byte[]> names = categoryIndex.keySet().stream()
+                    .map(name -> name.getBytes(StandardCharsets.UTF_8))
+                    .toList();
+            long size = (long) HEADER_INTS * Integer.BYTES + (long) CODES_LENGTH * Character.BYTES
+                    + (long) capacity * stateTables.length * Integer.BYTES
+                    + (long) lengths.length * TABLES_PER_WORD * Integer.BYTES
+                    + names.stream().mapToLong(name -> Integer.BYTES + name.length).sum();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("敏感词自动机过大: " + size + " 字节");
+            }
+            ByteBuffer image = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            image.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(nodeCount).putInt(capacity).putInt(lengths.length)
+                    .putInt(names.size()).putInt(Arrays.stream(lengths).max().orElse(0)).putInt(0);
+            image.asCharBuffer().put(foldedCodes);
+            image.position(image.position() + CODES_LENGTH * Character.BYTES);
+            for (int[] table : stateTables) {
+                putInts(image, table);
+            }
+            putInts(image, lengths);
+            putInts(image, categoryOfWord);
+            for (byte[] name : names) {
+                image.putInt(name.length).put(name);
+            }
+            return image.clear();
+        }
+
+        /**
+         * 构建期在数组上计算转移，与运行期的镜像视图分开，运行期的调用点只会见到一种缓冲区类型
+         */
+        private static int transition(int[] base, int[] check, int[] fail, int state, int code) {
+            int s = state;
+            while (true) {
+                int t = base[s] + code;
+                if (check[t] == s) {
+                    return t;
+                }
+                if (s == ROOT) {
+                    return ROOT;
+                }
+                s = fail[s];
+            }
+        }
+
+        private static void putInts(ByteBuffer image, int[] values) {
+            image.asIntBuffer().put(values);
+            image.position(image.position() + values.length * Integer.BYTES);
+        }
+
+        /**
+         * 把归一化合并进编码表：原始字符直接查到其归一化字符的编码
+         */
+        private char[] foldedCodes() {
+            char[] folded = new char[codes.length];
+            for (int ch = 0; ch < codes.length; ch++) {
+                folded[ch] = normalizer.isSkipped((char) ch) ? SKIP : codes[normalizer.fold((char) ch)];
+            }
+            return folded;
+        }
+
+        /**
+         * 为一组子节点编码找到 base，使每个 base + code 都是空槽
+         */
+        private int findBase(TreeMap<Integer, Integer> nodeChildren) {
+            int firstCode = nodeChildren.firstKey();
+            int lastCode = nodeChildren.lastKey();
+            if (nodeChildren.size() == 1) {
+                // 只有一个子节点（长词的尾部大多如此）：任一不小于编码的空槽都可以，用来填补前面的零星空槽
+                return findFree(firstCode) - firstCode;
+            }
+            // base 不能为负：从不小于首个编码的空槽开始尝试
+            int start = findFree(Math.max(firstCode, nextCheckPosition));
+            int position = start;
+            int tried = 0;
+            while (true) {
+                int b = position - firstCode;
+                ensureCapacity(b + lastCode + 1);
+                boolean free = true;
+                for (int code : nodeChildren.keySet()) {
+                    if (check[b + code] != -1) {
+                        free = false;
+                        break;
+                    }
+                }
+                if (free) {
+                    // 跳过的区域几乎被占满或尝试次数过多时，之后的节点直接从这里开始找
+                    if (tried > MAX_TRIES || (tried > 0 && tried * 20L < position - start + 1)) {
+                        nextCheckPosition = position;
+                    }
+                    return b;
+                }
+                tried++;
+                position = findFree(position + 1);
+            }
+        }
+
+        /**
+         * 不小于 slot 的第一个空槽，不够时扩容
+         */
+        private int findFree(int slot) {
+            ensureCapacity(slot + 1);
+            int root = slot;
+            while (freeFrom[root] != root) {
+                root = freeFrom[root];
+                if (root == freeFrom.length) {
+                    ensureCapacity(root + 1);
+                }
+            }
+            // 路径压缩
+            int current = slot;
+            while (freeFrom[current] != root) {
+                int next = freeFrom[current];
+                freeFrom[current] = root;
+                current = next;
+            }
+            return root;
+        }
+
+        private void occupy(int slot, int owner) {
+            check[slot] = owner;
+            freeFrom[slot] = slot + 1;
+        }
+
+        private void ensureCapacity(int size) {
+            if (size <= check.length) {
+                return;
+            }
+            int oldSize = check.length;
+            int newSize = Math.max(size, oldSize * 2);
+            base = Arrays.copyOf(base, newSize);
+            check = Arrays.copyOf(check, newSize);
+            freeFrom = Arrays.copyOf(freeFrom, newSize);
+            Arrays.fill(check, oldSize, newSize, -1);
+            for (int slot = oldSize; slot < newSize; slot++) {
+                freeFrom[slot] = slot;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.el12stu.RelaMind.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 敏感词库与归一化映射表的文本格式解析
+ * 不依赖 Spring，运行期加载与构建期编译镜像（{@link SensitiveWordImageCompiler}）共用
+ */
+final class SensitiveWordDictionaryReader {
+
+    private SensitiveWordDictionaryReader() {
+    }
+
+    /**
+     * 读取词库：每行「词条」或「词条\t分类」，重复的词条保留先出现的分类
+     */
+    static Map<String, String> readWords(InputStream input) throws IOException {
+        Map<String, String> words = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                String word = (tab >= 0 ? line.substring(0, tab) : line).trim();
+                String category = tab >= 0 ? line.substring(tab + 1).trim() : SensitiveWordAutomaton.DEFAULT_CATEGORY;
+                if (!word.isEmpty()) {
+                    words.putIfAbsent(word, category);
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * 读取繁简映射表：每组两个字符（前者映射为后者），以空白分隔，# 开头为注释
+     *
+     * @throws IllegalArgumentException 某一组不是两个字符
+     */
+    static Map<Character, Character> readVariants(InputStream input) throws IOException {
+        Map<Character, Character> variants = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                for (String pair : line.split("\\s+")) {
+                    if (pair.length() != 2) {
+                        throw new IllegalArgumentException("映射表格式错误，每组应为两个字符: " + pair);
+                    }
+                    variants.put(pair.charAt(0), pair.charAt(1));
+                }
+            }
+        }
+        return variants;
+    }
+}
@@ -0,0 +1,18 @@
+package io.el12stu.RelaMind.service;
+
+import java.time.Instant;
+
+/**
+ * 当前生效的敏感词库快照
+ *
+ * @param version     词库版本，每次成功加载加一
+ * @param source      词库位置
+ * @param words       敏感词数量
+ * @param states      自动机状态数
+ * @param memoryBytes 自动机占用的堆内存估算
+ * @param buildMillis 读取并构建自动机的耗时
+ * @param loadedAt    生效时间
+ */
+public record SensitiveWordDictionaryStatus(long version, String source, int words, int states, long memoryBytes,
+                                            long buildMillis, Instant loadedAt) {
+}
@@ -0,0 +1,95 @@
+package io.el12stu.RelaMind.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * 构建期工具：把敏感词库编译为二进制自动机镜像，运行期由 {@link SensitiveWordServiceImpl} 内存映射加载
+ * <p>
+ * 用法：
+ * <pre>
+ * java -cp target/classes io.el12stu.RelaMind.service.SensitiveWordImageCompiler &lt;词库&gt; &lt;镜像&gt;
+ *     [--variants=繁简映射表] [--skip-chars=干扰字符] [--no-full-width] [--case-sensitive]
+ * </pre>
+ * 归一化规则在编译时写入镜像，参数含义与 relamind.sensitive.normalize 相同。
+ * 也可以通过 Maven profile 在构建时生成：mvn package -Psensitive-image
+ * <p>
+ * 镜像先写入同目录下的临时文件再原子替换，已经映射旧镜像的进程不会读到写了一半的文件。
+ * 只依赖 JDK，可以在没有 Spring 依赖的类路径上运行。
+ */
+public final class SensitiveWordImageCompiler {
+
+    private SensitiveWordImageCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SensitiveWordImageCompiler <dictionary> <image> [--variants=<file>] "
+                    + "[--skip-chars=<chars>] [--no-full-width] [--case-sensitive]");
+            System.exit(2);
+        }
+        Path dictionary = Path.of(args[0]);
+        Path image = Path.of(args[1]);
+        Path variantsFile = null;
+        String skipChars = SensitiveWordNormalizer.DEFAULT_SKIP_CHARS;
+        boolean fullWidth = true;
+        boolean ignoreCase = true;
+        for (int i = 2; i < args.length; i++) {
+            String option = args[i];
+            if (option.startsWith("--variants=")) {
+                variantsFile = Path.of(option.substring("--variants=".length()));
+            } else if (option.startsWith("--skip-chars=")) {
+                skipChars = option.substring("--skip-chars=".length());
+            } else if (option.equals("--no-full-width")) {
+                fullWidth = false;
+            } else if (option.equals("--case-sensitive")) {
+                ignoreCase = false;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+
+        long start = System.nanoTime();
+        Map<String, String> words;
+        try (InputStream input = Files.newInputStream(dictionary)) {
+            words = SensitiveWordDictionaryReader.readWords(input);
+        }
+        Map<Character, Character> variants = Map.of();
+        if (variantsFile != null) {
+            try (InputStream input = Files.newInputStream(variantsFile)) {
+                variants = SensitiveWordDictionaryReader.readVariants(input);
+            }
+        }
+        SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(words,
+                new SensitiveWordNormalizer(fullWidth, ignoreCase, skipChars, variants));
+        compile(automaton, image);
+        System.out.printf("Compiled %d words (%d states) into %s: %d bytes in %d ms%n",
+                automaton.wordCount(), automaton.stateCount(), image, automaton.imageBytes(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 把自动机写成镜像文件，先写临时文件再原子替换
+     */
+    public static void compile(SensitiveWordAutomaton automaton, Path image) throws IOException {
+        Path directory = image.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, image.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                automaton.writeTo(channel);
+                channel.force(true);
+            }
+            Files.move(temp, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
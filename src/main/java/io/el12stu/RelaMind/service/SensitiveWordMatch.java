@@ -0,0 +1,11 @@
+package io.el12stu.RelaMind.service;
+
+/**
+ * 一次敏感词命中
+ *
+ * @param offset   命中在原文中的起点
+ * @param length   命中在原文中的长度（含夹在其中的干扰字符）
+ * @param category 词条分类
+ */
+public record SensitiveWordMatch(int offset, int length, String category) {
+}
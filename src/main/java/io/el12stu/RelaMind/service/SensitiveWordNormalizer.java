@@ -0,0 +1,105 @@
+package io.el12stu.RelaMind.service;
+
+import java.util.Map;
+
+/**
+ * 敏感词归一化规则：全角转半角、大小写折叠、繁体转简体、跳过干扰字符
+ * <p>
+ * 规则在构造时展开为按 char 下标的查找表，只在构建自动机时使用：
+ * 自动机把「原始字符 → 归一化字符 → 字符编码」合并进同一张编码表，匹配时仍然每个字符一次数组访问，
+ * 不需要先生成归一化后的新字符串。
+ */
+public final class SensitiveWordNormalizer {
+
+    /**
+     * 默认跳过的干扰字符：空白、常见符号与零宽字符
+     */
+    public static final String DEFAULT_SKIP_CHARS = " *-_.·|/~@#$%^&+=\u200B\u200C\u200D\uFEFF";
+
+    private static final SensitiveWordNormalizer NONE = new SensitiveWordNormalizer(false, false, "", Map.of());
+
+    /**
+     * 全角 ASCII 区间（！到～）与对应半角字符的差值
+     */
+    private static final int FULL_WIDTH_OFFSET = 0xFEE0;
+
+    private static final char IDEOGRAPHIC_SPACE = '　';
+
+    /**
+     * 字符 → 归一化后的字符
+     */
+    private final char[] folded = new char[Character.MAX_VALUE + 1];
+
+    /**
+     * 匹配时忽略的字符（按归一化后的字符判断）
+     */
+    private final boolean[] skipped = new boolean[Character.MAX_VALUE + 1];
+
+    /**
+     * @param fullWidth  全角字符转为半角
+     * @param ignoreCase 忽略大小写
+     * @param skipChars  匹配时跳过的干扰字符，例如「非*法」视为「非法」
+     * @param variants   繁体、异体字到简体的映射
+     */
+    public SensitiveWordNormalizer(boolean fullWidth, boolean ignoreCase, String skipChars,
+                                   Map<Character, Character> variants) {
+        for (int i = 0; i <= Character.MAX_VALUE; i++) {
+            char ch = (char) i;
+            if (fullWidth) {
+                if (ch >= '！' && ch <= '～') {
+                    ch = (char) (ch - FULL_WIDTH_OFFSET);
+                } else if (ch == IDEOGRAPHIC_SPACE) {
+                    ch = ' ';
+                }
+            }
+            Character variant = variants.get(ch);
+            if (variant != null) {
+                ch = variant;
+            }
+            if (ignoreCase) {
+                ch = Character.toLowerCase(ch);
+            }
+            folded[i] = ch;
+        }
+        if (skipChars != null) {
+            for (int i = 0; i < skipChars.length(); i++) {
+                skipped[folded[skipChars.charAt(i)]] = true;
+            }
+        }
+    }
+
+    /**
+     * 不做任何归一化
+     */
+    public static SensitiveWordNormalizer none() {
+        return NONE;
+    }
+
+    /**
+     * 字符归一化后的结果
+     */
+    public char fold(char ch) {
+        return folded[ch];
+    }
+
+    /**
+     * 字符是否在匹配时被跳过
+     */
+    public boolean isSkipped(char ch) {
+        return skipped[folded[ch]];
+    }
+
+    /**
+     * 词条归一化：逐字符折叠并去掉干扰字符，只在建库时调用
+     */
+    public String normalize(String word) {
+        StringBuilder normalized = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char ch = word.charAt(i);
+            if (!isSkipped(ch)) {
+                normalized.append(fold(ch));
+            }
+        }
+        return normalized.toString();
+    }
+}
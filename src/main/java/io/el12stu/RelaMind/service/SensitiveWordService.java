@@ -1,5 +1,8 @@
 package io.el12stu.RelaMind.service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 敏感词检测服务接口
  */
@@ -11,5 +14,36 @@ public interface SensitiveWordService {
      * @return 如果包含敏感词，返回 true
      */
     boolean containsSensitiveWords(String text);
+
+    /**
+     * 返回文本中全部命中的敏感词（原文偏移、长度与分类），单次扫描
+     * @param text 待检测文本
+     * @return 按结束位置排序的命中，没有命中时为空列表
+     */
+    List<SensitiveWordMatch> findMatches(String text);
+
+    /**
+     * 把命中的敏感词替换为 *，单次扫描
+     * @param text 待检测文本
+     * @return 遮盖后的文本；没有命中时返回原字符串本身
+     */
+    String mask(String text);
+
+    /**
+     * 为一次流式输出创建扫描器，状态跨分段保留
+     * @param cutOnMatch true 时命中后截断输出，false 时遮盖命中的敏感词
+     */
+    SensitiveWordStreamScanner newStreamScanner(boolean cutOnMatch);
+
+    /**
+     * 当前生效的词库
+     */
+    SensitiveWordDictionaryStatus dictionaryStatus();
+
+    /**
+     * 在后台重新加载词库，构建完成后原子替换；构建失败时继续使用原词库
+     * @return 新词库生效后完成
+     */
+    CompletableFuture<SensitiveWordDictionaryStatus> reload();
 }
 
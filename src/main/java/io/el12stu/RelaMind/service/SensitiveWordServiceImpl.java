@@ -1,70 +1,179 @@
 package io.el12stu.RelaMind.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 敏感词检测服务实现类
- * 基于 Trie（前缀树）实现高效的敏感词检测
+ * 基于双数组 Aho–Corasick 自动机（{@link SensitiveWordAutomaton}）实现，单次扫描即可完成多模式匹配
+ * <p>
+ * 词库热更新：词库文件变更（relamind.sensitive.watch.enabled）或调用运维接口时，在后台线程读取并构建新的自动机，
+ * 构建完成后通过一次引用替换整体生效。自动机不可变，检测只在开始时读取一次引用，
+ * 因此进行中的检测要么用旧词库、要么用新词库，不会看到构建到一半的结构；构建失败时继续使用原词库。
+ * <p>
+ * 归一化（relamind.sensitive.normalize）：全角转半角、忽略大小写、繁体转简体、跳过干扰字符，
+ * 在构建时合并进自动机的编码表，检测仍是单次扫描、不生成归一化后的字符串；映射表随词库一起重新加载。
+ * <p>
+ * 镜像（relamind.sensitive.image）：词库很大时在构建期用 {@link SensitiveWordImageCompiler} 编译为二进制镜像，
+ * 启动时内存映射后直接使用，启动耗时与词库规模无关，同一主机上的进程共享页缓存；归一化规则已在编译时写入镜像。
+ * <p>
+ * 词库每行一个词条，可用制表符附加分类（「词条\t分类」）。{@link #findMatches} 返回全部命中的位置与分类，
+ * {@link #mask} 单次扫描直接得到遮盖后的文本，遮盖使用线程内复用的缓冲区，没有命中时不分配。
+ * <p>
+ * 结论缓存（relamind.sensitive.verdict-cache）：按文本的 64 位哈希缓存「是否命中」，重复出现的文本
+ * （重试、智能体多步调用中的同一段粘贴内容）不再扫描；缓存随词库一起替换，词库版本变化即失效。
+ * 判定为命中的文本在 {@link #findMatches} / {@link #mask} 中仍需扫描以得到命中位置。
+ * 默认关闭：计算校验值的代价与扫描相当，只有自动机扫描明显变慢（例如镜像冷页）时才值得开启。
+ * <p>
+ * 指标：
+ * <ul>
+ *     <li>relamind.sensitive.words / relamind.sensitive.automaton.states / relamind.sensitive.automaton.bytes：词库规模与内存占用</li>
+ *     <li>relamind.sensitive.dictionary.version：当前词库版本</li>
+ *     <li>relamind.sensitive.build / relamind.sensitive.reload.failures：词库构建耗时与失败次数</li>
+ *     <li>relamind.sensitive.scan：每次检测的耗时，count / totalTime 即吞吐</li>
+ *     <li>relamind.sensitive.verdict.cache.requests（result=hit/miss）/ relamind.sensitive.verdict.cache.hit.ratio：结论缓存命中情况</li>
+ * </ul>
  */
 @Slf4j
 @Service
 public class SensitiveWordServiceImpl implements SensitiveWordService {
 
+    private final MeterRegistry meterRegistry;
+
+    private final ResourceLoader resourceLoader;
+
     /**
-     * Trie 树根节点
+     * 词库位置，支持 classpath: 与 file: 前缀
      */
-    private final TrieNode root = new TrieNode();
+    @Value("${relamind.sensitive.dictionary:classpath:sensitive_words.txt}")
+    private String dictionaryLocation;
 
     /**
-     * Trie 树节点内部类
+     * 预编译的自动机镜像（{@link SensitiveWordImageCompiler}），配置后直接加载镜像，不再读取词库构建；
+     * 镜像是文件系统上的文件时以只读方式内存映射，否则读入堆外内存
      */
-    private static class TrieNode {
-        /**
-         * 子节点映射：key 为字符，value 为对应的子节点
-         */
-        private final Map<Character, TrieNode> children = new HashMap<>();
+    @Value("${relamind.sensitive.image:}")
+    private String imageLocation;
 
-        /**
-         * 是否为词尾节点（表示从根到当前节点构成一个完整的敏感词）
-         */
-        private boolean isEndOfWord = false;
+    /**
+     * 词库（或镜像）是文件系统上的文件时，监听其变更并自动重新加载
+     */
+    @Value("${relamind.sensitive.watch.enabled:true}")
+    private boolean watchEnabled;
 
-        /**
-         * 获取或创建子节点
-         */
-        public TrieNode getOrCreateChild(char ch) {
-            return children.computeIfAbsent(ch, k -> new TrieNode());
-        }
+    /**
+     * 文件变更后等待的时间，期间的多次写入只触发一次重新加载
+     */
+    @Value("${relamind.sensitive.watch.debounce-ms:500}")
+    private long debounceMillis;
 
-        /**
-         * 获取子节点（不创建）
-         */
-        public TrieNode getChild(char ch) {
-            return children.get(ch);
-        }
+    @Value("${relamind.sensitive.normalize.full-width:true}")
+    private boolean normalizeFullWidth;
 
-        /**
-         * 标记为词尾节点
-         */
-        public void setEndOfWord(boolean isEndOfWord) {
-            this.isEndOfWord = isEndOfWord;
-        }
+    @Value("${relamind.sensitive.normalize.ignore-case:true}")
+    private boolean normalizeIgnoreCase;
 
-        /**
-         * 判断是否为词尾节点
-         */
-        public boolean isEndOfWord() {
-            return isEndOfWord;
-        }
+    /**
+     * 匹配时跳过的干扰字符，例如「非*法」视为「非法」
+     */
+    @Value("${relamind.sensitive.normalize.skip-chars:" + SensitiveWordNormalizer.DEFAULT_SKIP_CHARS + "}")
+    private String skipChars;
+
+    /**
+     * 繁体 / 异体字到简体的映射表，为空时不转换
+     */
+    @Value("${relamind.sensitive.normalize.variants:classpath:sensitive_variants.txt}")
+    private String variantsLocation;
+
+    /**
+     * 结论缓存槽位数（向上取整为 2 的幂，每个 8 字节），0 表示不缓存。
+     * 默认不缓存：自动机每个字符一次查表，带密钥的校验值（SipHash）按字节计算，命中缓存也不比直接扫描快
+     */
+    @Value("${relamind.sensitive.verdict-cache.size:0}")
+    private int verdictCacheSize;
+
+    /**
+     * 短于该长度的文本直接扫描：哈希与扫描代价相当，缓存只会挤掉长文本的结论
+     */
+    @Value("${relamind.sensitive.verdict-cache.min-length:32}")
+    private int verdictCacheMinLength;
+
+    /**
+     * 当前生效的词库：自动机、描述与结论缓存一起替换
+     */
+    private final AtomicReference<Dictionary> dictionary = new AtomicReference<>(
+            new Dictionary(SensitiveWordAutomaton.build(List.of()),
+                    new SensitiveWordDictionaryStatus(0, null, 0, 1, 0, 0, Instant.EPOCH),
+                    SensitiveWordVerdictCache.DISABLED));
+
+    private final LongAdder verdictHits = new LongAdder();
+
+    private final LongAdder verdictMisses = new LongAdder();
+
+    /**
+     * 已提交、尚未开始执行的重新加载；期间的重复请求共享它
+     */
+    private final AtomicReference<CompletableFuture<SensitiveWordDictionaryStatus>> pendingReload =
+            new AtomicReference<>();
+
+    /**
+     * 单线程构建：同一时刻最多构建一份新词库
+     */
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sensitive-word-reloader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 遮盖用的缓冲区，每个线程复用一个；超过该容量的缓冲区用完即丢弃，避免长文本长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> MASK_BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+
+    private volatile WatchService watchService;
+
+    private Timer scanTimer;
+
+    private Timer buildTimer;
+
+    private Counter reloadFailures;
+
+    public SensitiveWordServiceImpl(MeterRegistry meterRegistry, ResourceLoader resourceLoader) {
+        this.meterRegistry = meterRegistry;
+        this.resourceLoader = resourceLoader;
     }
 
     /**
@@ -72,52 +181,71 @@ public class SensitiveWordServiceImpl implements SensitiveWordService {
      */
     @PostConstruct
     public void init() {
+        buildTimer = Timer.builder("relamind.sensitive.build")
+                .description("Time to load the sensitive-word dictionary and build its automaton")
+                .register(meterRegistry);
+        reloadFailures = Counter.builder("relamind.sensitive.reload.failures")
+                .description("Dictionary reloads that failed and kept the previous dictionary")
+                .register(meterRegistry);
         try {
             log.info("开始加载敏感词库...");
-            ClassPathResource resource = new ClassPathResource("sensitive_words.txt");
-            
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
-                
-                String word;
-                int count = 0;
-                while ((word = reader.readLine()) != null) {
-                    word = word.trim();
-                    if (!word.isEmpty()) {
-                        addWord(word);
-                        count++;
-                    }
-                }
-                log.info("敏感词库加载完成，共加载 {} 个敏感词", count);
-            }
+            loadDictionary();
         } catch (Exception e) {
             log.error("加载敏感词库失败", e);
             throw new RuntimeException("加载敏感词库失败", e);
         }
-    }
 
-    /**
-     * 向 Trie 树中添加敏感词
-     * 
-     * @param word 敏感词
-     */
-    private void addWord(String word) {
-        if (word == null || word.isEmpty()) {
-            return;
+        Gauge.builder("relamind.sensitive.words", this, service -> service.dictionary.get().automaton().wordCount())
+                .description("Words in the loaded sensitive-word dictionary")
+                .register(meterRegistry);
+        Gauge.builder("relamind.sensitive.automaton.states", this,
+                        service -> service.dictionary.get().automaton().stateCount())
+                .description("States of the sensitive-word automaton")
+                .register(meterRegistry);
+        Gauge.builder("relamind.sensitive.automaton.bytes", this,
+                        service -> service.dictionary.get().automaton().memoryBytes())
+                .description("Estimated heap footprint of the sensitive-word automaton")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("relamind.sensitive.dictionary.version", this,
+                        service -> service.dictionary.get().status().version())
+                .description("Version of the active sensitive-word dictionary")
+                .register(meterRegistry);
+        scanTimer = Timer.builder("relamind.sensitive.scan")
+                .description("Latency of a single sensitive-word scan")
+                .register(meterRegistry);
+        FunctionCounter.builder("relamind.sensitive.verdict.cache.requests", verdictHits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("relamind.sensitive.verdict.cache.requests", verdictMisses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("relamind.sensitive.verdict.cache.hit.ratio", this, SensitiveWordServiceImpl::verdictHitRatio)
+                .description("Share of cacheable checks answered by the verdict cache since startup")
+                .register(meterRegistry);
+
+        if (watchEnabled) {
+            startWatcher();
         }
-        
-        TrieNode currentNode = root;
-        for (char ch : word.toCharArray()) {
-            currentNode = currentNode.getOrCreateChild(ch);
+    }
+
+    @PreDestroy
+    public void stop() {
+        WatchService watcher = watchService;
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                log.debug("关闭敏感词库监听失败", e);
+            }
         }
-        // 标记为词尾节点
-        currentNode.setEndOfWord(true);
+        reloadExecutor.shutdownNow();
     }
 
     /**
      * 检测文本中是否包含敏感词
-     * 使用 Trie 树进行高效的多模式匹配
-     * 
+     * 先查结论缓存，未命中时自动机单次线性扫描，命中第一个敏感词即返回
+     *
      * @param text 待检测的文本
      * @return 如果包含敏感词，返回 true；否则返回 false
      */
@@ -126,31 +254,252 @@ public class SensitiveWordServiceImpl implements SensitiveWordService {
         if (text == null || text.isEmpty()) {
             return false;
         }
+        Dictionary current = dictionary.get();
+        SensitiveWordVerdictCache.Key key = verdictKey(current, text);
+        Boolean cached = cachedVerdict(current, key);
+        if (cached != null) {
+            return cached;
+        }
+        long start = System.nanoTime();
+        boolean matched = current.automaton().matches(text);
+        scanTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        current.verdicts().put(key, matched);
+        return matched;
+    }
 
-        int length = text.length();
-        // 遍历文本的每个字符作为可能的匹配起点
-        for (int i = 0; i < length; i++) {
-            TrieNode currentNode = root;
-            // 从当前位置开始尝试匹配敏感词
-            for (int j = i; j < length; j++) {
-                char ch = text.charAt(j);
-                TrieNode childNode = currentNode.getChild(ch);
-                
-                if (childNode == null) {
-                    // 当前字符不在 Trie 树中，从下一个位置重新开始匹配
-                    break;
+    /**
+     * 单次扫描返回全部命中；缓存判定为无命中的文本不扫描
+     */
+    @Override
+    public List<SensitiveWordMatch> findMatches(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        Dictionary current = dictionary.get();
+        SensitiveWordVerdictCache.Key key = verdictKey(current, text);
+        if (Boolean.FALSE.equals(cachedVerdict(current, key))) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        List<SensitiveWordMatch> matches = current.automaton().findAll(text);
+        scanTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        current.verdicts().put(key, !matches.isEmpty());
+        return matches;
+    }
+
+    /**
+     * 单次扫描并遮盖命中的敏感词，没有命中时返回原字符串；缓存判定为无命中的文本不扫描
+     */
+    @Override
+    public String mask(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        Dictionary current = dictionary.get();
+        SensitiveWordVerdictCache.Key key = verdictKey(current, text);
+        if (Boolean.FALSE.equals(cachedVerdict(current, key))) {
+            return text;
+        }
+        long start = System.nanoTime();
+        StringBuilder buffer = MASK_BUFFER.get();
+        int matches = current.automaton().mask(text, buffer, SensitiveWordStreamScanner.MASK);
+        String masked = matches == 0 ? text : buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            MASK_BUFFER.remove();
+        }
+        scanTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        current.verdicts().put(key, matches > 0);
+        return masked;
+    }
+
+    /**
+     * 文本在结论缓存中的位置，每次检测只哈希一次；过短的文本或不缓存时返回 null，不查也不写缓存
+     */
+    private SensitiveWordVerdictCache.Key verdictKey(Dictionary current, String text) {
+        return text.length() >= verdictCacheMinLength ? current.verdicts().key(text) : null;
+    }
+
+    private Boolean cachedVerdict(Dictionary current, SensitiveWordVerdictCache.Key key) {
+        if (key == null) {
+            return null;
+        }
+        Boolean verdict = current.verdicts().get(key);
+        (verdict != null ? verdictHits : verdictMisses).increment();
+        return verdict;
+    }
+
+    private double verdictHitRatio() {
+        long hits = verdictHits.sum();
+        long total = hits + verdictMisses.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * 创建流式扫描器，固定使用创建时的自动机
+     */
+    @Override
+    public SensitiveWordStreamScanner newStreamScanner(boolean cutOnMatch) {
+        return new SensitiveWordStreamScanner(dictionary.get().automaton(), cutOnMatch);
+    }
+
+    @Override
+    public SensitiveWordDictionaryStatus dictionaryStatus() {
+        return dictionary.get().status();
+    }
+
+    /**
+     * 提交一次后台重新加载；已有重新加载在排队时直接复用，不重复构建
+     */
+    @Override
+    public CompletableFuture<SensitiveWordDictionaryStatus> reload() {
+        CompletableFuture<SensitiveWordDictionaryStatus> reload = new CompletableFuture<>();
+        CompletableFuture<SensitiveWordDictionaryStatus> queued = pendingReload.compareAndExchange(null, reload);
+        if (queued != null) {
+            return queued;
+        }
+        try {
+            reloadExecutor.execute(() -> {
+                // 开始构建后新的请求重新排队，保证读到这之后的文件内容
+                pendingReload.compareAndSet(reload, null);
+                try {
+                    reload.complete(loadDictionary());
+                } catch (Exception e) {
+                    reloadFailures.increment();
+                    log.error("重新加载敏感词库失败，继续使用版本 {}", dictionary.get().status().version(), e);
+                    reload.completeExceptionally(e);
                 }
-                
-                // 检查是否匹配到完整的敏感词
-                if (childNode.isEndOfWord()) {
-                    return true;
+            });
+        } catch (RuntimeException e) {
+            pendingReload.compareAndSet(reload, null);
+            reload.completeExceptionally(e);
+        }
+        return reload;
+    }
+
+    /**
+     * 读取词库、构建自动机并替换当前词库
+     */
+    private SensitiveWordDictionaryStatus loadDictionary() throws IOException {
+        long start = System.nanoTime();
+        SensitiveWordAutomaton automaton;
+        if (usesImage()) {
+            automaton = SensitiveWordAutomaton.load(readImage(resourceLoader.getResource(imageLocation)));
+        } else {
+            Map<String, String> words;
+            try (InputStream input = resourceLoader.getResource(dictionaryLocation).getInputStream()) {
+                words = SensitiveWordDictionaryReader.readWords(input);
+            }
+            automaton = SensitiveWordAutomaton.build(words, loadNormalizer());
+        }
+        long elapsed = System.nanoTime() - start;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+
+        // 构建串行执行，版本号在替换时基于上一版本递增
+        Dictionary previous = dictionary.get();
+        SensitiveWordDictionaryStatus status = new SensitiveWordDictionaryStatus(previous.status().version() + 1,
+                sourceLocation(), automaton.wordCount(), automaton.stateCount(), automaton.memoryBytes(),
+                TimeUnit.NANOSECONDS.toMillis(elapsed), Instant.now());
+        dictionary.set(new Dictionary(automaton, status, new SensitiveWordVerdictCache(verdictCacheSize)));
+        log.info("敏感词库加载完成（版本 {}），共加载 {} 个敏感词，{} 个状态，占用约 {} 字节，构建耗时 {} ms",
+                status.version(), status.words(), status.states(), status.memoryBytes(), status.buildMillis());
+        return status;
+    }
+
+    private SensitiveWordNormalizer loadNormalizer() throws IOException {
+        Map<Character, Character> variants = Map.of();
+        if (variantsLocation != null && !variantsLocation.isBlank()) {
+            try (InputStream input = resourceLoader.getResource(variantsLocation).getInputStream()) {
+                variants = SensitiveWordDictionaryReader.readVariants(input);
+            }
+        }
+        return new SensitiveWordNormalizer(normalizeFullWidth, normalizeIgnoreCase, skipChars, variants);
+    }
+
+    private boolean usesImage() {
+        return imageLocation != null && !imageLocation.isBlank();
+    }
+
+    /**
+     * 当前词库的来源：镜像或词库文本
+     */
+    private String sourceLocation() {
+        return usesImage() ? imageLocation : dictionaryLocation;
+    }
+
+    /**
+     * 文件系统上的镜像只读映射（通道关闭后映射仍然有效，随缓冲区回收释放）；打包在 jar 内的镜像读入堆外内存
+     */
+    private static ByteBuffer readImage(Resource resource) throws IOException {
+        if (resource.isFile()) {
+            try (FileChannel channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        try (InputStream input = resource.getInputStream()) {
+            byte[] bytes = input.readAllBytes();
+            return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        }
+    }
+
+    /**
+     * 词库（或镜像）是文件系统上的文件时监听其所在目录；打包在 jar 内的文件无法修改，不监听
+     */
+    private void startWatcher() {
+        Path file;
+        try {
+            Resource resource = resourceLoader.getResource(sourceLocation());
+            if (!resource.isFile()) {
+                log.info("敏感词库 {} 不是文件系统上的文件，不监听变更", sourceLocation());
+                return;
+            }
+            file = resource.getFile().toPath().toAbsolutePath();
+            watchService = file.getFileSystem().newWatchService();
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            log.warn("无法监听敏感词库 {}，只能通过运维接口重新加载", sourceLocation(), e);
+            return;
+        }
+        Thread watcher = new Thread(() -> watch(file), "sensitive-word-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("开始监听敏感词库变更: {}", file);
+    }
+
+    private void watch(Path file) {
+        Path fileName = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+                }
+                key.reset();
+                if (!changed) {
+                    continue;
                 }
-                
-                currentNode = childNode;
+                // 编辑器保存、整体拷贝通常产生多个事件：等待片刻后一并消费，只重新加载一次
+                Thread.sleep(debounceMillis);
+                WatchKey pending;
+                while ((pending = watchService.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                log.info("检测到敏感词库变更，重新加载: {}", file);
+                reload();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 应用关闭
         }
-        
-        return false;
     }
-}
 
+    /**
+     * 一份生效中的词库；结论缓存只对这份词库有效
+     */
+    private record Dictionary(SensitiveWordAutomaton automaton, SensitiveWordDictionaryStatus status,
+                              SensitiveWordVerdictCache verdicts) {
+    }
+}
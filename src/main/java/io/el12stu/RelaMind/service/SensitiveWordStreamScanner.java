@@ -0,0 +1,150 @@
+package io.el12stu.RelaMind.service;
+
+/**
+ * 流式敏感词扫描器：逐段读入模型输出，自动机状态跨分段保留，被拆在两个分段之间的敏感词同样能被发现
+ * <p>
+ * 不缓冲整段回答，只暂存「当前状态对应的前缀」那几个字符——它们之前的字符不可能再成为任何命中的一部分，可以立即输出；
+ * 暂存的字符最多为最长敏感词长度减一（另加夹在其中的干扰字符）。命中时这些字符还没有输出，
+ * 因此可以整词（连同其中的干扰字符）替换为 {@link #MASK}，或者在命中处截断。
+ * <p>
+ * 每个流创建一个实例，非线程安全；构造时固定使用当前的自动机，同一个流内的判定前后一致。
+ */
+public final class SensitiveWordStreamScanner {
+
+    /**
+     * 遮盖敏感词使用的字符
+     */
+    public static final char MASK = '*';
+
+    private final SensitiveWordAutomaton automaton;
+
+    /**
+     * true：命中后截断，之后的输入全部丢弃；false：遮盖命中的词后继续输出
+     */
+    private final boolean cutOnMatch;
+
+    /**
+     * 尚未输出的字符（可能是某个敏感词的前缀）
+     */
+    private final StringBuilder held = new StringBuilder();
+
+    /**
+     * 最近读入的有效（未被跳过的）字符在流中的偏移，环形存放，容量为最长敏感词长度
+     */
+    private final int[] offsets;
+
+    /**
+     * offsets 下一个写入位置
+     */
+    private int ring;
+
+    /**
+     * 已读入的字符总数，即下一个字符在流中的偏移
+     */
+    private int position;
+
+    /**
+     * held 首字符在流中的偏移
+     */
+    private int heldFrom;
+
+    private int state = SensitiveWordAutomaton.ROOT;
+
+    private int matchCount;
+
+    private boolean cut;
+
+    SensitiveWordStreamScanner(SensitiveWordAutomaton automaton, boolean cutOnMatch) {
+        this.automaton = automaton;
+        this.cutOnMatch = cutOnMatch;
+        this.offsets = new int[Math.max(1, automaton.maxWordLength())];
+    }
+
+    /**
+     * 读入一段文本，返回现在就可以输出的部分（命中的敏感词已遮盖）；可能属于敏感词前缀的尾部暂存，等待后续分段
+     * 没有暂存、也没有命中时原样返回 chunk 本身，调用方可以据此复用原始分段
+     */
+    public String feed(String chunk) {
+        if (cut) {
+            return "";
+        }
+        if (chunk == null || chunk.isEmpty()) {
+            return chunk;
+        }
+        boolean passThrough = held.isEmpty();
+        for (int i = 0, length = chunk.length(); i < length; i++) {
+            char ch = chunk.charAt(i);
+            held.append(ch);
+            int offset = position++;
+            if (automaton.isSkipped(ch)) {
+                continue;
+            }
+            offsets[ring] = offset;
+            ring = (ring + 1) % offsets.length;
+            state = automaton.next(state, ch);
+            int matchLength = automaton.matchLength(state);
+            if (matchLength == 0) {
+                continue;
+            }
+            matchCount++;
+            passThrough = false;
+            int start = recentOffset(matchLength) - heldFrom;
+            if (cutOnMatch) {
+                cut = true;
+                String safe = held.substring(0, start);
+                reset();
+                return safe;
+            }
+            for (int k = start; k < held.length(); k++) {
+                held.setCharAt(k, MASK);
+            }
+        }
+        int depth = automaton.depth(state);
+        int emit = depth == 0 ? held.length() : recentOffset(depth) - heldFrom;
+        if (passThrough && emit == chunk.length()) {
+            held.setLength(0);
+            heldFrom = position;
+            return chunk;
+        }
+        String out = held.substring(0, emit);
+        held.delete(0, emit);
+        heldFrom += emit;
+        return out;
+    }
+
+    /**
+     * 倒数第 count 个有效字符在流中的偏移
+     */
+    private int recentOffset(int count) {
+        return offsets[(ring - count + offsets.length) % offsets.length];
+    }
+
+    private void reset() {
+        held.setLength(0);
+        heldFrom = position;
+        state = SensitiveWordAutomaton.ROOT;
+    }
+
+    /**
+     * 流结束：返回暂存的尾部（流已结束，它不可能再组成敏感词）
+     */
+    public String flush() {
+        String tail = held.toString();
+        reset();
+        return tail;
+    }
+
+    /**
+     * 是否因命中而截断
+     */
+    public boolean isCut() {
+        return cut;
+    }
+
+    /**
+     * 目前为止命中的次数
+     */
+    public int matchCount() {
+        return matchCount;
+    }
+}
@@ -0,0 +1,204 @@
+package io.el12stu.RelaMind.service;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 敏感词检测结论缓存：文本 → 是否命中
+ * <p>
+ * 同一段文本常在重试、智能体多步调用中反复检测，命中缓存时只需两次线性哈希即可得到结论，
+ * 不再走自动机。只缓存结论，不保存文本本身，内存固定为 8 字节 * 槽位数。
+ * <p>
+ * 直接映射、无锁：每个槽位一个 long，高 63 位为校验值、最低位为结论，读写均为单个 long 的原子访问，
+ * 冲突时直接覆盖。槽位由快速哈希 {@link #hash} 选择，它的种子公开、可被构造碰撞，因此命中还要比对校验值
+ * {@link #tag}：以进程启动时随机生成的密钥计算的 SipHash-2-4，不知道密钥无法构造出与某段干净文本
+ * 校验值相同的敏感文本，碰撞最多导致未命中，不会借用其他文本的结论。
+ * <p>
+ * 每份词库一个实例，随词库一起替换，词库版本变化时旧结论整体失效。
+ */
+final class SensitiveWordVerdictCache {
+
+    static final long SEED = 0x9E3779B97F4A7C15L;
+
+    static final long P1 = 0xC2B2AE3D27D4EB4FL;
+
+    static final long P2 = 0x165667B19E3779F9L;
+
+    /**
+     * 校验值密钥，每个进程启动时随机生成，不落盘、不输出
+     */
+    private static final long KEY0;
+
+    private static final long KEY1;
+
+    static {
+        SecureRandom random = new SecureRandom();
+        KEY0 = random.nextLong();
+        KEY1 = random.nextLong();
+    }
+
+    private static final long MATCHED = 1L;
+
+    private static final long EMPTY = 0L;
+
+    /**
+     * 不缓存：槽位数为 0，所有查询都未命中
+     */
+    static final SensitiveWordVerdictCache DISABLED = new SensitiveWordVerdictCache(0);
+
+    private final AtomicLongArray slots;
+
+    private final int mask;
+
+    /**
+     * @param capacity 槽位数，向上取整为 2 的幂；小于等于 0 时不缓存
+     */
+    SensitiveWordVerdictCache(int capacity) {
+        int size = capacity <= 0 ? 0 : Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 槽位数
+     */
+    int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * 文本在缓存中的位置与校验值，一次检测只计算一次，查询未命中后写入结论时复用
+     *
+     * @return 不缓存时返回 null
+     */
+    Key key(String text) {
+        if (mask < 0) {
+            return null;
+        }
+        return new Key(index(text), tag(text) & ~MATCHED);
+    }
+
+    /**
+     * 查询结论
+     *
+     * @return 命中缓存且校验值一致时返回结论，否则（包括 key 为 null）返回 null
+     */
+    Boolean get(Key key) {
+        if (key == null) {
+            return null;
+        }
+        long slot = slots.getOpaque(key.index());
+        if (slot == EMPTY || (slot & ~MATCHED) != key.tag()) {
+            return null;
+        }
+        return (slot & MATCHED) != 0;
+    }
+
+    /**
+     * 记录结论，覆盖同一槽位上的旧结论
+     */
+    void put(Key key, boolean matched) {
+        if (key != null) {
+            slots.setOpaque(key.index(), key.tag() | (matched ? MATCHED : 0L));
+        }
+    }
+
+    Boolean get(String text) {
+        return get(key(text));
+    }
+
+    void put(String text, boolean matched) {
+        put(key(text), matched);
+    }
+
+    /**
+     * 槽位下标与校验值（最低位已清零，留给结论）
+     */
+    record Key(int index, long tag) {
+    }
+
+    private int index(String text) {
+        return (int) (hash(text) >>> 32) & mask;
+    }
+
+    /**
+     * 校验值：以进程密钥计算的 SipHash-2-4
+     */
+    static long tag(String text) {
+        return sipHash24(KEY0, KEY1, text);
+    }
+
+    /**
+     * SipHash-2-4，输入为文本的 UTF-16LE 编码
+     */
+    static long sipHash24(long k0, long k1, String text) {
+        long v0 = k0 ^ 0x736F6D6570736575L;
+        long v1 = k1 ^ 0x646F72616E646F6DL;
+        long v2 = k0 ^ 0x6C7967656E657261L;
+        long v3 = k1 ^ 0x7465646279746573L;
+        int lastWord = text.length() / 4;
+        // 每个 64 位字 2 轮压缩，最后一个字之后 4 轮收尾（收尾轮不混入消息）
+        for (int word = 0; word <= lastWord + 1; word++) {
+            long m = word <= lastWord ? sipWord(text, word) : 0L;
+            int rounds = 2;
+            if (word > lastWord) {
+                v2 ^= 0xFF;
+                rounds = 4;
+            }
+            v3 ^= m;
+            for (int round = 0; round < rounds; round++) {
+                v0 += v1;
+                v1 = Long.rotateLeft(v1, 13) ^ v0;
+                v0 = Long.rotateLeft(v0, 32);
+                v2 += v3;
+                v3 = Long.rotateLeft(v3, 16) ^ v2;
+                v0 += v3;
+                v3 = Long.rotateLeft(v3, 21) ^ v0;
+                v2 += v1;
+                v1 = Long.rotateLeft(v1, 17) ^ v2;
+                v2 = Long.rotateLeft(v2, 32);
+            }
+            v0 ^= m;
+        }
+        return v0 ^ v1 ^ v2 ^ v3;
+    }
+
+    /**
+     * 第 word 个 64 位小端字（4 个 UTF-16 码元）；最后一个字放剩余码元，最高字节为消息字节数
+     */
+    private static long sipWord(String text, int word) {
+        int length = text.length();
+        int start = word * 4;
+        long value = start + 4 <= length ? 0L : (long) (length * 2) << 56;
+        for (int i = start, end = Math.min(start + 4, length); i < end; i++) {
+            value |= (long) text.charAt(i) << ((i - start) * 16);
+        }
+        return value;
+    }
+
+    /**
+     * 选择槽位的快速哈希：按 UTF-16 码元每 4 个拼成一个 long 混合，最后做一次雪崩。
+     * 种子公开，只用于分散槽位，不作为命中依据
+     */
+    static long hash(String text) {
+        int length = text.length();
+        long h = SEED ^ (length * P1);
+        int i = 0;
+        for (int end = length - 3; i < end; i += 4) {
+            long block = text.charAt(i)
+                    | (long) text.charAt(i + 1) << 16
+                    | (long) text.charAt(i + 2) << 32
+                    | (long) text.charAt(i + 3) << 48;
+            h = Long.rotateLeft(h ^ (block * P1), 29) * P2;
+        }
+        for (; i < length; i++) {
+            h = Long.rotateLeft(h ^ (text.charAt(i) * P2), 23) * P1;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,103 @@
+package io.el12stu.RelaMind.advisor;
+
+import io.el12stu.RelaMind.service.SensitiveWordService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * 用户输入敏感词检测与记忆 Advisor 一起运行：记忆中保存的用户消息必须是检测之后的文本
+ */
+class SensitiveWordInputAdvisorTest {
+
+    private final ChatModel chatModel = Mockito.mock(ChatModel.class);
+
+    private final SensitiveWordService sensitiveWordService = Mockito.mock(SensitiveWordService.class);
+
+    private final ChatMemory chatMemory = MessageWindowChatMemory.builder().build();
+
+    @BeforeEach
+    void setUp() {
+        ChatResponse reply = new ChatResponse(List.of(new Generation(new AssistantMessage("好的"))));
+        Mockito.when(chatModel.call(ArgumentMatchers.any(Prompt.class))).thenReturn(reply);
+        Mockito.when(chatModel.stream(ArgumentMatchers.any(Prompt.class))).thenReturn(Flux.just(reply));
+        Mockito.when(sensitiveWordService.mask(ArgumentMatchers.anyString()))
+                .thenAnswer(invocation -> {
+                    String text = invocation.getArgument(0);
+                    return text.contains("坏词") ? text.replace("坏词", "**") : text;
+                });
+        Mockito.when(sensitiveWordService.containsSensitiveWords(ArgumentMatchers.anyString()))
+                .thenAnswer(invocation -> invocation.<String>getArgument(0).contains("坏词"));
+    }
+
+    private ChatClient chatClient(SensitiveWordInputAdvisor.InputMode inputMode) {
+        // 注册顺序与 RelaMindApp 相同，执行顺序由各 Advisor 的 order 决定
+        return ChatClient.builder(chatModel)
+                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build(),
+                        new SensitiveWordInputAdvisor(sensitiveWordService, inputMode),
+                        new SensitiveWordAdvisor(sensitiveWordService, chatModel, SensitiveWordAdvisor.OutputMode.OFF))
+                .build();
+    }
+
+    private static List<String> userTexts(List<Message> messages) {
+        return messages.stream()
+                .filter(message -> message.getMessageType() == MessageType.USER)
+                .map(Message::getText)
+                .toList();
+    }
+
+    /**
+     * MASK：记忆与发给模型的都是遮盖后的文本，下一轮带给模型的历史中也没有原文
+     */
+    @Test
+    void testMaskedInputIsStoredInMemory() {
+        ChatClient client = chatClient(SensitiveWordInputAdvisor.InputMode.MASK);
+        client.prompt().user("这里有个坏词")
+                .advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, "chat"))
+                .call().content();
+        client.prompt().user("坏词又来了")
+                .advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, "chat"))
+                .stream().content().blockLast();
+
+        Assertions.assertEquals(List.of("这里有个**", "**又来了"), userTexts(chatMemory.get("chat")));
+        ArgumentCaptor<Prompt> streamed = ArgumentCaptor.forClass(Prompt.class);
+        Mockito.verify(chatModel).stream(streamed.capture());
+        Assertions.assertEquals(List.of("这里有个**", "**又来了"), userTexts(streamed.getValue().getInstructions()));
+    }
+
+    /**
+     * REJECT：被拦截的输入不调用模型，也不写入记忆
+     */
+    @Test
+    void testRejectedInputIsNotStored() {
+        ChatClient client = chatClient(SensitiveWordInputAdvisor.InputMode.REJECT);
+        String reply = client.prompt().user("这里有个坏词")
+                .advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, "chat"))
+                .call().content();
+        Assertions.assertTrue(reply.contains("请求已被拦截"));
+        Assertions.assertTrue(chatMemory.get("chat").isEmpty());
+        Mockito.verify(chatModel, Mockito.never()).call(ArgumentMatchers.any(Prompt.class));
+
+        client.prompt().user("正常的话")
+                .advisors(spec -> spec.param(ChatMemory.CONVERSATION_ID, "chat"))
+                .call().content();
+        Assertions.assertEquals(List.of("正常的话"), userTexts(chatMemory.get("chat")));
+    }
+}
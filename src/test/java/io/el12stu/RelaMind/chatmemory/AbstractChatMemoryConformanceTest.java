@@ -0,0 +1,165 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 聊天记忆后端一致性测试
+ * 每个 relamind.chat.memory.backend 实现继承该类，保证切换后端时 Advisor 看到的行为一致。
+ * 子类需要以 max-messages = {@link #windowSize()}、不限 token 的配置提供实例。
+ */
+abstract class AbstractChatMemoryConformanceTest {
+
+    /**
+     * 被测的记忆后端
+     */
+    protected abstract ChatMemory chatMemory();
+
+    /**
+     * 后端配置的 max-messages
+     */
+    protected abstract int windowSize();
+
+    /**
+     * 按写入顺序读回，类型和文本保持不变
+     */
+    @Test
+    void testAddAndGetPreservesOrder() {
+        String chatId = UUID.randomUUID().toString();
+        chatMemory().add(chatId, List.of(new UserMessage("你好")));
+        chatMemory().add(chatId, List.of(new AssistantMessage("你好，有什么可以帮你？")));
+        chatMemory().add(chatId, List.of(new UserMessage("记得我叫小明"), new AssistantMessage("好的，小明")));
+
+        List<Message> messages = chatMemory().get(chatId);
+        Assertions.assertEquals(List.of("你好", "你好，有什么可以帮你？", "记得我叫小明", "好的，小明"), texts(messages));
+        Assertions.assertEquals(List.of(MessageType.USER, MessageType.ASSISTANT, MessageType.USER, MessageType.ASSISTANT),
+                messages.stream().map(Message::getMessageType).toList());
+    }
+
+    /**
+     * 系统消息同样可以保存和读回
+     */
+    @Test
+    void testSystemMessageRoundTrip() {
+        String chatId = UUID.randomUUID().toString();
+        chatMemory().add(chatId, List.of(new SystemMessage("你是日记助手"), new UserMessage("今天心情不错")));
+
+        List<Message> messages = chatMemory().get(chatId);
+        Assertions.assertEquals(2, messages.size());
+        Assertions.assertEquals(MessageType.SYSTEM, messages.get(0).getMessageType());
+        Assertions.assertEquals("你是日记助手", messages.get(0).getText());
+    }
+
+    /**
+     * 没有写入过的会话返回空列表
+     */
+    @Test
+    void testUnknownConversationIsEmpty() {
+        Assertions.assertTrue(chatMemory().get(UUID.randomUUID().toString()).isEmpty());
+    }
+
+    /**
+     * 不同会话互不影响
+     */
+    @Test
+    void testConversationsAreIsolated() {
+        String first = UUID.randomUUID().toString();
+        String second = UUID.randomUUID().toString();
+        chatMemory().add(first, List.of(new UserMessage("第一个会话")));
+        chatMemory().add(second, List.of(new UserMessage("第二个会话")));
+
+        Assertions.assertEquals(List.of("第一个会话"), texts(chatMemory().get(first)));
+        Assertions.assertEquals(List.of("第二个会话"), texts(chatMemory().get(second)));
+    }
+
+    /**
+     * 清空后读不到旧消息，之后的写入正常可见
+     */
+    @Test
+    void testClearThenAdd() {
+        String chatId = UUID.randomUUID().toString();
+        chatMemory().add(chatId, List.of(new UserMessage("旧消息")));
+        chatMemory().clear(chatId);
+        Assertions.assertTrue(chatMemory().get(chatId).isEmpty());
+
+        chatMemory().add(chatId, List.of(new UserMessage("新消息")));
+        Assertions.assertEquals(List.of("新消息"), texts(chatMemory().get(chatId)));
+    }
+
+    /**
+     * 超过 max-messages 时只保留最新的窗口
+     */
+    @Test
+    void testWindowKeepsLatestMessages() {
+        String chatId = UUID.randomUUID().toString();
+        int total = windowSize() + 5;
+        for (int i = 0; i < total; i++) {
+            chatMemory().add(chatId, List.of(new UserMessage("消息" + i)));
+        }
+
+        List<String> texts = texts(chatMemory().get(chatId));
+        Assertions.assertEquals(windowSize(), texts.size());
+        Assertions.assertEquals("消息" + (total - windowSize()), texts.get(0));
+        Assertions.assertEquals("消息" + (total - 1), texts.get(texts.size() - 1));
+    }
+
+    /**
+     * 并发写入同一会话：不丢消息，每个线程自己的写入顺序保持不变
+     */
+    @Test
+    void testConcurrentWritersKeepPerThreadOrder() throws Exception {
+        String chatId = UUID.randomUUID().toString();
+        int threads = 4;
+        int perThread = windowSize() / threads;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        chatMemory().add(chatId, List.of(new UserMessage(thread + "-" + i)));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<String> texts = texts(chatMemory().get(chatId));
+        Assertions.assertEquals(threads * perThread, texts.size());
+        for (int t = 0; t < threads; t++) {
+            String prefix = t + "-";
+            List<String> own = texts.stream().filter(text -> text.startsWith(prefix)).toList();
+            Assertions.assertEquals(perThread, own.size());
+            for (int i = 0; i < perThread; i++) {
+                Assertions.assertEquals(prefix + i, own.get(i));
+            }
+        }
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+}
@@ -0,0 +1,65 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Cassandra 后端的一致性测试，需要本地 Cassandra（配置见 application.yml）
+ */
+@Import(DataSourceAutoConfiguration.class)
+@SpringBootTest
+@TestPropertySource(properties = {
+        "relamind.chat.memory.backend=cassandra",
+        "relamind.chat.memory.max-messages=20",
+        "relamind.chat.memory.max-tokens=0"
+})
+class CassandraChatMemoryConformanceTest extends AbstractChatMemoryConformanceTest {
+
+    @Resource
+    private CassandraBasedChatMemory cassandraBasedChatMemory;
+
+    @Override
+    protected ChatMemory chatMemory() {
+        return cassandraBasedChatMemory;
+    }
+
+    @Override
+    protected int windowSize() {
+        return 20;
+    }
+
+    /**
+     * 分叉会话读取父会话分叉点之前的历史和自己的新消息，父会话之后的写入互不可见
+     */
+    @Test
+    void testForkSharesParentPrefix() {
+        String parentId = UUID.randomUUID().toString();
+        cassandraBasedChatMemory.add(parentId, List.of(new UserMessage("问题一"), new AssistantMessage("回答一")));
+        cassandraBasedChatMemory.add(parentId, List.of(new UserMessage("问题二"), new AssistantMessage("回答二")));
+        long forkPoint = cassandraBasedChatMemory.readHistoryPage(parentId, 10, null).items().get(1).id();
+
+        String childId = UUID.randomUUID().toString();
+        cassandraBasedChatMemory.fork(parentId, childId, forkPoint);
+        cassandraBasedChatMemory.add(childId, List.of(new UserMessage("换个问题"), new AssistantMessage("新回答")));
+        cassandraBasedChatMemory.add(parentId, List.of(new UserMessage("问题三")));
+
+        Assertions.assertEquals(List.of("问题一", "回答一", "换个问题", "新回答"),
+                cassandraBasedChatMemory.get(childId).stream().map(Message::getText).toList());
+        Assertions.assertEquals(List.of("问题一", "回答一", "问题二", "回答二", "问题三"),
+                cassandraBasedChatMemory.get(parentId).stream().map(Message::getText).toList());
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> cassandraBasedChatMemory.fork(parentId, childId, null));
+    }
+}
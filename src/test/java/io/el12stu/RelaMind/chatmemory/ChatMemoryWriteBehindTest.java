@@ -0,0 +1,264 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 写后缓冲测试：ChatMessageStore 替换为记录每次写入的桩，刷写线程可以被「闸门」挡住以便在队列中积压消息
+ */
+class ChatMemoryWriteBehindTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * 一次 appendAsync 调用
+     */
+    private record Append(String key, List<ChatMessageEntity> entities) {
+    }
+
+    private final ChatMessageStore store = Mockito.mock(ChatMessageStore.class);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<Append> appends = new CopyOnWriteArrayList<>();
+
+    /**
+     * 按 key 指定写入结果，未指定的 key 立即成功
+     */
+    private final Map<String, Function<Append, CompletableFuture<Void>>> outcomes = new ConcurrentHashMap<>();
+
+    private ChatMemoryWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(store.appendAsync(ArgumentMatchers.anyString(), ArgumentMatchers.anyList()))
+                .thenAnswer(invocation -> {
+                    Append append = new Append(invocation.getArgument(0), List.copyOf(invocation.getArgument(1)));
+                    appends.add(append);
+                    return outcomes.getOrDefault(append.key(), ignored -> CompletableFuture.completedFuture(null))
+                            .apply(append);
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writeBehind != null) {
+            writeBehind.stop();
+        }
+    }
+
+    private void start(ChatMemoryWriteBehind.WriteDurability durability, int queueCapacity) {
+        writeBehind = new ChatMemoryWriteBehind(store, meterRegistry);
+        ReflectionTestUtils.setField(writeBehind, "enabled", true);
+        ReflectionTestUtils.setField(writeBehind, "durability", durability);
+        ReflectionTestUtils.setField(writeBehind, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(writeBehind, "maxDrain", 512);
+        ReflectionTestUtils.setField(writeBehind, "flushIntervalMs", 5L);
+        ReflectionTestUtils.setField(writeBehind, "enqueueTimeoutMs", 0L);
+        ReflectionTestUtils.setField(writeBehind, "ackTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(writeBehind, "shutdownTimeoutMs", 5_000L);
+        writeBehind.start();
+    }
+
+    /**
+     * 让刷写线程卡在 key 为 gate 的写入上，直到返回的 Future 完成
+     */
+    private CompletableFuture<Void> blockFlusher() throws InterruptedException {
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        CountDownLatch flushing = new CountDownLatch(1);
+        outcomes.put("gate", append -> {
+            flushing.countDown();
+            return gate;
+        });
+        writeBehind.submitAsync("gate", messages("gate", 1));
+        Assertions.assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        return gate;
+    }
+
+    private static List<ChatMessageEntity> messages(String key, int count) {
+        List<ChatMessageEntity> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entities.add(new ChatMessageEntity(key, System.nanoTime(), "USER", key + "-" + i, 1, null));
+        }
+        return entities;
+    }
+
+    private List<Append> appendsFor(String key) {
+        return appends.stream().filter(append -> append.key().equals(key)).toList();
+    }
+
+    private double counter(String name, String reason) {
+        return meterRegistry.get(name).tag("reason", reason).counter().count();
+    }
+
+    /**
+     * 同一批取出的写入按会话分组，每个会话一次 appendAsync，组内保持提交顺序
+     */
+    @Test
+    void testGroupsDrainedWritesByPartition() throws Exception {
+        start(ChatMemoryWriteBehind.WriteDurability.ASYNC, 100);
+        CompletableFuture<Void> gate = blockFlusher();
+        List<ChatMessageEntity> a1 = messages("a", 2);
+        List<ChatMessageEntity> b1 = messages("b", 1);
+        List<ChatMessageEntity> a2 = messages("a", 3);
+        writeBehind.submit("a", a1);
+        writeBehind.submit("b", b1);
+        writeBehind.submit("a", a2);
+        gate.complete(null);
+
+        writeBehind.stop();
+        List<ChatMessageEntity> expected = new ArrayList<>(a1);
+        expected.addAll(a2);
+        Assertions.assertEquals(List.of(new Append("a", expected)), appendsFor("a"));
+        Assertions.assertEquals(List.of(new Append("b", b1)), appendsFor("b"));
+    }
+
+    /**
+     * SYNC_ACK：所在批次落库后才返回
+     */
+    @Test
+    void testSyncAckWaitsForFlush() throws Exception {
+        start(ChatMemoryWriteBehind.WriteDurability.SYNC_ACK, 100);
+        CompletableFuture<Void> write = new CompletableFuture<>();
+        outcomes.put("a", append -> write);
+
+        CompletableFuture<Void> submitted = CompletableFuture.runAsync(() -> writeBehind.submit("a", messages("a", 2)));
+        Thread.sleep(100);
+        Assertions.assertFalse(submitted.isDone());
+        write.complete(null);
+        submitted.get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<Void> async = writeBehind.submitAsync("b", messages("b", 1));
+        async.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, appendsFor("a").size());
+        Assertions.assertEquals(1, appendsFor("b").size());
+        Assertions.assertEquals(0, counter("relamind.chat.memory.write.fallback", "flush_failed"));
+    }
+
+    /**
+     * SYNC_ACK：批次写入失败时直接写入一次，直接写入也失败时异常抛给调用方而不是返回成功
+     */
+    @Test
+    void testSyncAckFailureFallsBackThenThrows() {
+        start(ChatMemoryWriteBehind.WriteDurability.SYNC_ACK, 100);
+        outcomes.put("retry", append -> appendsFor("retry").size() == 1
+                ? CompletableFuture.failedFuture(new IllegalStateException("flush failed"))
+                : CompletableFuture.completedFuture(null));
+        Assertions.assertTimeoutPreemptively(TIMEOUT, () -> writeBehind.submit("retry", messages("retry", 2)));
+        Assertions.assertEquals(2, appendsFor("retry").size());
+        Assertions.assertEquals(2, counter("relamind.chat.memory.write.fallback", "flush_failed"));
+
+        outcomes.put("down", append -> CompletableFuture.failedFuture(new IllegalStateException("cassandra down")));
+        Assertions.assertTimeoutPreemptively(TIMEOUT, () -> Assertions.assertThrows(CompletionException.class,
+                () -> writeBehind.submit("down", messages("down", 1))));
+        CompletableFuture<Void> async = writeBehind.submitAsync("down", messages("down", 1));
+        Assertions.assertThrows(Exception.class, () -> async.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, counter("relamind.chat.memory.write.dropped", "flush_failed"));
+    }
+
+    /**
+     * appendAsync 同步抛出异常时组内的确认仍然完成，调用方不必等到确认超时
+     */
+    @Test
+    void testSynchronousAppendErrorCompletesAcks() {
+        start(ChatMemoryWriteBehind.WriteDurability.SYNC_ACK, 100);
+        outcomes.put("a", append -> {
+            throw new IllegalStateException("prepare failed");
+        });
+        Assertions.assertTimeoutPreemptively(TIMEOUT, () -> Assertions.assertThrows(CompletionException.class,
+                () -> writeBehind.submit("a", messages("a", 1))));
+        Assertions.assertEquals(2, appendsFor("a").size());
+    }
+
+    /**
+     * 队列满：ASYNC 丢弃并计数，SYNC_ACK 立即直接写入
+     */
+    @Test
+    void testQueueFull() throws Exception {
+        start(ChatMemoryWriteBehind.WriteDurability.ASYNC, 1);
+        CompletableFuture<Void> gate = blockFlusher();
+        writeBehind.submit("a", messages("a", 1));
+        writeBehind.submit("b", messages("b", 3));
+        Assertions.assertEquals(3, counter("relamind.chat.memory.write.dropped", "queue_full"));
+        gate.complete(null);
+        writeBehind.stop();
+        Assertions.assertEquals(1, appendsFor("a").size());
+        Assertions.assertTrue(appendsFor("b").isEmpty());
+    }
+
+    @Test
+    void testQueueFullSyncAckWritesDirectly() throws Exception {
+        start(ChatMemoryWriteBehind.WriteDurability.SYNC_ACK, 1);
+        CompletableFuture<Void> gate = blockFlusher();
+        CompletableFuture<Void> queued = writeBehind.submitAsync("a", messages("a", 1));
+        Assertions.assertTimeoutPreemptively(TIMEOUT, () -> writeBehind.submit("b", messages("b", 3)));
+        Assertions.assertEquals(1, appendsFor("b").size());
+        Assertions.assertEquals(3, counter("relamind.chat.memory.write.fallback", "queue_full"));
+        Assertions.assertFalse(queued.isDone());
+
+        gate.complete(null);
+        queued.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, appendsFor("a").size());
+    }
+
+    /**
+     * 关闭之后提交的写入计入 stopped，不计入 queue_full：ASYNC 丢弃，SYNC_ACK 直接写入
+     */
+    @Test
+    void testSubmitAfterStop() throws Exception {
+        start(ChatMemoryWriteBehind.WriteDurability.ASYNC, 100);
+        writeBehind.stop();
+        writeBehind.submit("a", messages("a", 2));
+        Assertions.assertTrue(appendsFor("a").isEmpty());
+        Assertions.assertEquals(2, counter("relamind.chat.memory.write.dropped", "stopped"));
+        Assertions.assertEquals(0, counter("relamind.chat.memory.write.dropped", "queue_full"));
+
+        start(ChatMemoryWriteBehind.WriteDurability.SYNC_ACK, 100);
+        writeBehind.stop();
+        writeBehind.submitAsync("b", messages("b", 3)).get(5, TimeUnit.SECONDS);
+        writeBehind.submit("c", messages("c", 1));
+        Assertions.assertEquals(1, appendsFor("b").size());
+        Assertions.assertEquals(1, appendsFor("c").size());
+        Assertions.assertEquals(4, counter("relamind.chat.memory.write.fallback", "stopped"));
+        Assertions.assertEquals(0, counter("relamind.chat.memory.write.fallback", "queue_full"));
+    }
+
+    /**
+     * 关闭时排空队列中积压的写入
+     */
+    @Test
+    void testStopDrainsQueue() throws Exception {
+        start(ChatMemoryWriteBehind.WriteDurability.ASYNC, 100);
+        CompletableFuture<Void> gate = blockFlusher();
+        for (int i = 0; i < 10; i++) {
+            writeBehind.submit("c" + i, messages("c" + i, 1));
+        }
+        CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS).execute(() -> gate.complete(null));
+
+        writeBehind.stop();
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals(1, appendsFor("c" + i).size());
+        }
+        Assertions.assertEquals(0, counter("relamind.chat.memory.write.dropped", "shutdown"));
+    }
+}
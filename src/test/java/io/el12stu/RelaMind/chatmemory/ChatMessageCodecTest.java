@@ -0,0 +1,174 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import io.el12stu.RelaMind.chatmemory.entity.ChatMessageEntity;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聊天消息编解码测试：完整消息无损往返，以及反序列化只接受登记过的类型
+ */
+class ChatMessageCodecTest {
+
+    private final ChatMessageCodec codec = new ChatMessageCodec();
+
+    ChatMessageCodecTest() {
+        ReflectionTestUtils.setField(codec, "compressThresholdBytes", 1024);
+    }
+
+    private Message roundTrip(Message message) {
+        return codec.decode(ByteBuffer.wrap(codec.encode(message)));
+    }
+
+    @Test
+    void testAssistantMessageWithToolCallsAndMetadata() {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("model", "qwen-plus");
+        metadata.put("tokens", 42);
+        metadata.put("latencyMs", 1234L);
+        metadata.put("score", 0.5);
+        metadata.put("cached", true);
+        metadata.put("cost", new BigDecimal("0.0012"));
+        metadata.put("tags", List.of("tool", "search"));
+        metadata.put("usage", Map.of("prompt", 10, "completion", List.of(1, 2)));
+        metadata.put("kind", MessageType.ASSISTANT);
+        metadata.put("createdAt", Instant.parse("2025-01-01T00:00:00Z"));
+        List<AssistantMessage.ToolCall> toolCalls = List.of(
+                new AssistantMessage.ToolCall("call-1", "function", "searchWeb", "{\"query\":\"天气\"}"),
+                new AssistantMessage.ToolCall("call-2", "function", "downloadResource", "{}"));
+        AssistantMessage message = new AssistantMessage("我来搜索一下", metadata, toolCalls, List.of());
+
+        AssistantMessage decoded = (AssistantMessage) roundTrip(message);
+        Assertions.assertEquals("我来搜索一下", decoded.getText());
+        Assertions.assertEquals(toolCalls, decoded.getToolCalls());
+        Map<String, Object> decodedMetadata = decoded.getMetadata();
+        Assertions.assertEquals("qwen-plus", decodedMetadata.get("model"));
+        Assertions.assertEquals(42, decodedMetadata.get("tokens"));
+        Assertions.assertEquals(1234L, decodedMetadata.get("latencyMs"));
+        Assertions.assertEquals(0.5, decodedMetadata.get("score"));
+        Assertions.assertEquals(true, decodedMetadata.get("cached"));
+        Assertions.assertEquals(new BigDecimal("0.0012"), decodedMetadata.get("cost"));
+        Assertions.assertEquals(List.of("tool", "search"), decodedMetadata.get("tags"));
+        Assertions.assertEquals(Map.of("prompt", 10, "completion", List.of(1, 2)), decodedMetadata.get("usage"));
+        Assertions.assertEquals(MessageType.ASSISTANT, decodedMetadata.get("kind"));
+        // 未登记的类型以字符串形式保存
+        Assertions.assertEquals("2025-01-01T00:00:00Z", decodedMetadata.get("createdAt"));
+    }
+
+    @Test
+    void testToolResponseMessage() {
+        List<ToolResponseMessage.ToolResponse> responses = List.of(
+                new ToolResponseMessage.ToolResponse("call-1", "searchWeb", "晴，25°C"),
+                new ToolResponseMessage.ToolResponse("call-2", "downloadResource", ""));
+        ToolResponseMessage message = new ToolResponseMessage(responses, Map.of("source", "tool"));
+
+        ToolResponseMessage decoded = (ToolResponseMessage) roundTrip(message);
+        Assertions.assertEquals(responses, decoded.getResponses());
+        Assertions.assertEquals("tool", decoded.getMetadata().get("source"));
+        Assertions.assertEquals(MessageType.TOOL, decoded.getMessageType());
+    }
+
+    @Test
+    void testCompressedPayload() {
+        String text = "今天心情不错，记录一下。".repeat(500);
+        byte[] encoded = codec.encode(new UserMessage(text));
+        Assertions.assertEquals(ChatMessageCodec.FORMAT_DEFLATE, encoded[1]);
+        Assertions.assertTrue(encoded.length < text.length());
+        Assertions.assertEquals(text, codec.decode(ByteBuffer.wrap(encoded)).getText());
+    }
+
+    /**
+     * 超大 payload 分块存放：消息行只保存引用，按引用中的分块数拼接后还原完整消息
+     */
+    @Test
+    void testChunkedPayload() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append(i).append(',');
+        }
+        ByteBuffer payload = ByteBuffer.wrap(codec.encode(new AssistantMessage(text.toString())));
+        List<ByteBuffer> chunks = ChatMessageStore.split(payload, 1024);
+        Assertions.assertTrue(chunks.size() > 1);
+
+        ByteBuffer reference = ByteBuffer.wrap(codec.blobReference(payload.remaining(), chunks.size()));
+        Assertions.assertTrue(codec.isBlobReference(reference));
+        Assertions.assertFalse(codec.isBlobReference(payload));
+        Assertions.assertEquals(chunks.size(), codec.blobChunkCount(reference));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> codec.decode(reference));
+
+        ChatMessageEntity entity = new ChatMessageEntity("chat", 1L, "ASSISTANT", null, 0, reference);
+        ByteBuffer assembled = ChatMessageStore.assemble(entity, chunks, codec.blobChunkCount(reference));
+        Assertions.assertEquals(text.toString(), codec.decode(assembled).getText());
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> ChatMessageStore.assemble(entity, chunks.subList(1, chunks.size()), chunks.size()));
+    }
+
+    /**
+     * 存储中的元数据引用了未登记的类时只丢弃该条元数据，不会实例化该类；
+     * 未开启登记时写入的旧数据（集合类按类名写入）照常读取
+     */
+    @Test
+    void testUnregisteredMetadataClassIsRejected() {
+        byte[] forged;
+        Kryo permissive = new Kryo();
+        permissive.setRegistrationRequired(false);
+        byte[] gadget;
+        try (Output output = new Output(64, -1)) {
+            permissive.writeClassAndObject(output, new StringBuilder("payload"));
+            gadget = output.toBytes();
+        }
+        byte[] legacy;
+        try (Output output = new Output(64, -1)) {
+            permissive.writeClassAndObject(output, new ArrayList<>(List.of("a", "b")));
+            legacy = output.toBytes();
+        }
+        // 手工拼出含两条元数据的 RAW 正文：类型、文本、元数据、0 个媒体、0 个工具调用、0 个工具返回
+        try (Output body = new Output(64, -1)) {
+            body.writeByte(ChatMessageCodec.VERSION_1);
+            body.writeByte(ChatMessageCodec.FORMAT_RAW);
+            body.writeString("USER");
+            body.writeString("你好");
+            body.writeVarInt(2, true);
+            body.writeString("evil");
+            body.writeVarInt(gadget.length, true);
+            body.writeBytes(gadget);
+            body.writeString("legacy");
+            body.writeVarInt(legacy.length, true);
+            body.writeBytes(legacy);
+            body.writeVarInt(0, true);
+            body.writeVarInt(0, true);
+            body.writeVarInt(0, true);
+            forged = body.toBytes();
+        }
+
+        Message decoded = codec.decode(ByteBuffer.wrap(forged));
+        Assertions.assertEquals("你好", decoded.getText());
+        Assertions.assertFalse(decoded.getMetadata().containsKey("evil"));
+        Assertions.assertEquals(List.of("a", "b"), decoded.getMetadata().get("legacy"));
+    }
+
+    @Test
+    void testStorableCopiesCollections() {
+        List<Object> nested = new ArrayList<>();
+        nested.add(new StringBuilder("x"));
+        Object storable = ChatMessageCodec.storable(Map.of("list", nested));
+        Assertions.assertEquals(LinkedHashMap.class, storable.getClass());
+        Assertions.assertEquals(List.of("x"), ((Map<?, ?>) storable).get("list"));
+        Assertions.assertEquals(ArrayList.class, ((Map<?, ?>) storable).get("list").getClass());
+    }
+}
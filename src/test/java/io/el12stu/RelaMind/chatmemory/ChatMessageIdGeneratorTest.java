@@ -0,0 +1,152 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 消息ID生成器测试：物理时钟替换为可手动拨动的时钟，以覆盖同一毫秒内计数溢出和时钟回拨
+ */
+class ChatMessageIdGeneratorTest {
+
+    private static final long NOW = 1_735_689_600_000L;
+
+    private final AtomicLong millis = new AtomicLong(NOW);
+
+    private ChatMessageIdGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        generator = newGenerator(7);
+    }
+
+    private ChatMessageIdGenerator newGenerator(int nodeId) {
+        ChatMessageIdGenerator created = new ChatMessageIdGenerator();
+        ReflectionTestUtils.setField(created, "configuredNodeId", nodeId);
+        ReflectionTestUtils.setField(created, "currentMillis", (LongSupplier) millis::get);
+        created.init();
+        return created;
+    }
+
+    /**
+     * 同一毫秒内分配超过 4096 个ID时借用后续毫秒，ID 仍严格递增
+     */
+    @Test
+    void testMonotonicWhenLogicalCounterOverflows() {
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.next(1);
+            Assertions.assertTrue(id > previous);
+            previous = id;
+        }
+        Assertions.assertTrue(ChatMessageIdGenerator.millisOf(previous) > NOW);
+
+        long first = generator.next(5000);
+        Assertions.assertTrue(first > previous);
+        long last = ChatMessageIdGenerator.nth(first, 4999);
+        Assertions.assertTrue(generator.next(1) > last);
+    }
+
+    /**
+     * 时钟回拨后继续在上一个值之后分配，不会生成更小或重复的ID
+     */
+    @Test
+    void testClockRegression() {
+        long before = generator.next(3);
+        millis.set(NOW - 60_000);
+        long after = generator.next(1);
+        Assertions.assertTrue(after > ChatMessageIdGenerator.nth(before, 2));
+
+        long fence = generator.fence();
+        Assertions.assertTrue(fence > after);
+        Assertions.assertTrue(generator.next(1) > fence);
+    }
+
+    /**
+     * 观察到其他节点更大的ID（包括本地时钟落后时）后，本节点之后的ID排在它之后
+     */
+    @Test
+    void testObserveAdvancesClock() {
+        ChatMessageIdGenerator ahead = newGenerator(1023);
+        long remote = ahead.next(1);
+        millis.set(NOW - 60_000);
+        Assertions.assertTrue(generator.next(1) < remote);
+
+        generator.observe(remote);
+        long local = generator.next(1);
+        Assertions.assertTrue(local > remote);
+        Assertions.assertEquals(NOW, ChatMessageIdGenerator.millisOf(local));
+
+        // 旧格式的毫秒时间戳不影响时钟
+        generator.observe(NOW + 3_600_000);
+        Assertions.assertEquals(NOW, ChatMessageIdGenerator.millisOf(generator.next(1)));
+    }
+
+    /**
+     * 分界线不小于任何节点在当前毫秒分配的ID
+     */
+    @Test
+    void testFenceCoversCurrentMillisecondOnAllNodes() {
+        ChatMessageIdGenerator other = newGenerator(1023);
+        long otherId = other.next(100);
+        long fence = generator.fence();
+        Assertions.assertTrue(fence >= ChatMessageIdGenerator.nth(otherId, 99));
+        Assertions.assertTrue(generator.next(1) > fence);
+        Assertions.assertTrue(other.next(1) > ChatMessageIdGenerator.nth(otherId, 99));
+
+        millis.set(NOW + 1);
+        Assertions.assertTrue(other.next(1) > fence);
+    }
+
+    @Test
+    void testMillisOfRoundTrip() {
+        for (long offset : new long[]{0, 1, 999, 86_400_000L}) {
+            millis.set(NOW + offset);
+            Assertions.assertEquals(NOW + offset, ChatMessageIdGenerator.millisOf(newGenerator(3).next(1)));
+        }
+        // 旧数据的毫秒时间戳原样返回，且小于任何新ID
+        Assertions.assertEquals(NOW, ChatMessageIdGenerator.millisOf(NOW));
+        Assertions.assertTrue(NOW < generator.next(1));
+    }
+
+    /**
+     * 同一段内的ID依次递增，且都排在段首之前分配的ID之后、之后分配的ID之前
+     */
+    @Test
+    void testNthOrdering() {
+        long before = generator.next(1);
+        long first = generator.next(10);
+        long after = generator.next(1);
+        long previous = before;
+        for (int i = 0; i < 10; i++) {
+            long id = ChatMessageIdGenerator.nth(first, i);
+            Assertions.assertTrue(id > previous);
+            Assertions.assertEquals(7, id & 1023);
+            previous = id;
+        }
+        Assertions.assertTrue(after > previous);
+        Assertions.assertEquals(first, ChatMessageIdGenerator.nth(first, 0));
+    }
+
+    /**
+     * 节点号：单节点未配置时固定为 0；多节点部署未配置或超出范围时启动失败，而不是随机选取或截断后与其他节点重复
+     */
+    @Test
+    void testNodeIdValidation() {
+        Assertions.assertEquals(0, newGenerator(-1).next(1) & 1023);
+
+        ChatMessageIdGenerator multiNode = new ChatMessageIdGenerator();
+        ReflectionTestUtils.setField(multiNode, "configuredNodeId", -1);
+        ReflectionTestUtils.setField(multiNode, "multiNode", true);
+        Assertions.assertThrows(IllegalStateException.class, multiNode::init);
+        ReflectionTestUtils.setField(multiNode, "configuredNodeId", 5);
+        multiNode.init();
+        Assertions.assertEquals(5, multiNode.next(1) & 1023);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> newGenerator(1024));
+    }
+}
@@ -0,0 +1,82 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 客户端分页令牌的校验：无效令牌一律以 {@link InvalidPagingStateException}（400）拒绝，而不是服务端错误
+ */
+class ChatMessageStorePagingStateTest {
+
+    @Test
+    void testPagingStateRoundTrip() {
+        Pageable pageable = CassandraPageRequest.of(PageRequest.of(0, 10),
+                ByteBuffer.wrap(new byte[]{1, 2, 3, (byte) 0xFF}));
+        String token = ChatMessageStore.encodePagingState(pageable);
+
+        CassandraPageRequest decoded = (CassandraPageRequest) ChatMessageStore.pageable(10, token);
+        Assertions.assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3, (byte) 0xFF}), decoded.getPagingState());
+        Assertions.assertNull(((CassandraPageRequest) ChatMessageStore.pageable(10, null)).getPagingState());
+    }
+
+    @Test
+    void testMalformedPagingStateIsRejected() {
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.pageable(10, "不是Base64"));
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.pageable(10, "AQID+/"));
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.pageable(10, "A"));
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.pageable(10, "="));
+    }
+
+    @Test
+    void testBucketToken() {
+        Assertions.assertEquals(new ChatMessageStore.BucketToken(1704067200000L, "AQID"),
+                ChatMessageStore.BucketToken.parse("1704067200000.AQID"));
+        Assertions.assertEquals(new ChatMessageStore.BucketToken(1704067200000L, ""),
+                ChatMessageStore.BucketToken.parse("1704067200000."));
+
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.BucketToken.parse("AQID"));
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.BucketToken.parse(".AQID"));
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.BucketToken.parse("abc.AQID"));
+        Assertions.assertThrows(InvalidPagingStateException.class,
+                () -> ChatMessageStore.BucketToken.parse("99999999999999999999.AQID"));
+    }
+
+    @Test
+    void testSegmentToken() {
+        Assertions.assertEquals(new ChatMessageStore.SegmentToken(1, "1704067200000.AQID"),
+                ChatMessageStore.SegmentToken.parse("1~1704067200000.AQID", 2));
+        Assertions.assertEquals(new ChatMessageStore.SegmentToken(0, ""),
+                ChatMessageStore.SegmentToken.parse("0~", 2));
+
+        Assertions.assertThrows(InvalidPagingStateException.class,
+                () -> ChatMessageStore.SegmentToken.parse("1704067200000.AQID", 2));
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.SegmentToken.parse("x~", 2));
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.SegmentToken.parse("2~", 2));
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.SegmentToken.parse("-1~", 2));
+    }
+
+    /**
+     * 编码合法但被驱动拒绝的令牌同样是客户端错误；没有令牌时查询失败照常抛出
+     */
+    @Test
+    void testDriverRejectionMapsToInvalidPagingState() {
+        Assertions.assertThrows(InvalidPagingStateException.class, () -> ChatMessageStore.withPagingState("AQID",
+                () -> {
+                    throw new IllegalArgumentException("Paging state mismatch");
+                }));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChatMessageStore.withPagingState(null,
+                () -> {
+                    throw new IllegalArgumentException("unrelated");
+                }));
+        Assertions.assertThrows(DataAccessResourceFailureException.class,
+                () -> ChatMessageStore.withPagingState("AQID", () -> {
+                    throw new DataAccessResourceFailureException("cassandra down");
+                }));
+    }
+}
@@ -0,0 +1,219 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.el12stu.RelaMind.advisor.ConversationLaneAdvisor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 会话执行通道测试：同一会话的轮次按顺序逐个执行，忙碌时拒绝，任何结束方式都会让出通道
+ */
+class ConversationLanesTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ConversationLanes lanes(ConversationLanes.Mode mode, int maxQueued) {
+        ConversationLanes lanes = new ConversationLanes(meterRegistry);
+        ReflectionTestUtils.setField(lanes, "enabled", true);
+        ReflectionTestUtils.setField(lanes, "mode", mode);
+        ReflectionTestUtils.setField(lanes, "maxQueued", maxQueued);
+        ReflectionTestUtils.setField(lanes, "acquireTimeoutMs", 5_000L);
+        lanes.init();
+        return lanes;
+    }
+
+    private double activeLanes() {
+        return meterRegistry.get("relamind.chat.memory.lane.active").gauge().value();
+    }
+
+    private double rejected() {
+        return meterRegistry.get("relamind.chat.memory.lane.rejected").counter().count();
+    }
+
+    /**
+     * 占住会话通道的流式轮次，直到返回的 Sink 结束
+     */
+    private static Sinks.Many<String> hold(ConversationLanes lanes, String conversationId) {
+        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+        lanes.stream(conversationId, sink::asFlux).subscribe();
+        return sink;
+    }
+
+    /**
+     * QUEUE：排队的轮次在前一轮结束后按到达顺序执行，同一时刻只有一轮在执行；其他会话不受影响
+     */
+    @Test
+    void testQueueRunsTurnsInOrder() {
+        ConversationLanes lanes = lanes(ConversationLanes.Mode.QUEUE, 8);
+        Sinks.Many<String> first = hold(lanes, "chat");
+        List<Integer> started = new CopyOnWriteArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<List<Integer>>> results = new CopyOnWriteArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            int turn = i;
+            results.add(lanes.stream("chat", () -> {
+                started.add(turn);
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                return Flux.just(turn).delayElements(Duration.ofMillis(10))
+                        .doOnTerminate(running::decrementAndGet);
+            }).collectList().toFuture());
+        }
+        Assertions.assertEquals("other", lanes.call("other", () -> "other"));
+        Assertions.assertTrue(started.isEmpty());
+
+        first.tryEmitComplete();
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(List.of(i + 1), results.get(i).orTimeout(5, TimeUnit.SECONDS).join());
+        }
+        Assertions.assertEquals(List.of(1, 2, 3, 4, 5), started);
+        Assertions.assertEquals(1, maxRunning.get());
+        Assertions.assertEquals(0, activeLanes());
+    }
+
+    /**
+     * QUEUE：同步轮次在调用线程上等待前一轮结束
+     */
+    @Test
+    void testQueueBlocksSynchronousTurn() throws Exception {
+        ConversationLanes lanes = lanes(ConversationLanes.Mode.QUEUE, 8);
+        Sinks.Many<String> first = hold(lanes, "chat");
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> lanes.call("chat", () -> "second"));
+        Thread.sleep(100);
+        Assertions.assertFalse(second.isDone());
+
+        first.tryEmitComplete();
+        Assertions.assertEquals("second", second.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * REJECT：会话正忙时同步和流式轮次都以 ConversationBusyException（429）拒绝；QUEUE 排队满时同样拒绝
+     */
+    @Test
+    void testRejectWhenBusy() {
+        ResponseStatus status = ConversationBusyException.class.getAnnotation(ResponseStatus.class);
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS, status.value());
+
+        ConversationLanes lanes = lanes(ConversationLanes.Mode.REJECT, 8);
+        Sinks.Many<String> first = hold(lanes, "chat");
+        AtomicInteger ran = new AtomicInteger();
+        Assertions.assertThrows(ConversationBusyException.class, () -> lanes.call("chat", ran::incrementAndGet));
+        Assertions.assertThrows(ConversationBusyException.class,
+                () -> lanes.stream("chat", () -> Flux.just(ran.incrementAndGet())).blockLast(TIMEOUT));
+        Assertions.assertEquals(0, ran.get());
+        Assertions.assertEquals(2, rejected());
+
+        first.tryEmitComplete();
+        Assertions.assertEquals(1, lanes.call("chat", ran::incrementAndGet));
+
+        ConversationLanes queue = lanes(ConversationLanes.Mode.QUEUE, 1);
+        Sinks.Many<String> holder = hold(queue, "chat");
+        Disposable queued = queue.stream("chat", () -> Flux.just("queued")).subscribe();
+        Assertions.assertThrows(ConversationBusyException.class, () -> queue.call("chat", () -> "overflow"));
+        queued.dispose();
+        holder.tryEmitComplete();
+    }
+
+    /**
+     * 轮次失败（同步异常、流出错、创建流时抛出）后通道让出，下一轮立即执行
+     */
+    @Test
+    void testLaneReleasedWhenTurnFails() {
+        ConversationLanes lanes = lanes(ConversationLanes.Mode.REJECT, 8);
+        Assertions.assertThrows(IllegalStateException.class, () -> lanes.call("chat", () -> {
+            throw new IllegalStateException("model failed");
+        }));
+        Assertions.assertEquals(0, activeLanes());
+
+        Assertions.assertThrows(IllegalStateException.class, () -> lanes.stream("chat",
+                () -> Flux.error(new IllegalStateException("stream failed"))).blockLast(TIMEOUT));
+        Assertions.assertEquals(0, activeLanes());
+
+        Assertions.assertThrows(IllegalStateException.class, () -> lanes.stream("chat", () -> {
+            throw new IllegalStateException("prepare failed");
+        }).blockLast(TIMEOUT));
+        Assertions.assertEquals(0, activeLanes());
+        Assertions.assertEquals("ok", lanes.call("chat", () -> "ok"));
+    }
+
+    /**
+     * 流被取消（客户端断开）时让出通道；排队中被取消的轮次被跳过，不会占住通道
+     */
+    @Test
+    void testLaneReleasedWhenStreamCancelled() {
+        ConversationLanes lanes = lanes(ConversationLanes.Mode.QUEUE, 8);
+        Disposable running = lanes.stream("chat", Flux::<String>never).subscribe();
+        AtomicInteger cancelledRan = new AtomicInteger();
+        Disposable waiting = lanes.stream("chat", () -> Flux.just(cancelledRan.incrementAndGet())).subscribe();
+        CompletableFuture<List<String>> next = lanes.stream("chat", () -> Flux.just("next")).collectList().toFuture();
+        Assertions.assertEquals(1, activeLanes());
+
+        waiting.dispose();
+        running.dispose();
+        Assertions.assertEquals(List.of("next"), next.orTimeout(5, TimeUnit.SECONDS).join());
+        Assertions.assertEquals(0, cancelledRan.get());
+        Assertions.assertEquals(0, activeLanes());
+    }
+
+    /**
+     * Advisor 按请求上下文中的会话ID进入通道，没有会话ID的请求直接执行
+     */
+    @Test
+    void testAdvisorUsesConversationId() throws Exception {
+        ConversationLanes lanes = lanes(ConversationLanes.Mode.REJECT, 8);
+        ConversationLaneAdvisor advisor = new ConversationLaneAdvisor(lanes);
+        ChatClientResponse response = new ChatClientResponse(null, Map.of());
+        CallAdvisorChain callChain = Mockito.mock(CallAdvisorChain.class);
+        StreamAdvisorChain streamChain = Mockito.mock(StreamAdvisorChain.class);
+        CountDownLatch inCall = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Mockito.when(callChain.nextCall(ArgumentMatchers.any())).thenAnswer(invocation -> {
+            inCall.countDown();
+            finish.await(5, TimeUnit.SECONDS);
+            return response;
+        });
+        Mockito.when(streamChain.nextStream(ArgumentMatchers.any())).thenReturn(Flux.just(response));
+
+        ChatClientRequest request = new ChatClientRequest(new Prompt("你好"),
+                Map.of(ChatMemory.CONVERSATION_ID, "chat"));
+        CompletableFuture<ChatClientResponse> busy = CompletableFuture.supplyAsync(
+                () -> advisor.adviseCall(request, callChain));
+        Assertions.assertTrue(inCall.await(5, TimeUnit.SECONDS));
+        Assertions.assertThrows(ConversationBusyException.class,
+                () -> advisor.adviseStream(request, streamChain).blockLast(TIMEOUT));
+
+        ChatClientRequest anonymous = new ChatClientRequest(new Prompt("你好"), Map.of());
+        Assertions.assertEquals(response, advisor.adviseStream(anonymous, streamChain).blockLast(TIMEOUT));
+
+        finish.countDown();
+        Assertions.assertEquals(response, busy.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(response, advisor.adviseStream(request, streamChain).blockLast(TIMEOUT));
+        Assertions.assertEquals(0, activeLanes());
+    }
+}
@@ -0,0 +1,23 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+
+/**
+ * 进程内后端的一致性测试，不需要启动 Spring 上下文
+ */
+class InMemoryChatMemoryConformanceTest extends AbstractChatMemoryConformanceTest {
+
+    private static final int WINDOW_SIZE = 20;
+
+    private final InMemoryChatMemory chatMemory = new InMemoryChatMemory(WINDOW_SIZE, 0, 1000);
+
+    @Override
+    protected ChatMemory chatMemory() {
+        return chatMemory;
+    }
+
+    @Override
+    protected int windowSize() {
+        return WINDOW_SIZE;
+    }
+}
@@ -0,0 +1,123 @@
+package io.el12stu.RelaMind.chatmemory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并发加载合并测试
+ */
+class SingleFlightTest {
+
+    private final Counter coalesced = Counter.builder("test.coalesced").register(new SimpleMeterRegistry());
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>(coalesced);
+
+    /**
+     * 加载进行中并发到达的调用共享同一次加载
+     */
+    @Test
+    void testConcurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> load = new CompletableFuture<>();
+        int callers = 8;
+        CountDownLatch ready = new CountDownLatch(callers);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<CompletableFuture<String>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    return flight.execute("chat", () -> {
+                        loads.incrementAndGet();
+                        return load;
+                    });
+                }));
+            }
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (Future<CompletableFuture<String>> result : results) {
+                futures.add(result.get(5, TimeUnit.SECONDS));
+            }
+            load.complete("window");
+            for (CompletableFuture<String> future : futures) {
+                Assertions.assertEquals("window", future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(callers - 1, coalesced.count());
+
+        // 加载完成后不再共享，下一次调用重新加载
+        Assertions.assertEquals("reloaded",
+                flight.execute("chat", () -> CompletableFuture.completedFuture("reloaded")).join());
+    }
+
+    /**
+     * 失败的加载不会被缓存：等待中的调用拿到同一个异常，之后的调用重新加载
+     */
+    @Test
+    void testFailedLoadIsNotCached() {
+        CompletableFuture<String> load = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.execute("chat", () -> load);
+        CompletableFuture<String> joined = flight.execute("chat",
+                () -> CompletableFuture.completedFuture("unused"));
+        load.completeExceptionally(new IllegalStateException("cassandra down"));
+        Assertions.assertThrows(CompletionException.class, first::join);
+        Assertions.assertThrows(CompletionException.class, joined::join);
+
+        Assertions.assertEquals("ok", flight.execute("chat", () -> CompletableFuture.completedFuture("ok")).join());
+
+        // 加载函数同步抛出的异常同样不会留下进行中的加载
+        CompletableFuture<String> thrown = flight.execute("other", () -> {
+            throw new IllegalStateException("prepare failed");
+        });
+        Assertions.assertThrows(CompletionException.class, thrown::join);
+        Assertions.assertEquals("ok", flight.execute("other", () -> CompletableFuture.completedFuture("ok")).join());
+    }
+
+    /**
+     * 写入或清空之后 forget：之后的调用不再加入写入之前开始的加载，旧加载完成时也不会移除新加载
+     */
+    @Test
+    void testForgetPreventsReuseOfStaleLoad() {
+        CompletableFuture<String> stale = new CompletableFuture<>();
+        CompletableFuture<String> before = flight.execute("chat", () -> stale);
+
+        flight.forget("chat");
+        CompletableFuture<String> fresh = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> after = flight.execute("chat", () -> {
+            loads.incrementAndGet();
+            return fresh;
+        });
+        Assertions.assertEquals(1, loads.get());
+
+        stale.complete("before-clear");
+        Assertions.assertEquals("before-clear", before.join());
+        Assertions.assertFalse(after.isDone());
+
+        // 旧加载完成后，新到达的调用仍然加入 forget 之后开始的加载
+        CompletableFuture<String> joined = flight.execute("chat", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("unused");
+        });
+        Assertions.assertEquals(1, loads.get());
+        fresh.complete("after-clear");
+        Assertions.assertEquals("after-clear", after.join());
+        Assertions.assertEquals("after-clear", joined.join());
+    }
+}
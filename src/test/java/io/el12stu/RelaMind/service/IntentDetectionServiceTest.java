@@ -0,0 +1,58 @@
+package io.el12stu.RelaMind.service;
+
+import io.el12stu.RelaMind.service.IntentDetectionResult.ChatIntent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+/**
+ * 意图识别服务测试：使用随应用发布的关键词权重，不调用 LLM
+ */
+class IntentDetectionServiceTest {
+
+    private final ChatModel chatModel = Mockito.mock(ChatModel.class);
+
+    private IntentDetectionService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        service = new IntentDetectionService(chatModel, new SimpleMeterRegistry(), new DefaultResourceLoader());
+        ReflectionTestUtils.setField(service, "keywordsLocation", "classpath:intent_keywords.txt");
+        ReflectionTestUtils.setField(service, "confirmationThreshold", 0.7);
+        ReflectionTestUtils.setField(service, "llmFallbackThreshold", 0.5);
+        ReflectionTestUtils.setField(service, "llmFallbackEnabled", false);
+        service.init();
+    }
+
+    /**
+     * 没有命中任何关键词的日常消息默认为普通聊天，不在回复末尾请用户确认
+     */
+    @Test
+    void testNoKeywordMessageNeedsNoConfirmation() {
+        for (String message : new String[]{"嗯嗯", "你是谁", "明天天气怎么样"}) {
+            IntentDetectionResult result = service.detectIntent(message);
+            Assertions.assertEquals(ChatIntent.NORMAL_CHAT, result.getIntent(), message);
+            Assertions.assertFalse(result.getNeedConfirmation(), message);
+            Assertions.assertTrue(result.getRuleMatches().isEmpty(), message);
+        }
+        Mockito.verify(chatModel, Mockito.never()).call(ArgumentMatchers.any(Prompt.class));
+    }
+
+    @Test
+    void testKeywordMessage() {
+        IntentDetectionResult result = service.detectIntent("帮我搜索一下这个网页");
+        Assertions.assertEquals(ChatIntent.TOOL_CALL, result.getIntent());
+        Assertions.assertTrue(result.getConfidence() >= 0.7);
+        Assertions.assertFalse(result.getNeedConfirmation());
+        Mockito.verify(chatModel, Mockito.never()).call(ArgumentMatchers.any(Prompt.class));
+    }
+}
@@ -0,0 +1,50 @@
+package io.el12stu.RelaMind.service;
+
+import io.el12stu.RelaMind.service.IntentDetectionResult.ChatIntent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 意图关键词单次扫描匹配器测试
+ */
+class IntentKeywordMatcherTest {
+
+    private final IntentKeywordMatcher matcher = new IntentKeywordMatcher(Map.of(
+            ChatIntent.TOOL_CALL, List.of("搜索|找|URL"),
+            ChatIntent.RAG_QUERY, List.of("之前|几.*年前", "查找.*历史|搜索.*历史")
+    ));
+
+    /**
+     * 一次扫描得到各类意图的命中次数，重叠的关键词各计一次
+     */
+    @Test
+    void testCountsHitsPerIntent() {
+        IntentKeywordMatcher.Hits hits = matcher.match("之前帮我搜索过历史记录，再找找");
+        Assertions.assertEquals(Map.of(ChatIntent.TOOL_CALL, 3, ChatIntent.RAG_QUERY, 2), hits.byIntent());
+        Assertions.assertEquals(List.of("之前", "搜索.*历史"), hits.alternatives(ChatIntent.RAG_QUERY));
+        Assertions.assertEquals(Map.of(), matcher.match("今天心情不错").byIntent());
+    }
+
+    /**
+     * 「.*」要求片段按顺序出现，中间可以隔任意内容，但与正则的 . 一样不能跨越换行
+     */
+    @Test
+    void testGapPatternsFollowRegexSemantics() {
+        Assertions.assertEquals(1, matcher.match("我几乎忘了三年前的事").count(ChatIntent.RAG_QUERY));
+        Assertions.assertEquals(0, matcher.match("年前我几乎忘了").count(ChatIntent.RAG_QUERY));
+        Assertions.assertEquals(0, matcher.match("几乎忘了\n三年前的事").count(ChatIntent.RAG_QUERY));
+        Assertions.assertEquals(1, matcher.match("几乎忘了\n几年前的事").count(ChatIntent.RAG_QUERY));
+    }
+
+    /**
+     * 关键词与消息都忽略大小写、全角半角
+     */
+    @Test
+    void testIgnoresCaseAndWidth() {
+        Assertions.assertEquals(1, matcher.match("打开这个 url").count(ChatIntent.TOOL_CALL));
+        Assertions.assertEquals(1, matcher.match("打开这个 Ｕｒｌ").count(ChatIntent.TOOL_CALL));
+    }
+}
@@ -0,0 +1,98 @@
+package io.el12stu.RelaMind.service;
+
+import io.el12stu.RelaMind.service.IntentDetectionResult.ChatIntent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 意图关键词打分测试
+ */
+class IntentKeywordScorerTest {
+
+    private static IntentKeywordScorer read(String content) throws IOException {
+        return IntentKeywordScorer.read(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 不同意图的关键词同时命中时按权重决定，置信度随证据增强
+     */
+    @Test
+    void testWeightsDecideBetweenIntents() throws IOException {
+        IntentKeywordScorer scorer = read("""
+                # 注释
+                TOOL_CALL\t*\t-1
+                TOOL_CALL\t搜索\t2
+                RAG_QUERY\t*\t-1
+                RAG_QUERY\t搜索.*历史\t4
+                """);
+        IntentKeywordScorer.Score chat = scorer.score("今天天气不错");
+        Assertions.assertEquals(ChatIntent.NORMAL_CHAT, chat.intent());
+        Assertions.assertTrue(chat.evidence().isEmpty());
+
+        IntentKeywordScorer.Score tool = scorer.score("帮我搜索一下");
+        Assertions.assertEquals(ChatIntent.TOOL_CALL, tool.intent());
+        Assertions.assertEquals(List.of("搜索"), tool.evidence());
+
+        IntentKeywordScorer.Score history = scorer.score("搜索我的历史");
+        Assertions.assertEquals(ChatIntent.RAG_QUERY, history.intent());
+        Assertions.assertTrue(scorer.score("搜索搜索").confidence() > tool.confidence());
+        double total = history.probabilities().values().stream().mapToDouble(Double::doubleValue).sum();
+        Assertions.assertEquals(1.0, total, 1e-9);
+    }
+
+    /**
+     * 写回时只替换权重列，注释与顺序保持不变
+     */
+    @Test
+    void testWritePreservesLayout() throws IOException {
+        IntentKeywordScorer scorer = read("# 工具\nTOOL_CALL\t*\t0\nTOOL_CALL\t下载\t1\n\nRAG_QUERY\t之前\t1\n");
+        StringWriter out = new StringWriter();
+        scorer.withWeights(new double[]{2.5, 0.25}, new double[]{0, 0, -1}).write(out);
+        Assertions.assertEquals("# 工具\nTOOL_CALL\t*\t-1.000\nTOOL_CALL\t下载\t2.500\n\nRAG_QUERY\t之前\t0.250\n",
+                out.toString());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> read("TOOL_CALL\t下载\n"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> read("UNKNOWN\t下载\t1\n"));
+    }
+
+    private static IntentKeywordScorer shippedScorer() throws IOException {
+        try (InputStream input = IntentKeywordScorerTest.class.getResourceAsStream("/intent_keywords.txt")) {
+            return IntentKeywordScorer.read(input);
+        }
+    }
+
+    private static double accuracy(IntentKeywordScorer scorer, String resource) throws IOException, URISyntaxException {
+        Path labeled = Path.of(IntentKeywordScorerTest.class.getResource(resource).toURI());
+        List<IntentWeightCalibrator.Example> examples = IntentWeightCalibrator.readExamples(labeled);
+        long correct = examples.stream()
+                .filter(example -> scorer.score(example.message()).intent() == example.intent())
+                .count();
+        return (double) correct / examples.size();
+    }
+
+    /**
+     * 随应用发布的权重在校准所用标注集上的拟合程度，重新校准后不应低于此值
+     */
+    @Test
+    void testShippedWeightsOnLabeledSet() throws IOException, URISyntaxException {
+        double accuracy = accuracy(shippedScorer(), "/intent_labeled.tsv");
+        Assertions.assertTrue(accuracy >= 0.95, String.valueOf(accuracy));
+    }
+
+    /**
+     * 随应用发布的权重在留出集（不参与校准）上的准确率，这才是对新消息的估计
+     */
+    @Test
+    void testShippedWeightsOnHoldoutSet() throws IOException, URISyntaxException {
+        double accuracy = accuracy(shippedScorer(), "/intent_holdout.tsv");
+        Assertions.assertTrue(accuracy >= 0.9, String.valueOf(accuracy));
+    }
+}
@@ -0,0 +1,103 @@
+package io.el12stu.RelaMind.service;
+
+import io.el12stu.RelaMind.service.IntentDetectionResult.ChatIntent;
+import io.el12stu.RelaMind.service.IntentResultCache.CachedIntent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 意图识别结果缓存测试
+ */
+class IntentResultCacheTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toNanos(1);
+
+    private static final CachedIntent SEARCH = new CachedIntent(ChatIntent.TOOL_CALL, 0.9, "要求搜索");
+
+    @Test
+    void testNormalizedMessagesShareEntry() {
+        IntentResultCache cache = new IntentResultCache(100, HOUR, 200);
+        Assertions.assertNull(cache.get(cache.key("帮我搜索一下")));
+        cache.put(cache.key("帮我搜索一下"), SEARCH);
+
+        Assertions.assertEquals(SEARCH, cache.get(cache.key("帮我 搜索一下！")));
+        Assertions.assertEquals(SEARCH, cache.get(cache.key("帮我搜索一下。。。")));
+        Assertions.assertNull(cache.get(cache.key("帮我搜索一下天气")));
+        Assertions.assertEquals(2, cache.hits().sum());
+        Assertions.assertEquals(2, cache.misses().sum());
+        Assertions.assertEquals(0.5, cache.hitRatio());
+    }
+
+    @Test
+    void testUncacheableMessages() {
+        IntentResultCache cache = new IntentResultCache(100, HOUR, 10);
+        Assertions.assertNull(cache.key("这是一条超过十个字符上限的长消息"));
+        Assertions.assertNull(cache.key("？！。 "));
+        Assertions.assertNotNull(cache.key("十个字符以内的消息"));
+    }
+
+    @Test
+    void testExpiredEntriesMiss() {
+        IntentResultCache cache = new IntentResultCache(100, 0, 200);
+        String key = cache.key("帮我搜索一下");
+        cache.put(key, SEARCH);
+        Assertions.assertNull(cache.get(key));
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(1, cache.evictions().sum());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        IntentResultCache cache = new IntentResultCache(2, HOUR, 200);
+        cache.put("a", SEARCH);
+        cache.put("b", SEARCH);
+        cache.get("a");
+        cache.put("c", SEARCH);
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertNotNull(cache.get("a"));
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertNotNull(cache.get("c"));
+        Assertions.assertEquals(1, cache.evictions().sum());
+    }
+
+    /**
+     * 预置说法不过期、不占缓存容量，LLM 结论也不会覆盖它
+     */
+    @Test
+    void testPresetsArePinned() {
+        IntentResultCache cache = new IntentResultCache(1, 0, 200);
+        CachedIntent greeting = new CachedIntent(ChatIntent.NORMAL_CHAT, 1.0, "预置常见说法");
+        Assertions.assertEquals(1, cache.preset(Map.of("你好", greeting, "你好！", greeting)));
+
+        cache.put(cache.key("你好"), SEARCH);
+        Assertions.assertEquals(greeting, cache.get(cache.key("你 好")));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    /**
+     * 随应用发布的预置说法都能载入，且归一化后互不重复
+     */
+    @Test
+    void testShippedWarmupLoads() throws IOException {
+        List<IntentWeightCalibrator.Example> examples;
+        try (InputStream input = getClass().getResourceAsStream("/intent_warmup.txt")) {
+            Assertions.assertNotNull(input);
+            examples = IntentWeightCalibrator.readExamples(input);
+        }
+        Map<String, CachedIntent> presets = new HashMap<>();
+        examples.forEach(example -> presets.put(example.message(),
+                new CachedIntent(example.intent(), 1.0, "预置常见说法")));
+
+        IntentResultCache cache = new IntentResultCache(100, HOUR, 200);
+        Assertions.assertEquals(examples.size(), cache.preset(presets));
+        Assertions.assertEquals(ChatIntent.TOOL_CALL, cache.get(cache.key("帮我搜索一下～")).intent());
+    }
+}
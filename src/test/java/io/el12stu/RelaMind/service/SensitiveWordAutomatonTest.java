@@ -0,0 +1,143 @@
+package io.el12stu.RelaMind.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 敏感词自动机测试
+ */
+class SensitiveWordAutomatonTest {
+
+    @Test
+    void testMatchesDictionaryWords() {
+        SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(List.of("非法内容", "黄色暴力", "绕过检测"));
+        Assertions.assertTrue(automaton.matches("你好，我想看非法内容"));
+        Assertions.assertTrue(automaton.matches("黄色暴力"));
+        Assertions.assertFalse(automaton.matches("非法的内容"));
+        Assertions.assertFalse(automaton.matches(""));
+        Assertions.assertEquals(3, automaton.wordCount());
+    }
+
+    /**
+     * 失配后沿 fail 指针回退，不会漏掉与前缀重叠的词
+     */
+    @Test
+    void testFailLinksFindOverlappingWords() {
+        SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(List.of("he", "she", "hers", "abcd", "bc"));
+        Assertions.assertTrue(automaton.matches("ushers"));
+        Assertions.assertTrue(automaton.matches("abce"));
+        Assertions.assertTrue(automaton.matches("aabcd"));
+        Assertions.assertFalse(automaton.matches("hxsxe"));
+    }
+
+    /**
+     * 全角、大小写、繁体与夹杂的干扰字符都折叠到同一个词上
+     */
+    @Test
+    void testNormalizesWithoutRewritingText() {
+        SensitiveWordNormalizer normalizer = new SensitiveWordNormalizer(true, true, " *-",
+                Map.of('違', '违', '規', '规'));
+        SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(List.of("违规内容", "Bad Word"), normalizer);
+        Assertions.assertTrue(automaton.matches("这是違規内容"));
+        Assertions.assertTrue(automaton.matches("这是违*规-内 容"));
+        Assertions.assertTrue(automaton.matches("ＢＡＤ　ｗｏｒｄ"));
+        Assertions.assertTrue(automaton.matches("b-a-d-w-o-r-d"));
+        Assertions.assertFalse(automaton.matches("违，规内容"));
+        Assertions.assertFalse(SensitiveWordAutomaton.build(List.of("bad")).matches("BAD"));
+    }
+
+    /**
+     * 一次扫描报告全部命中（含重叠与嵌套）的原文位置和分类，遮盖写入复用的缓冲区
+     */
+    @Test
+    void testReportsSpansAndMasks() {
+        Map<String, String> words = new LinkedHashMap<>();
+        words.put("he", "a");
+        words.put("she", "b");
+        words.put("hers", "a");
+        words.put("违规", "c");
+        SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(words,
+                new SensitiveWordNormalizer(true, true, "*", Map.of()));
+        Assertions.assertEquals(List.of(
+                new SensitiveWordMatch(1, 3, "b"),
+                new SensitiveWordMatch(2, 2, "a"),
+                new SensitiveWordMatch(2, 4, "a"),
+                new SensitiveWordMatch(7, 3, "c")), automaton.findAll("uSHErs 违*规"));
+
+        StringBuilder buffer = new StringBuilder();
+        Assertions.assertEquals(4, automaton.mask("uSHErs 违*规", buffer, '*'));
+        Assertions.assertEquals("u***** ***", buffer.toString());
+        Assertions.assertEquals(0, automaton.mask("没有命中", buffer, '*'));
+        Assertions.assertEquals(0, buffer.length());
+    }
+
+    /**
+     * 写出的镜像重新加载后匹配结果、分类与统计不变，截断或格式不符的镜像拒绝加载
+     */
+    @Test
+    void testImageRoundTrip() throws IOException {
+        Map<String, String> words = new LinkedHashMap<>();
+        words.put("he", "a");
+        words.put("hers", "b");
+        words.put("违规", "c");
+        SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(words,
+                new SensitiveWordNormalizer(true, true, "*", Map.of('違', '违')));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        automaton.writeTo(Channels.newChannel(out));
+        byte[] bytes = out.toByteArray();
+        Assertions.assertEquals(automaton.imageBytes(), bytes.length);
+
+        SensitiveWordAutomaton loaded = SensitiveWordAutomaton.load(ByteBuffer.wrap(bytes));
+        String text = "uSHErs 違*規 违规";
+        Assertions.assertEquals(automaton.findAll(text), loaded.findAll(text));
+        Assertions.assertEquals(automaton.wordCount(), loaded.wordCount());
+        Assertions.assertEquals(automaton.stateCount(), loaded.stateCount());
+        Assertions.assertEquals(automaton.maxWordLength(), loaded.maxWordLength());
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> SensitiveWordAutomaton.load(ByteBuffer.wrap(bytes, 0, bytes.length / 2).slice()));
+        bytes[0] ^= 1;
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> SensitiveWordAutomaton.load(ByteBuffer.wrap(bytes)));
+    }
+
+    /**
+     * 与逐个 contains 的朴素实现对比
+     */
+    @Test
+    void testAgreesWithNaiveMatching() {
+        Random random = new Random(42);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            words.add(randomText(random, 2 + random.nextInt(4)));
+        }
+        SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(words);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomText(random, random.nextInt(40));
+            boolean expected = words.stream().anyMatch(text::contains);
+            Assertions.assertEquals(expected, automaton.matches(text), text);
+        }
+    }
+
+    /**
+     * 小字母表制造大量共享前缀和 fail 回退
+     */
+    private static String randomText(Random random, int length) {
+        String alphabet = "abc敏感词";
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+}
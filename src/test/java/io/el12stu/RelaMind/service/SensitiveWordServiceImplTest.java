@@ -0,0 +1,130 @@
+package io.el12stu.RelaMind.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 敏感词服务热更新测试：词库为临时目录中的 file: 文件，通过 reload 重新加载
+ */
+class SensitiveWordServiceImplTest {
+
+    @TempDir
+    Path directory;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private Path dictionaryFile;
+
+    private SensitiveWordServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dictionaryFile = directory.resolve("sensitive_words.txt");
+        writeDictionary("旧词");
+        service = new SensitiveWordServiceImpl(meterRegistry, new DefaultResourceLoader());
+        ReflectionTestUtils.setField(service, "dictionaryLocation", "file:" + dictionaryFile);
+        ReflectionTestUtils.setField(service, "imageLocation", "");
+        ReflectionTestUtils.setField(service, "watchEnabled", false);
+        ReflectionTestUtils.setField(service, "normalizeFullWidth", true);
+        ReflectionTestUtils.setField(service, "normalizeIgnoreCase", true);
+        ReflectionTestUtils.setField(service, "skipChars", SensitiveWordNormalizer.DEFAULT_SKIP_CHARS);
+        ReflectionTestUtils.setField(service, "variantsLocation", "");
+        ReflectionTestUtils.setField(service, "verdictCacheSize", 1024);
+        ReflectionTestUtils.setField(service, "verdictCacheMinLength", 0);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    private void writeDictionary(String... words) throws IOException {
+        Files.writeString(dictionaryFile, String.join("\n", words) + "\n", StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 重新加载后版本递增，新词库立即生效，旧词库的结论缓存不再使用
+     */
+    @Test
+    void testReloadReplacesDictionary() throws Exception {
+        Assertions.assertEquals(1, service.dictionaryStatus().version());
+        Assertions.assertTrue(service.containsSensitiveWords("这里有旧词"));
+        Assertions.assertFalse(service.containsSensitiveWords("这里有新词"));
+
+        writeDictionary("新词", "另一个词");
+        SensitiveWordDictionaryStatus status = service.reload().get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(2, status.version());
+        Assertions.assertEquals(2, status.words());
+        Assertions.assertEquals(status, service.dictionaryStatus());
+
+        Assertions.assertFalse(service.containsSensitiveWords("这里有旧词"));
+        Assertions.assertTrue(service.containsSensitiveWords("这里有新词"));
+        Assertions.assertEquals("这里有**", service.mask("这里有新词"));
+        Assertions.assertEquals(2, service.findMatches("另一个词和新词").size());
+    }
+
+    /**
+     * 构建失败（词库文件不存在）时返回失败的 Future，继续使用原词库，并记入失败次数
+     */
+    @Test
+    void testFailedReloadKeepsPreviousDictionary() throws Exception {
+        Files.delete(dictionaryFile);
+        CompletableFuture<SensitiveWordDictionaryStatus> reload = service.reload();
+        Assertions.assertThrows(ExecutionException.class, () -> reload.get(5, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(1, service.dictionaryStatus().version());
+        Assertions.assertTrue(service.containsSensitiveWords("这里有旧词"));
+        Assertions.assertEquals(1, meterRegistry.get("relamind.sensitive.reload.failures").counter().count());
+
+        writeDictionary("新词");
+        Assertions.assertEquals(2, service.reload().get(5, TimeUnit.SECONDS).version());
+    }
+
+    /**
+     * 排队中的重新加载被之后的请求共享，只构建一次；开始构建后到达的请求重新排队
+     */
+    @Test
+    void testPendingReloadIsShared() throws Exception {
+        ExecutorService reloadExecutor = (ExecutorService) ReflectionTestUtils.getField(service, "reloadExecutor");
+        CountDownLatch release = new CountDownLatch(1);
+        reloadExecutor.execute(() -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        writeDictionary("新词");
+        CompletableFuture<SensitiveWordDictionaryStatus> first = service.reload();
+        CompletableFuture<SensitiveWordDictionaryStatus> second = service.reload();
+        Assertions.assertSame(first, second);
+        Assertions.assertFalse(first.isDone());
+
+        release.countDown();
+        Assertions.assertEquals(2, first.get(5, TimeUnit.SECONDS).version());
+        Assertions.assertEquals(2, service.dictionaryStatus().version());
+
+        CompletableFuture<SensitiveWordDictionaryStatus> next = service.reload();
+        Assertions.assertNotSame(first, next);
+        Assertions.assertEquals(3, next.get(5, TimeUnit.SECONDS).version());
+    }
+}
@@ -0,0 +1,71 @@
+package io.el12stu.RelaMind.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式敏感词扫描器测试
+ */
+class SensitiveWordStreamScannerTest {
+
+    private final SensitiveWordAutomaton automaton = SensitiveWordAutomaton.build(List.of("非法内容", "he", "hers"));
+
+    /**
+     * 被拆在两个分段之间的敏感词整词遮盖，前缀在命中前不会提前输出
+     */
+    @Test
+    void testMasksWordSplitAcrossChunks() {
+        SensitiveWordStreamScanner scanner = new SensitiveWordStreamScanner(automaton, false);
+        StringBuilder out = new StringBuilder();
+        out.append(scanner.feed("这是非法"));
+        Assertions.assertEquals("这是", out.toString());
+        out.append(scanner.feed("内容，"));
+        out.append(scanner.feed("其他"));
+        out.append(scanner.flush());
+        Assertions.assertEquals("这是****，其他", out.toString());
+        Assertions.assertEquals(1, scanner.matchCount());
+    }
+
+    /**
+     * 暂存的前缀最终没有构成敏感词时原样补发；没有暂存和命中的分段原样返回
+     */
+    @Test
+    void testReleasesUnmatchedPrefix() {
+        SensitiveWordStreamScanner scanner = new SensitiveWordStreamScanner(automaton, false);
+        String plain = "你好";
+        Assertions.assertSame(plain, scanner.feed(plain));
+        Assertions.assertEquals("", scanner.feed("非法"));
+        Assertions.assertEquals("非法的", scanner.feed("的"));
+        Assertions.assertEquals("", scanner.feed("h"));
+        Assertions.assertEquals("h", scanner.flush());
+        Assertions.assertEquals("us****", scanner.feed("ush") + scanner.feed("ers") + scanner.flush());
+    }
+
+    /**
+     * 夹杂干扰字符的词整段遮盖，包括其中的干扰字符
+     */
+    @Test
+    void testMasksSpanIncludingSkippedChars() {
+        SensitiveWordAutomaton normalized = SensitiveWordAutomaton.build(List.of("非法内容"),
+                new SensitiveWordNormalizer(true, true, " *", Map.of()));
+        SensitiveWordStreamScanner scanner = new SensitiveWordStreamScanner(normalized, false);
+        String out = scanner.feed("看 非*法") + scanner.feed("内 容！") + scanner.flush();
+        Assertions.assertEquals("看 ******！", out);
+    }
+
+    /**
+     * 截断模式：只输出命中之前的内容，之后的分段全部丢弃
+     */
+    @Test
+    void testCutsAtFirstMatch() {
+        SensitiveWordStreamScanner scanner = new SensitiveWordStreamScanner(automaton, true);
+        Assertions.assertEquals("前文", scanner.feed("前文非法"));
+        Assertions.assertEquals("", scanner.feed("内容后文"));
+        Assertions.assertTrue(scanner.isCut());
+        Assertions.assertEquals("", scanner.feed("更多"));
+        Assertions.assertEquals("", scanner.flush());
+    }
+}
@@ -0,0 +1,151 @@
+package io.el12stu.RelaMind.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 敏感词检测结论缓存测试
+ */
+class SensitiveWordVerdictCacheTest {
+
+    @Test
+    void testRemembersVerdicts() {
+        SensitiveWordVerdictCache cache = new SensitiveWordVerdictCache(1000);
+        Assertions.assertEquals(1024, cache.capacity());
+        String clean = "一段反复粘贴的正常文本";
+        String dirty = "一段反复粘贴的非法内容";
+        Assertions.assertNull(cache.get(clean));
+
+        cache.put(clean, false);
+        cache.put(dirty, true);
+        Assertions.assertEquals(Boolean.FALSE, cache.get(clean));
+        Assertions.assertEquals(Boolean.TRUE, cache.get(dirty));
+    }
+
+    /**
+     * 直接映射：落到同一槽位的新结论覆盖旧结论，旧文本之后查询未命中而不是得到错误结论
+     */
+    @Test
+    void testCollidingSlotIsOverwritten() {
+        SensitiveWordVerdictCache cache = new SensitiveWordVerdictCache(1);
+        String first = "第一段文本";
+        String second = "第二段文本";
+        cache.put(first, true);
+        cache.put(second, false);
+        Assertions.assertNull(cache.get(first));
+        Assertions.assertEquals(Boolean.FALSE, cache.get(second));
+    }
+
+    @Test
+    void testDisabledCacheNeverHits() {
+        SensitiveWordVerdictCache.DISABLED.put("任意文本", true);
+        Assertions.assertNull(SensitiveWordVerdictCache.DISABLED.get("任意文本"));
+    }
+
+    /**
+     * 槽位哈希的种子公开且每轮可逆，可以构造出哈希相同的两段文本；
+     * 命中还要比对带密钥的校验值，构造出的文本不会借用另一段文本的结论
+     */
+    @Test
+    void testEqualHashDoesNotShareVerdict() {
+        String clean = "这是一段正常的文本内容。";
+        String forged = forgeCollision(clean, "敏感词汇");
+        Assertions.assertNotEquals(clean, forged);
+        Assertions.assertEquals(SensitiveWordVerdictCache.hash(clean), SensitiveWordVerdictCache.hash(forged));
+        Assertions.assertNotEquals(SensitiveWordVerdictCache.tag(clean), SensitiveWordVerdictCache.tag(forged));
+
+        SensitiveWordVerdictCache cache = new SensitiveWordVerdictCache(1024);
+        cache.put(clean, false);
+        Assertions.assertEquals(Boolean.FALSE, cache.get(clean));
+        Assertions.assertNull(cache.get(forged));
+
+        cache.put(forged, true);
+        Assertions.assertEquals(Boolean.TRUE, cache.get(forged));
+        Assertions.assertNull(cache.get(clean));
+    }
+
+    /**
+     * 参考实现的测试向量（密钥 00..0f，消息 00..0e / 00..0d / 空）
+     */
+    @Test
+    void testSipHashVectors() {
+        long k0 = 0x0706050403020100L;
+        long k1 = 0x0F0E0D0C0B0A0908L;
+        Assertions.assertEquals(0x726FDB47DD0E0E31L, SensitiveWordVerdictCache.sipHash24(k0, k1, ""));
+        Assertions.assertEquals(0xF723CA908E7AF2EEL, SensitiveWordVerdictCache.sipHash24(k0, k1,
+                "\u0100\u0302\u0504\u0706\u0908\u0B0A\u0D0C"));
+        Assertions.assertEquals(0x24200FCA8C968B54L, SensitiveWordVerdictCache.sipHash24(k0, k1, "敏感词"));
+    }
+
+    /**
+     * 构造与 target 槽位哈希相同的文本：以 prefix 开头，最后 4 个码元反解得到（长度须为 4 的倍数）
+     */
+    private static String forgeCollision(String target, String prefix) {
+        int length = target.length();
+        Assertions.assertEquals(0, length % 4);
+        Assertions.assertEquals(0, prefix.length() % 4);
+        String head = prefix + target.substring(prefix.length(), length - 4);
+        long targetState = state(target.substring(0, length - 4), length);
+        long forgedState = state(head, length);
+        // 两者在最后一个块之后相同：forgedState ^ block' * P1 == targetState ^ block * P1
+        long block = block(target, length - 4);
+        long forgedBlock = (targetState ^ forgedState ^ block * SensitiveWordVerdictCache.P1)
+                * inverse(SensitiveWordVerdictCache.P1);
+        StringBuilder forged = new StringBuilder(head);
+        for (int i = 0; i < 4; i++) {
+            forged.append((char) (forgedBlock >>> (16 * i)));
+        }
+        return forged.toString();
+    }
+
+    /**
+     * 按 hash 的轮函数处理完整的 4 码元块后的中间状态
+     */
+    private static long state(String blocks, int totalLength) {
+        long h = SensitiveWordVerdictCache.SEED ^ (totalLength * SensitiveWordVerdictCache.P1);
+        for (int i = 0; i < blocks.length(); i += 4) {
+            h = Long.rotateLeft(h ^ (block(blocks, i) * SensitiveWordVerdictCache.P1), 29)
+                    * SensitiveWordVerdictCache.P2;
+        }
+        return h;
+    }
+
+    private static long block(String text, int i) {
+        return text.charAt(i)
+                | (long) text.charAt(i + 1) << 16
+                | (long) text.charAt(i + 2) << 32
+                | (long) text.charAt(i + 3) << 48;
+    }
+
+    /**
+     * 奇数在模 2^64 下的乘法逆元（牛顿迭代）
+     */
+    private static long inverse(long odd) {
+        long inverse = odd;
+        for (int i = 0; i < 5; i++) {
+            inverse *= 2 - odd * inverse;
+        }
+        return inverse;
+    }
+
+    /**
+     * 仅一个字符或长度不同的文本哈希不同
+     */
+    @Test
+    void testHashDistinguishesNearDuplicates() {
+        Set<Long> hashes = new HashSet<>();
+        String base = "abcdefghijklmnopqrstuvwxyz0123456789";
+        for (int length = 0; length <= base.length(); length++) {
+            Assertions.assertTrue(hashes.add(SensitiveWordVerdictCache.hash(base.substring(0, length))));
+        }
+        for (int i = 0; i < base.length(); i++) {
+            String variant = base.substring(0, i) + '_' + base.substring(i + 1);
+            Assertions.assertTrue(hashes.add(SensitiveWordVerdictCache.hash(variant)), variant);
+        }
+        Assertions.assertTrue(hashes.add(SensitiveWordVerdictCache.hash("\0")));
+        Assertions.assertTrue(hashes.add(SensitiveWordVerdictCache.hash("\0\0")));
+    }
+}